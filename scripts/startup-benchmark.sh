@@ -0,0 +1,81 @@
+#!/usr/bin/env bash
+# Time from launch to the first successful GET /api/accounts/{id}: the plain jar against the AOT-processed
+# jar with its AppCDS archive, both built by ./mvnw -Paot -DskipTests package.
+#
+# usage: scripts/startup-benchmark.sh [runs]        (default 10)
+#   JAVA      java to run with, the JDK the archive was built with (default $JAVA_HOME/bin/java)
+#   PORT      port both variants listen on (default 18080)
+#   APP_ARGS  extra application arguments, e.g. --spring.datasource.url=...
+#
+# An untimed first start creates the account that is read and warms the file cache. Every run then starts
+# both variants one after the other, alternating which goes first, against the same database; each is
+# stopped before the next starts. Prints every run and the median of each variant in milliseconds.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+RUNS=${1:-10}
+JAVA=${JAVA:-${JAVA_HOME:+$JAVA_HOME/bin/}java}
+PORT=${PORT:-18080}
+APP_ARGS=${APP_ARGS:-}
+JAR=target/bank-app-0.0.1-SNAPSHOT.jar
+CDS_DIR=target/cds
+
+for file in "$JAR" "$CDS_DIR/application.jsa" "$CDS_DIR/$(basename "$JAR")"; do
+    [ -f "$file" ] || { echo "$file is missing, build with ./mvnw -Paot -DskipTests package" >&2; exit 1; }
+done
+
+plain=("$JAVA" -jar "$JAR")
+optimized=("$JAVA" -XX:SharedArchiveFile="$CDS_DIR/application.jsa" -Dspring.aot.enabled=true -jar "$CDS_DIR/$(basename "$JAR")")
+
+PID=
+ELAPSED=
+stop() {
+    if [ -n "$PID" ]; then
+        kill "$PID" 2>/dev/null || true
+        wait "$PID" 2>/dev/null || true
+        PID=
+    fi
+}
+trap stop EXIT
+
+# Starts the command, sets ELAPSED to the milliseconds until GET $1 answers 200 and leaves it running
+start() {
+    local url=$1
+    shift
+    local begin=$(date +%s%N)
+    "$@" --server.port="$PORT" $APP_ARGS > "target/startup-benchmark.log" 2>&1 &
+    PID=$!
+    until curl -sf -o /dev/null "$url"; do
+        kill -0 "$PID" 2>/dev/null || { echo "the application exited, see target/startup-benchmark.log" >&2; exit 1; }
+        (( $(date +%s%N) - begin < 120000000000 )) || { echo "no answer from $url after 120s" >&2; exit 1; }
+        sleep 0.01
+    done
+    ELAPSED=$(( ($(date +%s%N) - begin) / 1000000 ))
+}
+
+start "http://localhost:$PORT/actuator/health" "${plain[@]}"
+ACCOUNT_ID=$(curl -sf -X POST -H 'Content-Type: application/json' -d '{"owner":"Startup benchmark","balance":0}' \
+    "http://localhost:$PORT/api/accounts" | sed -E 's/.*"id":([0-9]+).*/\1/')
+stop
+URL="http://localhost:$PORT/api/accounts/$ACCOUNT_ID"
+
+median() {
+    sort -n | awk '{ v[NR] = $1 } END { print (NR % 2 ? v[(NR + 1) / 2] : int((v[NR / 2] + v[NR / 2 + 1]) / 2)) }'
+}
+
+PLAIN_TIMES=()
+OPTIMIZED_TIMES=()
+printf '%-5s %10s %10s\n' run plain optimized
+for ((run = 1; run <= RUNS; run++)); do
+    if ((run % 2)); then
+        start "$URL" "${plain[@]}"; p=$ELAPSED; stop
+        start "$URL" "${optimized[@]}"; o=$ELAPSED; stop
+    else
+        start "$URL" "${optimized[@]}"; o=$ELAPSED; stop
+        start "$URL" "${plain[@]}"; p=$ELAPSED; stop
+    fi
+    PLAIN_TIMES+=("$p")
+    OPTIMIZED_TIMES+=("$o")
+    printf '%-5s %10s %10s\n' "$run" "$p" "$o"
+done
+printf '%-5s %10s %10s\n' median "$(printf '%s\n' "${PLAIN_TIMES[@]}" | median)" "$(printf '%s\n' "${OPTIMIZED_TIMES[@]}" | median)"
@@ -0,0 +1,41 @@
+package com.bank.bank_app.benchmark;
+
+import com.bank.bank_app.dto.AccountRequestDTO;
+import com.bank.bank_app.dto.AccountResponseDT0;
+import com.bank.bank_app.mapper.AccountMapper;
+import com.bank.bank_app.model.Account;
+import com.bank.bank_app.money.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AccountMapperBenchmark {
+
+    private Account account;
+    private AccountRequestDTO accountRequestDTO;
+
+    @Setup
+    public void setUp() {
+        account = Account.builder()
+                .id(42L)
+                .owner("John Doe")
+                .balance(Money.of("1000.00"))
+                .createdAt(LocalDateTime.now())
+                .build();
+        accountRequestDTO = new AccountRequestDTO("John Doe", Money.of("1000.00"));
+    }
+
+    @Benchmark
+    public AccountResponseDT0 toResponseDTO() {
+        return AccountMapper.toResponseDTO(account);
+    }
+
+    @Benchmark
+    public Account toEntity() {
+        return AccountMapper.toEntity(accountRequestDTO);
+    }
+}
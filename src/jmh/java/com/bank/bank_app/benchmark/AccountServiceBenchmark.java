@@ -0,0 +1,77 @@
+package com.bank.bank_app.benchmark;
+
+import com.bank.bank_app.dto.AccountResponseDT0;
+import com.bank.bank_app.dto.EntryPageDTO;
+import com.bank.bank_app.dto.EntryPageRequest;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.service.AccountService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// End-to-end service calls against an embedded Postgres, one fresh database per parameter combination
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class AccountServiceBenchmark {
+
+    private static final Money AMOUNT = Money.of("1.00");
+
+    @Param({"1000", "100000"})
+    public int accountCount;
+
+    @Param({"100", "100000"})
+    public int historyLength;
+
+    private BenchmarkDatabase database;
+    private AccountService accountService;
+    private long[] accountIds;
+    private long historyAccountId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        database = new BenchmarkDatabase(accountCount, historyLength, Map.of());
+        accountService = database.bean(AccountService.class);
+        accountIds = database.accountIds();
+        historyAccountId = database.historyAccountId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        database.close();
+    }
+
+    private long randomAccount() {
+        return accountIds[ThreadLocalRandom.current().nextInt(accountIds.length)];
+    }
+
+    @Benchmark
+    public AccountResponseDT0 deposit() {
+        return accountService.deposit(randomAccount(), AMOUNT);
+    }
+
+    @Benchmark
+    public AccountResponseDT0 withdraw() {
+        return accountService.withdraw(randomAccount(), AMOUNT);
+    }
+
+    @Benchmark
+    public AccountResponseDT0 transfer() {
+        long from = randomAccount();
+        long to = randomAccount();
+        while (to == from) {
+            to = randomAccount();
+        }
+        return accountService.transfer(from, to, AMOUNT);
+    }
+
+    @Benchmark
+    public EntryPageDTO getAccountTransactionsPage() {
+        return accountService.getAccountTransactions(historyAccountId,
+                new EntryPageRequest(50, null, null, null, null, null));
+    }
+}
@@ -0,0 +1,84 @@
+package com.bank.bank_app.benchmark;
+
+import com.bank.bank_app.BankAppApplication;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+An embedded Postgres with the Flyway migrations applied and the application context started
+against it (without the web layer unless asked for), seeded with accounts and one account with a long history.
+ */
+class BenchmarkDatabase implements AutoCloseable {
+
+    private final EmbeddedPostgres postgres;
+    private final ConfigurableApplicationContext context;
+    private final long[] accountIds;
+    private final long historyAccountId;
+
+    BenchmarkDatabase(int accountCount, int historyLength, Map<String, Object> properties) throws IOException {
+        this(accountCount, historyLength, properties, WebApplicationType.NONE);
+    }
+
+    BenchmarkDatabase(int accountCount, int historyLength, Map<String, Object> properties,
+                      WebApplicationType webApplicationType) throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+
+        Map<String, Object> allProperties = new HashMap<>(properties);
+        allProperties.put("spring.datasource.url", postgres.getJdbcUrl("postgres", "postgres") + "&reWriteBatchedInserts=true");
+        allProperties.put("spring.datasource.username", "postgres");
+        allProperties.put("spring.datasource.password", "postgres");
+        allProperties.put("logging.level.root", "WARN");
+        context = new SpringApplicationBuilder(BankAppApplication.class)
+                .web(webApplicationType)
+                .properties(allProperties)
+                .run();
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("""
+                INSERT INTO accounts (owner, balance)
+                SELECT 'owner-' || g, 1000000000 FROM generate_series(1, ?) g""", accountCount);
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM accounts ORDER BY id", Long.class);
+        accountIds = ids.stream().mapToLong(Long::longValue).toArray();
+
+        historyAccountId = accountIds[0];
+        jdbcTemplate.update("""
+                INSERT INTO entries (amount, entry_type, created_at, balance_after, account_id)
+                SELECT 1, 'DEPOSIT', now() - g * interval '1 second', 1000000000 - g, ?
+                FROM generate_series(1, ?) g""", historyAccountId, historyLength);
+        // Entry lookups start at the account's creation
+        jdbcTemplate.update("UPDATE accounts SET created_at = now() - (? + 1) * interval '1 second' WHERE id = ?",
+                historyLength, historyAccountId);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    long[] accountIds() {
+        return accountIds;
+    }
+
+    long historyAccountId() {
+        return historyAccountId;
+    }
+
+    // Port of the embedded web server, started on a random port with server.port=0
+    int port() {
+        return context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.close();
+        postgres.close();
+    }
+}
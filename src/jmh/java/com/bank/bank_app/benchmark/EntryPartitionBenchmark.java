@@ -0,0 +1,103 @@
+package com.bank.bank_app.benchmark;
+
+import com.bank.bank_app.dto.AccountRequestDTO;
+import com.bank.bank_app.dto.AccountResponseDT0;
+import com.bank.bank_app.dto.EntryPageDTO;
+import com.bank.bank_app.dto.EntryPageRequest;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.partition.PartitionMaintenance;
+import com.bank.bank_app.service.AccountService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+Inserts and recent-history reads while the monthly partitioned entries table grows. The same number of
+accounts and months for every totalRows, only the rows per partition change: the scores should stay flat.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class EntryPartitionBenchmark {
+
+    private static final int ACCOUNTS = 1000;
+    private static final int MONTHS = 24;
+    private static final Money AMOUNT = Money.of("1.00");
+
+    @Param({"100000", "1000000", "10000000"})
+    public int totalRows;
+
+    private BenchmarkDatabase database;
+    private AccountService accountService;
+    private long[] accountIds;
+    private long newAccountId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        database = new BenchmarkDatabase(ACCOUNTS, 0, Map.of());
+        accountService = database.bean(AccountService.class);
+        accountIds = database.accountIds();
+
+        PartitionMaintenance partitions = database.bean(PartitionMaintenance.class);
+        YearMonth current = YearMonth.now();
+        for (int month = 1; month <= MONTHS; month++) {
+            partitions.createPartition("entries", current.minusMonths(month));
+        }
+
+        // History spread evenly over the accounts and the last MONTHS months
+        JdbcTemplate jdbcTemplate = database.bean(JdbcTemplate.class);
+        jdbcTemplate.update("UPDATE accounts SET created_at = now() - ? * interval '1 month' - interval '1 day'", MONTHS);
+        jdbcTemplate.update("""
+                WITH numbered AS (SELECT id, row_number() OVER (ORDER BY id) - 1 AS n FROM accounts)
+                INSERT INTO entries (amount, entry_type, created_at, balance_after, account_id)
+                SELECT 1, 'DEPOSIT', now() - (g::float8 / ?) * ? * interval '1 month', 1000000000, numbered.id
+                FROM generate_series(1, ?) g JOIN numbered ON numbered.n = g % ?""", totalRows, MONTHS, totalRows, ACCOUNTS);
+        jdbcTemplate.execute("VACUUM ANALYZE entries");
+
+        newAccountId = accountService.createAccount(new AccountRequestDTO("new", Money.ZERO)).id();
+        for (int i = 0; i < 10; i++) {
+            accountService.deposit(newAccountId, AMOUNT);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        database.close();
+    }
+
+    private long randomAccount() {
+        return accountIds[ThreadLocalRandom.current().nextInt(accountIds.length)];
+    }
+
+    @Benchmark
+    public AccountResponseDT0 deposit() {
+        return accountService.deposit(randomAccount(), AMOUNT);
+    }
+
+    @Benchmark
+    public EntryPageDTO latestPage() {
+        return accountService.getAccountTransactions(randomAccount(),
+                new EntryPageRequest(50, null, null, null, null, null));
+    }
+
+    // The last week only touches the current partition (and the previous one early in the month)
+    @Benchmark
+    public EntryPageDTO lastWeekPage() {
+        return accountService.getAccountTransactions(randomAccount(),
+                new EntryPageRequest(50, null, null, LocalDateTime.now().minusDays(7), null, null));
+    }
+
+    // Fewer entries than a page, so the read goes back to the account's creation
+    @Benchmark
+    public EntryPageDTO newAccountHistory() {
+        return accountService.getAccountTransactions(newAccountId,
+                new EntryPageRequest(50, null, null, null, null, null));
+    }
+}
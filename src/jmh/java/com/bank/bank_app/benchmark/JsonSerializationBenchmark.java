@@ -0,0 +1,77 @@
+package com.bank.bank_app.benchmark;
+
+import com.bank.bank_app.dto.AccountResponseDT0;
+import com.bank.bank_app.dto.EntryDTO;
+import com.bank.bank_app.entity.EntryType;
+import com.bank.bank_app.money.Money;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Uses the same ObjectMapper setup Spring MVC uses for responses
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JsonSerializationBenchmark {
+
+    private ObjectWriter accountWriter;
+    private ObjectWriter entryWriter;
+    private AccountResponseDT0 account;
+    private EntryDTO entry;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        accountWriter = objectMapper.writerFor(AccountResponseDT0.class);
+        entryWriter = objectMapper.writerFor(EntryDTO.class);
+
+        LocalDateTime now = LocalDateTime.now();
+        account = new AccountResponseDT0(42L, "John Doe", Money.of("1000.00"), now);
+        entry = new EntryDTO(7L, Money.of("25.00"), EntryType.DEPOSIT, now, Money.of("1025.00"));
+    }
+
+    @Benchmark
+    public byte[] accountResponse() throws JsonProcessingException {
+        return accountWriter.writeValueAsBytes(account);
+    }
+
+    @Benchmark
+    public byte[] entry() throws JsonProcessingException {
+        return entryWriter.writeValueAsBytes(entry);
+    }
+
+    @Benchmark
+    public byte[] entryHistory(History history) throws JsonProcessingException {
+        return history.writer.writeValueAsBytes(history.entries);
+    }
+
+    @State(Scope.Benchmark)
+    public static class History {
+
+        @Param({"1", "100", "10000"})
+        public int historyLength;
+
+        private ObjectWriter writer;
+        private List<EntryDTO> entries;
+
+        @Setup
+        public void setUp() {
+            ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+            writer = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, EntryDTO.class));
+
+            LocalDateTime now = LocalDateTime.now();
+            entries = new ArrayList<>(historyLength);
+            for (int i = 0; i < historyLength; i++) {
+                entries.add(new EntryDTO((long) i, Money.of("25.00"), EntryType.values()[i % 4],
+                        now.minusSeconds(i), Money.ofCents(100_000 - i * 25L)));
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.bank.bank_app.benchmark;
+
+import com.bank.bank_app.money.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+// The balance check and update of a transfer (check funds, debit, credit), with BigDecimal and with Money.
+// Run with -Djmh.args="MoneyBenchmark -prof gc" for the bytes allocated per operation
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MoneyBenchmark {
+
+    private BigDecimal fromDecimal;
+    private BigDecimal toDecimal;
+    private BigDecimal amountDecimal;
+    private Money from;
+    private Money to;
+    private Money amount;
+
+    @Setup
+    public void setUp() {
+        fromDecimal = new BigDecimal("1000000.00");
+        toDecimal = new BigDecimal("250.00");
+        amountDecimal = new BigDecimal("12.34");
+        from = Money.of(fromDecimal);
+        to = Money.of(toDecimal);
+        amount = Money.of(amountDecimal);
+    }
+
+    @Benchmark
+    public BigDecimal transferBigDecimal() {
+        if (fromDecimal.compareTo(amountDecimal) < 0) {
+            throw new IllegalArgumentException("Insufficient funds");
+        }
+        fromDecimal = fromDecimal.subtract(amountDecimal);
+        toDecimal = toDecimal.add(amountDecimal);
+        // The balances are kept, like a ledger shard keeps them; once the source runs dry the money goes back
+        if (fromDecimal.compareTo(amountDecimal) < 0) {
+            BigDecimal drained = fromDecimal;
+            fromDecimal = toDecimal;
+            toDecimal = drained;
+        }
+        return fromDecimal;
+    }
+
+    @Benchmark
+    public Money transferMoney() {
+        if (from.isLessThan(amount)) {
+            throw new IllegalArgumentException("Insufficient funds");
+        }
+        from = from.minus(amount);
+        to = to.plus(amount);
+        if (from.isLessThan(amount)) {
+            Money drained = from;
+            from = to;
+            to = drained;
+        }
+        return from;
+    }
+}
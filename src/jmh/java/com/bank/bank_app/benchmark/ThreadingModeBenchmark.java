@@ -0,0 +1,77 @@
+package com.bank.bank_app.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+HTTP throughput of the running application with requests served on platform threads (Tomcat pool of 200)
+or on virtual threads (JdbcConcurrencyLimiter in front of the connection pool).
+Concurrency is the number of JMH threads, each one a client waiting for its response: change it with -t.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1000)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ThreadingModeBenchmark {
+
+    @Param({"false", "true"})
+    public boolean virtualThreads;
+
+    private BenchmarkDatabase database;
+    private HttpClient client;
+    private String baseUrl;
+    private long[] accountIds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        database = new BenchmarkDatabase(10_000, 100, Map.of(
+                "server.port", 0,
+                "spring.threads.virtual.enabled", virtualThreads,
+                // The cache would turn getAccount into a benchmark of Caffeine
+                "bank.cache.accounts.enabled", false,
+                "bank.concurrency.jdbc.acquire-timeout", "30s"), WebApplicationType.SERVLET);
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        baseUrl = "http://localhost:" + database.port() + "/api/accounts/";
+        accountIds = database.accountIds();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        client.close();
+        database.close();
+    }
+
+    private long randomAccount() {
+        return accountIds[ThreadLocalRandom.current().nextInt(accountIds.length)];
+    }
+
+    @Benchmark
+    public int deposit() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + randomAccount() + "/deposit?amount=1.00"))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build());
+    }
+
+    @Benchmark
+    public int getAccount() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + randomAccount())).GET().build());
+    }
+
+    private int send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() >= 300) {
+            throw new IllegalStateException("HTTP " + response.statusCode() + " for " + request.uri());
+        }
+        return response.statusCode();
+    }
+}
@@ -0,0 +1,113 @@
+package com.bank.bank_app.cache;
+
+import com.bank.bank_app.dto.AccountResponseDT0;
+import com.bank.bank_app.dto.CacheStatsDTO;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/*
+Bounded read-through cache of account state for getAccountById.
+
+Write paths evict the account instead of putting the new state: two writers on the same account can
+commit in one order and reach the cache in the other, a put could then leave the older balance behind.
+An eviction is done right away and again once the surrounding transaction has finished; a load that
+races with the write is removed by one of them and only seen by the callers already waiting for it.
+
+The cache holds futures: the first caller publishes an empty one and loads the account after that, outside
+of Caffeine's map lock. A load done inside the lock would pin a virtual thread to its carrier for the whole
+database call (JDK 21-23); concurrent callers of the same id now wait on the future instead.
+ */
+@Component
+public class AccountCache implements MeterBinder {
+
+    private final AsyncCache<Long, AccountResponseDT0> cache;
+
+    public AccountCache(AccountCacheProperties properties) {
+        this.cache = properties.enabled()
+                ? Caffeine.newBuilder()
+                        .maximumSize(properties.maximumSize())
+                        .expireAfterWrite(properties.expireAfterWrite())
+                        .recordStats()
+                        .buildAsync()
+                : null;
+    }
+
+    public AccountResponseDT0 get(Long id, Function<Long, AccountResponseDT0> loader) {
+        if (cache == null) {
+            return loader.apply(id);
+        }
+        CompletableFuture<AccountResponseDT0> load = new CompletableFuture<>();
+        CompletableFuture<AccountResponseDT0> cached = cache.get(id, (key, executor) -> load);
+        if (cached != load) {
+            return await(cached);
+        }
+        try {
+            AccountResponseDT0 account = loader.apply(id);
+            load.complete(account);
+            return account;
+        } catch (RuntimeException e) {
+            // Failed futures are dropped by Caffeine, waiting callers get the same exception
+            load.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static AccountResponseDT0 await(CompletableFuture<AccountResponseDT0> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public void evict(Long id) {
+        if (cache == null) {
+            return;
+        }
+        cache.synchronous().invalidate(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.synchronous().invalidate(id);
+                }
+            });
+        }
+    }
+
+    public void evictAll(Collection<Long> ids) {
+        ids.forEach(this::evict);
+    }
+
+    // cache.gets/cache.evictions/cache.size with tag cache=accounts
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (cache != null) {
+            CaffeineCacheMetrics.monitor(registry, cache, "accounts");
+        }
+    }
+
+    public CacheStatsDTO stats() {
+        if (cache == null) {
+            return new CacheStatsDTO(false, 0, 0, 0, 0, 0);
+        }
+        CacheStats stats = cache.synchronous().stats();
+        return new CacheStatsDTO(true, cache.synchronous().estimatedSize(), stats.hitCount(), stats.missCount(),
+                stats.evictionCount(), stats.hitRate());
+    }
+}
@@ -0,0 +1,19 @@
+package com.bank.bank_app.cache;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/*
+enabled           -> false sends every getAccountById to the database
+maximumSize       -> accounts kept before the least valuable ones are evicted
+expireAfterWrite  -> upper bound on how stale an entry can get through writes made by other nodes
+ */
+@ConfigurationProperties(prefix = "bank.cache.accounts")
+public record AccountCacheProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("100000") long maximumSize,
+        @DefaultValue("30s") Duration expireAfterWrite
+) {
+}
@@ -0,0 +1,112 @@
+package com.bank.bank_app.concurrency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+Runs the transaction of a @RetryOnConflict method again when PostgreSQL aborted it:
+
+40P01 deadlock_detected     -> the other transaction of the cycle went through, this one usually does next
+40001 serialization_failure -> a concurrent change made the transaction's snapshot unusable
+
+Before the n-th retry the caller sleeps a random time between half and all of initialBackoff * 2^(n-1),
+capped at maxBackoff, so transactions aborted together do not collide again. After maxAttempts the
+failure is thrown as it is. Every other exception is thrown at once.
+
+Ordered after the JdbcConcurrencyLimiter (the permit is kept while retrying) and the operation metrics
+(a call is timed with its retries), before the transaction interceptor: every attempt is a new transaction.
+
+bank.concurrency.retries           -> retried attempts, tags operation and reason (deadlock/serialization)
+bank.concurrency.retries.exhausted -> calls that still failed after maxAttempts, tag operation
+ */
+@Slf4j
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+public class ConflictRetryAspect {
+
+    static final String DEADLOCK = "40P01";
+    static final String SERIALIZATION_FAILURE = "40001";
+
+    private final ConflictRetryProperties properties;
+    private final MeterRegistry registry;
+
+    public ConflictRetryAspect(ConflictRetryProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.registry = registry;
+    }
+
+    @Around("@annotation(com.bank.bank_app.concurrency.RetryOnConflict)")
+    public Object retry(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+        String operation = joinPoint.getSignature().getName();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return joinPoint.proceed();
+            } catch (RuntimeException e) {
+                String reason = conflict(e);
+                if (reason == null) {
+                    throw e;
+                }
+                if (attempt >= properties.maxAttempts()) {
+                    counter("bank.concurrency.retries.exhausted", operation, null).increment();
+                    log.warn("{} failed with a {} after {} attempts", operation, reason, attempt);
+                    throw e;
+                }
+                counter("bank.concurrency.retries", operation, reason).increment();
+                log.debug("{} failed with a {}, attempt {} of {}", operation, reason, attempt, properties.maxAttempts());
+                backOff(attempt, e);
+            }
+        }
+    }
+
+    // deadlock or serialization when the database aborted the transaction, else null
+    static String conflict(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sql) {
+                if (DEADLOCK.equals(sql.getSQLState())) {
+                    return "deadlock";
+                }
+                if (SERIALIZATION_FAILURE.equals(sql.getSQLState())) {
+                    return "serialization";
+                }
+            }
+        }
+        return null;
+    }
+
+    long backOffNanos(int attempt) {
+        long bound = Math.min(properties.maxBackoff().toNanos(),
+                properties.initialBackoff().toNanos() << Math.min(attempt - 1, 20));
+        return bound / 2 + ThreadLocalRandom.current().nextLong(bound / 2 + 1);
+    }
+
+    // Interrupted while waiting: the caller gets the conflict, not a retry
+    private void backOff(int attempt, RuntimeException failure) {
+        try {
+            Thread.sleep(Duration.ofNanos(backOffNanos(attempt)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw failure;
+        }
+    }
+
+    private Counter counter(String name, String operation, String reason) {
+        Counter.Builder builder = Counter.builder(name).tag("operation", operation);
+        return (reason == null ? builder : builder.tag("reason", reason)).register(registry);
+    }
+}
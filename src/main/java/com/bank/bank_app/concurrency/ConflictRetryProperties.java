@@ -0,0 +1,21 @@
+package com.bank.bank_app.concurrency;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/*
+Settings of the ConflictRetryAspect.
+
+maxAttempts    -> executions of a @RetryOnConflict method in total, 1 turns retrying off
+initialBackoff -> upper bound of the wait before the first retry, doubled for every further one
+maxBackoff     -> the bound stops doubling here
+ */
+@ConfigurationProperties(prefix = "bank.concurrency.retry")
+public record ConflictRetryProperties(
+        @DefaultValue("5") int maxAttempts,
+        @DefaultValue("5ms") Duration initialBackoff,
+        @DefaultValue("200ms") Duration maxBackoff
+) {
+}
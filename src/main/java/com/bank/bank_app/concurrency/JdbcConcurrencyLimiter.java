@@ -0,0 +1,131 @@
+package com.bank.bank_app.concurrency;
+
+import com.bank.bank_app.exception.ServiceBusyException;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/*
+Caps the number of AccountService calls running at once when requests are served on virtual threads.
+
+With platform threads the Tomcat pool (200 threads) is what limits the callers of the connection pool.
+Virtual threads remove that limit: thousands of requests would all queue inside Hikari, each holding a
+thread, and time out there after connectionTimeout. Here they queue in front of the service instead, in
+arrival order, before a transaction (and with it a connection) is started, and are rejected with 503
+after acquireTimeout.
+
+The permit is taken by the outermost service call only, a call made from inside another one (the
+sharded engine delegating to the JPA implementation) already holds it. A request with an Idempotency-Key
+takes it for its IdempotentTransaction, which starts the transaction before calling the service.
+
+bank.jdbc.limiter.available -> permits not in use
+bank.jdbc.limiter.waiting   -> calls waiting for a permit
+bank.jdbc.limiter.wait      -> time spent waiting for a permit
+bank.jdbc.limiter.rejected  -> calls rejected after acquireTimeout
+ */
+@Slf4j
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class JdbcConcurrencyLimiter {
+
+    private static final ThreadLocal<int[]> DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+
+    private final Semaphore permits;
+    private final long acquireTimeoutNanos;
+    private final Timer waitTimer;
+    private final Counter rejected;
+
+    public JdbcConcurrencyLimiter(DataSource dataSource, JdbcConcurrencyProperties properties, MeterRegistry registry) {
+        int limit = properties.limit() > 0 ? properties.limit() : poolSize(dataSource);
+        this.permits = new Semaphore(limit, true);
+        this.acquireTimeoutNanos = properties.acquireTimeout().toNanos();
+
+        Gauge.builder("bank.jdbc.limiter.available", permits, Semaphore::availablePermits)
+                .description("Service calls that can start without waiting")
+                .register(registry);
+        Gauge.builder("bank.jdbc.limiter.waiting", permits, Semaphore::getQueueLength)
+                .description("Service calls waiting for a permit")
+                .register(registry);
+        waitTimer = Timer.builder("bank.jdbc.limiter.wait")
+                .description("Time service calls spent waiting for a permit")
+                .publishPercentileHistogram()
+                .register(registry);
+        rejected = Counter.builder("bank.jdbc.limiter.rejected")
+                .description("Service calls rejected because no permit became available in time")
+                .register(registry);
+        log.info("JDBC concurrency limited to {} service calls", limit);
+    }
+
+    // Unwrapped, the DataSource may be a proxy (with bank.replica.enabled it resolves to the primary's pool)
+    private static int poolSize(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            }
+        } catch (SQLException e) {
+            log.warn("Connection pool size could not be determined", e);
+        }
+        throw new IllegalStateException("Set bank.concurrency.jdbc.limit, the connection pool size is unknown");
+    }
+
+    @Around("execution(public * com.bank.bank_app.service.AccountService+.*(..))"
+            + " || execution(public * com.bank.bank_app.idempotency.IdempotentTransaction.*(..))")
+    public Object limit(ProceedingJoinPoint joinPoint) throws Throwable {
+        int[] depth = DEPTH.get();
+        if (depth[0] > 0) {
+            return proceed(joinPoint, depth);
+        }
+
+        acquire();
+        try {
+            return proceed(joinPoint, depth);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static Object proceed(ProceedingJoinPoint joinPoint, int[] depth) throws Throwable {
+        depth[0]++;
+        try {
+            return joinPoint.proceed();
+        } finally {
+            depth[0]--;
+        }
+    }
+
+    private void acquire() {
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                rejected.increment();
+                throw new ServiceBusyException("Too many concurrent requests, try again later");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a database connection", e);
+        }
+        waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+}
@@ -0,0 +1,19 @@
+package com.bank.bank_app.concurrency;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/*
+Settings of the JdbcConcurrencyLimiter, only used with spring.threads.virtual.enabled=true.
+
+limit          -> service calls allowed to run at once, 0 uses the maximum size of the connection pool
+acquireTimeout -> how long a call waits for its turn before it is rejected with 503
+ */
+@ConfigurationProperties(prefix = "bank.concurrency.jdbc")
+public record JdbcConcurrencyProperties(
+        @DefaultValue("0") int limit,
+        @DefaultValue("5s") Duration acquireTimeout
+) {
+}
@@ -0,0 +1,20 @@
+package com.bank.bank_app.concurrency;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/*
+The transaction of this method is run again when the database aborts it as a deadlock victim or because it
+could not be serialized, see ConflictRetryAspect.
+
+Only for methods whose transaction does all their work: a retry starts over from the method's arguments.
+A call made from inside another transaction is not retried, the outer transaction is aborted too.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnConflict {
+}
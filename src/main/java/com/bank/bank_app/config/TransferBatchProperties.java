@@ -0,0 +1,17 @@
+package com.bank.bank_app.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/*
+Settings for POST /api/accounts/transfers/batch.
+
+chunkSize -> transfers applied per database transaction
+maxSize   -> largest batch accepted in one request
+ */
+@ConfigurationProperties(prefix = "bank.transfers.batch")
+public record TransferBatchProperties(
+        @DefaultValue("500") int chunkSize,
+        @DefaultValue("10000") int maxSize
+) {
+}
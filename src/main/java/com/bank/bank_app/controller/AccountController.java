@@ -1,22 +1,62 @@
 package com.bank.bank_app.controller;
 
+import com.bank.bank_app.dto.AccountImportResultDTO;
 import com.bank.bank_app.dto.AccountResponseDT0;
 import com.bank.bank_app.dto.AccountRequestDTO;
-import com.bank.bank_app.dto.EntryDTO;
+import com.bank.bank_app.dto.BalanceAsOfDTO;
+import com.bank.bank_app.dto.DailyRollupDTO;
+import com.bank.bank_app.dto.EntryPageDTO;
+import com.bank.bank_app.dto.EntryPageRequest;
+import com.bank.bank_app.dto.StatementRequest;
+import com.bank.bank_app.dto.TransferBatchResponseDTO;
+import com.bank.bank_app.dto.TransferRequestDTO;
+import com.bank.bank_app.dto.TransferSubmissionDTO;
+import com.bank.bank_app.entity.EntryType;
+import com.bank.bank_app.idempotency.IdempotencyStore;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.onboarding.AccountImportFormat;
 import com.bank.bank_app.service.AccountService;
+import com.bank.bank_app.statement.RangeOutputStream;
+import com.bank.bank_app.statement.StatementExporter;
+import com.bank.bank_app.transfer.TransferSubmissions;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.math.BigDecimal;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/accounts")
 @RequiredArgsConstructor
 public class AccountController {
 
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
     private final AccountService accountService;
+    private final ObjectMapper objectMapper;
+    private final StatementExporter statementExporter;
+    private final IdempotencyStore idempotencyStore;
+    private final TransferSubmissions transferSubmissions;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -24,10 +64,49 @@ public class AccountController {
         return accountService.createAccount(accountRequestDTO);
     }
 
+    // text/csv (owner,balance) or application/x-ndjson ({"owner":..,"balance":..}), read while it is uploaded.
+    // Resend the same body with the returned importId to continue an import that did not complete.
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    @ResponseStatus(HttpStatus.OK)
+    public AccountImportResultDTO importAccounts(
+            @RequestParam(required = false) String importId,
+            @RequestHeader("Content-Type") String contentType,
+            InputStream body
+    ) {
+        return accountService.importAccounts(importId, AccountImportFormat.fromContentType(contentType), body);
+    }
+
+    // Every account as a list; with afterId and/or limit (50 by default) one AccountPageDTO ordered by id instead
     @GetMapping
+    public ResponseEntity<?> getAccounts(
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(required = false) Integer limit
+    ) {
+        if (afterId == null && limit == null) {
+            return ResponseEntity.ok(accountService.getAllAccounts());
+        }
+        return ResponseEntity.ok(accountService.getAccounts(afterId, limit != null ? limit : 50));
+    }
+
+    // Accept: application/x-ndjson -> one account per line, written while the rows are read
+    @GetMapping(produces = "application/x-ndjson")
     @ResponseStatus(HttpStatus.OK)
-    public List<AccountResponseDT0> getAllAccounts() {
-        return accountService.getAllAccounts();
+    public StreamingResponseBody streamAllAccounts() {
+        ObjectWriter writer = objectMapper.writerFor(AccountResponseDT0.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        return outputStream -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+                generator.setRootValueSeparator(new SerializedString("\n"));
+                accountService.streamAllAccounts(account -> {
+                    try {
+                        writer.writeValue(generator, account);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeRaw('\n');
+            }
+        };
     }
 
     @GetMapping("/{id}")
@@ -51,24 +130,121 @@ public class AccountController {
         accountService.deleteAccount(id);
     }
 
+    // Idempotency-Key -> a retry with the same key gets the first response instead of moving money again
     @PostMapping("/{id}/deposit")
     @ResponseStatus(HttpStatus.CREATED)
     public AccountResponseDT0 deposit(@PathVariable Long id,
-                                      @RequestParam BigDecimal amount) {
-        return accountService.deposit(id, amount);
+                                      @RequestParam Money amount,
+                                      @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        return idempotencyStore.execute(idempotencyKey, "deposit:" + id + ":" + plain(amount), AccountResponseDT0.class,
+                () -> accountService.deposit(id, amount));
     }
 
     @PostMapping("/{id}/withdraw")
     @ResponseStatus(HttpStatus.CREATED)
     public AccountResponseDT0 withdraw(@PathVariable Long id,
-                                       @RequestParam BigDecimal amount) {
-        return accountService.withdraw(id, amount);
+                                       @RequestParam Money amount,
+                                       @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        return idempotencyStore.execute(idempotencyKey, "withdraw:" + id + ":" + plain(amount), AccountResponseDT0.class,
+                () -> accountService.withdraw(id, amount));
+    }
+
+    // No asOf -> the balance right now, computed the same way
+    @GetMapping("/{id}/balance")
+    @ResponseStatus(HttpStatus.OK)
+    public BalanceAsOfDTO getBalanceAsOf(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime asOf
+    ) {
+        return accountService.getBalanceAsOf(id, asOf != null ? asOf : LocalDateTime.now());
+    }
+
+    // CSV (gzip=true: gzip-compressed CSV) of the entries of every accountId over [from, to), read from a cursor
+    // while it is sent. A statement whose `to` has settled has an ETag, Range (+ If-Range) resumes a download.
+    @GetMapping(value = "/statements", produces = {"text/csv", "application/gzip"})
+    public ResponseEntity<StreamingResponseBody> exportStatement(
+            @RequestParam List<Long> accountId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange
+    ) {
+        StatementRequest request = new StatementRequest(accountId, from, to, gzip);
+        statementExporter.validate(request);
+        Optional<String> etag = statementExporter.etag(request);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(gzip ? "application/gzip" : "text/csv"));
+        headers.setContentDisposition(ContentDisposition.attachment()
+                .filename(gzip ? "statement.csv.gz" : "statement.csv").build());
+        etag.ifPresent(tag -> {
+            headers.setETag(tag);
+            headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        });
+
+        // No Range, a statement that can still change or one that is not the client's any more -> all of it
+        List<HttpRange> ranges = range != null && etag.isPresent() && (ifRange == null || ifRange.equals(etag.get()))
+                ? parseRanges(range) : List.of();
+        if (ranges.size() != 1) {
+            return ResponseEntity.ok().headers(headers).body(out -> accountService.exportStatement(request, out));
+        }
+
+        // Content-Range needs the length: remembered from an earlier download or counted once
+        long length = statementExporter.knownLength(request)
+                .orElseGet(() -> accountService.exportStatement(request, OutputStream.nullOutputStream()));
+        long first = ranges.getFirst().getRangeStart(length);
+        long last = ranges.getFirst().getRangeEnd(length);
+        if (first > last) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length).build();
+        }
+        headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + first + "-" + last + "/" + length);
+        headers.setContentLength(last - first + 1);
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).headers(headers).body(out -> {
+            try {
+                accountService.exportStatement(request, new RangeOutputStream(out, first, last));
+            } catch (UncheckedIOException e) {
+                if (!(e.getCause() instanceof RangeOutputStream.RangeComplete)) {
+                    throw e;
+                }
+            }
+        });
+    }
+
+    // Daily totals of every accountId for the days [from, to], days without entries are left out
+    @GetMapping("/rollups")
+    @ResponseStatus(HttpStatus.OK)
+    public List<DailyRollupDTO> getDailyRollups(
+            @RequestParam List<Long> accountId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        return accountService.getDailyRollups(accountId, from, to);
+    }
+
+    // A Range header that can not be parsed is ignored, as if there was none
+    private static List<HttpRange> parseRanges(String range) {
+        try {
+            return HttpRange.parseRanges(range);
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
     }
 
+    // One page of the history, newest first: follow nextCursor with before and previousCursor with after
     @GetMapping("/{id}/transactions")
     @ResponseStatus(HttpStatus.OK)
-    public List<EntryDTO> getAccountTransactions(@PathVariable Long id) {
-        return accountService.getAccountTransactions(id);
+    public EntryPageDTO getAccountTransactions(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) EntryType type
+    ) {
+        return accountService.getAccountTransactions(id, new EntryPageRequest(limit, before, after, from, to, type));
     }
 
     @PostMapping("/transfer")
@@ -76,9 +252,48 @@ public class AccountController {
     public AccountResponseDT0 transfer(
             @RequestParam Long fromAccountId,
             @RequestParam Long toAccountId,
-            @RequestParam BigDecimal amount
+            @RequestParam Money amount,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey
+    ) {
+        return idempotencyStore.execute(idempotencyKey,
+                "transfer:" + fromAccountId + ":" + toAccountId + ":" + plain(amount), AccountResponseDT0.class,
+                () -> accountService.transfer(fromAccountId, toAccountId, amount));
+    }
+
+    // Without trailing zeros: 10, 10.0 and 10.00 give the same request key, so a retry that writes the amount
+    // differently is still the same request
+    private static String plain(Money amount) {
+        return amount.toBigDecimal().stripTrailingZeros().toPlainString();
+    }
+
+    // Queued instead of applied: 202 with the id to poll at Location, 503 while too many transfers are waiting.
+    // With an Idempotency-Key the submission is stored before it is queued, a replay never queues it again
+    @PostMapping("/transfers")
+    public ResponseEntity<TransferSubmissionDTO> submitTransfer(
+            @RequestParam Long fromAccountId,
+            @RequestParam Long toAccountId,
+            @RequestParam Money amount,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey
     ) {
-        return accountService.transfer(fromAccountId, toAccountId, amount);
+        TransferSubmissionDTO submission = idempotencyStore.execute(idempotencyKey,
+                "submit-transfer:" + fromAccountId + ":" + toAccountId + ":" + plain(amount), TransferSubmissionDTO.class,
+                () -> transferSubmissions.prepare(new TransferRequestDTO(fromAccountId, toAccountId, amount)),
+                transferSubmissions::enqueue);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/accounts/transfers/" + submission.id()))
+                .body(submission);
+    }
+
+    @GetMapping("/transfers/{id}")
+    @ResponseStatus(HttpStatus.OK)
+    public TransferSubmissionDTO getTransferSubmission(@PathVariable String id) {
+        return transferSubmissions.status(id);
+    }
+
+    @PostMapping("/transfers/batch")
+    @ResponseStatus(HttpStatus.OK)
+    public TransferBatchResponseDTO transferBatch(@RequestBody List<TransferRequestDTO> transfers) {
+        return accountService.transferBatch(transfers);
     }
 
 }
@@ -0,0 +1,76 @@
+package com.bank.bank_app.controller;
+
+import com.bank.bank_app.cache.AccountCache;
+import com.bank.bank_app.dto.AccountPurgeDTO;
+import com.bank.bank_app.dto.CacheStatsDTO;
+import com.bank.bank_app.dto.DiscrepancyDTO;
+import com.bank.bank_app.dto.ReconciliationDTO;
+import com.bank.bank_app.dto.RollupBackfillDTO;
+import com.bank.bank_app.offboarding.AccountPurgeJob;
+import com.bank.bank_app.reconciliation.Reconciliation;
+import com.bank.bank_app.rollup.RollupBackfill;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+public class AdminController {
+
+    private final AccountCache accountCache;
+    private final RollupBackfill rollupBackfill;
+    private final AccountPurgeJob accountPurgeJob;
+    private final Reconciliation reconciliation;
+
+    @GetMapping("/cache/accounts")
+    @ResponseStatus(HttpStatus.OK)
+    public CacheStatsDTO getAccountCacheStats() {
+        return accountCache.stats();
+    }
+
+    // Runs in the background, GET reports its progress
+    @PostMapping("/rollups/backfill")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public RollupBackfillDTO startRollupBackfill() {
+        return rollupBackfill.start();
+    }
+
+    @GetMapping("/rollups/backfill")
+    @ResponseStatus(HttpStatus.OK)
+    public RollupBackfillDTO getRollupBackfill() {
+        return rollupBackfill.status();
+    }
+
+    // Deleted accounts still waiting for their rows to be removed, and what this instance removed so far
+    @GetMapping("/accounts/purge")
+    @ResponseStatus(HttpStatus.OK)
+    public AccountPurgeDTO getAccountPurge() {
+        return accountPurgeJob.status();
+    }
+
+    // Starts the run in the background (or goes on with an unfinished one), GET reports its progress
+    @PostMapping("/reconciliation")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public ReconciliationDTO startReconciliation() {
+        return reconciliation.start();
+    }
+
+    @GetMapping("/reconciliation")
+    @ResponseStatus(HttpStatus.OK)
+    public ReconciliationDTO getReconciliation() {
+        return reconciliation.status();
+    }
+
+    // Of the latest run unless runId is given, pages follow the id of the last discrepancy (after)
+    @GetMapping("/reconciliation/discrepancies")
+    @ResponseStatus(HttpStatus.OK)
+    public List<DiscrepancyDTO> getReconciliationDiscrepancies(@RequestParam(required = false) Long runId,
+                                                               @RequestParam(defaultValue = "0") long after,
+                                                               @RequestParam(defaultValue = "100") int limit) {
+        return reconciliation.discrepancies(runId, after, limit);
+    }
+
+}
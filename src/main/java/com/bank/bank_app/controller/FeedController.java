@@ -0,0 +1,155 @@
+package com.bank.bank_app.controller;
+
+import com.bank.bank_app.dto.FeedPageDTO;
+import com.bank.bank_app.entity.EntryType;
+import com.bank.bank_app.feed.FeedConsumers;
+import com.bank.bank_app.feed.FeedEvent;
+import com.bank.bank_app.feed.FeedFilter;
+import com.bank.bank_app.feed.FeedPosition;
+import com.bank.bank_app.feed.FeedProperties;
+import com.bank.bank_app.feed.LedgerFeed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@RestController
+@RequestMapping("/api/feed")
+@RequiredArgsConstructor
+public class FeedController {
+
+    private final LedgerFeed ledgerFeed;
+    private final FeedConsumers feedConsumers;
+    private final FeedProperties properties;
+
+    // Long poll: the next events after the position, waiting up to wait seconds for one. Passing after
+    // also acknowledges it, without it the consumer goes on from its acknowledged position (or the start)
+    @GetMapping("/{consumer}")
+    public DeferredResult<FeedPageDTO> poll(
+            @PathVariable String consumer,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Integer wait,
+            @RequestParam(required = false) List<Long> accountIds,
+            @RequestParam(required = false) List<EntryType> entryTypes,
+            @RequestParam(defaultValue = "true") boolean transfers
+    ) {
+        int pageSize = limit != null ? limit : properties.batchSize();
+        if (pageSize < 1 || pageSize > properties.batchSize()) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + properties.batchSize());
+        }
+        Duration waitFor = wait != null ? Duration.ofSeconds(wait) : properties.maxWait();
+        if (waitFor.isNegative() || waitFor.compareTo(properties.maxWait()) > 0) {
+            throw new IllegalArgumentException("Wait must be between 0 and " + properties.maxWait().toSeconds() + " seconds");
+        }
+        FeedFilter filter = filter(accountIds, entryTypes, transfers);
+        ledgerFeed.checkAvailable();
+        FeedPosition start;
+        if (after != null) {
+            start = FeedPosition.decode(after);
+            feedConsumers.acknowledge(consumer, start);
+        } else {
+            start = feedConsumers.position(consumer).orElse(FeedPosition.START);
+        }
+
+        DeferredResult<FeedPageDTO> result = new DeferredResult<>(waitFor.plusSeconds(10).toMillis());
+        ledgerFeed.next(start, filter, pageSize, waitFor).whenComplete((batch, failure) -> {
+            if (failure != null) {
+                result.setErrorResult(failure instanceof CompletionException ? failure.getCause() : failure);
+                return;
+            }
+            StringBuilder events = new StringBuilder("[");
+            for (FeedEvent event : batch.events()) {
+                events.append(events.length() > 1 ? "," : "").append(event.json());
+            }
+            result.setResult(new FeedPageDTO(events.append(']').toString(), batch.next().encode()));
+        });
+        return result;
+    }
+
+    // Server-Sent Events "transfer" and "entry" with the position as id, and "position" when there was
+    // nothing for a while. Starts after Last-Event-ID (an EventSource reconnecting), else after the
+    // consumer's acknowledged position; acknowledging is up to the consumer (PUT .../position)
+    @GetMapping(value = "/{consumer}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(
+            @PathVariable String consumer,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @RequestParam(required = false) List<Long> accountIds,
+            @RequestParam(required = false) List<EntryType> entryTypes,
+            @RequestParam(defaultValue = "true") boolean transfers
+    ) {
+        FeedConsumers.checkName(consumer);
+        FeedFilter filter = filter(accountIds, entryTypes, transfers);
+        ledgerFeed.checkAvailable();
+        FeedPosition start = lastEventId != null
+                ? FeedPosition.decode(lastEventId)
+                : feedConsumers.position(consumer).orElse(FeedPosition.START);
+
+        SseEmitter emitter = new SseEmitter();
+        AtomicBoolean open = new AtomicBoolean(true);
+        emitter.onCompletion(() -> open.set(false));
+        emitter.onTimeout(() -> {
+            open.set(false);
+            emitter.complete();
+        });
+        emitter.onError(e -> open.set(false));
+        ledgerFeed.stream(start, filter, new LedgerFeed.Sink() {
+            @Override
+            public boolean send(LedgerFeed.Batch batch) throws IOException {
+                if (!open.get()) {
+                    return false;
+                }
+                // One write and flush for the whole batch
+                Set<ResponseBodyEmitter.DataWithMediaType> events = new LinkedHashSet<>();
+                for (FeedEvent event : batch.events()) {
+                    events.addAll(SseEmitter.event()
+                            .id(event.position().encode())
+                            .name(event.kindName())
+                            .data(event.json(), MediaType.APPLICATION_JSON)
+                            .build());
+                }
+                if (batch.events().isEmpty()) {
+                    String position = batch.next().encode();
+                    events.addAll(SseEmitter.event().id(position).name("position").data(position).build());
+                }
+                emitter.send(events);
+                return true;
+            }
+
+            @Override
+            public void closed(Throwable failure) {
+                if (failure != null) {
+                    emitter.completeWithError(failure);
+                } else if (open.get()) {
+                    emitter.complete();
+                }
+            }
+        });
+        return emitter;
+    }
+
+    // Where the consumer goes on when it connects without a position, also an earlier one to read again
+    @PutMapping("/{consumer}/position")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void acknowledge(@PathVariable String consumer, @RequestParam String position) {
+        feedConsumers.acknowledge(consumer, FeedPosition.decode(position));
+    }
+
+    private static FeedFilter filter(List<Long> accountIds, List<EntryType> entryTypes, boolean transfers) {
+        return new FeedFilter(
+                accountIds != null ? Set.copyOf(accountIds) : Set.of(),
+                entryTypes != null ? Set.copyOf(entryTypes) : Set.of(),
+                transfers);
+    }
+}
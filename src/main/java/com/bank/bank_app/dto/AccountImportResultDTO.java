@@ -0,0 +1,24 @@
+package com.bank.bank_app.dto;
+
+import java.util.List;
+
+/*
+importId          -> send it again with the same body to resume, committed lines are skipped
+completed         -> false when the import stopped at error, everything up to linesCommitted is in
+linesCommitted    -> lines of the body committed so far, over all attempts of this import
+accountsCreated   -> accounts created by this request
+rejectedCount     -> rows of this request that failed validation, the first ones are listed in rejected
+ */
+public record AccountImportResultDTO(
+        String importId,
+        boolean completed,
+        long linesCommitted,
+        long accountsCreated,
+        long rejectedCount,
+        List<RejectedRow> rejected,
+        String error
+) {
+
+    public record RejectedRow(long line, String error) {
+    }
+}
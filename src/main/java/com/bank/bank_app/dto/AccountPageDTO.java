@@ -0,0 +1,13 @@
+package com.bank.bank_app.dto;
+
+import java.util.List;
+
+/*
+accounts    -> ordered by id
+nextAfterId -> pass as "afterId" to get the next page, null when there is none
+ */
+public record AccountPageDTO(
+        List<AccountResponseDT0> accounts,
+        Long nextAfterId
+) {
+}
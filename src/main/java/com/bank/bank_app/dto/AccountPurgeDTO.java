@@ -0,0 +1,13 @@
+package com.bank.bank_app.dto;
+
+import java.time.LocalDateTime;
+
+public record AccountPurgeDTO(
+        long pendingAccounts,
+        Long purgingAccountId,
+        long purgedAccounts,
+        long deletedEntries,
+        long deletedTransfers,
+        LocalDateTime lastRunAt
+) {
+}
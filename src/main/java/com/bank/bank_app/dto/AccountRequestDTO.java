@@ -1,10 +1,9 @@
 package com.bank.bank_app.dto;
 
-
-import java.math.BigDecimal;
+import com.bank.bank_app.money.Money;
 
 public record AccountRequestDTO(
         String owner,
-        BigDecimal balance
+        Money balance
 ) {
 }
@@ -1,12 +1,18 @@
 package com.bank.bank_app.dto;
 
-import java.math.BigDecimal;
+import com.bank.bank_app.money.Money;
+
 import java.time.LocalDateTime;
 
 public record AccountResponseDT0(
         Long id,
         String owner,
-        BigDecimal balance,
+        Money balance,
         LocalDateTime createdAt
 ) {
+
+    // For JPQL constructor expressions: a sum of converted attributes would come back as a BigDecimal
+    public AccountResponseDT0(Long id, String owner, Money balance, Money bucketBalance, LocalDateTime createdAt) {
+        this(id, owner, balance.plus(bucketBalance), createdAt);
+    }
 }
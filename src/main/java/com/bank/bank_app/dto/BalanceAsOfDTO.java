@@ -0,0 +1,12 @@
+package com.bank.bank_app.dto;
+
+import com.bank.bank_app.money.Money;
+
+import java.time.LocalDateTime;
+
+public record BalanceAsOfDTO(
+        Long accountId,
+        LocalDateTime asOf,
+        Money balance
+) {
+}
@@ -0,0 +1,11 @@
+package com.bank.bank_app.dto;
+
+public record CacheStatsDTO(
+        boolean enabled,
+        long size,
+        long hits,
+        long misses,
+        long evictions,
+        double hitRate
+) {
+}
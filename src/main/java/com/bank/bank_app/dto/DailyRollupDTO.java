@@ -0,0 +1,19 @@
+package com.bank.bank_app.dto;
+
+import com.bank.bank_app.money.Money;
+
+import java.time.LocalDate;
+
+public record DailyRollupDTO(
+        Long accountId,
+        LocalDate day,
+        Money deposits,
+        long depositCount,
+        Money withdrawals,
+        long withdrawCount,
+        Money transfersIn,
+        long transferInCount,
+        Money transfersOut,
+        long transferOutCount
+) {
+}
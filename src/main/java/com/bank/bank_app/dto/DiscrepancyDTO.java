@@ -0,0 +1,15 @@
+package com.bank.bank_app.dto;
+
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.reconciliation.DiscrepancyKind;
+
+// entryId is the entry a CHAIN discrepancy was found at, null for BALANCE
+public record DiscrepancyDTO(
+        Long id,
+        Long accountId,
+        DiscrepancyKind kind,
+        Long entryId,
+        Money expected,
+        Money actual
+) {
+}
@@ -1,15 +1,15 @@
 package com.bank.bank_app.dto;
 
 import com.bank.bank_app.entity.EntryType;
+import com.bank.bank_app.money.Money;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 public record EntryDTO(
         Long id,
-        BigDecimal amount,
+        Money amount,
         EntryType entryType,
         LocalDateTime createdAt,
-        BigDecimal balanceAfter
+        Money balanceAfter
 ) {
 }
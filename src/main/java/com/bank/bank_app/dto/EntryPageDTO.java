@@ -0,0 +1,15 @@
+package com.bank.bank_app.dto;
+
+import java.util.List;
+
+/*
+entries        -> newest first
+nextCursor     -> pass as "before" to get older entries, null when there are none
+previousCursor -> pass as "after" to get newer entries, null when there are none
+ */
+public record EntryPageDTO(
+        List<EntryDTO> entries,
+        String nextCursor,
+        String previousCursor
+) {
+}
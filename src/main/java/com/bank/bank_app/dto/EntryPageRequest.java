@@ -0,0 +1,21 @@
+package com.bank.bank_app.dto;
+
+import com.bank.bank_app.entity.EntryType;
+
+import java.time.LocalDateTime;
+
+/*
+before -> entries older than this cursor (newest first)
+after  -> entries newer than this cursor (still returned newest first)
+from   -> inclusive lower bound on createdAt
+to     -> exclusive upper bound on createdAt
+ */
+public record EntryPageRequest(
+        int limit,
+        String before,
+        String after,
+        LocalDateTime from,
+        LocalDateTime to,
+        EntryType entryType
+) {
+}
@@ -0,0 +1,25 @@
+package com.bank.bank_app.dto;
+
+import com.bank.bank_app.entity.EntryType;
+import com.bank.bank_app.money.Money;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.LocalDateTime;
+
+// An entry in the ledger feed, SSE event "entry"
+public record FeedEntryDTO(
+        String position,
+        Long id,
+        Long accountId,
+        EntryType entryType,
+        Money amount,
+        Money balanceAfter,
+        Long transferId,
+        LocalDateTime createdAt
+) {
+
+    @JsonProperty
+    public String kind() {
+        return "entry";
+    }
+}
@@ -0,0 +1,16 @@
+package com.bank.bank_app.dto;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+/*
+One long poll of the ledger feed.
+
+events   -> JSON array of FeedTransferDTO and FeedEntryDTO objects, each with a "kind" of transfer or entry;
+            written as the feed serialized them once for every subscriber
+position -> where the next poll goes on (the last event, or further when no more events matched)
+ */
+public record FeedPageDTO(
+        @JsonRawValue String events,
+        String position
+) {
+}
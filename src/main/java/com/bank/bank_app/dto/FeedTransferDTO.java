@@ -0,0 +1,22 @@
+package com.bank.bank_app.dto;
+
+import com.bank.bank_app.money.Money;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.LocalDateTime;
+
+// A transfer in the ledger feed, SSE event "transfer"
+public record FeedTransferDTO(
+        String position,
+        Long id,
+        Long fromAccountId,
+        Long toAccountId,
+        Money amount,
+        LocalDateTime createdAt
+) {
+
+    @JsonProperty
+    public String kind() {
+        return "transfer";
+    }
+}
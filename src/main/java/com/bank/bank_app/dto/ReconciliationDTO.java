@@ -0,0 +1,16 @@
+package com.bank.bank_app.dto;
+
+import java.time.LocalDateTime;
+
+public record ReconciliationDTO(
+        boolean running,
+        Long runId,
+        int ranges,
+        int rangesDone,
+        long accounts,
+        long entries,
+        long discrepancies,
+        LocalDateTime startedAt,
+        LocalDateTime finishedAt
+) {
+}
@@ -0,0 +1,15 @@
+package com.bank.bank_app.dto;
+
+import java.time.LocalDateTime;
+
+public record RollupBackfillDTO(
+        boolean running,
+        long upTo,
+        int chunks,
+        int added,
+        int skipped,
+        int failed,
+        LocalDateTime startedAt,
+        LocalDateTime finishedAt
+) {
+}
@@ -0,0 +1,18 @@
+package com.bank.bank_app.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/*
+accountIds -> accounts in the statement, exported one after the other in id order
+from       -> inclusive lower bound on createdAt
+to         -> exclusive upper bound on createdAt
+gzip       -> gzip-compressed CSV instead of plain CSV
+ */
+public record StatementRequest(
+        List<Long> accountIds,
+        LocalDateTime from,
+        LocalDateTime to,
+        boolean gzip
+) {
+}
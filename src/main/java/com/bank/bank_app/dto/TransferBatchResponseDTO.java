@@ -0,0 +1,10 @@
+package com.bank.bank_app.dto;
+
+import java.util.List;
+
+public record TransferBatchResponseDTO(
+        int succeeded,
+        int failed,
+        List<TransferResultDTO> results
+) {
+}
@@ -0,0 +1,10 @@
+package com.bank.bank_app.dto;
+
+import com.bank.bank_app.money.Money;
+
+public record TransferRequestDTO(
+        Long fromAccountId,
+        Long toAccountId,
+        Money amount
+) {
+}
@@ -0,0 +1,21 @@
+package com.bank.bank_app.dto;
+
+import com.bank.bank_app.money.Money;
+
+// Outcome of one item of a batch, index is the item's position in the request
+public record TransferResultDTO(
+        int index,
+        boolean success,
+        Long transferId,
+        Money fromBalance,
+        String error
+) {
+
+    public static TransferResultDTO succeeded(int index, Long transferId, Money fromBalance) {
+        return new TransferResultDTO(index, true, transferId, fromBalance, null);
+    }
+
+    public static TransferResultDTO failed(int index, String error) {
+        return new TransferResultDTO(index, false, null, null, error);
+    }
+}
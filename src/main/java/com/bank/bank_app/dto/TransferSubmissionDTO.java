@@ -0,0 +1,41 @@
+package com.bank.bank_app.dto;
+
+import com.bank.bank_app.money.Money;
+
+import java.time.LocalDateTime;
+
+// Status of an asynchronous transfer, transferId and fromBalance are set once it is COMPLETED, error once it FAILED
+public record TransferSubmissionDTO(
+        String id,
+        Status status,
+        Long fromAccountId,
+        Long toAccountId,
+        Money amount,
+        Long transferId,
+        Money fromBalance,
+        String error,
+        LocalDateTime submittedAt,
+        LocalDateTime completedAt
+) {
+
+    public enum Status {
+        QUEUED, COMPLETED, FAILED
+    }
+
+    public static TransferSubmissionDTO queued(String id, TransferRequestDTO request, LocalDateTime submittedAt) {
+        return new TransferSubmissionDTO(id, Status.QUEUED, request.fromAccountId(), request.toAccountId(),
+                request.amount(), null, null, null, submittedAt, null);
+    }
+
+    public TransferSubmissionDTO completed(TransferResultDTO result, LocalDateTime completedAt) {
+        return result.success()
+                ? new TransferSubmissionDTO(id, Status.COMPLETED, fromAccountId, toAccountId, amount,
+                        result.transferId(), result.fromBalance(), null, submittedAt, completedAt)
+                : failed(result.error(), completedAt);
+    }
+
+    public TransferSubmissionDTO failed(String error, LocalDateTime completedAt) {
+        return new TransferSubmissionDTO(id, Status.FAILED, fromAccountId, toAccountId, amount,
+                null, null, error, submittedAt, completedAt);
+    }
+}
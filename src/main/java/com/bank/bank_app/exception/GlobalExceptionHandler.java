@@ -1,5 +1,7 @@
 package com.bank.bank_app.exception;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -13,35 +15,69 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 
 @RestControllerAdvice
+@RequiredArgsConstructor
 public class GlobalExceptionHandler {
 
+    private final MeterRegistry meterRegistry;
+
     @ExceptionHandler(AccountNotFoundException.class)
     @ResponseStatus(HttpStatus.NOT_FOUND)
     public Map<String, Object> handleAccountNotFound(AccountNotFoundException exception) {
-        return buildErrorResponse(HttpStatus.NOT_FOUND, "Account Not Found", exception.getMessage());
+        return buildErrorResponse(HttpStatus.NOT_FOUND, "Account Not Found", exception);
+    }
+
+    @ExceptionHandler(TransferNotFoundException.class)
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public Map<String, Object> handleTransferNotFound(TransferNotFoundException exception) {
+        return buildErrorResponse(HttpStatus.NOT_FOUND, "Transfer Not Found", exception);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, Object> handleIllegalArgument(IllegalArgumentException exception) {
+        return buildErrorResponse(HttpStatus.BAD_REQUEST, "Bad Request", exception);
+    }
+
+    @ExceptionHandler(ServiceBusyException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public Map<String, Object> handleServiceBusy(ServiceBusyException exception) {
+        return buildErrorResponse(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable", exception);
+    }
+
+    @ExceptionHandler(IdempotencyConflictException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public Map<String, Object> handleIdempotencyConflict(IdempotencyConflictException exception) {
+        return buildErrorResponse(HttpStatus.CONFLICT, "Conflict", exception);
     }
 
     @ExceptionHandler(HttpMessageNotReadableException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public Map<String, Object> handleInvalidJson(HttpMessageNotReadableException exception) {
-        return buildErrorResponse(HttpStatus.BAD_REQUEST, "Invalid JSON", "Malformed request body");
+        return buildErrorResponse(HttpStatus.BAD_REQUEST, "Invalid JSON", "Malformed request body", exception);
     }
 
     @ExceptionHandler(MethodArgumentNotValidException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public Map<String, Object> handleValidationErrors(MethodArgumentNotValidException exception) {
         String message = exception.getBindingResult().getAllErrors().get(0).getDefaultMessage();
-        return buildErrorResponse(HttpStatus.BAD_REQUEST, "Validation Failed", message);
+        return buildErrorResponse(HttpStatus.BAD_REQUEST, "Validation Failed", message, exception);
     }
 
     @ExceptionHandler(NullPointerException.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public Map<String, Object> handleNullPointer(NullPointerException exception) {
-        return buildErrorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Null Pointer Exception", exception.getMessage());
+        return buildErrorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Null Pointer Exception", exception);
+    }
+
+    private Map<String, Object> buildErrorResponse(HttpStatus status, String error, Exception exception) {
+        return buildErrorResponse(status, error, exception.getMessage(), exception);
     }
 
-    //Utility Method to build consistent response
-    private Map<String, Object> buildErrorResponse(HttpStatus status, String error, String message) {
+    //Utility Method to build consistent response, every handled failure is counted by exception type
+    private Map<String, Object> buildErrorResponse(HttpStatus status, String error, String message, Exception exception) {
+        meterRegistry.counter("bank.api.failures",
+                "exception", exception.getClass().getSimpleName(),
+                "status", String.valueOf(status.value())).increment();
         Map<String, Object> errorResponse = new LinkedHashMap<>();
         errorResponse.put("timestamp", LocalDateTime.now());
         errorResponse.put("status", status.value());
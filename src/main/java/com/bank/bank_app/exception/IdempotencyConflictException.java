@@ -0,0 +1,9 @@
+package com.bank.bank_app.exception;
+
+public class IdempotencyConflictException extends RuntimeException{
+
+    public IdempotencyConflictException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.bank.bank_app.exception;
+
+public class ServiceBusyException extends RuntimeException{
+
+    public ServiceBusyException(String message) {
+        super(message);
+    }
+
+}
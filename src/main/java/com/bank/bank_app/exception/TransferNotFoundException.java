@@ -0,0 +1,9 @@
+package com.bank.bank_app.exception;
+
+public class TransferNotFoundException extends RuntimeException{
+
+    public TransferNotFoundException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.bank.bank_app.feed;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+// The acknowledged position of every named feed consumer (feed_consumers), where it goes on after a reconnect
+@Component
+public class FeedConsumers {
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9._-]{1,100}");
+
+    private static final String SAVE = """
+            insert into feed_consumers (name, tx_id, kind, id) values (?, cast(? as xid8), ?, ?)
+            on conflict (name) do update
+            set tx_id = excluded.tx_id, kind = excluded.kind, id = excluded.id, updated_at = now()""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public FeedConsumers(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public static String checkName(String name) {
+        if (name == null || !NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Feed consumer name must be 1 to 100 letters, digits, '.', '_' or '-'");
+        }
+        return name;
+    }
+
+    // Empty for a consumer that never acknowledged anything
+    public Optional<FeedPosition> position(String name) {
+        return jdbcTemplate.query("select tx_id::text, kind, id from feed_consumers where name = ?",
+                        (rs, rowNum) -> new FeedPosition(Long.parseLong(rs.getString(1)), rs.getInt(2), rs.getLong(3)),
+                        checkName(name))
+                .stream()
+                .findFirst();
+    }
+
+    // Any position, also an earlier one: a consumer can go back and read again
+    public void acknowledge(String name, FeedPosition position) {
+        jdbcTemplate.update(SAVE, checkName(name), String.valueOf(position.txId()), position.kind(), position.id());
+    }
+}
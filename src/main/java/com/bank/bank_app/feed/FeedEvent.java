@@ -0,0 +1,21 @@
+package com.bank.bank_app.feed;
+
+import com.bank.bank_app.entity.EntryType;
+
+/*
+An event held by the LedgerFeed: what filters look at, plus its JSON, serialized once however many
+subscribers it is sent to.
+
+transfer -> accountId is the source, toAccountId the destination, entryType null
+entry    -> accountId is the account, toAccountId null
+ */
+public record FeedEvent(FeedPosition position, Long accountId, Long toAccountId, EntryType entryType, String json) {
+
+    public int kind() {
+        return position.kind();
+    }
+
+    public String kindName() {
+        return position.kind() == FeedPosition.TRANSFER ? "transfer" : "entry";
+    }
+}
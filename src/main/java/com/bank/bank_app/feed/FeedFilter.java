@@ -0,0 +1,26 @@
+package com.bank.bank_app.feed;
+
+import com.bank.bank_app.entity.EntryType;
+
+import java.util.Set;
+
+/*
+Which events of the ledger feed a subscriber gets.
+
+accountIds -> empty for all accounts, else entries of these accounts and transfers from or to one of them
+entryTypes -> empty for all types, only applies to entries
+transfers  -> false leaves transfers out (their entries still come)
+ */
+public record FeedFilter(Set<Long> accountIds, Set<EntryType> entryTypes, boolean transfers) {
+
+    public static final FeedFilter ALL = new FeedFilter(Set.of(), Set.of(), true);
+
+    public boolean matches(FeedEvent event) {
+        if (event.kind() == FeedPosition.TRANSFER) {
+            return transfers && (accountIds.isEmpty()
+                    || accountIds.contains(event.accountId()) || accountIds.contains(event.toAccountId()));
+        }
+        return (accountIds.isEmpty() || accountIds.contains(event.accountId()))
+                && (entryTypes.isEmpty() || entryTypes.contains(event.entryType()));
+    }
+}
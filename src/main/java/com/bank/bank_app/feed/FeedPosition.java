@@ -0,0 +1,66 @@
+package com.bank.bank_app.feed;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/*
+Position of an event in the ledger feed, handed to clients as an opaque string (SSE event id, cursor).
+
+Events are ordered by the transaction that wrote them (txId), then transfers before entries, then id; a
+transfer and its two entries are three consecutive events. A position with id = Long.MAX_VALUE stands for
+the end of a transaction: after (x, ENTRY, MAX) comes the first event of a transaction above x.
+ */
+public record FeedPosition(long txId, int kind, long id) implements Comparable<FeedPosition> {
+
+    public static final int TRANSFER = 0;
+    public static final int ENTRY = 1;
+
+    // Before every event
+    public static final FeedPosition START = new FeedPosition(0, TRANSFER, 0);
+
+    // After every event of the transactions below txId
+    public static FeedPosition before(long txId) {
+        return new FeedPosition(txId - 1, ENTRY, Long.MAX_VALUE);
+    }
+
+    // The last id of the given kind already passed at this position, for reading one table after it
+    public long idAfter(int tableKind) {
+        if (tableKind == kind) {
+            return id;
+        }
+        return tableKind > kind ? 0 : Long.MAX_VALUE;
+    }
+
+    @Override
+    public int compareTo(FeedPosition other) {
+        if (txId != other.txId) {
+            return Long.compare(txId, other.txId);
+        }
+        if (kind != other.kind) {
+            return Integer.compare(kind, other.kind);
+        }
+        return Long.compare(id, other.id);
+    }
+
+    public boolean isAfter(FeedPosition other) {
+        return compareTo(other) > 0;
+    }
+
+    public String encode() {
+        String raw = txId + "|" + kind + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static FeedPosition decode(String position) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(position), StandardCharsets.UTF_8).split("\\|");
+            FeedPosition decoded = new FeedPosition(Long.parseLong(parts[0]), Integer.parseInt(parts[1]), Long.parseLong(parts[2]));
+            if (parts.length != 3 || decoded.txId < 0 || (decoded.kind != TRANSFER && decoded.kind != ENTRY)) {
+                throw new IllegalArgumentException();
+            }
+            return decoded;
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid feed position: " + position);
+        }
+    }
+}
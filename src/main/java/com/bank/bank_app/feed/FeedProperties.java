@@ -0,0 +1,27 @@
+package com.bank.bank_app.feed;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/*
+Settings of the ledger feed (GET /api/feed/{consumer}), see LedgerFeed.
+
+enabled       -> false stops polling, the feed endpoints answer 503
+pollInterval  -> how often new entries and transfers are read, once for all subscribers
+bufferSize    -> events kept in memory; a subscriber further behind reads from the database until it catches up
+batchSize     -> rows per database read, and the most events in one response
+heartbeat     -> an SSE stream without events sends its position this often, so a reconnect goes on from there
+maxWait       -> the longest a long poll waits for an event
+ */
+@ConfigurationProperties(prefix = "bank.feed")
+public record FeedProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("100ms") Duration pollInterval,
+        @DefaultValue("100000") int bufferSize,
+        @DefaultValue("1000") int batchSize,
+        @DefaultValue("15s") Duration heartbeat,
+        @DefaultValue("30s") Duration maxWait
+) {
+}
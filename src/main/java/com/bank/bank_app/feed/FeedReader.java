@@ -0,0 +1,90 @@
+package com.bank.bank_app.feed;
+
+import com.bank.bank_app.dto.FeedEntryDTO;
+import com.bank.bank_app.dto.FeedTransferDTO;
+import com.bank.bank_app.entity.EntryType;
+import com.bank.bank_app.money.Money;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+// The reads behind the LedgerFeed, entries and transfers as feed events in feed order
+@Component
+public class FeedReader {
+
+    // Every transaction below it has ended, see V15
+    private static final String HORIZON = "select pg_snapshot_xmin(pg_current_snapshot())::text";
+
+    // Each table is read along its (tx_id, id) index from one position up to another, at most limit rows each;
+    // the first limit rows of both together are the first limit events
+    private static final String EVENTS = """
+            select e.tx_id::text as tx_id, e.kind, e.id, e.account_id, e.to_account_id, e.entry_type,
+                   e.amount, e.balance_after, e.transfer_id, e.created_at
+            from ((select tx_id, 0 as kind, id, from_account_id as account_id, to_account_id,
+                          null as entry_type, amount, null::decimal as balance_after, null::bigint as transfer_id, created_at
+                   from transfers
+                   where tx_id is not null
+                     and (tx_id, id) > (cast(? as xid8), ?) and (tx_id, id) <= (cast(? as xid8), ?)
+                   order by tx_id, id
+                   limit ?)
+                  union all
+                  (select tx_id, 1, id, account_id, null, entry_type, amount, balance_after, transfer_id, created_at
+                   from entries
+                   where tx_id is not null
+                     and (tx_id, id) > (cast(? as xid8), ?) and (tx_id, id) <= (cast(? as xid8), ?)
+                   order by tx_id, id
+                   limit ?)) e
+            order by e.tx_id, e.kind, e.id
+            limit ?""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public FeedReader(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    public long horizon() {
+        return Long.parseLong(jdbcTemplate.queryForObject(HORIZON, String.class));
+    }
+
+    // The events after after and at or before upTo, at most limit
+    public List<FeedEvent> read(FeedPosition after, FeedPosition upTo, int limit) {
+        return jdbcTemplate.query(EVENTS, (rs, rowNum) -> event(rs),
+                String.valueOf(after.txId()), after.idAfter(FeedPosition.TRANSFER),
+                String.valueOf(upTo.txId()), upTo.idAfter(FeedPosition.TRANSFER), limit,
+                String.valueOf(after.txId()), after.idAfter(FeedPosition.ENTRY),
+                String.valueOf(upTo.txId()), upTo.idAfter(FeedPosition.ENTRY), limit,
+                limit);
+    }
+
+    private FeedEvent event(ResultSet rs) throws SQLException {
+        FeedPosition position = new FeedPosition(Long.parseLong(rs.getString("tx_id")), rs.getInt("kind"), rs.getLong("id"));
+        Long accountId = rs.getLong("account_id");
+        Money amount = Money.of(rs.getBigDecimal("amount"));
+        if (position.kind() == FeedPosition.TRANSFER) {
+            Long toAccountId = rs.getLong("to_account_id");
+            return new FeedEvent(position, accountId, toAccountId, null, json(new FeedTransferDTO(position.encode(),
+                    position.id(), accountId, toAccountId, amount, rs.getTimestamp("created_at").toLocalDateTime())));
+        }
+        EntryType entryType = EntryType.valueOf(rs.getString("entry_type"));
+        Long transferId = rs.getObject("transfer_id", Long.class);
+        return new FeedEvent(position, accountId, null, entryType, json(new FeedEntryDTO(position.encode(),
+                position.id(), accountId, entryType, amount, Money.of(rs.getBigDecimal("balance_after")), transferId,
+                rs.getTimestamp("created_at").toLocalDateTime())));
+    }
+
+    private String json(Object event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Feed event could not be serialized", e);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.bank.bank_app.feed;
+
+import com.bank.bank_app.exception.ServiceBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+Change feed of entries and transfers, in the order of the transactions that wrote them (see FeedPosition).
+
+One poller reads what was committed since its last read every pollInterval, only up to the oldest
+transaction still running (V15), and appends it to a ring of the last bufferSize events, each serialized
+once. Subscribers read from the ring and filter in memory, so a thousand of them cost one query per
+interval, not one each:
+- up to date        -> waits on the ring (a virtual thread each), woken when the poller appends
+- behind the ring   -> reads from the database, batchSize rows at a time, until it reaches the ring
+- ahead of the ring -> (a position from another instance) waits until this instance has read that far
+
+Positions come from the database, so a consumer can reconnect to any instance and go on where it was.
+
+bank.feed.subscribers     -> subscribers currently waiting for events
+bank.feed.buffered        -> events in the ring
+bank.feed.events          -> events read by the poller
+bank.feed.catch-up.reads  -> database reads of subscribers behind the ring
+ */
+@Slf4j
+@Component
+public class LedgerFeed {
+
+    // Events for a subscriber and the position to go on from, which is past the last event when the
+    // events after it did not match the subscriber's filter
+    public record Batch(List<FeedEvent> events, FeedPosition next) {
+    }
+
+    // Receives the batches of a stream: false or an IOException from send ends it, closed is called once at the end
+    public interface Sink {
+        boolean send(Batch batch) throws IOException;
+
+        void closed(Throwable failure);
+    }
+
+    private final FeedReader reader;
+    private final FeedProperties properties;
+    private final FeedEvent[] ring;
+    private final ReentrantReadWriteLock ringLock = new ReentrantReadWriteLock();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Condition appended = appendLock.newCondition();
+    private final ScheduledExecutorService poller;
+    private final ExecutorService subscribers = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Counter events;
+    private final Counter catchUpReads;
+    // Sequence numbers of the events in the ring: first (oldest) up to next (exclusive), guarded by ringLock
+    private long first;
+    private long next;
+    // Everything up to base has left the ring (or came before it), the ring holds what follows up to end.
+    // Both change under the write lock, end is also read without it to see whether there is anything new
+    private FeedPosition base;
+    private volatile FeedPosition end;
+    private boolean failing;
+
+    public LedgerFeed(FeedReader reader, FeedProperties properties, MeterRegistry registry) {
+        if (properties.bufferSize() < 1 || properties.batchSize() < 1) {
+            throw new IllegalArgumentException("bank.feed.buffer-size and batch-size must be positive");
+        }
+        this.reader = reader;
+        this.properties = properties;
+        this.ring = new FeedEvent[properties.bufferSize()];
+        this.poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ledger-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.events = Counter.builder("bank.feed.events")
+                .description("Entries and transfers read into the ledger feed")
+                .register(registry);
+        this.catchUpReads = Counter.builder("bank.feed.catch-up.reads")
+                .description("Database reads of feed subscribers behind the in-memory buffer")
+                .register(registry);
+        Gauge.builder("bank.feed.subscribers", waiting, AtomicInteger::get)
+                .description("Feed subscribers waiting for events")
+                .register(registry);
+        Gauge.builder("bank.feed.buffered", this, LedgerFeed::buffered)
+                .description("Events in the ledger feed's in-memory buffer")
+                .register(registry);
+    }
+
+    @PostConstruct
+    void start() {
+        if (properties.enabled()) {
+            long interval = properties.pollInterval().toMillis();
+            poller.scheduleWithFixedDelay(this::poll, 0, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        poller.shutdownNow();
+        subscribers.shutdownNow();
+    }
+
+    // The first batch after after, or an empty one with the position reached once wait is over
+    public CompletableFuture<Batch> next(FeedPosition after, FeedFilter filter, int limit, Duration wait) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return await(after, filter, limit, wait);
+            } catch (InterruptedException e) {
+                throw new ServiceBusyException("The ledger feed is shutting down");
+            }
+        }, subscribers);
+    }
+
+    // Batches until the sink stops taking them, an empty one with the position at least every heartbeat
+    public void stream(FeedPosition after, FeedFilter filter, Sink sink) {
+        subscribers.execute(() -> {
+            Throwable failure = null;
+            FeedPosition position = after;
+            // The first batch goes out at once, also when it is empty: the client learns it is subscribed
+            Duration wait = Duration.ZERO;
+            try {
+                while (true) {
+                    Batch batch = await(position, filter, properties.batchSize(), wait);
+                    wait = properties.heartbeat();
+                    if (!sink.send(batch)) {
+                        break;
+                    }
+                    position = batch.next();
+                }
+            } catch (IOException e) {
+                // The client went away
+                log.debug("Feed stream ended", e);
+            } catch (InterruptedException e) {
+                failure = new ServiceBusyException("The ledger feed is shutting down");
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            sink.closed(failure);
+        });
+    }
+
+    Batch await(FeedPosition after, FeedFilter filter, int limit, Duration wait) throws InterruptedException {
+        long deadline = System.nanoTime() + wait.toNanos();
+        FeedPosition position = after;
+        waiting.incrementAndGet();
+        try {
+            while (true) {
+                Batch batch = read(position, filter, limit);
+                if (!batch.events().isEmpty()) {
+                    return batch;
+                }
+                boolean caughtUp = !batch.next().isAfter(position);
+                position = batch.next();
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return batch;
+                }
+                if (caughtUp) {
+                    awaitAppend(position, remaining);
+                }
+            }
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    // Does not wait: events from the ring, or from the database when after is older than the ring
+    Batch read(FeedPosition after, FeedFilter filter, int limit) {
+        checkAvailable();
+        FeedPosition catchUpTo;
+        ringLock.readLock().lock();
+        try {
+            catchUpTo = after.compareTo(base) < 0 ? base : null;
+            if (catchUpTo == null) {
+                return readRing(after, filter, limit);
+            }
+        } finally {
+            ringLock.readLock().unlock();
+        }
+
+        catchUpReads.increment();
+        List<FeedEvent> rows = reader.read(after, catchUpTo, limit);
+        List<FeedEvent> matching = new ArrayList<>(rows.size());
+        for (FeedEvent event : rows) {
+            if (filter.matches(event)) {
+                matching.add(event);
+            }
+        }
+        return new Batch(matching, rows.size() == limit ? rows.getLast().position() : catchUpTo);
+    }
+
+    // Under the read lock
+    private Batch readRing(FeedPosition after, FeedFilter filter, int limit) {
+        List<FeedEvent> matching = new ArrayList<>();
+        for (long seq = firstAfter(after); seq < next; seq++) {
+            FeedEvent event = ring[slot(seq)];
+            if (filter.matches(event)) {
+                matching.add(event);
+                if (matching.size() == limit) {
+                    return new Batch(matching, event.position());
+                }
+            }
+        }
+        return new Batch(matching, end.isAfter(after) ? end : after);
+    }
+
+    // The sequence number of the first event after position, positions grow with the sequence numbers
+    private long firstAfter(FeedPosition position) {
+        long low = first;
+        long high = next;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (ring[slot(middle)].position().isAfter(position)) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    private void awaitAppend(FeedPosition position, long nanos) throws InterruptedException {
+        appendLock.lock();
+        try {
+            while (!end.isAfter(position) && nanos > 0) {
+                nanos = appended.awaitNanos(nanos);
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Only ever called from the poller thread (or a test)
+    void poll() {
+        try {
+            FeedPosition upTo = FeedPosition.before(reader.horizon());
+            if (end == null) {
+                // Nothing before startup is in the ring, subscribers asking for it read it from the database
+                base = upTo;
+                append(List.of(), upTo);
+                log.info("Ledger feed started");
+            }
+            while (upTo.isAfter(end)) {
+                List<FeedEvent> read = reader.read(end, upTo, properties.batchSize());
+                append(read, read.size() == properties.batchSize() ? read.getLast().position() : upTo);
+            }
+            if (failing) {
+                failing = false;
+                log.info("Ledger feed recovered");
+            }
+        } catch (RuntimeException e) {
+            if (!failing) {
+                failing = true;
+                log.warn("Ledger feed read failed, subscribers wait until it recovers", e);
+            }
+        }
+    }
+
+    // The events and the new end together, a reader never sees events beyond end
+    private void append(List<FeedEvent> read, FeedPosition newEnd) {
+        ringLock.writeLock().lock();
+        try {
+            for (FeedEvent event : read) {
+                if (next - first == ring.length) {
+                    base = ring[slot(first)].position();
+                    ring[slot(first++)] = null;
+                }
+                ring[slot(next++)] = event;
+            }
+            end = newEnd;
+        } finally {
+            ringLock.writeLock().unlock();
+        }
+        events.increment(read.size());
+
+        appendLock.lock();
+        try {
+            appended.signalAll();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private int slot(long seq) {
+        return (int) (seq % ring.length);
+    }
+
+    // ServiceBusyException (503) until the poller has read once, or when the feed is disabled
+    public void checkAvailable() {
+        if (end == null) {
+            throw new ServiceBusyException(properties.enabled() ? "The ledger feed is starting" : "The ledger feed is disabled");
+        }
+    }
+
+    private int buffered() {
+        ringLock.readLock().lock();
+        try {
+            return (int) (next - first);
+        } finally {
+            ringLock.readLock().unlock();
+        }
+    }
+}
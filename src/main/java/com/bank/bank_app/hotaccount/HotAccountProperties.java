@@ -0,0 +1,23 @@
+package com.bank.bank_app.hotaccount;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/*
+enabled             -> false stops promoting and demoting, accounts keep whatever buckets they have
+buckets             -> bucket rows of a hot account, credits spread over them at random
+promoteAt           -> contended balance changes of an account in one interval that make it hot
+demoteBelow         -> a hot account with fewer contended changes in one interval is folded back
+evaluationInterval  -> how often contention is looked at
+ */
+@ConfigurationProperties(prefix = "bank.hot-accounts")
+public record HotAccountProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("8") int buckets,
+        @DefaultValue("50") long promoteAt,
+        @DefaultValue("5") long demoteBelow,
+        @DefaultValue("10s") Duration evaluationInterval
+) {
+}
@@ -0,0 +1,220 @@
+package com.bank.bank_app.hotaccount;
+
+import com.bank.bank_app.dto.AccountResponseDT0;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.repository.AccountRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/*
+Balance changes of the JPA engine, with hot accounts spread over bucket rows.
+
+Every credit or debit of an account waits for the row lock of the one before it, a fee or settlement
+account receiving a share of every transfer serializes all of them. A hot account keeps part of its
+balance in account_buckets rows instead (balance = accounts.balance + its buckets):
+
+credit -> a random bucket, concurrent credits mostly lock different rows
+debit  -> a random unlocked bucket holding enough, else the accounts row, else all rows locked together
+          and checked against the total (the only path where a debit can be refused)
+reads  -> accounts.balance plus the buckets, the same total as before the account became hot
+lock   -> the accounts rows of a transfer, in id order; a hot account's row only in the key share mode of
+          its bucket statements, so transfers of it still do not queue on one row
+
+An account is promoted once promoteAt of its changes in one evaluation interval had to wait for another
+change of the same account on this instance (they overlap until the transaction ends), and demoted again
+- its buckets added to accounts.balance and deleted - when fewer than demoteBelow did.
+
+The set of hot accounts is refreshed from the database on every evaluation. An instance that does not
+know an account is hot yet still changes it correctly, through the accounts row.
+ */
+@Slf4j
+@Component
+public class HotAccounts {
+
+    private final AccountRepository accountRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final HotAccountProperties properties;
+    private final Map<Long, Integer> writers = new ConcurrentHashMap<>();
+    private final AtomicReference<Map<Long, LongAdder>> contended = new AtomicReference<>(new ConcurrentHashMap<>());
+    private final Counter promotions;
+    private final Counter demotions;
+    private final Timer lockWait;
+    private volatile Set<Long> hot = Set.of();
+
+    public HotAccounts(AccountRepository accountRepository,
+                       PlatformTransactionManager transactionManager,
+                       HotAccountProperties properties,
+                       MeterRegistry registry) {
+        this.accountRepository = accountRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+
+        Gauge.builder("bank.hot-accounts", this, accounts -> accounts.hot.size())
+                .description("Accounts whose balance is spread over bucket rows")
+                .register(registry);
+        promotions = Counter.builder("bank.hot-accounts.promotions")
+                .description("Accounts made hot because of contention")
+                .register(registry);
+        demotions = Counter.builder("bank.hot-accounts.demotions")
+                .description("Hot accounts folded back into one row")
+                .register(registry);
+        lockWait = Timer.builder("bank.accounts.lock-wait")
+                .description("Time transfers spent locking their account rows, mostly waiting for other transfers")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    // Must run inside the caller's transaction, the locks are held until it ends. Returns the accounts that
+    // exist, in id order
+    public List<AccountResponseDT0> lock(Collection<Long> ids) {
+        boolean shared = ids.stream().anyMatch(hot::contains);
+        long start = System.nanoTime();
+        try {
+            return accountRepository.lockAccounts(ids, shared);
+        } finally {
+            lockWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Must run inside the caller's transaction, empty when the account does not exist
+    public Optional<AccountResponseDT0> credit(Long id, Money amount) {
+        return tracked(id, () -> {
+            if (hot.contains(id)) {
+                int bucket = 1 + ThreadLocalRandom.current().nextInt(properties.buckets());
+                Optional<AccountResponseDT0> credited = accountRepository.creditBucket(id, bucket, amount);
+                if (credited.isPresent()) {
+                    return credited;
+                }
+            }
+            return accountRepository.creditBalance(id, amount);
+        });
+    }
+
+    // Must run inside the caller's transaction, empty when the account does not exist or holds less than amount
+    public Optional<AccountResponseDT0> debit(Long id, Money amount) {
+        return tracked(id, () -> {
+            if (hot.contains(id)) {
+                Optional<AccountResponseDT0> debited = accountRepository.debitAnyBucket(id, amount);
+                if (debited.isPresent()) {
+                    return debited;
+                }
+            }
+            Optional<AccountResponseDT0> debited = accountRepository.debitBalance(id, amount);
+            if (debited.isPresent()) {
+                return debited;
+            }
+            // Only the total of the rows is enough, or another instance made the account hot
+            return accountRepository.debitAcrossBuckets(id, amount);
+        });
+    }
+
+    // 0 for an ordinary account, a random bucket for a hot one: rows kept per account (daily rollups)
+    // can be spread the same way, so they do not bring back the lock the buckets took away
+    public int spread(Long id) {
+        return hot.contains(id) ? 1 + ThreadLocalRandom.current().nextInt(properties.buckets()) : 0;
+    }
+
+    @Scheduled(fixedDelayString = "${bank.hot-accounts.evaluation-interval:10s}")
+    public void evaluate() {
+        if (!properties.enabled()) {
+            return;
+        }
+        Map<Long, LongAdder> window = contended.getAndSet(new ConcurrentHashMap<>());
+        Set<Long> current = new HashSet<>(accountRepository.findBucketedAccountIds());
+
+        for (Long id : List.copyOf(current)) {
+            LongAdder waits = window.get(id);
+            if ((waits == null ? 0 : waits.sum()) < properties.demoteBelow() && demote(id)) {
+                current.remove(id);
+            }
+        }
+        window.forEach((id, waits) -> {
+            if (!current.contains(id) && waits.sum() >= properties.promoteAt() && promote(id)) {
+                current.add(id);
+            }
+        });
+        hot = Set.copyOf(current);
+    }
+
+    // Nothing moves, the new buckets start empty
+    public boolean promote(Long id) {
+        if (!change(id, "promote", () -> accountRepository.addBuckets(id, properties.buckets()))) {
+            return false;
+        }
+        Set<Long> promoted = new HashSet<>(hot);
+        promoted.add(id);
+        hot = Set.copyOf(promoted);
+        promotions.increment();
+        log.info("Account {} is hot, its balance is spread over {} buckets", id, properties.buckets());
+        return true;
+    }
+
+    public boolean demote(Long id) {
+        if (!change(id, "demote", () -> accountRepository.removeBuckets(id))) {
+            return false;
+        }
+        Set<Long> demoted = new HashSet<>(hot);
+        demoted.remove(id);
+        hot = Set.copyOf(demoted);
+        demotions.increment();
+        log.info("Account {} is no longer hot", id);
+        return true;
+    }
+
+    private boolean change(Long id, String action, Runnable change) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> change.run());
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Failed to {} account {}, trying again on the next evaluation", action, id, e);
+            return false;
+        }
+    }
+
+    // The row locks are held until the transaction ends, so the account counts as being written until then
+    private <T> T tracked(Long id, Supplier<T> write) {
+        if (writers.merge(id, 1, Integer::sum) > 1) {
+            contended.get().computeIfAbsent(id, key -> new LongAdder()).increment();
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    release(id);
+                }
+            });
+            return write.get();
+        }
+        try {
+            return write.get();
+        } finally {
+            release(id);
+        }
+    }
+
+    private void release(Long id) {
+        writers.computeIfPresent(id, (key, count) -> count > 1 ? count - 1 : null);
+    }
+}
@@ -0,0 +1,24 @@
+package com.bank.bank_app.idempotency;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/*
+maximumSize     -> keys kept in memory, older ones are answered from the table
+ttl             -> how long a key is remembered, a retry after that runs again
+claimTimeout    -> a claim still without a response after this is taken over by the next retry
+purgeInterval   -> how often keys older than ttl are deleted from the table
+purgeBatchSize  -> rows deleted per statement while purging
+ */
+@ConfigurationProperties(prefix = "bank.idempotency")
+public record IdempotencyProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("100000") long maximumSize,
+        @DefaultValue("24h") Duration ttl,
+        @DefaultValue("1m") Duration claimTimeout,
+        @DefaultValue("1h") Duration purgeInterval,
+        @DefaultValue("10000") int purgeBatchSize
+) {
+}
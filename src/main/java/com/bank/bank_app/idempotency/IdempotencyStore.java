@@ -0,0 +1,249 @@
+package com.bank.bank_app.idempotency;
+
+import com.bank.bank_app.exception.IdempotencyConflictException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/*
+Runs a money-moving request once per Idempotency-Key, a retry gets the response of the first execution.
+
+Two tiers: a bounded in-memory map of futures in front of the idempotency_keys table.
+- memory hit   -> the stored response (or, while the first execution is running, wait for it), no SQL
+- memory miss  -> one statement claims the key or returns what the table has for it
+- claimed      -> the request runs and its response is stored in one transaction (IdempotentTransaction)
+- failed       -> the claim is deleted again, a retry runs the request anew
+- handed over  -> a request with an effect outside the database (a queued transfer) is prepared, its response
+                  stored on its own and only then handed over, no transaction or retry can repeat it; when
+                  the hand-over fails the response is deleted again, a crash in between loses the request
+
+The claim is committed on its own before the request runs, only so that a duplicate arriving on another
+instance meanwhile gets a 409 instead of running too. Whether the request took effect is decided by the
+transaction that stores the response: a claim without one (its instance died, or is stuck) is taken over
+after claimTimeout, and should both executions finish only the first to store its response commits.
+
+bank.idempotency.replayed{tier}  -> retries answered from memory or from the table
+bank.idempotency.conflicts       -> duplicates rejected while the first execution was still running
+ */
+@Slf4j
+@Component
+public class IdempotencyStore {
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    // Claims the key if it is new or its claim has timed out; otherwise the row is read in the same statement,
+    // one round trip either way
+    private static final String CLAIM = """
+            WITH claimed AS (
+                INSERT INTO idempotency_keys (idempotency_key, request, created_at) VALUES (?, ?, ?)
+                ON CONFLICT (idempotency_key) DO UPDATE SET request = EXCLUDED.request, created_at = EXCLUDED.created_at
+                WHERE idempotency_keys.response IS NULL AND idempotency_keys.created_at < ?
+                RETURNING idempotency_key)
+            SELECT EXISTS (SELECT 1 FROM claimed) AS claimed, k.request, k.response
+            FROM (SELECT 1) one LEFT JOIN idempotency_keys k ON k.idempotency_key = ?""";
+
+    private record Outcome(String request, Object response) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IdempotentTransaction transaction;
+    private final ObjectMapper objectMapper;
+    private final IdempotencyProperties properties;
+    private final Cache<String, CompletableFuture<Outcome>> outcomes;
+    private final Counter replayedFromMemory;
+    private final Counter replayedFromDatabase;
+    private final Counter conflicts;
+
+    public IdempotencyStore(JdbcTemplate jdbcTemplate,
+                            IdempotentTransaction transaction,
+                            ObjectMapper objectMapper,
+                            IdempotencyProperties properties,
+                            MeterRegistry registry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaction = transaction;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.outcomes = Caffeine.newBuilder()
+                .maximumSize(properties.maximumSize())
+                .expireAfterWrite(properties.ttl())
+                .build();
+        this.replayedFromMemory = replayed(registry, "memory");
+        this.replayedFromDatabase = replayed(registry, "database");
+        this.conflicts = Counter.builder("bank.idempotency.conflicts")
+                .description("Duplicate requests rejected while the first one was still running")
+                .register(registry);
+    }
+
+    private static Counter replayed(MeterRegistry registry, String tier) {
+        return Counter.builder("bank.idempotency.replayed")
+                .description("Retried requests answered with the stored response")
+                .tag("tier", tier)
+                .register(registry);
+    }
+
+    // request describes the call (operation and arguments), a key can not be reused for a different one
+    public <T> T execute(String key, String request, Class<T> responseType, Supplier<T> action) {
+        return execute(key, request, responseType, action, null);
+    }
+
+    // prepare has no side effects, handOver gets its response once per key after it is stored
+    public <T> T execute(String key, String request, Class<T> responseType, Supplier<T> prepare, Consumer<T> handOver) {
+        if (key == null || !properties.enabled()) {
+            T response = prepare.get();
+            if (handOver != null) {
+                handOver.accept(response);
+            }
+            return response;
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must have 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+
+        CompletableFuture<Outcome> execution = new CompletableFuture<>();
+        CompletableFuture<Outcome> existing = outcomes.asMap().putIfAbsent(key, execution);
+        if (existing != null) {
+            Outcome outcome = await(existing);
+            replayedFromMemory.increment();
+            return response(key, request, outcome, responseType);
+        }
+
+        try {
+            Outcome outcome = claimOrLoad(key, request, responseType, prepare, handOver);
+            execution.complete(outcome);
+            return response(key, request, outcome, responseType);
+        } catch (RuntimeException e) {
+            // Waiting duplicates get the same exception, the next retry starts over
+            outcomes.asMap().remove(key, execution);
+            execution.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private <T> Outcome claimOrLoad(String key, String request, Class<T> responseType, Supplier<T> action,
+                                    Consumer<T> handOver) {
+        // As the column keeps it, the failure path deletes this claim only, not one that took it over
+        LocalDateTime claimedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        Map<String, Object> row = jdbcTemplate.queryForMap(CLAIM, key, request, claimedAt,
+                claimedAt.minus(properties.claimTimeout()), key);
+        if (!(Boolean) row.get("claimed")) {
+            // No row at all: it was inserted after this statement's snapshot was taken, by the first execution
+            String stored = (String) row.get("response");
+            if (stored == null) {
+                conflicts.increment();
+                throw new IdempotencyConflictException("A request with Idempotency-Key " + key + " is still in progress");
+            }
+            replayedFromDatabase.increment();
+            return new Outcome((String) row.get("request"), read(stored, responseType));
+        }
+
+        try {
+            if (handOver == null) {
+                return new Outcome(request, transaction.run(key, request, action, this::write));
+            }
+            return new Outcome(request, recordThenHandOver(key, request, action.get(), handOver));
+        } catch (IdempotentTransaction.AlreadyRecordedException e) {
+            // The claim was taken over and the other execution committed first, this one was rolled back
+            Map<String, Object> recorded = jdbcTemplate.queryForMap(
+                    "SELECT request, response FROM idempotency_keys WHERE idempotency_key = ?", key);
+            replayedFromDatabase.increment();
+            return new Outcome((String) recorded.get("request"), read((String) recorded.get("response"), responseType));
+        } catch (RuntimeException e) {
+            jdbcTemplate.update("DELETE FROM idempotency_keys WHERE idempotency_key = ? AND created_at = ? AND response IS NULL",
+                    key, claimedAt);
+            throw e;
+        }
+    }
+
+    private <T> T recordThenHandOver(String key, String request, T response, Consumer<T> handOver) {
+        String stored = write(response);
+        if (!transaction.record(key, request, stored)) {
+            throw new IdempotentTransaction.AlreadyRecordedException(key);
+        }
+        try {
+            handOver.accept(response);
+        } catch (RuntimeException e) {
+            // Nothing was handed over, a retry starts over
+            jdbcTemplate.update("DELETE FROM idempotency_keys WHERE idempotency_key = ? AND response = ?", key, stored);
+            throw e;
+        }
+        return response;
+    }
+
+    private static <T> T response(String key, String request, Outcome outcome, Class<T> responseType) {
+        if (!outcome.request().equals(request)) {
+            throw new IllegalArgumentException("Idempotency-Key " + key + " was already used for another request");
+        }
+        return responseType.cast(outcome.response());
+    }
+
+    private <T> T read(String json, Class<T> type) {
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored response can not be read", e);
+        }
+    }
+
+    private String write(Object response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Response can not be stored", e);
+        }
+    }
+
+    private static Outcome await(CompletableFuture<Outcome> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${bank.idempotency.purge-interval:1h}")
+    public void run() {
+        if (!properties.enabled()) {
+            return;
+        }
+        try {
+            purge(LocalDateTime.now().minus(properties.ttl()));
+        } catch (RuntimeException e) {
+            log.warn("Idempotency key purge failed, trying again in {}", properties.purgeInterval(), e);
+        }
+    }
+
+    // Small batches keep every delete short, returns the number of keys deleted
+    public int purge(LocalDateTime cutoff) {
+        int purged = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update("""
+                    DELETE FROM idempotency_keys WHERE idempotency_key IN (
+                        SELECT idempotency_key FROM idempotency_keys WHERE created_at < ? LIMIT ?)""",
+                    cutoff, properties.purgeBatchSize());
+            purged += deleted;
+        } while (deleted == properties.purgeBatchSize());
+        if (purged > 0) {
+            log.info("Purged {} idempotency keys created before {}", purged, cutoff);
+        }
+        return purged;
+    }
+}
@@ -0,0 +1,67 @@
+package com.bank.bank_app.idempotency;
+
+import com.bank.bank_app.concurrency.RetryOnConflict;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.query.NativeQuery;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/*
+The request of a claimed Idempotency-Key and its response, in one transaction the service call joins: the
+money moves if and only if the response is stored, a crash or a failed write leaves neither.
+
+record -> inserts the key with its response (the claim may have been purged meanwhile) or fills in the claim;
+          writes nothing when another execution stored a response first (it took the claim over after
+          claimTimeout), then this transaction is rolled back with AlreadyRecordedException
+Deadlocks and serialization failures are retried as for the service call, each attempt runs the request again.
+With bank.ledger.engine=sharded the money moves in the ledger log, the response is stored right after it.
+A request whose effect is not in the database (a queued transfer) can not be rolled back, its response is
+stored on its own with record before it is handed over (IdempotencyStore).
+ */
+@Component
+public class IdempotentTransaction {
+
+    private static final String RECORD = """
+            INSERT INTO idempotency_keys (idempotency_key, request, response, created_at) VALUES (?1, ?2, ?3, ?4)
+            ON CONFLICT (idempotency_key) DO UPDATE SET request = EXCLUDED.request, response = EXCLUDED.response
+            WHERE idempotency_keys.response IS NULL""";
+
+    static class AlreadyRecordedException extends RuntimeException {
+
+        AlreadyRecordedException(String key) {
+            super("Idempotency-Key " + key + " already has a response");
+        }
+    }
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @RetryOnConflict
+    @Transactional
+    public <T> T run(String key, String request, Supplier<T> action, Function<Object, String> writer) {
+        T response = action.get();
+        if (!record(key, request, writer.apply(response))) {
+            throw new AlreadyRecordedException(key);
+        }
+        return response;
+    }
+
+    // Joins the caller's transaction if there is one, commits on its own otherwise; false when another
+    // execution stored a response first. A native query, so SqlActivity counts it as it does the service's
+    @Transactional
+    public boolean record(String key, String request, String response) {
+        return entityManager.createNativeQuery(RECORD)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace("idempotency_keys")
+                .setParameter(1, key)
+                .setParameter(2, request)
+                .setParameter(3, response)
+                .setParameter(4, LocalDateTime.now())
+                .executeUpdate() > 0;
+    }
+}
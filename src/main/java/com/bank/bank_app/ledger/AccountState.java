@@ -0,0 +1,50 @@
+package com.bank.bank_app.ledger;
+
+import com.bank.bank_app.dto.AccountResponseDT0;
+import com.bank.bank_app.money.Money;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// In-memory copy of an account, only ever touched by the thread of the shard that owns it
+@Getter
+@Setter
+@AllArgsConstructor
+class AccountState {
+
+    private final Long id;
+    private String owner;
+    private Money balance;
+    private final LocalDateTime createdAt;
+    private boolean deleted;
+    private int transfersInFlight;
+
+    void credit(Money amount) {
+        balance = balance.plus(amount);
+    }
+
+    void debit(Money amount) {
+        balance = balance.minus(amount);
+    }
+
+    // Funds taken for a cross-shard transfer that the target shard has not logged yet
+    void hold(Money amount) {
+        debit(amount);
+        transfersInFlight++;
+    }
+
+    void settle() {
+        transfersInFlight--;
+    }
+
+    void release(Money amount) {
+        credit(amount);
+        transfersInFlight--;
+    }
+
+    AccountResponseDT0 toResponseDTO() {
+        return new AccountResponseDT0(id, owner, balance, createdAt);
+    }
+}
@@ -0,0 +1,189 @@
+package com.bank.bank_app.ledger;
+
+import com.bank.bank_app.entity.EntryType;
+import com.bank.bank_app.money.Money;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/*
+Binary form of the ledger writes of one journal record.
+
+count (short), then per write a type byte followed by:
+1 EntryWrite    -> accountId, entryType (ordinal byte), amount, balanceAfter, createdAt
+2 TransferWrite -> fromAccountId, toAccountId, amount, createdAt (no holdId)
+3 AccountWrite  -> accountId, owner, balanceChange
+4 AccountDelete -> accountId
+6 EntryWrite    -> as 1, then holdId (the TRANSFER_OUT of a cross-shard transfer)
+7 TransferWrite -> as 2, then holdId (held before, cross-shard)
+5 is not used: it told a held transfer apart by its hold time, such a record is refused rather than misread.
+
+ids are longs, amounts are scale (short, always 2) + cents (length byte + two's complement bytes, as BigDecimal
+writes its unscaled value: journals of older versions, with other scales, still read),
+timestamps are epoch seconds (long) + nanos (int) of the LocalDateTime taken as UTC,
+strings are length (short, -1 for null) + UTF-8 bytes, hold ids are the two longs of the UUID.
+New EntryType values must be added at the end, records store the ordinal.
+ */
+final class JournalCodec {
+
+    private static final byte ENTRY = 1;
+    private static final byte TRANSFER = 2;
+    private static final byte ACCOUNT = 3;
+    private static final byte ACCOUNT_DELETE = 4;
+    private static final byte ENTRY_HELD = 6;
+    private static final byte TRANSFER_HELD = 7;
+
+    private static final int MONEY_SCALE = 2;
+
+    private static final EntryType[] ENTRY_TYPES = EntryType.values();
+
+    private JournalCodec() {
+    }
+
+    // Throws BufferOverflowException when the writes do not fit into the buffer
+    static void encode(List<LedgerWrite> writes, ByteBuffer buffer) {
+        buffer.putShort((short) writes.size());
+        for (LedgerWrite write : writes) {
+            switch (write) {
+                case LedgerWrite.EntryWrite entry -> {
+                    buffer.put(entry.holdId() != null ? ENTRY_HELD : ENTRY);
+                    buffer.putLong(entry.accountId());
+                    buffer.put((byte) entry.entryType().ordinal());
+                    putMoney(buffer, entry.amount());
+                    putMoney(buffer, entry.balanceAfter());
+                    putTimestamp(buffer, entry.createdAt());
+                    if (entry.holdId() != null) {
+                        putUuid(buffer, entry.holdId());
+                    }
+                }
+                case LedgerWrite.TransferWrite transfer -> {
+                    buffer.put(transfer.heldBefore() ? TRANSFER_HELD : TRANSFER);
+                    buffer.putLong(transfer.fromAccountId());
+                    buffer.putLong(transfer.toAccountId());
+                    putMoney(buffer, transfer.amount());
+                    putTimestamp(buffer, transfer.createdAt());
+                    if (transfer.heldBefore()) {
+                        putUuid(buffer, transfer.holdId());
+                    }
+                }
+                case LedgerWrite.AccountWrite account -> {
+                    buffer.put(ACCOUNT);
+                    buffer.putLong(account.accountId());
+                    putString(buffer, account.owner());
+                    putMoney(buffer, account.balanceChange());
+                }
+                case LedgerWrite.AccountDelete delete -> {
+                    buffer.put(ACCOUNT_DELETE);
+                    buffer.putLong(delete.accountId());
+                }
+            }
+        }
+    }
+
+    static List<LedgerWrite> decode(ByteBuffer buffer) {
+        int count = buffer.getShort();
+        List<LedgerWrite> writes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte type = buffer.get();
+            writes.add(switch (type) {
+                case ENTRY, ENTRY_HELD -> {
+                    long accountId = buffer.getLong();
+                    EntryType entryType = ENTRY_TYPES[buffer.get()];
+                    Money amount = getMoney(buffer);
+                    Money balanceAfter = getMoney(buffer);
+                    LocalDateTime createdAt = getTimestamp(buffer);
+                    UUID holdId = type == ENTRY_HELD ? getUuid(buffer) : null;
+                    yield new LedgerWrite.EntryWrite(accountId, entryType, amount, balanceAfter, createdAt, holdId);
+                }
+                case TRANSFER, TRANSFER_HELD -> {
+                    long fromAccountId = buffer.getLong();
+                    long toAccountId = buffer.getLong();
+                    Money amount = getMoney(buffer);
+                    LocalDateTime createdAt = getTimestamp(buffer);
+                    UUID holdId = type == TRANSFER_HELD ? getUuid(buffer) : null;
+                    yield new LedgerWrite.TransferWrite(fromAccountId, toAccountId, amount, createdAt, holdId);
+                }
+                case ACCOUNT -> new LedgerWrite.AccountWrite(buffer.getLong(), getString(buffer), getMoney(buffer));
+                case ACCOUNT_DELETE -> new LedgerWrite.AccountDelete(buffer.getLong());
+                default -> throw new IllegalStateException("Unknown ledger write type in journal: " + type);
+            });
+        }
+        return writes;
+    }
+
+    // The bytes BigDecimal.unscaledValue().toByteArray() would give, without making one
+    private static void putMoney(ByteBuffer buffer, Money value) {
+        long cents = value.cents();
+        int length = (64 - Long.numberOfLeadingZeros(cents ^ (cents >> 63))) / 8 + 1;
+        buffer.putShort((short) MONEY_SCALE);
+        buffer.put((byte) length);
+        for (int shift = (length - 1) * 8; shift >= 0; shift -= 8) {
+            buffer.put((byte) (cents >> shift));
+        }
+    }
+
+    private static Money getMoney(ByteBuffer buffer) {
+        int scale = buffer.getShort();
+        int length = buffer.get() & 0xFF;
+        if (scale == MONEY_SCALE && length <= 8) {
+            long cents = buffer.get();
+            for (int i = 1; i < length; i++) {
+                cents = (cents << 8) | (buffer.get() & 0xFF);
+            }
+            return Money.ofCents(cents);
+        }
+        // Written before amounts were Money, the DECIMAL(19, 2) columns rounded these the same way
+        byte[] unscaled = new byte[length];
+        buffer.get(unscaled);
+        return Money.of(new BigDecimal(new BigInteger(unscaled), scale).setScale(MONEY_SCALE, RoundingMode.HALF_UP));
+    }
+
+    private static void putTimestamp(ByteBuffer buffer, LocalDateTime value) {
+        buffer.putLong(value.toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(value.getNano());
+    }
+
+    private static LocalDateTime getTimestamp(ByteBuffer buffer) {
+        return LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC);
+    }
+
+    private static void putUuid(ByteBuffer buffer, UUID value) {
+        buffer.putLong(value.getMostSignificantBits());
+        buffer.putLong(value.getLeastSignificantBits());
+    }
+
+    private static UUID getUuid(ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Value too long for the journal: " + bytes.length + " bytes");
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,158 @@
+package com.bank.bank_app.ledger;
+
+import com.bank.bank_app.repository.JournalCheckpointRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.List;
+
+/*
+Write-ahead journal durability for the sharded ledger (bank.ledger.durability=journal).
+
+append       -> the operation is copied into the memory-mapped journal (LedgerJournal)
+awaitDurable -> returns once the journal has been forced to disk, many operations share one fsync
+applier      -> background thread reading the durable records in order and writing them to the database in
+                batches; the checkpoint (last applied lsn) is updated in the same transaction, so a record
+                is applied exactly once however often the applier or the process is stopped
+startup      -> records after the checkpoint are applied before the shards can load any account
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "bank.ledger.engine", havingValue = "sharded")
+@ConditionalOnProperty(name = "bank.ledger.durability", havingValue = "journal")
+public class JournalLedgerLog implements LedgerLog, MeterBinder {
+
+    private static final long RETRY_BACKOFF_MILLIS = 1000;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 30_000;
+
+    private final LedgerBatchWriter writer;
+    private final JournalCheckpointRepository checkpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final LedgerProperties properties;
+    private final LedgerJournal journal;
+    private final LedgerJournal.Cursor cursor;
+    private final Thread applier;
+    private volatile long appliedLsn;
+    private volatile boolean running = true;
+
+    JournalLedgerLog(LedgerBatchWriter writer,
+                     JournalCheckpointRepository checkpointRepository,
+                     PlatformTransactionManager transactionManager,
+                     LedgerProperties properties) throws IOException, InterruptedException {
+        this.writer = writer;
+        this.checkpointRepository = checkpointRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        this.appliedLsn = checkpointRepository.appliedLsn();
+
+        LedgerProperties.Journal settings = properties.journal();
+        this.journal = LedgerJournal.open(settings.directory(), (int) settings.segmentSize().toBytes(),
+                settings.groupCommitRecords(), settings.groupCommitInterval(), appliedLsn);
+        this.cursor = journal.cursor(appliedLsn + 1);
+        this.applier = new Thread(this::run, "ledger-journal-applier");
+        replay();
+    }
+
+    // Everything journaled before the last shutdown or crash is in the database before the shards start
+    private void replay() throws InterruptedException {
+        long replayed = 0;
+        List<LedgerJournal.Record> records;
+        while (!(records = cursor.next(properties.persistBatchSize())).isEmpty() && apply(records)) {
+            replayed += records.size();
+        }
+        if (replayed > 0) {
+            log.info("Replayed {} ledger journal records, applied up to {}", replayed, appliedLsn);
+        }
+    }
+
+    @PostConstruct
+    void start() {
+        applier.start();
+    }
+
+    @Override
+    public void append(List<LedgerWrite> writes) {
+        journal.append(writes);
+    }
+
+    @Override
+    public void awaitDurable() {
+        journal.awaitDurable(journal.appendedLsn());
+    }
+
+    long appliedLsn() {
+        return appliedLsn;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("bank.ledger.journal.unapplied", this, log -> log.journal.appendedLsn() - log.appliedLsn)
+                .description("Journaled ledger operations not written to the database yet")
+                .register(registry);
+        Gauge.builder("bank.ledger.journal.unflushed", journal, journal -> journal.appendedLsn() - journal.durableLsn())
+                .description("Journaled ledger operations waiting for the next fsync")
+                .register(registry);
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                List<LedgerJournal.Record> records = cursor.next(properties.persistBatchSize());
+                if (records.isEmpty()) {
+                    journal.awaitRecord(cursor.nextLsn(), properties.persistFlushInterval());
+                } else if (!apply(records)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Retried until it succeeds or the application stops, the records after it cannot be applied before it
+    private boolean apply(List<LedgerJournal.Record> records) throws InterruptedException {
+        List<List<LedgerWrite>> operations = records.stream().map(LedgerJournal.Record::writes).toList();
+        long lastLsn = records.getLast().lsn();
+        while (true) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    writer.write(operations);
+                    checkpointRepository.advance(lastLsn);
+                });
+                break;
+            } catch (RuntimeException e) {
+                if (!running) {
+                    log.warn("Stopping with ledger journal records {} to {} not applied, they are replayed on the next start",
+                            records.getFirst().lsn(), journal.appendedLsn(), e);
+                    return false;
+                }
+                log.error("Failed to apply ledger journal records {} to {}, retrying", records.getFirst().lsn(), lastLsn, e);
+                Thread.sleep(RETRY_BACKOFF_MILLIS);
+            }
+        }
+        appliedLsn = lastLsn;
+        journal.release(lastLsn);
+        return true;
+    }
+
+    // Records not applied yet stay in the journal and are replayed on the next start
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        applier.join(SHUTDOWN_TIMEOUT_MILLIS);
+        if (applier.isAlive()) {
+            applier.interrupt();
+            applier.join();
+        }
+        journal.close();
+    }
+}
@@ -0,0 +1,129 @@
+package com.bank.bank_app.ledger;
+
+import com.bank.bank_app.entity.EntryType;
+import com.bank.bank_app.model.Account;
+import com.bank.bank_app.model.Entry;
+import com.bank.bank_app.model.Transfer;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.repository.AccountRepository;
+import com.bank.bank_app.repository.EntryRepository;
+import com.bank.bank_app.repository.TransferRepository;
+import com.bank.bank_app.rollup.DailyRollups;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/*
+Writes a batch of ledger writes to the entries/transfers/accounts tables, inside the caller's transaction.
+Entries and transfers are batched inserts, the balance changes of each account are added up and written
+with one UPDATE per account. The daily rollups of all entries of the batch are upserted last.
+
+The entries of a transfer are in its operation, before its TransferWrite; they are held back until the
+transfer has its id, which they carry as transferId. The TRANSFER_OUT of a cross-shard transfer was an
+operation of its own, in this batch or an earlier one: it is found by its hold id and gets the id then.
+Transfer entries of an operation without a transfer (a hold given back) keep no transferId.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "bank.ledger.engine", havingValue = "sharded")
+class LedgerBatchWriter {
+
+    private final AccountRepository accountRepository;
+    private final EntryRepository entryRepository;
+    private final TransferRepository transferRepository;
+    private final DailyRollups dailyRollups;
+
+    void write(List<List<LedgerWrite>> operations) {
+        Map<Long, Money> balanceChanges = new LinkedHashMap<>();
+        Set<Long> deleted = new HashSet<>();
+        List<Entry> transferEntries = new ArrayList<>(2);
+        Map<UUID, Entry> held = new HashMap<>();
+        List<Entry> written = new ArrayList<>();
+
+        for (List<LedgerWrite> operation : operations) {
+            for (LedgerWrite write : operation) {
+                switch (write) {
+                    case LedgerWrite.EntryWrite entry -> {
+                        Entry row = Entry.builder()
+                                .account(reference(entry.accountId()))
+                                .amount(entry.amount())
+                                .entryType(entry.entryType())
+                                .createdAt(entry.createdAt())
+                                .balanceAfter(entry.balanceAfter())
+                                .holdId(entry.holdId())
+                                .build();
+                        if (entry.entryType() == EntryType.TRANSFER_IN || entry.entryType() == EntryType.TRANSFER_OUT) {
+                            transferEntries.add(row);
+                        } else {
+                            entryRepository.save(row);
+                        }
+                        written.add(row);
+                        balanceChanges.merge(entry.accountId(), entry.balanceChange(), Money::plus);
+                    }
+                    case LedgerWrite.TransferWrite transfer -> {
+                        Transfer row = transferRepository.save(Transfer.builder()
+                                .amount(transfer.amount())
+                                .createdAt(transfer.createdAt())
+                                .fromAccount(reference(transfer.fromAccountId()))
+                                .toAccount(reference(transfer.toAccountId()))
+                                .build());
+                        transferEntries.forEach(entry -> entry.setTransferId(row.getId()));
+                        saveAll(transferEntries);
+                        if (transfer.heldBefore()) {
+                            Entry out = held.remove(transfer.holdId());
+                            if (out != null) {
+                                out.setTransferId(row.getId());
+                            } else {
+                                entryRepository.linkTransferOut(transfer.fromAccountId(), transfer.holdId(),
+                                        transfer.createdAt().minusDays(1), transfer.createdAt().plusDays(1), row.getId());
+                            }
+                        }
+                    }
+                    case LedgerWrite.AccountWrite account -> {
+                        accountRepository.updateOwner(account.accountId(), account.owner());
+                        balanceChanges.merge(account.accountId(), account.balanceChange(), Money::plus);
+                    }
+                    case LedgerWrite.AccountDelete delete -> {
+                        // Soft delete, AccountPurgeJob removes the account with its entries and transfers
+                        accountRepository.softDelete(delete.accountId(), LocalDateTime.now());
+                        deleted.add(delete.accountId());
+                        balanceChanges.remove(delete.accountId());
+                    }
+                }
+            }
+            // An operation without a transfer: a cross-shard TRANSFER_OUT, or held funds given back
+            for (Entry entry : transferEntries) {
+                if (entry.getHoldId() != null) {
+                    held.put(entry.getHoldId(), entry);
+                }
+            }
+            saveAll(transferEntries);
+        }
+
+        balanceChanges.forEach((id, change) -> {
+            if (!deleted.contains(id) && !change.isZero()) {
+                accountRepository.addToBalance(id, change);
+            }
+        });
+        dailyRollups.add(written);
+    }
+
+    private void saveAll(List<Entry> entries) {
+        entries.forEach(entryRepository::save);
+        entries.clear();
+    }
+
+    private Account reference(Long accountId) {
+        return accountRepository.getReferenceById(accountId);
+    }
+}
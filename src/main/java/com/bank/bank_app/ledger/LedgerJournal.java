@@ -0,0 +1,478 @@
+package com.bank.bank_app.ledger;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/*
+Memory-mapped, segment-rotated write-ahead journal of ledger operations.
+
+Segment files are named journal-<first lsn>.log, preallocated to segmentSize and mapped whole. Each record:
+
+    int  length   payload length, 0 = nothing written yet, -1 = rest of the segment unused
+    long lsn      1, 2, 3, ... without gaps across segments
+    int  crc      CRC32C of lsn + payload
+    ...  payload  JournalCodec
+
+Appends only copy into the mapping. A flusher thread forces the written range to disk once
+groupCommitRecords records are waiting or the oldest of them has waited groupCommitInterval (group commit),
+then wakes everyone in awaitDurable. A full segment is forced before the next one is started, so only the
+last segment can have a torn tail after a crash.
+
+On open the segments are scanned up to the first record that is incomplete or has the wrong lsn or checksum,
+and appending continues in a new segment: a torn tail is never read again. A segment is deleted once the
+applier is past its last record.
+ */
+@Slf4j
+final class LedgerJournal implements AutoCloseable {
+
+    static final int HEADER_SIZE = 16;
+    private static final int END_OF_SEGMENT = -1;
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("journal-\\d{20}\\.log");
+
+    record Record(long lsn, List<LedgerWrite> writes) {
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int groupCommitRecords;
+    private final long groupCommitIntervalNanos;
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushNeeded = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private final ByteBuffer scratch;
+    private final CRC32C crc = new CRC32C();
+    private final Thread flusher;
+
+    // Guarded by lock, the lsns are also read without it
+    private Segment active;
+    private volatile long appendedLsn;
+    private volatile long durableLsn;
+    private long firstPendingNanos;
+    private boolean closed;
+    private volatile RuntimeException failure;
+
+    private LedgerJournal(Path directory, int segmentSize, int groupCommitRecords, Duration groupCommitInterval) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.groupCommitRecords = groupCommitRecords;
+        this.groupCommitIntervalNanos = groupCommitInterval.toNanos();
+        this.scratch = ByteBuffer.allocate(Math.min(MAX_RECORD_SIZE, segmentSize - HEADER_SIZE));
+        this.flusher = new Thread(this::flushLoop, "ledger-journal-flusher");
+        this.flusher.setDaemon(true);
+    }
+
+    // appliedLsn: last record already in the database, the journal never hands out an lsn at or below it
+    static LedgerJournal open(Path directory, int segmentSize, int groupCommitRecords,
+                              Duration groupCommitInterval, long appliedLsn) throws IOException {
+        LedgerJournal journal = new LedgerJournal(directory, segmentSize, groupCommitRecords, groupCommitInterval);
+        journal.recover(appliedLsn);
+        journal.flusher.start();
+        return journal;
+    }
+
+    private void recover(long appliedLsn) throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            // Zero-padded names, so name order is lsn order
+            files = list.filter(path -> SEGMENT_NAME.matcher(path.getFileName().toString()).matches())
+                    .sorted()
+                    .toList();
+        }
+
+        long nextLsn = -1;
+        CRC32C scanCrc = new CRC32C();
+        for (Path file : files) {
+            Segment segment = Segment.open(file);
+            if (nextLsn != -1 && segment.firstLsn != nextLsn) {
+                throw new IllegalStateException("Journal segment " + file + " does not continue at record " + nextLsn);
+            }
+            nextLsn = segment.firstLsn;
+            int length;
+            while ((length = segment.recordLength(segment.writePosition, nextLsn, scanCrc)) >= 0) {
+                segment.writePosition += HEADER_SIZE + length;
+                nextLsn++;
+            }
+            segment.lastLsn = nextLsn - 1;
+            // Records written before a crash of the process may still be in the page cache only
+            segment.buffer.force();
+            segments.put(segment.firstLsn, segment);
+        }
+
+        long lastLsn = nextLsn == -1 ? 0 : nextLsn - 1;
+        if (lastLsn < appliedLsn && !files.isEmpty()) {
+            log.warn("Journal ends at record {} but record {} is already applied, continuing after it", lastLsn, appliedLsn);
+        }
+        for (Segment segment : List.copyOf(segments.values())) {
+            if (segment.lastLsn < segment.firstLsn || segment.lastLsn <= appliedLsn) {
+                segments.remove(segment.firstLsn);
+                Files.delete(segment.path);
+            }
+        }
+
+        long startLsn = Math.max(lastLsn, appliedLsn) + 1;
+        appendedLsn = startLsn - 1;
+        durableLsn = startLsn - 1;
+        active = Segment.create(segmentPath(startLsn), startLsn, segmentSize);
+        segments.put(startLsn, active);
+        syncDirectory();
+        log.info("Journal opened in {}, {} records not applied yet, next record {}",
+                directory, Math.max(0, lastLsn - appliedLsn), startLsn);
+    }
+
+    // Returns the lsn of the record, it is durable once awaitDurable(lsn) returns
+    long append(List<LedgerWrite> writes) {
+        lock.lock();
+        try {
+            checkUsable();
+            scratch.clear();
+            try {
+                JournalCodec.encode(writes, scratch);
+            } catch (BufferOverflowException e) {
+                throw new IllegalArgumentException("Ledger operation too large for the journal", e);
+            }
+            scratch.flip();
+            int length = scratch.remaining();
+            if (active.writePosition + HEADER_SIZE + length > active.size) {
+                rotate();
+            }
+
+            long lsn = appendedLsn + 1;
+            int position = active.writePosition;
+            MappedByteBuffer buffer = active.buffer;
+            buffer.putLong(position + 4, lsn);
+            buffer.put(position + HEADER_SIZE, scratch, 0, length);
+            buffer.putInt(position + 12, checksum(buffer, position, length, crc));
+            buffer.putInt(position, length);
+            active.writePosition = position + HEADER_SIZE + length;
+            active.lastLsn = lsn;
+            appendedLsn = lsn;
+
+            long pending = lsn - durableLsn;
+            if (pending == 1) {
+                firstPendingNanos = System.nanoTime();
+                flushNeeded.signal();
+            } else if (pending >= groupCommitRecords) {
+                flushNeeded.signal();
+            }
+            return lsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void rotate() {
+        Segment full = active;
+        if (full.size - full.writePosition >= Integer.BYTES) {
+            full.buffer.putInt(full.writePosition, END_OF_SEGMENT);
+        }
+        try {
+            full.buffer.force();
+            full.flushedPosition = full.writePosition;
+            active = Segment.create(segmentPath(appendedLsn + 1), appendedLsn + 1, segmentSize);
+        } catch (IOException | UncheckedIOException e) {
+            RuntimeException error = new IllegalStateException("Failed to start a new journal segment", e);
+            failure = error;
+            flushed.signalAll();
+            throw error;
+        }
+        segments.put(active.firstLsn, active);
+        syncDirectory();
+    }
+
+    void awaitDurable(long lsn) {
+        if (durableLsn >= lsn) {
+            return;
+        }
+        lock.lock();
+        try {
+            while (durableLsn < lsn) {
+                if (failure != null) {
+                    throw new IllegalStateException("Journal failed, the operation may not be durable", failure);
+                }
+                flushed.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the journal", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Waits until record lsn is durable, false when the timeout elapsed first
+    boolean awaitRecord(long lsn, Duration timeout) throws InterruptedException {
+        long remaining = timeout.toNanos();
+        lock.lock();
+        try {
+            while (durableLsn < lsn && remaining > 0) {
+                remaining = flushed.awaitNanos(remaining);
+            }
+            return durableLsn >= lsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        try {
+            while (true) {
+                long target;
+                Segment segment;
+                int from;
+                int to;
+                lock.lock();
+                try {
+                    while (!closed && appendedLsn == durableLsn) {
+                        flushNeeded.await();
+                    }
+                    if (appendedLsn == durableLsn) {
+                        return;
+                    }
+                    long waitNanos;
+                    while (!closed && appendedLsn - durableLsn < groupCommitRecords
+                            && (waitNanos = firstPendingNanos + groupCommitIntervalNanos - System.nanoTime()) > 0) {
+                        flushNeeded.awaitNanos(waitNanos);
+                    }
+                    target = appendedLsn;
+                    segment = active;
+                    from = segment.flushedPosition;
+                    to = segment.writePosition;
+                } finally {
+                    lock.unlock();
+                }
+
+                // Earlier segments were forced when they were rotated out
+                if (to > from) {
+                    segment.buffer.force(from, to - from);
+                }
+
+                lock.lock();
+                try {
+                    segment.flushedPosition = Math.max(segment.flushedPosition, to);
+                    durableLsn = target;
+                    firstPendingNanos = System.nanoTime();
+                    flushed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (InterruptedException e) {
+            fail(new IllegalStateException("Journal flusher interrupted", e));
+        } catch (RuntimeException e) {
+            log.error("Failed to flush the journal, no further ledger operations are accepted", e);
+            fail(e);
+        }
+    }
+
+    private void fail(RuntimeException error) {
+        lock.lock();
+        try {
+            failure = error;
+            flushed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkUsable() {
+        if (failure != null) {
+            throw new IllegalStateException("Journal failed", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+    }
+
+    Cursor cursor(long fromLsn) {
+        return new Cursor(fromLsn);
+    }
+
+    // Deletes the segments whose records are all at or below appliedLsn
+    void release(long appliedLsn) {
+        Map.Entry<Long, Segment> first;
+        while ((first = segments.firstEntry()) != null) {
+            Long next = segments.higherKey(first.getKey());
+            if (next == null || next > appliedLsn + 1) {
+                return;
+            }
+            segments.remove(first.getKey());
+            try {
+                Files.deleteIfExists(first.getValue().path);
+            } catch (IOException e) {
+                log.warn("Failed to delete applied journal segment {}", first.getValue().path, e);
+            }
+        }
+    }
+
+    long appendedLsn() {
+        return appendedLsn;
+    }
+
+    long durableLsn() {
+        return durableLsn;
+    }
+
+    // Flushes what was appended and stops, appends fail from now on
+    @Override
+    public void close() throws InterruptedException {
+        lock.lock();
+        try {
+            closed = true;
+            flushNeeded.signal();
+            flushed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        flusher.join();
+    }
+
+    private Path segmentPath(long firstLsn) {
+        return directory.resolve(String.format("journal-%020d.log", firstLsn));
+    }
+
+    // Makes a new segment file itself durable, not supported on every platform
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Could not sync journal directory {}", directory, e);
+        }
+    }
+
+    private static int checksum(ByteBuffer buffer, int position, int length, CRC32C crc) {
+        crc.reset();
+        crc.update(buffer.slice(position + 4, Long.BYTES));
+        crc.update(buffer.slice(position + HEADER_SIZE, length));
+        return (int) crc.getValue();
+    }
+
+    /*
+    Reads the durable records from firstLsn on, one thread at a time (the applier).
+    Records below fromLsn are skipped, they are already applied.
+     */
+    final class Cursor {
+
+        private final CRC32C cursorCrc = new CRC32C();
+        private final long fromLsn;
+        private Segment segment;
+        private int position;
+        private long nextLsn;
+
+        private Cursor(long fromLsn) {
+            Map.Entry<Long, Segment> first = segments.floorEntry(fromLsn);
+            if (first == null) {
+                throw new IllegalStateException("Journal record " + fromLsn + " is missing");
+            }
+            this.fromLsn = fromLsn;
+            this.segment = first.getValue();
+            this.nextLsn = segment.firstLsn;
+        }
+
+        long nextLsn() {
+            return Math.max(nextLsn, fromLsn);
+        }
+
+        // Up to max durable records in lsn order, empty when there is nothing new
+        List<Record> next(int max) {
+            List<Record> records = new ArrayList<>();
+            long durable = durableLsn;
+            while (records.size() < max && nextLsn <= durable) {
+                int length = segment.recordLength(position, nextLsn, cursorCrc);
+                if (length < 0) {
+                    // End of the segment, or a torn tail left by a crash: the record starts the next segment
+                    Segment next = segments.get(nextLsn);
+                    if (next == null || next == segment) {
+                        throw new IllegalStateException("Journal record " + nextLsn + " is missing");
+                    }
+                    segment = next;
+                    position = 0;
+                    continue;
+                }
+                if (nextLsn >= fromLsn) {
+                    records.add(new Record(nextLsn, JournalCodec.decode(segment.buffer.slice(position + HEADER_SIZE, length))));
+                }
+                position += HEADER_SIZE + length;
+                nextLsn++;
+            }
+            return records;
+        }
+    }
+
+    private static final class Segment {
+
+        final long firstLsn;
+        final Path path;
+        final MappedByteBuffer buffer;
+        final int size;
+        int writePosition;
+        int flushedPosition;
+        long lastLsn;
+
+        private Segment(long firstLsn, Path path, MappedByteBuffer buffer, int size) {
+            this.firstLsn = firstLsn;
+            this.path = path;
+            this.buffer = buffer;
+            this.size = size;
+            this.lastLsn = firstLsn - 1;
+        }
+
+        static Segment create(Path path, long firstLsn, int size) throws IOException {
+            try (FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // Sizes the file, the rest reads as zeros ("nothing written yet")
+                channel.write(ByteBuffer.allocate(1), size - 1);
+                channel.force(true);
+                return new Segment(firstLsn, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size), size);
+            }
+        }
+
+        static Segment open(Path path) throws IOException {
+            String name = path.getFileName().toString();
+            long firstLsn = Long.parseLong(name.substring("journal-".length(), name.length() - ".log".length()));
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                int size = (int) channel.size();
+                Segment segment = new Segment(firstLsn, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size), size);
+                segment.flushedPosition = size;
+                return segment;
+            }
+        }
+
+        // Payload length of the record at position if it is complete and is record expectedLsn, otherwise -1
+        int recordLength(int position, long expectedLsn, CRC32C crc) {
+            if (position + HEADER_SIZE > size) {
+                return -1;
+            }
+            int length = buffer.getInt(position);
+            if (length <= 0 || length > size - position - HEADER_SIZE) {
+                return -1;
+            }
+            if (buffer.getLong(position + 4) != expectedLsn) {
+                return -1;
+            }
+            return checksum(buffer, position, length, crc) == buffer.getInt(position + 12) ? length : -1;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.bank.bank_app.ledger;
+
+import java.util.List;
+
+/*
+Where the ledger shards hand over their changes on the way to the database.
+
+bank.ledger.durability=async   -> LedgerPersister, in-memory queue, changes not yet written are lost on a crash
+bank.ledger.durability=journal -> JournalLedgerLog, write-ahead journal on local disk, replayed after a crash
+ */
+public interface LedgerLog {
+
+    // The writes of one operation, they reach the database in the same transaction
+    void append(List<LedgerWrite> writes);
+
+    // Blocks until everything appended before this call survives a crash of the process
+    void awaitDurable();
+}
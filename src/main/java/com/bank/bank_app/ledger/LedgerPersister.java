@@ -0,0 +1,123 @@
+package com.bank.bank_app.ledger;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+Writes the changes made by the ledger shards to the database in the background (bank.ledger.durability=async).
+
+Writes are applied in the order they were queued, a batch at a time, each batch in one transaction.
+A failed batch is retried until it succeeds, ledger writes are never dropped while the process runs;
+whatever is still queued when it crashes is lost.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "bank.ledger.engine", havingValue = "sharded")
+@ConditionalOnProperty(name = "bank.ledger.durability", havingValue = "async", matchIfMissing = true)
+public class LedgerPersister implements LedgerLog, MeterBinder {
+
+    private static final long RETRY_BACKOFF_MILLIS = 1000;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 30_000;
+
+    private final LedgerBatchWriter writer;
+    private final TransactionTemplate transactionTemplate;
+    private final LedgerProperties properties;
+    private final BlockingQueue<List<LedgerWrite>> queue;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    LedgerPersister(LedgerBatchWriter writer,
+                    PlatformTransactionManager transactionManager,
+                    LedgerProperties properties) {
+        this.writer = writer;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        this.queue = new LinkedBlockingQueue<>(properties.persistQueueCapacity());
+        this.worker = new Thread(this::run, "ledger-persister");
+    }
+
+    @PostConstruct
+    void start() {
+        worker.start();
+    }
+
+    // Blocks when the queue is full, which slows the shards down to the speed of the database
+    @Override
+    public void append(List<LedgerWrite> writes) {
+        try {
+            queue.put(writes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing ledger write", e);
+        }
+    }
+
+    // Nothing to wait for, queued writes only live in memory
+    @Override
+    public void awaitDurable() {
+    }
+
+    public int pending() {
+        return queue.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("bank.ledger.persister.pending", queue, BlockingQueue::size)
+                .description("Ledger operations waiting to be persisted")
+                .register(registry);
+    }
+
+    private void run() {
+        List<List<LedgerWrite>> operations = new ArrayList<>(properties.persistBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                List<LedgerWrite> first = queue.poll(properties.persistFlushInterval().toMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                operations.add(first);
+                queue.drainTo(operations, properties.persistBatchSize() - 1);
+                writeWithRetry(operations);
+                operations.clear();
+            } catch (InterruptedException e) {
+                running = false;
+            }
+        }
+    }
+
+    private void writeWithRetry(List<List<LedgerWrite>> operations) throws InterruptedException {
+        while (true) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> writer.write(operations));
+                return;
+            } catch (RuntimeException e) {
+                log.error("Failed to persist {} ledger operations, retrying", operations.size(), e);
+                Thread.sleep(RETRY_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        worker.join(SHUTDOWN_TIMEOUT_MILLIS);
+        if (!queue.isEmpty()) {
+            log.warn("Shutting down with {} ledger operations not persisted", queue.size());
+        }
+    }
+}
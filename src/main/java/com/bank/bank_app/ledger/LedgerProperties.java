@@ -0,0 +1,48 @@
+package com.bank.bank_app.ledger;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/*
+Settings for the sharded ledger engine (bank.ledger.engine=sharded).
+
+shards                  -> number of single-writer threads, 0 means one per available core
+durability              -> async (writes acknowledged before they reach the database) or journal, see LedgerLog
+persistBatchSize        -> max number of ledger operations flushed to the database in one transaction
+persistFlushInterval    -> how long the persister waits for more writes before flushing a partial batch
+persistQueueCapacity    -> pending operations allowed before shards block (backpressure)
+journal                 -> write-ahead journal, only used with durability=journal
+ */
+@ConfigurationProperties(prefix = "bank.ledger")
+public record LedgerProperties(
+        @DefaultValue("jpa") String engine,
+        @DefaultValue("0") int shards,
+        @DefaultValue("async") String durability,
+        @DefaultValue("500") int persistBatchSize,
+        @DefaultValue("20ms") Duration persistFlushInterval,
+        @DefaultValue("100000") int persistQueueCapacity,
+        @DefaultValue Journal journal
+) {
+
+    public int effectiveShards() {
+        return shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+    }
+
+    /*
+    directory           -> where the segment files are kept, must be on local disk
+    segmentSize         -> size of one memory-mapped segment file, a new one is started when it is full
+    groupCommitRecords  -> fsync once this many operations are waiting for it...
+    groupCommitInterval -> ...or once the oldest one has waited this long
+     */
+    public record Journal(
+            @DefaultValue("data/journal") Path directory,
+            @DefaultValue("64MB") DataSize segmentSize,
+            @DefaultValue("256") int groupCommitRecords,
+            @DefaultValue("200us") Duration groupCommitInterval
+    ) {
+    }
+}
@@ -0,0 +1,64 @@
+package com.bank.bank_app.ledger;
+
+import com.bank.bank_app.exception.AccountNotFoundException;
+import com.bank.bank_app.repository.AccountRepository;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/*
+One single-writer partition of the ledger.
+
+Every operation on an account owned by this shard runs on the shard's own thread, one after
+the other, so balances need no locks and updates to the same account can never interleave.
+Accounts are loaded from the database the first time they are touched and stay resident;
+from then on the shard (not the database) is the source of truth for their balance.
+ */
+class LedgerShard {
+
+    private final Map<Long, AccountState> accounts = new HashMap<>();
+    private final AccountRepository accountRepository;
+    private final ExecutorService executor;
+
+    LedgerShard(int index, AccountRepository accountRepository) {
+        this.accountRepository = accountRepository;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "ledger-shard-" + index);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    <T> CompletableFuture<T> submit(Function<LedgerShard, T> operation) {
+        return CompletableFuture.supplyAsync(() -> operation.apply(this), executor);
+    }
+
+    // Must only be called from this shard's thread
+    AccountState account(Long id) {
+        AccountState state = accounts.computeIfAbsent(id, this::load);
+        if (state == null || state.isDeleted()) {
+            throw new AccountNotFoundException("Account not found with id: " + id);
+        }
+        return state;
+    }
+
+    private AccountState load(Long id) {
+        return accountRepository.findById(id)
+                .map(account -> new AccountState(
+                        account.getId(),
+                        account.getOwner(),
+                        account.getTotalBalance(),
+                        account.getCreatedAt(),
+                        false,
+                        0))
+                .orElse(null);
+    }
+
+    void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,71 @@
+package com.bank.bank_app.ledger;
+
+import com.bank.bank_app.entity.EntryType;
+import com.bank.bank_app.money.Money;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/*
+A change made by a shard in memory that still has to reach the database.
+
+Balances are carried as changes, not as the new value: the writes of a cross-shard transfer are
+handed over together from one thread, so writes of the same account can reach the database in a
+different order than the shard made them. Adding the changes up gives the same balance in any order.
+
+EntryWrite    -> new entry, the account balance changes by +amount (DEPOSIT/TRANSFER_IN) or -amount;
+                 holdId is set only on the TRANSFER_OUT a cross-shard transfer logs when it holds the funds
+TransferWrite -> new transfer, its entries are in the same operation; except when holdId is set: then the
+                 TRANSFER_OUT was logged before by the source shard, with the same holdId
+                 (holdId is null when the whole transfer was logged at once)
+AccountWrite  -> owner set, balance changed by balanceChange
+ */
+public sealed interface LedgerWrite {
+
+    record EntryWrite(
+            Long accountId,
+            EntryType entryType,
+            Money amount,
+            Money balanceAfter,
+            LocalDateTime createdAt,
+            UUID holdId
+    ) implements LedgerWrite {
+
+        public EntryWrite(Long accountId, EntryType entryType, Money amount, Money balanceAfter, LocalDateTime createdAt) {
+            this(accountId, entryType, amount, balanceAfter, createdAt, null);
+        }
+
+        public Money balanceChange() {
+            return entryType == EntryType.DEPOSIT || entryType == EntryType.TRANSFER_IN ? amount : amount.negate();
+        }
+    }
+
+    record TransferWrite(
+            Long fromAccountId,
+            Long toAccountId,
+            Money amount,
+            LocalDateTime createdAt,
+            UUID holdId
+    ) implements LedgerWrite {
+
+        public TransferWrite(Long fromAccountId, Long toAccountId, Money amount, LocalDateTime createdAt) {
+            this(fromAccountId, toAccountId, amount, createdAt, null);
+        }
+
+        public boolean heldBefore() {
+            return holdId != null;
+        }
+    }
+
+    record AccountWrite(
+            Long accountId,
+            String owner,
+            Money balanceChange
+    ) implements LedgerWrite {
+    }
+
+    record AccountDelete(
+            Long accountId
+    ) implements LedgerWrite {
+    }
+}
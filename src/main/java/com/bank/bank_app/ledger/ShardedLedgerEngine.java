@@ -0,0 +1,241 @@
+package com.bank.bank_app.ledger;
+
+import com.bank.bank_app.dto.AccountRequestDTO;
+import com.bank.bank_app.dto.AccountResponseDT0;
+import com.bank.bank_app.entity.EntryType;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.repository.AccountRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/*
+Ledger engine that splits accounts by id across single-writer shards.
+
+- deposit/withdraw run entirely on the shard that owns the account
+- a transfer inside one shard runs as one task on that shard
+- a transfer across shards is a two-phase handoff, once the target shard has found the target account
+  (a transfer to a missing account logs nothing):
+    1. the source shard checks and holds the funds, logging the TRANSFER_OUT with its balance, time and
+       a new hold id
+    2. the target shard logs the TRANSFER_IN and the transfer (created now, with the hold id) and credits
+       the funds; if the log refused that, the source shard logs the funds coming back as a TRANSFER_IN
+       without a transfer and releases them (never once the log has the transfer, a failed durability
+       wait only surfaces the error); while funds are held the source account cannot be deleted.
+       A crash between the phases leaves the TRANSFER_OUT without a transfer, its funds are returned by hand
+- every change is appended to the LedgerLog before the shard applies it in memory, a change the
+  log refused leaves the shard untouched; the caller returns once the log has it durably
+  (right away with bank.ledger.durability=async, after the journal fsync with =journal)
+- a credit is logged before the funds can be spent, so replaying the log never drives a balance negative
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "bank.ledger.engine", havingValue = "sharded")
+public class ShardedLedgerEngine {
+
+    private final LedgerShard[] shards;
+    private final LedgerLog ledgerLog;
+
+    public ShardedLedgerEngine(AccountRepository accountRepository,
+                               LedgerLog ledgerLog,
+                               LedgerProperties properties) {
+        this.ledgerLog = ledgerLog;
+        this.shards = new LedgerShard[properties.effectiveShards()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new LedgerShard(i, accountRepository);
+        }
+        log.info("Sharded ledger engine started with {} shards", shards.length);
+    }
+
+    public AccountResponseDT0 getAccount(Long id) {
+        return await(shardFor(id).submit(shard -> shard.account(id).toResponseDTO()));
+    }
+
+    public AccountResponseDT0 updateAccount(Long id, AccountRequestDTO accountRequestDTO) {
+        return durable(shardFor(id).submit(shard -> {
+            AccountState state = shard.account(id);
+            Money change = accountRequestDTO.balance().minus(state.getBalance());
+            ledgerLog.append(List.of(new LedgerWrite.AccountWrite(id, accountRequestDTO.owner(), change)));
+            state.setOwner(accountRequestDTO.owner());
+            state.setBalance(accountRequestDTO.balance());
+            return state.toResponseDTO();
+        }));
+    }
+
+    public void deleteAccount(Long id) {
+        durable(shardFor(id).submit(shard -> {
+            AccountState state = shard.account(id);
+            // The transfer is logged by the target shard, it must not land after the delete
+            if (state.getTransfersInFlight() > 0) {
+                throw new IllegalArgumentException("Account has a transfer in progress");
+            }
+            ledgerLog.append(List.of(new LedgerWrite.AccountDelete(id)));
+            // Keep a tombstone so the account is not loaded again before the delete is persisted
+            state.setDeleted(true);
+            return null;
+        }));
+    }
+
+    public AccountResponseDT0 deposit(Long id, Money amount) {
+        return durable(shardFor(id).submit(shard -> {
+            AccountState state = shard.account(id);
+            Money balanceAfter = state.getBalance().plus(amount);
+            ledgerLog.append(List.of(entry(id, EntryType.DEPOSIT, amount, balanceAfter, LocalDateTime.now())));
+            state.credit(amount);
+            return state.toResponseDTO();
+        }));
+    }
+
+    public AccountResponseDT0 withdraw(Long id, Money amount) {
+        return durable(shardFor(id).submit(shard -> {
+            AccountState state = shard.account(id);
+            if (state.getBalance().isLessThan(amount)) {
+                throw new IllegalArgumentException("Insufficient funds in account");
+            }
+            Money balanceAfter = state.getBalance().minus(amount);
+            ledgerLog.append(List.of(entry(id, EntryType.WITHDRAW, amount, balanceAfter, LocalDateTime.now())));
+            state.debit(amount);
+            return state.toResponseDTO();
+        }));
+    }
+
+    public AccountResponseDT0 transfer(Long fromAccountId, Long toAccountId, Money amount) {
+        LedgerShard source = shardFor(fromAccountId);
+        LedgerShard target = shardFor(toAccountId);
+
+        if (source == target) {
+            return durable(source.submit(shard -> {
+                AccountState from = shard.account(fromAccountId);
+                AccountState to = shard.account(toAccountId);
+                checkFunds(from, amount);
+                LocalDateTime now = LocalDateTime.now();
+                ledgerLog.append(transferWrites(fromAccountId, from.getBalance().minus(amount),
+                        toAccountId, to.getBalance().plus(amount), amount, now));
+                from.debit(amount);
+                to.credit(amount);
+                return from.toResponseDTO();
+            }));
+        }
+
+        // Read only, no funds are held for a target that does not exist. One deleted before phase 2 gets
+        // its funds back as if the log had refused the transfer
+        await(target.submit(shard -> {
+            shard.account(toAccountId);
+            return null;
+        }));
+
+        // Phase 1: hold the funds on the source shard, its TRANSFER_OUT is logged right there so the
+        // entry has the balance and the time of the source account's sequence
+        Hold hold = await(source.submit(shard -> {
+            AccountState from = shard.account(fromAccountId);
+            checkFunds(from, amount);
+            UUID holdId = UUID.randomUUID();
+            ledgerLog.append(List.of(new LedgerWrite.EntryWrite(fromAccountId, EntryType.TRANSFER_OUT, amount,
+                    from.getBalance().minus(amount), LocalDateTime.now(), holdId)));
+            from.hold(amount);
+            return new Hold(from.toResponseDTO(), holdId);
+        }));
+
+        // Phase 2: log the transfer and credit the target shard, give the funds back only if the log
+        // did not take it; once it did, the transfer stands even if waiting for durability fails
+        try {
+            await(target.submit(shard -> {
+                AccountState to = shard.account(toAccountId);
+                LocalDateTime now = LocalDateTime.now();
+                ledgerLog.append(List.of(
+                        entry(toAccountId, EntryType.TRANSFER_IN, amount, to.getBalance().plus(amount), now),
+                        new LedgerWrite.TransferWrite(fromAccountId, toAccountId, amount, now, hold.holdId())));
+                to.credit(amount);
+                return null;
+            }));
+        } catch (RuntimeException e) {
+            giveBack(source, fromAccountId, amount, e);
+            throw e;
+        }
+        // Nothing to wait for, this only lets the source account be deleted again
+        source.submit(shard -> {
+            shard.account(fromAccountId).settle();
+            return null;
+        });
+        ledgerLog.awaitDurable();
+        return hold.account();
+    }
+
+    // The TRANSFER_OUT is logged already, the funds come back with a TRANSFER_IN of their own (without a
+    // transfer). Should the log refuse that too, the funds stay held, as the log has them.
+    private void giveBack(LedgerShard source, Long fromAccountId, Money amount, RuntimeException failure) {
+        try {
+            await(source.submit(shard -> {
+                AccountState from = shard.account(fromAccountId);
+                ledgerLog.append(List.of(entry(fromAccountId, EntryType.TRANSFER_IN, amount,
+                        from.getBalance().plus(amount), LocalDateTime.now())));
+                from.release(amount);
+                return null;
+            }));
+            ledgerLog.awaitDurable();
+        } catch (RuntimeException e) {
+            log.error("Could not give {} held for a failed transfer back to account {}", amount, fromAccountId, e);
+            failure.addSuppressed(e);
+        }
+    }
+
+    private void checkFunds(AccountState from, Money amount) {
+        if (from.getBalance().isLessThan(amount)) {
+            throw new IllegalArgumentException("Insufficient funds");
+        }
+    }
+
+    private static List<LedgerWrite> transferWrites(Long fromAccountId, Money fromBalanceAfter,
+                                                    Long toAccountId, Money toBalanceAfter,
+                                                    Money amount, LocalDateTime createdAt) {
+        return List.of(
+                entry(fromAccountId, EntryType.TRANSFER_OUT, amount, fromBalanceAfter, createdAt),
+                entry(toAccountId, EntryType.TRANSFER_IN, amount, toBalanceAfter, createdAt),
+                new LedgerWrite.TransferWrite(fromAccountId, toAccountId, amount, createdAt));
+    }
+
+    private static LedgerWrite entry(Long accountId, EntryType entryType, Money amount,
+                                     Money balanceAfter, LocalDateTime createdAt) {
+        return new LedgerWrite.EntryWrite(accountId, entryType, amount, balanceAfter, createdAt);
+    }
+
+    // Waits on the caller thread, the shard thread moves on to the next operation in the meantime
+    private <T> T durable(CompletableFuture<T> future) {
+        T result = await(future);
+        ledgerLog.awaitDurable();
+        return result;
+    }
+
+    private record Hold(AccountResponseDT0 account, UUID holdId) {
+    }
+
+    private LedgerShard shardFor(Long accountId) {
+        return shards[(int) Math.floorMod(accountId, (long) shards.length)];
+    }
+
+    // Rethrows the exception raised on the shard thread as-is
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        for (LedgerShard shard : shards) {
+            shard.shutdown();
+        }
+    }
+}
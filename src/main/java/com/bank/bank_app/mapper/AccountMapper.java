@@ -12,7 +12,7 @@ public class AccountMapper {
         return new AccountResponseDT0(
                 account.getId(),
                 account.getOwner(),
-                account.getBalance(),
+                account.getTotalBalance(),
                 account.getCreatedAt()
         );
     }
@@ -0,0 +1,116 @@
+package com.bank.bank_app.metrics;
+
+import com.bank.bank_app.service.AccountService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+Latency and SQL work of every AccountService operation.
+
+bank.account.operation            -> timer with histogram, tags operation and outcome (success/failure)
+bank.account.operation.statements -> SQL statements per call, tags operation and type (select/insert/...)
+bank.account.operation.rows       -> rows written by Hibernate per call, tag operation
+
+All meters are registered up front and the per-thread state is reused, so a call only allocates what
+Spring AOP itself needs. When one AccountService calls another (the sharded engine delegating to the
+JPA implementation) only the outer call is measured. The aspect runs outside the transaction, so the
+flush and commit at its end are part of the call.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class AccountServiceMetricsAspect {
+
+    // [0] nesting depth, [1..] SqlActivity counters when the outer call started
+    private static final ThreadLocal<long[]> STATE = ThreadLocal.withInitial(() -> new long[1 + SqlActivity.SIZE]);
+
+    private final Map<String, OperationMeters> meters = new HashMap<>();
+
+    public AccountServiceMetricsAspect(MeterRegistry registry) {
+        for (Method method : AccountService.class.getMethods()) {
+            meters.computeIfAbsent(method.getName(), operation -> new OperationMeters(registry, operation));
+        }
+    }
+
+    @Around("execution(public * com.bank.bank_app.service.AccountService+.*(..))")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        long[] state = STATE.get();
+        if (state[0]++ > 0) {
+            try {
+                return joinPoint.proceed();
+            } finally {
+                state[0]--;
+            }
+        }
+
+        long[] sql = SqlActivity.current();
+        System.arraycopy(sql, 0, state, 1, SqlActivity.SIZE);
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            Object result = joinPoint.proceed();
+            success = true;
+            return result;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            state[0]--;
+            OperationMeters operation = meters.get(joinPoint.getSignature().getName());
+            if (operation != null) {
+                operation.record(elapsed, success, sql, state);
+            }
+        }
+    }
+
+    private static final class OperationMeters {
+
+        private final Timer success;
+        private final Timer failure;
+        private final DistributionSummary[] statements = new DistributionSummary[SqlActivity.STATEMENT_TYPES.length];
+        private final DistributionSummary rowsWritten;
+
+        OperationMeters(MeterRegistry registry, String operation) {
+            success = timer(registry, operation, "success");
+            failure = timer(registry, operation, "failure");
+            for (int type = 0; type < statements.length; type++) {
+                statements[type] = DistributionSummary.builder("bank.account.operation.statements")
+                        .description("SQL statements executed by one AccountService call")
+                        .tag("operation", operation)
+                        .tag("type", SqlActivity.STATEMENT_TYPES[type])
+                        .register(registry);
+            }
+            rowsWritten = DistributionSummary.builder("bank.account.operation.rows")
+                    .description("Rows inserted, updated or deleted by Hibernate in one AccountService call")
+                    .tag("operation", operation)
+                    .register(registry);
+        }
+
+        private static Timer timer(MeterRegistry registry, String operation, String outcome) {
+            return Timer.builder("bank.account.operation")
+                    .description("Latency of AccountService operations")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+
+        void record(long elapsedNanos, boolean succeeded, long[] sql, long[] state) {
+            (succeeded ? success : failure).record(elapsedNanos, TimeUnit.NANOSECONDS);
+            for (int type = 0; type < statements.length; type++) {
+                statements[type].record(sql[type] - state[1 + type]);
+            }
+            rowsWritten.record(sql[SqlActivity.ROWS_WRITTEN] - state[1 + SqlActivity.ROWS_WRITTEN]);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.bank.bank_app.metrics;
+
+/*
+Per-thread running totals of the SQL work done through Hibernate.
+
+Counters only ever grow, callers measure an operation by taking the difference before and after it.
+Everything lives in one long[] per thread, so counting allocates nothing.
+ */
+public final class SqlActivity {
+
+    public static final int SELECT = 0;
+    public static final int INSERT = 1;
+    public static final int UPDATE = 2;
+    public static final int DELETE = 3;
+    public static final int OTHER = 4;
+    public static final int ROWS_WRITTEN = 5;
+    public static final int SIZE = 6;
+
+    static final String[] STATEMENT_TYPES = {"select", "insert", "update", "delete", "other"};
+
+    private static final ThreadLocal<long[]> COUNTERS = ThreadLocal.withInitial(() -> new long[SIZE]);
+
+    private SqlActivity() {
+    }
+
+    public static long[] current() {
+        return COUNTERS.get();
+    }
+
+    static void statement(String sql) {
+        COUNTERS.get()[typeOf(sql)]++;
+    }
+
+    static void rowWritten() {
+        COUNTERS.get()[ROWS_WRITTEN]++;
+    }
+
+    static int typeOf(String sql) {
+        int i = 0;
+        while (i < sql.length() && (Character.isWhitespace(sql.charAt(i)) || sql.charAt(i) == '(')) {
+            i++;
+        }
+        if (sql.regionMatches(true, i, "select", 0, 6) || sql.regionMatches(true, i, "with", 0, 4)) {
+            return SELECT;
+        }
+        if (sql.regionMatches(true, i, "insert", 0, 6)) {
+            return INSERT;
+        }
+        if (sql.regionMatches(true, i, "update", 0, 6)) {
+            return UPDATE;
+        }
+        if (sql.regionMatches(true, i, "delete", 0, 6)) {
+            return DELETE;
+        }
+        return OTHER;
+    }
+}
@@ -0,0 +1,65 @@
+package com.bank.bank_app.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+bank.transaction -> time from begin to commit/rollback of every database transaction, tag outcome.
+
+Spring Boot registers TransactionExecutionListener beans with the transaction manager.
+Start times are kept in a small per-thread stack so REQUIRES_NEW transactions nest correctly.
+ */
+@Component
+public class TransactionMetricsListener implements TransactionExecutionListener {
+
+    private static final int MAX_DEPTH = 8;
+
+    // [0] depth, [1..MAX_DEPTH] start times
+    private static final ThreadLocal<long[]> STARTS = ThreadLocal.withInitial(() -> new long[1 + MAX_DEPTH]);
+
+    private final Timer committed;
+    private final Timer rolledBack;
+
+    public TransactionMetricsListener(MeterRegistry registry) {
+        committed = timer(registry, "commit");
+        rolledBack = timer(registry, "rollback");
+    }
+
+    private static Timer timer(MeterRegistry registry, String outcome) {
+        return Timer.builder("bank.transaction")
+                .description("Duration of database transactions")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    @Override
+    public void afterBegin(TransactionExecution transaction, Throwable beginFailure) {
+        long[] starts = STARTS.get();
+        if (beginFailure == null && starts[0] < MAX_DEPTH) {
+            starts[(int) ++starts[0]] = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void afterCommit(TransactionExecution transaction, Throwable commitFailure) {
+        end(commitFailure == null ? committed : rolledBack);
+    }
+
+    @Override
+    public void afterRollback(TransactionExecution transaction, Throwable rollbackFailure) {
+        end(rolledBack);
+    }
+
+    private void end(Timer timer) {
+        long[] starts = STARTS.get();
+        if (starts[0] > 0) {
+            timer.record(System.nanoTime() - starts[(int) starts[0]--], TimeUnit.NANOSECONDS);
+        }
+    }
+}
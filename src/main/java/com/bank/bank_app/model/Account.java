@@ -1,16 +1,20 @@
 package com.bank.bank_app.model;
 
+import com.bank.bank_app.money.Money;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.Formula;
+import org.hibernate.annotations.SQLRestriction;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
+// A deleted account stays invisible until AccountPurgeJob has removed it
 @Entity
 @Table (name = "accounts")
+@SQLRestriction("deleted_at is null")
 @Getter
 @Setter
 @AllArgsConstructor
@@ -18,26 +22,40 @@ import java.util.List;
 @Builder
 public class Account {
     @Id
-    @GeneratedValue (strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "accounts_seq")
+    @SequenceGenerator(name = "accounts_seq", sequenceName = "accounts_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
     private String owner;
 
     @Column(nullable = false)
-    private BigDecimal balance;
+    private Money balance;
+
+    // Held in the account_buckets rows of a hot account (HotAccounts), read-only and not set on a new account
+    @Formula("(select coalesce(sum(b.balance), 0) from account_buckets b where b.account_id = id)")
+    private Money bucketBalance;
 
     @CreationTimestamp
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
-    // One account can have many entries (transactions)
-    @OneToMany(mappedBy = "account", cascade = CascadeType.ALL, orphanRemoval = true)
+    // Only set by AccountRepository.softDelete, saving a loaded account must not write it back
+    @Column(insertable = false, updatable = false)
+    private LocalDateTime deletedAt;
+
+    // One account can have many entries (transactions). Not cascaded: removing them is the database's
+    // ON DELETE CASCADE, after AccountPurgeJob has deleted them in batches, never a load of the collection
+    @OneToMany(mappedBy = "account")
     private List<Entry> entries = new ArrayList<>();
 
-    @OneToMany(mappedBy = "fromAccount", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OneToMany(mappedBy = "fromAccount")
     private List<Transfer> sentTransfers = new ArrayList<>();
 
-    @OneToMany(mappedBy = "toAccount", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OneToMany(mappedBy = "toAccount")
     private List<Transfer> receivedTransfers = new ArrayList<>();
+
+    public Money getTotalBalance() {
+        return bucketBalance == null ? balance : balance.plus(bucketBalance);
+    }
 }
@@ -1,12 +1,12 @@
 package com.bank.bank_app.model;
 
 import com.bank.bank_app.entity.EntryType;
+import com.bank.bank_app.money.Money;
 import jakarta.persistence.*;
 import lombok.*;
-import org.hibernate.annotations.CreationTimestamp;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 @Entity
 @Table(name = "entries")
@@ -18,24 +18,37 @@ import java.time.LocalDateTime;
 public class Entry {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "entries_seq")
+    @SequenceGenerator(name = "entries_seq", sequenceName = "entries_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
-    private BigDecimal amount;
+    private Money amount;
 
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private EntryType entryType; // DEPOSIT, WITHDRAW, TRANSFER_IN, TRANSFER_OUT
 
-    @CreationTimestamp
+    // Set by the writer, the entries of a transfer and the transfer itself share one createdAt; the TRANSFER_OUT
+    // of a cross-shard transfer is the exception, it has the moment the funds were held, just before
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
     @Column(nullable = false)
-    private BigDecimal balanceAfter;
+    private Money balanceAfter;
 
     @ManyToOne
     @JoinColumn(name = "account_id", nullable = false)
     private Account account;
+
+    private Long transferId; // only for TRANSFER_IN/TRANSFER_OUT, null for held funds given back
+
+    private UUID holdId; // only for the TRANSFER_OUT of a cross-shard transfer, its transfer has the same one
+
+    @PrePersist
+    void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+    }
 }
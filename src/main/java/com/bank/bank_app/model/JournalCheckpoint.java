@@ -0,0 +1,20 @@
+package com.bank.bank_app.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+// Single row, see JournalLedgerLog
+@Entity
+@Table(name = "ledger_journal_checkpoint")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class JournalCheckpoint {
+
+    @Id
+    private Integer id;
+
+    @Column(nullable = false)
+    private Long appliedLsn;
+}
@@ -1,10 +1,9 @@
 package com.bank.bank_app.model;
 
+import com.bank.bank_app.money.Money;
 import jakarta.persistence.*;
 import lombok.*;
-import org.hibernate.annotations.CreationTimestamp;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
@@ -16,13 +15,14 @@ import java.time.LocalDateTime;
 @Builder
 public class Transfer {
     @Id
-    @GeneratedValue (strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transfers_seq")
+    @SequenceGenerator(name = "transfers_seq", sequenceName = "transfers_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
-    private BigDecimal amount;
+    private Money amount;
 
-    @CreationTimestamp
+    // Set by the writer, the entries of a transfer and the transfer itself share one createdAt
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
@@ -34,4 +34,10 @@ public class Transfer {
     @JoinColumn(name = "to_account_id", nullable = false)
     private Account toAccount;
 
+    @PrePersist
+    void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+    }
 }
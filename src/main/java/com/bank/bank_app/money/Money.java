@@ -0,0 +1,132 @@
+package com.bank.bank_app.money;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/*
+An amount of money as a long number of cents, the scale of the DECIMAL(19, 2) columns.
+
+Arithmetic is exact and overflow-checked (ArithmeticException, like Math.addExact), comparing and adding two
+amounts allocates no more than the result. BigDecimal is only made at the edges:
+of(BigDecimal)  -> a column, JSON number or request parameter; more than 2 decimal places or more than a long of
+                   cents is an IllegalArgumentException (400), trailing zeros beyond 2 places are fine
+toBigDecimal()  -> a JDBC parameter of a native statement (MoneyConverter does it for the entity columns)
+
+JSON is a plain number with 2 decimals (1000.00), the text of toString(), written without a BigDecimal or String.
+ */
+@JsonSerialize(using = Money.JsonWriter.class)
+public record Money(long cents) implements Comparable<Money> {
+
+    public static final Money ZERO = new Money(0);
+
+    private static final int SCALE = 2;
+    // -92233720368547758.08
+    private static final int MAX_LENGTH = 21;
+
+    public static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public static Money of(BigDecimal amount) {
+        if (amount == null) {
+            return null;
+        }
+        try {
+            return ofCents(amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact());
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount must have at most " + SCALE
+                    + " decimal places and fit the balance range: " + amount.toPlainString());
+        }
+    }
+
+    // Also what Spring uses to bind a Money request parameter; NumberFormatException is an IllegalArgumentException
+    public static Money of(String amount) {
+        return amount == null || amount.isBlank() ? null : of(new BigDecimal(amount.trim()));
+    }
+
+    public Money plus(Money other) {
+        return ofCents(Math.addExact(cents, other.cents));
+    }
+
+    public Money minus(Money other) {
+        return ofCents(Math.subtractExact(cents, other.cents));
+    }
+
+    public Money negate() {
+        return ofCents(Math.negateExact(cents));
+    }
+
+    public boolean isZero() {
+        return cents == 0;
+    }
+
+    public boolean isPositive() {
+        return cents > 0;
+    }
+
+    public boolean isNegative() {
+        return cents < 0;
+    }
+
+    public boolean isLessThan(Money other) {
+        return cents < other.cents;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+
+    // 1000.00, -0.05: what BigDecimal.toPlainString() gives for the same amount at scale 2
+    @Override
+    public String toString() {
+        char[] text = new char[MAX_LENGTH];
+        int start = format(text);
+        return new String(text, start, MAX_LENGTH - start);
+    }
+
+    // Right-aligned into text, returns where it starts
+    private int format(char[] text) {
+        int position = text.length;
+        long rest = cents;
+        for (int i = 0; i < SCALE; i++) {
+            text[--position] = (char) ('0' + Math.abs(rest % 10));
+            rest /= 10;
+        }
+        text[--position] = '.';
+        do {
+            text[--position] = (char) ('0' + Math.abs(rest % 10));
+            rest /= 10;
+        } while (rest != 0);
+        if (cents < 0) {
+            text[--position] = '-';
+        }
+        return position;
+    }
+
+    static final class JsonWriter extends StdSerializer<Money> {
+
+        JsonWriter() {
+            super(Money.class);
+        }
+
+        @Override
+        public void serialize(Money value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            char[] text = new char[MAX_LENGTH];
+            int start = value.format(text);
+            generator.writeNumber(text, start, MAX_LENGTH - start);
+        }
+    }
+}
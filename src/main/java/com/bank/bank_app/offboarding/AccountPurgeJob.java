@@ -0,0 +1,171 @@
+package com.bank.bank_app.offboarding;
+
+import com.bank.bank_app.dto.AccountPurgeDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Removes soft-deleted accounts (accounts.deleted_at, V14) together with everything that belongs to them.
+
+Deleting an account only sets deleted_at, nothing is loaded and the account is gone for every query right away.
+This job then takes the deleted accounts oldest first and for each one deletes
+entries    -> batchSize rows per statement, their ids found through idx_entries_account_created_at_id
+transfers  -> batchSize rows per statement, sent ones then received ones, through the from/to account indexes
+account    -> the row itself, its ON DELETE CASCADE takes what is left: buckets, snapshots, daily rollups
+Every statement is a transaction of its own, none holds more than batchSize row locks or a row in the heap.
+
+Every step is idempotent, several instances can run it; a purge that stops half-way goes on with the next run.
+
+bank.accounts.purge.pending      -> deleted accounts not purged yet, as of the last run
+bank.accounts.purge.rows{table}  -> entries and transfers deleted
+bank.accounts.purged             -> accounts removed
+ */
+@Slf4j
+@Component
+public class AccountPurgeJob {
+
+    private static final int ACCOUNTS_PER_QUERY = 100;
+
+    // By the primary key (id, created_at): every row of a batch is one lookup in the partition its created_at
+    // falls in, a filter on the account as well would read all of its remaining rows again on every batch
+    private static final String DELETE_ENTRIES = """
+            DELETE FROM entries WHERE (id, created_at) IN (
+                SELECT id, created_at FROM entries WHERE account_id = ? LIMIT ?)""";
+
+    private static final String DELETE_SENT_TRANSFERS = """
+            DELETE FROM transfers WHERE (id, created_at) IN (
+                SELECT id, created_at FROM transfers WHERE from_account_id = ? LIMIT ?)""";
+
+    private static final String DELETE_RECEIVED_TRANSFERS = """
+            DELETE FROM transfers WHERE (id, created_at) IN (
+                SELECT id, created_at FROM transfers WHERE to_account_id = ? LIMIT ?)""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AccountPurgeProperties properties;
+    private final Counter entries;
+    private final Counter transfers;
+    private final Counter accounts;
+    private final AtomicLong pending = new AtomicLong();
+    private volatile Long purging;
+    private volatile LocalDateTime lastRunAt;
+    private volatile boolean stopped;
+
+    public AccountPurgeJob(JdbcTemplate jdbcTemplate, AccountPurgeProperties properties, MeterRegistry registry) {
+        if (properties.batchSize() < 1) {
+            throw new IllegalArgumentException("bank.accounts.purge.batch-size must be positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.entries = rows(registry, "entries");
+        this.transfers = rows(registry, "transfers");
+        this.accounts = Counter.builder("bank.accounts.purged")
+                .description("Deleted accounts removed from the database")
+                .register(registry);
+        Gauge.builder("bank.accounts.purge.pending", pending, AtomicLong::get)
+                .description("Deleted accounts not purged yet, as of the last purge run")
+                .register(registry);
+    }
+
+    private static Counter rows(MeterRegistry registry, String table) {
+        return Counter.builder("bank.accounts.purge.rows")
+                .description("Rows of deleted accounts removed")
+                .tag("table", table)
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${bank.accounts.purge.interval:1m}")
+    public void run() {
+        if (!properties.enabled()) {
+            return;
+        }
+        try {
+            purge();
+        } catch (RuntimeException e) {
+            log.warn("Account purge failed, trying again in {}", properties.interval(), e);
+        }
+    }
+
+    // Returns the number of accounts removed
+    public int purge() {
+        int purged = 0;
+        try {
+            List<Long> ids = deletedAccounts();
+            while (!ids.isEmpty() && !stopped) {
+                for (Long id : ids) {
+                    if (stopped) {
+                        break;
+                    }
+                    purging = id;
+                    if (purgeAccount(id)) {
+                        purged++;
+                    }
+                }
+                ids = deletedAccounts();
+            }
+        } finally {
+            purging = null;
+            lastRunAt = LocalDateTime.now();
+        }
+        if (purged > 0) {
+            log.info("Purged {} deleted accounts", purged);
+        }
+        return purged;
+    }
+
+    // False when stopped before the account was removed
+    boolean purgeAccount(Long id) {
+        long deletedEntries = deleteInBatches(DELETE_ENTRIES, id);
+        long deletedTransfers = deleteInBatches(DELETE_SENT_TRANSFERS, id) + deleteInBatches(DELETE_RECEIVED_TRANSFERS, id);
+        entries.increment(deletedEntries);
+        transfers.increment(deletedTransfers);
+        // Rows left behind would all go in the one cascading delete
+        if (stopped) {
+            return false;
+        }
+        jdbcTemplate.update("DELETE FROM accounts WHERE id = ? AND deleted_at IS NOT NULL", id);
+        accounts.increment();
+        log.debug("Purged account {}: {} entries, {} transfers", id, deletedEntries, deletedTransfers);
+        return true;
+    }
+
+    private long deleteInBatches(String sql, Long accountId) {
+        long deleted = 0;
+        int batch;
+        do {
+            batch = jdbcTemplate.update(sql, accountId, properties.batchSize());
+            deleted += batch;
+        } while (batch == properties.batchSize() && !stopped);
+        return deleted;
+    }
+
+    private List<Long> deletedAccounts() {
+        pending.set(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM accounts WHERE deleted_at IS NOT NULL", Long.class));
+        return jdbcTemplate.queryForList(
+                "SELECT id FROM accounts WHERE deleted_at IS NOT NULL ORDER BY deleted_at, id LIMIT ?",
+                Long.class, ACCOUNTS_PER_QUERY);
+    }
+
+    public AccountPurgeDTO status() {
+        Long pendingNow = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM accounts WHERE deleted_at IS NOT NULL", Long.class);
+        return new AccountPurgeDTO(pendingNow != null ? pendingNow : 0, purging, (long) accounts.count(),
+                (long) entries.count(), (long) transfers.count(), lastRunAt);
+    }
+
+    // A batch that is running completes, the account is finished by the next run after the restart
+    @PreDestroy
+    void stop() {
+        stopped = true;
+    }
+}
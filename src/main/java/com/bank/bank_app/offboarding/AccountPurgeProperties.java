@@ -0,0 +1,19 @@
+package com.bank.bank_app.offboarding;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/*
+enabled    -> false leaves deleted accounts in place (still invisible), they are purged once it is back on
+interval   -> time between two purge runs
+batchSize  -> entries or transfers deleted per statement, the most rows one purge transaction locks
+ */
+@ConfigurationProperties(prefix = "bank.accounts.purge")
+public record AccountPurgeProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("1m") Duration interval,
+        @DefaultValue("5000") int batchSize
+) {
+}
@@ -0,0 +1,17 @@
+package com.bank.bank_app.onboarding;
+
+import org.springframework.util.MimeTypeUtils;
+
+public enum AccountImportFormat {
+    CSV,    // owner,balance per line, an optional header line, fields may be quoted
+    NDJSON; // {"owner": ..., "balance": ...} per line
+
+    public static AccountImportFormat fromContentType(String contentType) {
+        String type = contentType != null ? MimeTypeUtils.parseMimeType(contentType).getSubtype() : "";
+        return switch (type) {
+            case "csv" -> CSV;
+            case "x-ndjson" -> NDJSON;
+            default -> throw new IllegalArgumentException("Unsupported import content type: " + contentType);
+        };
+    }
+}
@@ -0,0 +1,20 @@
+package com.bank.bank_app.onboarding;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/*
+chunkSize          -> lines of the body copied and committed per transaction, what a resume can lose
+maxLineLength      -> longer lines are rejected without being held in memory
+maxReported        -> rejected rows listed in the response, the rest are only counted
+copyBuffer         -> bytes buffered before they are sent to Postgres
+ */
+@ConfigurationProperties(prefix = "bank.accounts.import")
+public record AccountImportProperties(
+        @DefaultValue("10000") int chunkSize,
+        @DefaultValue("4096") int maxLineLength,
+        @DefaultValue("1000") int maxReported,
+        @DefaultValue("64KB") DataSize copyBuffer
+) {
+}
@@ -0,0 +1,153 @@
+package com.bank.bank_app.onboarding;
+
+import com.bank.bank_app.money.Money;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+
+/*
+One line of an import body -> one row of COPY text format ("owner<TAB>balance<LF>"), validated the way
+an account has to look in the table. Invalid lines throw IllegalArgumentException with the reason.
+ */
+final class AccountImportRows {
+
+    static final int MAX_OWNER_LENGTH = 255;
+
+    private final JsonFactory jsonFactory;
+
+    AccountImportRows(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    static boolean isCsvHeader(String line) {
+        return line.replace(" ", "").equalsIgnoreCase("owner,balance");
+    }
+
+    void appendCopyRow(String line, AccountImportFormat format, StringBuilder out) {
+        switch (format) {
+            case CSV -> appendCsv(line, out);
+            case NDJSON -> appendJson(line, out);
+        }
+    }
+
+    private void appendCsv(String line, StringBuilder out) {
+        StringBuilder owner = new StringBuilder();
+        int end = readCsvField(line, 0, owner);
+        if (end >= line.length() || line.charAt(end) != ',') {
+            throw new IllegalArgumentException("Expected 2 fields: owner,balance");
+        }
+        StringBuilder balance = new StringBuilder();
+        if (readCsvField(line, end + 1, balance) != line.length()) {
+            throw new IllegalArgumentException("Expected 2 fields: owner,balance");
+        }
+        append(owner.toString(), parseBalance(balance.toString().strip()), out);
+    }
+
+    // Returns the index after the field, a quoted field may contain commas and "" for a quote
+    private static int readCsvField(String line, int start, StringBuilder field) {
+        if (start < line.length() && line.charAt(start) == '"') {
+            int i = start + 1;
+            while (i < line.length()) {
+                char c = line.charAt(i++);
+                if (c != '"') {
+                    field.append(c);
+                } else if (i < line.length() && line.charAt(i) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        int comma = line.indexOf(',', start);
+        int end = comma < 0 ? line.length() : comma;
+        field.append(line, start, end);
+        return end;
+    }
+
+    private void appendJson(String line, StringBuilder out) {
+        String owner = null;
+        BigDecimal balance = null;
+        try (JsonParser parser = jsonFactory.createParser(line)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Expected a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "owner" -> owner = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    case "balance" -> balance = switch (value) {
+                        case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> parser.getDecimalValue();
+                        case VALUE_STRING -> parseBalance(parser.getText());
+                        default -> null;
+                    };
+                    default -> parser.skipChildren();
+                }
+            }
+            if (parser.nextToken() != null) {
+                throw new IllegalArgumentException("Unexpected content after the JSON object");
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed JSON: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        append(owner, balance, out);
+    }
+
+    private static BigDecimal parseBalance(String balance) {
+        if (balance.isEmpty()) {
+            return null;
+        }
+        try {
+            return new BigDecimal(balance);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Balance is not a number: " + balance);
+        }
+    }
+
+    private static void append(String owner, BigDecimal balance, StringBuilder out) {
+        if (owner == null || owner.isBlank()) {
+            throw new IllegalArgumentException("Owner is required");
+        }
+        if (owner.length() > MAX_OWNER_LENGTH) {
+            throw new IllegalArgumentException("Owner is longer than " + MAX_OWNER_LENGTH + " characters");
+        }
+        if (balance == null) {
+            throw new IllegalArgumentException("Balance is required");
+        }
+        if (balance.signum() < 0) {
+            throw new IllegalArgumentException("Balance must not be negative");
+        }
+        if (balance.stripTrailingZeros().scale() > 2) {
+            throw new IllegalArgumentException("Balance has more than 2 decimals");
+        }
+        // The range of Money, a little less than the 17 integer digits of the column
+        Money amount;
+        try {
+            amount = Money.of(balance);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Balance is too large");
+        }
+
+        // COPY text format: backslash escapes for the characters that delimit columns and rows
+        for (int i = 0; i < owner.length(); i++) {
+            char c = owner.charAt(i);
+            switch (c) {
+                case '\\' -> out.append("\\\\");
+                case '\t' -> out.append("\\t");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                default -> out.append(c);
+            }
+        }
+        out.append('\t').append(amount).append('\n');
+    }
+}
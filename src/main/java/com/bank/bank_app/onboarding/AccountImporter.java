@@ -0,0 +1,276 @@
+package com.bank.bank_app.onboarding;
+
+import com.bank.bank_app.dto.AccountImportResultDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/*
+Bulk account import: the request body is read line by line and written straight into a COPY of the
+accounts table, nothing but the current line and the copy buffer is held in memory.
+
+Every chunkSize lines the COPY is ended and committed together with the import's progress row
+(account_imports). When a chunk fails - a broken connection, a database error - only that chunk is rolled
+back; the response (if the client is still there) says where the import stopped, and sending the same
+body with the same importId again skips the committed lines instead of creating their accounts twice.
+
+Invalid lines are reported and skipped, they never fail the chunk.
+ */
+@Slf4j
+@Component
+public class AccountImporter {
+
+    private static final String COPY = "COPY accounts (id, owner, balance) FROM STDIN";
+    // The allocationSize of Account's sequence: every nextval owns the ids (value - 49 .. value], except the
+    // sequence's first value 1, which Hibernate's pooled optimizer treats as the start of the ids up to the next nextval
+    private static final int ID_BLOCK = 50;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AccountImportProperties properties;
+    private final AccountImportRows rows;
+    private final Counter imported;
+    private final Counter rejected;
+
+    public AccountImporter(DataSource dataSource,
+                           JdbcTemplate jdbcTemplate,
+                           PlatformTransactionManager transactionManager,
+                           AccountImportProperties properties,
+                           ObjectMapper objectMapper,
+                           MeterRegistry registry) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        this.rows = new AccountImportRows(objectMapper.getFactory());
+        this.imported = Counter.builder("bank.accounts.imported")
+                .description("Accounts created by bulk imports")
+                .register(registry);
+        this.rejected = Counter.builder("bank.accounts.import.rejected")
+                .description("Bulk import rows rejected by validation")
+                .register(registry);
+    }
+
+    public AccountImportResultDTO importAccounts(String importId, AccountImportFormat format, InputStream body) {
+        String id = importId != null ? importId : UUID.randomUUID().toString();
+        if (id.isBlank() || id.length() > 64) {
+            throw new IllegalArgumentException("Import id must have 1 to 64 characters");
+        }
+        jdbcTemplate.update("""
+                insert into account_imports (import_id, lines_committed, accounts_created, rows_rejected)
+                values (?, 0, 0, 0) on conflict do nothing""", id);
+        Long committed = jdbcTemplate.queryForObject(
+                "select lines_committed from account_imports where import_id = ?", Long.class, id);
+
+        Progress progress = new Progress(committed != null ? committed : 0);
+        LineReader reader = new LineReader(new BufferedReader(
+                new InputStreamReader(body, StandardCharsets.UTF_8), 64 * 1024), properties.maxLineLength());
+        try {
+            for (long line = 0; line < progress.committedLines; line++) {
+                if (reader.next() == null) {
+                    return progress.result(id, true, null);
+                }
+            }
+            while (!progress.endOfBody) {
+                transactionTemplate.executeWithoutResult(status -> copyChunk(id, format, reader, progress));
+            }
+            return progress.result(id, true, null);
+        } catch (RuntimeException e) {
+            log.warn("Import {} stopped after line {}", id, progress.committedLines, e);
+            return progress.result(id, false, e.getMessage());
+        } finally {
+            imported.increment(progress.accountsCreated);
+            rejected.increment(progress.rejectedCount);
+        }
+    }
+
+    private void copyChunk(String id, AccountImportFormat format, LineReader reader, Progress progress) {
+        long line = progress.committedLines;
+        long chunkEnd = line + properties.chunkSize();
+        long rejectedInChunk = 0;
+        List<AccountImportResultDTO.RejectedRow> reported = new ArrayList<>();
+        StringBuilder row = new StringBuilder(128);
+        long created;
+
+        // Ids are taken the way Hibernate's pooled optimizer takes them, a column default would burn a block per row
+        List<Long> blocks = new ArrayList<>(jdbcTemplate.queryForList(
+                "select nextval('accounts_id_seq') from generate_series(1, ?)",
+                Long.class, (properties.chunkSize() + ID_BLOCK - 1) / ID_BLOCK));
+        // A fresh sequence hands out 1 first, it tops no block of positive ids: dropped and one more block drawn
+        if (blocks.removeIf(value -> value < ID_BLOCK)) {
+            blocks.add(jdbcTemplate.queryForObject("select nextval('accounts_id_seq')", Long.class));
+        }
+        int block = 0;
+        long nextId = 0;
+        int idsLeft = 0;
+
+        PGCopyOutputStream copy = null;
+        try {
+            PGConnection connection = DataSourceUtils.getConnection(dataSource).unwrap(PGConnection.class);
+            copy = new PGCopyOutputStream(connection, COPY, (int) properties.copyBuffer().toBytes());
+            Writer writer = new OutputStreamWriter(copy, StandardCharsets.UTF_8);
+            while (line < chunkEnd) {
+                String text = reader.next();
+                if (text == null) {
+                    progress.endOfBody = true;
+                    break;
+                }
+                line++;
+                boolean skipped = text != LineReader.TOO_LONG && (text.isBlank()
+                        || line == 1 && format == AccountImportFormat.CSV && AccountImportRows.isCsvHeader(text));
+                if (skipped) {
+                    continue;
+                }
+                row.setLength(0);
+                try {
+                    if (text == LineReader.TOO_LONG) {
+                        throw new IllegalArgumentException("Line is longer than " + properties.maxLineLength() + " characters");
+                    }
+                    rows.appendCopyRow(text, format, row);
+                    if (idsLeft == 0) {
+                        nextId = blocks.get(block++) - ID_BLOCK + 1;
+                        idsLeft = ID_BLOCK;
+                    }
+                    writer.append(Long.toString(nextId++)).append('\t').append(row);
+                    idsLeft--;
+                } catch (IllegalArgumentException e) {
+                    rejectedInChunk++;
+                    if (progress.reported() + reported.size() < properties.maxReported()) {
+                        reported.add(new AccountImportResultDTO.RejectedRow(line, e.getMessage()));
+                    }
+                }
+            }
+            writer.flush();
+            created = copy.endCopy();
+        } catch (IOException e) {
+            cancel(copy);
+            throw new UncheckedIOException(e);
+        } catch (SQLException e) {
+            cancel(copy);
+            throw new IllegalStateException("COPY into accounts failed: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            cancel(copy);
+            throw e;
+        }
+
+        // Guards against the same import running twice at once, the other one moved the progress
+        int advanced = jdbcTemplate.update("""
+                update account_imports
+                set lines_committed = ?, accounts_created = accounts_created + ?, rows_rejected = rows_rejected + ?,
+                    updated_at = now()
+                where import_id = ? and lines_committed = ?""",
+                line, created, rejectedInChunk, id, progress.committedLines);
+        if (advanced != 1) {
+            throw new IllegalStateException("Import " + id + " is running in another request");
+        }
+
+        // Only once the chunk is part of the transaction, a rolled back chunk reports nothing
+        progress.chunkCommitted(line, created, rejectedInChunk, reported);
+    }
+
+    // The connection cannot roll back while it is still in COPY mode
+    private static void cancel(PGCopyOutputStream copy) {
+        if (copy != null && copy.isActive()) {
+            try {
+                copy.cancelCopy();
+            } catch (SQLException e) {
+                log.debug("Cancelling COPY failed", e);
+            }
+        }
+    }
+
+    private static final class Progress {
+
+        long committedLines;
+        long accountsCreated;
+        long rejectedCount;
+        boolean endOfBody;
+        final List<AccountImportResultDTO.RejectedRow> rejected = new ArrayList<>();
+
+        Progress(long committedLines) {
+            this.committedLines = committedLines;
+        }
+
+        int reported() {
+            return rejected.size();
+        }
+
+        void chunkCommitted(long line, long created, long rejectedInChunk, List<AccountImportResultDTO.RejectedRow> reported) {
+            committedLines = line;
+            accountsCreated += created;
+            rejectedCount += rejectedInChunk;
+            rejected.addAll(reported);
+        }
+
+        AccountImportResultDTO result(String id, boolean completed, String error) {
+            return new AccountImportResultDTO(id, completed, committedLines, accountsCreated, rejectedCount,
+                    List.copyOf(rejected), error);
+        }
+    }
+
+    // Lines without their terminator, one longer than maxLength is skipped and returned as TOO_LONG
+    private static final class LineReader {
+
+        @SuppressWarnings("StringOperationCanBeSimplified")
+        static final String TOO_LONG = new String("");
+
+        private final Reader reader;
+        private final int maxLength;
+        private final StringBuilder line = new StringBuilder(256);
+
+        LineReader(Reader reader, int maxLength) {
+            this.reader = reader;
+            this.maxLength = maxLength;
+        }
+
+        String next() {
+            try {
+                line.setLength(0);
+                boolean tooLong = false;
+                int c = reader.read();
+                if (c < 0) {
+                    return null;
+                }
+                while (c >= 0 && c != '\n') {
+                    if (line.length() < maxLength) {
+                        line.append((char) c);
+                    } else {
+                        tooLong = true;
+                    }
+                    c = reader.read();
+                }
+                if (tooLong) {
+                    return TOO_LONG;
+                }
+                int length = line.length();
+                return length > 0 && line.charAt(length - 1) == '\r' ? line.substring(0, length - 1) : line.toString();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Request body could not be read", e);
+            }
+        }
+    }
+}
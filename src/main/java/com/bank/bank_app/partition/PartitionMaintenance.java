@@ -0,0 +1,112 @@
+package com.bank.bank_app.partition;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+Monthly partitions of entries and transfers (V9), named <table>_pYYYYMM.
+
+create  -> the current month and monthsAhead after it, so inserts never fall into <table>_default
+detach  -> months older than retainMonths, moved to the archive schema where they can be dumped or dropped
+
+Detaching needs an ACCESS EXCLUSIVE lock on the parent (CONCURRENTLY is not allowed next to a default
+partition), it gives up after a short lock timeout instead of queueing every query behind it and is tried
+again on the next check. Every step is idempotent, several instances can run it.
+ */
+@Slf4j
+@Component
+public class PartitionMaintenance {
+
+    static final List<String> TABLES = List.of("entries", "transfers");
+
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PartitionProperties properties;
+
+    public PartitionMaintenance(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                PartitionProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+    }
+
+    @Scheduled(fixedDelayString = "${bank.partitions.check-interval:6h}")
+    public void run() {
+        if (properties.enabled()) {
+            maintain(YearMonth.now());
+        }
+    }
+
+    public void maintain(YearMonth current) {
+        for (String table : TABLES) {
+            for (int ahead = 0; ahead <= properties.monthsAhead(); ahead++) {
+                createPartition(table, current.plusMonths(ahead));
+            }
+            if (properties.retainMonths() > 0) {
+                YearMonth oldestKept = current.minusMonths(properties.retainMonths());
+                partitions(table).stream()
+                        .filter(month -> month.isBefore(oldestKept))
+                        .forEach(month -> detachPartition(table, month));
+            }
+            Boolean misplaced = jdbcTemplate.queryForObject("select exists (select 1 from " + table + "_default)", Boolean.class);
+            if (Boolean.TRUE.equals(misplaced)) {
+                log.warn("{}_default holds rows outside every monthly partition", table);
+            }
+        }
+    }
+
+    public void createPartition(String table, YearMonth month) {
+        try {
+            jdbcTemplate.queryForList("select create_month_partition(?, ?)", table, month.atDay(1));
+        } catch (DataAccessException e) {
+            // Rows of that month already in the default partition, they have to be moved by hand first
+            log.error("Failed to create partition {} of {}", partitionName(table, month), table, e);
+        }
+    }
+
+    // Monthly partitions currently attached to table, oldest first
+    public List<YearMonth> partitions(String table) {
+        Pattern name = Pattern.compile(Pattern.quote(table) + "_p(\\d{6})");
+        return jdbcTemplate.queryForList("""
+                        select c.relname from pg_inherits i join pg_class c on c.oid = i.inhrelid
+                        where i.inhparent = ?::regclass
+                        order by c.relname""", String.class, table)
+                .stream()
+                .map(name::matcher)
+                .filter(Matcher::matches)
+                .map(matcher -> YearMonth.parse(matcher.group(1), MONTH))
+                .toList();
+    }
+
+    private void detachPartition(String table, YearMonth month) {
+        String partition = partitionName(table, month);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.execute("set local lock_timeout = '5s'");
+                jdbcTemplate.execute("alter table " + table + " detach partition " + partition);
+                jdbcTemplate.execute("alter table " + partition + " set schema archive");
+            });
+            log.info("Detached {} into the archive schema", partition);
+        } catch (DataAccessException e) {
+            log.warn("Failed to detach {}, trying again on the next check", partition, e);
+        }
+    }
+
+    static String partitionName(String table, YearMonth month) {
+        return table + "_p" + MONTH.format(month);
+    }
+}
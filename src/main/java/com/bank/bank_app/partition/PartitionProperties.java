@@ -0,0 +1,22 @@
+package com.bank.bank_app.partition;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/*
+enabled        -> false leaves the partitions alone, months not created ahead end up in the default partition
+monthsAhead    -> months after the current one that always have a partition
+retainMonths   -> full months kept before the current one, older partitions are detached into the archive
+                  schema. 0 keeps every month (as-of balances need the entries back to their snapshot)
+checkInterval  -> how often partitions are checked, the first check runs at startup
+ */
+@ConfigurationProperties(prefix = "bank.partitions")
+public record PartitionProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("3") int monthsAhead,
+        @DefaultValue("0") int retainMonths,
+        @DefaultValue("6h") Duration checkInterval
+) {
+}
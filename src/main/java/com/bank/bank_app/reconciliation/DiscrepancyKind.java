@@ -0,0 +1,8 @@
+package com.bank.bank_app.reconciliation;
+
+public enum DiscrepancyKind {
+    // accounts.balance (with its buckets) is not what the account's entries add up to
+    BALANCE,
+    // an entry's balance_after is not the one before it plus its amount
+    CHAIN
+}
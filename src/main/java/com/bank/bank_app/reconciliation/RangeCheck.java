@@ -0,0 +1,88 @@
+package com.bank.bank_app.reconciliation;
+
+import com.bank.bank_app.dto.DiscrepancyDTO;
+import com.bank.bank_app.money.Money;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Checks the accounts of one range against their entries, fed one entry at a time in (account, created_at, id)
+order, in cents. Nothing but the account being checked is held, whatever the number of entries.
+
+An opening balance (or entries of a detached partition) has no entry, the first entry left anchors the
+account: its balance_after less its own amount is where the entries start from.
+balance -> opening + every amount must be accounts.balance plus the buckets
+chain   -> every further balance_after must be the one before plus the entry's amount; checking goes on
+           from the balance_after found, and at most MAX_CHAIN_BREAKS are reported per account.
+           Not checked for a hot account: concurrent credits to its buckets do not see each other
+An account without entries has nothing to be checked against.
+ */
+final class RangeCheck {
+
+    static final int MAX_CHAIN_BREAKS = 10;
+
+    record AccountRow(long id, long balance, boolean hot) {
+    }
+
+    record Result(int accounts, long entries, List<DiscrepancyDTO> discrepancies) {
+    }
+
+    private final List<AccountRow> accounts;
+    private final List<DiscrepancyDTO> discrepancies = new ArrayList<>();
+    private int next;
+    private AccountRow account;
+    private boolean anchored;
+    private long opening;
+    private long sum;
+    private long balanceAfter;
+    private int chainBreaks;
+    private long entries;
+
+    // accounts in id order
+    RangeCheck(List<AccountRow> accounts) {
+        this.accounts = accounts;
+    }
+
+    void entry(long accountId, long entryId, long change, long entryBalanceAfter) {
+        entries++;
+        if (account == null || account.id() != accountId) {
+            finishAccount();
+            // Entries of an account that is not in the range (deleted, waiting to be purged) are skipped
+            while (next < accounts.size() && accounts.get(next).id() < accountId) {
+                next++;
+            }
+            if (next == accounts.size() || accounts.get(next).id() != accountId) {
+                return;
+            }
+            account = accounts.get(next++);
+        }
+        if (!anchored) {
+            anchored = true;
+            opening = entryBalanceAfter - change;
+        } else if (!account.hot() && entryBalanceAfter != balanceAfter + change && chainBreaks++ < MAX_CHAIN_BREAKS) {
+            discrepancies.add(discrepancy(DiscrepancyKind.CHAIN, entryId, balanceAfter + change, entryBalanceAfter));
+        }
+        sum += change;
+        balanceAfter = entryBalanceAfter;
+    }
+
+    Result finish() {
+        finishAccount();
+        return new Result(accounts.size(), entries, discrepancies);
+    }
+
+    private void finishAccount() {
+        if (account != null && anchored && opening + sum != account.balance()) {
+            discrepancies.add(discrepancy(DiscrepancyKind.BALANCE, null, opening + sum, account.balance()));
+        }
+        account = null;
+        anchored = false;
+        sum = 0;
+        chainBreaks = 0;
+    }
+
+    private DiscrepancyDTO discrepancy(DiscrepancyKind kind, Long entryId, long expected, long actual) {
+        return new DiscrepancyDTO(null, account.id(), kind, entryId, Money.ofCents(expected), Money.ofCents(actual));
+    }
+}
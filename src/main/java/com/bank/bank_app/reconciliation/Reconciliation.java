@@ -0,0 +1,319 @@
+package com.bank.bank_app.reconciliation;
+
+import com.bank.bank_app.dto.DiscrepancyDTO;
+import com.bank.bank_app.dto.ReconciliationDTO;
+import com.bank.bank_app.money.Money;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+Proves every account's balance against its entries (RangeCheck), nightly and on POST /api/admin/reconciliation.
+
+A run cuts the account ids up to the highest one at its start into ranges of rangeSize ids, aligned to
+multiples of it (reconciliation_runs, V16), and checks them on a fork-join pool of `threads` workers: the
+ranges are split in halves until one range is left, a worker that is done with its half takes work from
+the others, so a range of accounts with millions of entries does not leave the rest of the pool idle.
+
+check  -> a range that is already in reconciliation_ranges (an earlier attempt, another instance) is
+          skipped, else ReconciliationReader reads it from one snapshot
+record -> its row in reconciliation_ranges and its discrepancies in one transaction; when another
+          instance recorded the range in the meantime nothing is written, the range counts once
+finish -> the run is finished once all of its ranges are recorded
+
+There is at most one unfinished run. Starting (the schedule, the endpoint, another instance) while one is
+unfinished joins it, so a run that stopped goes on with its missing ranges; a failed range is tried again
+by the next start. Accounts created after the run started are checked by the next one.
+
+bank.reconciliation.ranges{result}        -> ranges checked, skipped as already done, or failed
+bank.reconciliation.range                 -> time to check one range
+bank.reconciliation.discrepancies{kind}   -> discrepancies recorded
+ */
+@Slf4j
+@Component
+public class Reconciliation {
+
+    private static final String START_RUN = """
+            INSERT INTO reconciliation_runs (up_to, first_range, range_size, ranges)
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT DO NOTHING""";
+
+    private static final String UNFINISHED_RUN = """
+            SELECT id, first_range, range_size, ranges FROM reconciliation_runs WHERE finished_at IS NULL""";
+
+    private static final String STATUS = """
+            SELECT r.id, r.ranges, r.started_at, r.finished_at, count(g.first_id),
+                   coalesce(sum(g.accounts), 0), coalesce(sum(g.entries), 0), coalesce(sum(g.discrepancies), 0)
+            FROM reconciliation_runs r
+            LEFT JOIN reconciliation_ranges g ON g.run_id = r.id
+            WHERE r.id = (SELECT max(id) FROM reconciliation_runs)
+            GROUP BY r.id""";
+
+    private static final String RECORD_RANGE = """
+            INSERT INTO reconciliation_ranges (run_id, first_id, accounts, entries, discrepancies)
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT DO NOTHING""";
+
+    private static final String RECORD_DISCREPANCY = """
+            INSERT INTO reconciliation_discrepancies (run_id, account_id, kind, entry_id, expected, actual)
+            VALUES (?, ?, ?, ?, ?, ?)""";
+
+    private static final String FINISH_RUN = """
+            UPDATE reconciliation_runs SET finished_at = now()
+            WHERE id = ? AND finished_at IS NULL
+              AND ranges = (SELECT count(*) FROM reconciliation_ranges WHERE run_id = ?)""";
+
+    record Run(long id, long firstRange, int rangeSize, int ranges) {
+
+        long firstId(int range) {
+            return firstRange + (long) range * rangeSize;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ReconciliationReader reader;
+    private final ReconciliationProperties properties;
+    private final Counter checked;
+    private final Counter skipped;
+    private final Counter failed;
+    private final Timer rangeTimer;
+    private final Map<DiscrepancyKind, Counter> discrepancies = new EnumMap<>(DiscrepancyKind.class);
+    private volatile Thread running;
+    private volatile ForkJoinPool pool;
+    private volatile boolean stopped;
+
+    public Reconciliation(JdbcTemplate jdbcTemplate,
+                          PlatformTransactionManager transactionManager,
+                          ReconciliationReader reader,
+                          ReconciliationProperties properties,
+                          MeterRegistry registry) {
+        if (properties.threads() < 1 || properties.rangeSize() < 1) {
+            throw new IllegalArgumentException("bank.reconciliation threads and range-size must be positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.reader = reader;
+        this.properties = properties;
+        this.checked = ranges(registry, "checked");
+        this.skipped = ranges(registry, "skipped");
+        this.failed = ranges(registry, "failed");
+        this.rangeTimer = Timer.builder("bank.reconciliation.range")
+                .description("Time to check one range of accounts")
+                .register(registry);
+        for (DiscrepancyKind kind : DiscrepancyKind.values()) {
+            discrepancies.put(kind, Counter.builder("bank.reconciliation.discrepancies")
+                    .description("Discrepancies between balances and entries found by reconciliation runs")
+                    .tag("kind", kind.name())
+                    .register(registry));
+        }
+    }
+
+    private static Counter ranges(MeterRegistry registry, String result) {
+        return Counter.builder("bank.reconciliation.ranges")
+                .description("Ranges of accounts handled by reconciliation runs")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    @Scheduled(cron = "${bank.reconciliation.cron:0 0 2 * * *}")
+    public void nightly() {
+        if (properties.enabled()) {
+            start();
+        }
+    }
+
+    // Starts or joins a run in the background, or reports the one this instance is working on
+    public synchronized ReconciliationDTO start() {
+        if (running == null) {
+            Run run = unfinishedOrNew();
+            Thread thread = new Thread(() -> execute(run), "reconciliation");
+            thread.setDaemon(true);
+            running = thread;
+            thread.start();
+        }
+        return status();
+    }
+
+    // The latest run, as far as all instances got with it
+    public ReconciliationDTO status() {
+        List<ReconciliationDTO> latest = jdbcTemplate.query(STATUS, (rs, rowNum) -> new ReconciliationDTO(
+                running != null, rs.getLong(1), rs.getInt(2), rs.getInt(5), rs.getLong(6), rs.getLong(7), rs.getLong(8),
+                rs.getObject(3, LocalDateTime.class), rs.getObject(4, LocalDateTime.class)));
+        return latest.isEmpty() ? new ReconciliationDTO(running != null, null, 0, 0, 0, 0, 0, null, null) : latest.getFirst();
+    }
+
+    // Discrepancies of a run (the latest one when runId is null) with an id above after, in id order
+    public List<DiscrepancyDTO> discrepancies(Long runId, long after, int limit) {
+        if (limit < 1 || limit > 1000) {
+            throw new IllegalArgumentException("Limit must be between 1 and 1000");
+        }
+        return jdbcTemplate.query("""
+                        SELECT id, account_id, kind, entry_id, expected, actual FROM reconciliation_discrepancies
+                        WHERE run_id = coalesce(?, (SELECT max(id) FROM reconciliation_runs)) AND id > ?
+                        ORDER BY id
+                        LIMIT ?""",
+                (rs, rowNum) -> new DiscrepancyDTO(rs.getLong(1), rs.getLong(2), DiscrepancyKind.valueOf(rs.getString(3)),
+                        rs.getObject(4, Long.class), Money.of(rs.getBigDecimal(5)), Money.of(rs.getBigDecimal(6))),
+                runId, after, limit);
+    }
+
+    Run unfinishedOrNew() {
+        List<Run> unfinished = unfinished();
+        if (!unfinished.isEmpty()) {
+            return unfinished.getFirst();
+        }
+        Map<String, Object> ids = jdbcTemplate.queryForMap("SELECT min(id) AS first, max(id) AS last FROM accounts");
+        long first = ids.get("first") == null ? 0 : ((Number) ids.get("first")).longValue();
+        long upTo = ids.get("last") == null ? -1 : ((Number) ids.get("last")).longValue();
+        int rangeSize = properties.rangeSize();
+        long firstRange = Math.floorDiv(first, rangeSize) * (long) rangeSize;
+        int ranges = upTo < firstRange ? 0 : Math.toIntExact((upTo - firstRange) / rangeSize + 1);
+        // Another instance may have started one since, then that is the one
+        jdbcTemplate.update(START_RUN, upTo, firstRange, rangeSize, ranges);
+        return unfinished().getFirst();
+    }
+
+    private List<Run> unfinished() {
+        return jdbcTemplate.query(UNFINISHED_RUN,
+                (rs, rowNum) -> new Run(rs.getLong(1), rs.getLong(2), rs.getInt(3), rs.getInt(4)));
+    }
+
+    private void execute(Run run) {
+        log.info("Reconciliation run {} started, {} ranges of {} account ids", run.id(), run.ranges(), run.rangeSize());
+        ForkJoinPool workers = new ForkJoinPool(properties.threads(), new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+            private final AtomicInteger threads = new AtomicInteger();
+
+            @Override
+            public ForkJoinWorkerThread newThread(ForkJoinPool forkJoinPool) {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+                thread.setName("reconciliation-" + threads.incrementAndGet());
+                return thread;
+            }
+        }, null, false);
+        pool = workers;
+        try {
+            if (run.ranges() > 0) {
+                workers.invoke(new Ranges(run, 0, run.ranges()));
+            }
+            int finished = jdbcTemplate.update(FINISH_RUN, run.id(), run.id());
+            ReconciliationDTO status = status();
+            if (finished == 1) {
+                log.info("Reconciliation run {} finished: {} accounts, {} entries, {} discrepancies",
+                        run.id(), status.accounts(), status.entries(), status.discrepancies());
+            } else {
+                log.info("Reconciliation run {} stopped with {} of {} ranges done, the next start goes on with it",
+                        run.id(), status.rangesDone(), status.ranges());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Reconciliation run {} failed, the next start goes on with it", run.id(), e);
+        } finally {
+            workers.shutdownNow();
+            pool = null;
+            running = null;
+        }
+    }
+
+    // The ranges [from, to) of a run, halved until one is left
+    private final class Ranges extends RecursiveAction {
+
+        private final Run run;
+        private final int from;
+        private final int to;
+
+        Ranges(Run run, int from, int to) {
+            this.run = run;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                checkRange(run, from);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Ranges(run, from, middle), new Ranges(run, middle, to));
+        }
+    }
+
+    void checkRange(Run run, int range) {
+        if (stopped) {
+            return;
+        }
+        long firstId = run.firstId(range);
+        try {
+            Boolean done = jdbcTemplate.queryForObject(
+                    "SELECT exists(SELECT 1 FROM reconciliation_ranges WHERE run_id = ? AND first_id = ?)",
+                    Boolean.class, run.id(), firstId);
+            if (Boolean.TRUE.equals(done)) {
+                skipped.increment();
+                return;
+            }
+            RangeCheck.Result result = rangeTimer.record(() -> reader.check(firstId, firstId + run.rangeSize()));
+            (record(run, firstId, result) ? checked : skipped).increment();
+        } catch (RuntimeException e) {
+            failed.increment();
+            log.warn("Reconciliation of account ids [{}, {}) failed, the next start tries again",
+                    firstId, firstId + run.rangeSize(), e);
+        }
+    }
+
+    // False when the range had been recorded before
+    boolean record(Run run, long firstId, RangeCheck.Result result) {
+        Boolean recorded = transactionTemplate.execute(status -> {
+            int claimed = jdbcTemplate.update(RECORD_RANGE, run.id(), firstId, result.accounts(), result.entries(),
+                    result.discrepancies().size());
+            if (claimed == 0) {
+                return false;
+            }
+            jdbcTemplate.batchUpdate(RECORD_DISCREPANCY, result.discrepancies(), 1000, (ps, discrepancy) -> {
+                ps.setLong(1, run.id());
+                ps.setLong(2, discrepancy.accountId());
+                ps.setString(3, discrepancy.kind().name());
+                ps.setObject(4, discrepancy.entryId());
+                ps.setBigDecimal(5, discrepancy.expected().toBigDecimal());
+                ps.setBigDecimal(6, discrepancy.actual().toBigDecimal());
+            });
+            return true;
+        });
+        if (!Boolean.TRUE.equals(recorded)) {
+            return false;
+        }
+        for (DiscrepancyDTO discrepancy : result.discrepancies()) {
+            discrepancies.get(discrepancy.kind()).increment();
+        }
+        if (!result.discrepancies().isEmpty()) {
+            log.warn("Reconciliation run {} found {} discrepancies in account ids [{}, {})",
+                    run.id(), result.discrepancies().size(), firstId, firstId + run.rangeSize());
+        }
+        return true;
+    }
+
+    // Ranges being checked complete, the rest is left to the next start
+    @PreDestroy
+    void stop() {
+        stopped = true;
+        ForkJoinPool workers = pool;
+        if (workers != null) {
+            workers.shutdown();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.bank.bank_app.reconciliation;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/*
+enabled              -> false skips the nightly run, POST /api/admin/reconciliation still starts one
+cron                 -> when the nightly run starts
+threads              -> ranges checked at the same time (the fork-join pool's parallelism)
+rangeSize            -> account ids per range, one read transaction each; fixed per run
+fetchSize            -> entry rows fetched per round trip of the cursor
+maxEntriesPerSecond  -> entries read per second by all threads together, 0 for no limit
+ */
+@ConfigurationProperties(prefix = "bank.reconciliation")
+public record ReconciliationProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("0 0 2 * * *") String cron,
+        @DefaultValue("2") int threads,
+        @DefaultValue("10000") int rangeSize,
+        @DefaultValue("1000") int fetchSize,
+        @DefaultValue("200000") int maxEntriesPerSecond
+) {
+}
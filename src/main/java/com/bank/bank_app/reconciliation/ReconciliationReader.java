@@ -0,0 +1,123 @@
+package com.bank.bank_app.reconciliation;
+
+import com.bank.bank_app.routing.ReplicaRead;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Reads one range of accounts and their entries for RangeCheck, both from one REPEATABLE READ snapshot, so
+online writes going on meanwhile are either wholly in it or not at all. With bank.replica.enabled the
+snapshot is taken on the replica, the primary's online traffic does not see the reads.
+
+accounts -> the range's accounts with their buckets added up, a few hundred rows
+entries  -> a server-side cursor (fetchSize rows per round trip) over the entries of the range, in the order
+            of idx_entries_account_created_at_id on every partition, so nothing is sorted
+Amounts come as cents, signed by entry type, the check itself is long arithmetic.
+
+Reading is paced to maxEntriesPerSecond over all threads: every fetchSize rows a thread books the time
+they take at that rate and sleeps until its booking starts.
+
+bank.reconciliation.entries    -> entries read
+bank.reconciliation.throttled  -> time threads slept to stay under maxEntriesPerSecond
+ */
+@Component
+public class ReconciliationReader {
+
+    private static final String ACCOUNTS = """
+            SELECT a.id, (a.balance * 100)::bigint + coalesce(sum(b.balance * 100), 0)::bigint, count(b.bucket) > 0
+            FROM accounts a
+            LEFT JOIN account_buckets b ON b.account_id = a.id
+            WHERE a.id >= ? AND a.id < ? AND a.deleted_at IS NULL
+            GROUP BY a.id
+            ORDER BY a.id""";
+
+    private static final String ENTRIES = """
+            SELECT account_id, id,
+                   CASE WHEN entry_type IN ('DEPOSIT', 'TRANSFER_IN') THEN 1 ELSE -1 END * (amount * 100)::bigint,
+                   (balance_after * 100)::bigint
+            FROM entries
+            WHERE account_id >= ? AND account_id < ?
+            ORDER BY account_id, created_at, id""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ReconciliationProperties properties;
+    private final AtomicLong nextFree = new AtomicLong(System.nanoTime());
+    private final Counter entries;
+    private final Timer throttled;
+
+    public ReconciliationReader(DataSource dataSource,
+                                PlatformTransactionManager transactionManager,
+                                ReconciliationProperties properties,
+                                MeterRegistry registry) {
+        if (properties.fetchSize() < 1 || properties.maxEntriesPerSecond() < 0) {
+            throw new IllegalArgumentException("bank.reconciliation.fetch-size must be positive, max-entries-per-second not negative");
+        }
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(properties.fetchSize());
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.properties = properties;
+        this.entries = Counter.builder("bank.reconciliation.entries")
+                .description("Entries read by reconciliation runs")
+                .register(registry);
+        this.throttled = Timer.builder("bank.reconciliation.throttled")
+                .description("Time reconciliation threads slept to keep under the entry rate")
+                .register(registry);
+    }
+
+    // The accounts with ids in [firstId, endId)
+    @ReplicaRead
+    public RangeCheck.Result check(long firstId, long endId) {
+        return transactionTemplate.execute(status -> {
+            List<RangeCheck.AccountRow> accounts = jdbcTemplate.query(ACCOUNTS,
+                    (rs, rowNum) -> new RangeCheck.AccountRow(rs.getLong(1), rs.getLong(2), rs.getBoolean(3)),
+                    firstId, endId);
+            RangeCheck check = new RangeCheck(accounts);
+            if (accounts.isEmpty()) {
+                return check.finish();
+            }
+            int[] rows = new int[1];
+            jdbcTemplate.query(ENTRIES, rs -> {
+                check.entry(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4));
+                if (++rows[0] == properties.fetchSize()) {
+                    pace(rows[0]);
+                    rows[0] = 0;
+                }
+            }, firstId, endId);
+            pace(rows[0]);
+            return check.finish();
+        });
+    }
+
+    private void pace(int rows) {
+        entries.increment(rows);
+        if (properties.maxEntriesPerSecond() == 0 || rows == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        long cost = TimeUnit.SECONDS.toNanos(rows) / properties.maxEntriesPerSecond();
+        long start = Math.max(nextFree.getAndAccumulate(cost, (free, add) -> Math.max(free, now) + add), now);
+        if (start > now) {
+            throttled.record(start - now, TimeUnit.NANOSECONDS);
+            try {
+                TimeUnit.NANOSECONDS.sleep(start - now);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Reconciliation interrupted", e);
+            }
+        }
+    }
+}
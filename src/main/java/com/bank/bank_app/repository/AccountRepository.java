@@ -1,7 +1,49 @@
 package com.bank.bank_app.repository;
 
+import com.bank.bank_app.dto.AccountResponseDT0;
 import com.bank.bank_app.model.Account;
+import com.bank.bank_app.money.Money;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
-public interface AccountRepository extends JpaRepository<Account, Long> {
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface AccountRepository extends JpaRepository<Account, Long>, AccountRepositoryCustom {
+
+    // Forward-only server-side cursor, rows go straight into DTOs without touching the persistence context
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select new com.bank.bank_app.dto.AccountResponseDT0(a.id, a.owner, a.balance, a.bucketBalance, a.createdAt) from Account a order by a.id")
+    Stream<AccountResponseDT0> streamAll();
+
+    @Query("select new com.bank.bank_app.dto.AccountResponseDT0(a.id, a.owner, a.balance, a.bucketBalance, a.createdAt) from Account a where a.id > :afterId order by a.id")
+    List<AccountResponseDT0> findPageAfter(@Param("afterId") Long afterId, Limit limit);
+
+    @Modifying
+    @Query("update Account a set a.balance = a.balance + :change where a.id = :id")
+    int addToBalance(@Param("id") Long id, @Param("change") Money change);
+
+    @Modifying
+    @Query("update Account a set a.owner = :owner where a.id = :id")
+    int updateOwner(@Param("id") Long id, @Param("owner") String owner);
+
+    // Nothing is loaded: the account disappears from every query, AccountPurgeJob removes its rows later
+    @Modifying
+    @Query("update Account a set a.deletedAt = :deletedAt where a.id = :id and a.deletedAt is null")
+    int softDelete(@Param("id") Long id, @Param("deletedAt") LocalDateTime deletedAt);
+
+    // Native so a deleted account is found too: its entries are listed until it is purged
+    @Query(value = "select created_at from accounts where id = :id", nativeQuery = true)
+    Optional<LocalDateTime> findCreatedAtById(@Param("id") Long id);
 }
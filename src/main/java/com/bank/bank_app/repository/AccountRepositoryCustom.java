@@ -0,0 +1,68 @@
+package com.bank.bank_app.repository;
+
+import com.bank.bank_app.dto.AccountResponseDT0;
+import com.bank.bank_app.money.Money;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public interface AccountRepositoryCustom {
+
+    /*
+    Single-statement balance changes, UPDATE ... RETURNING the new state of the account.
+    The row lock taken by the UPDATE serializes concurrent changes, nothing is read before.
+    The balance returned includes the buckets of a hot account.
+
+    creditBalance -> empty when the account does not exist
+    debitBalance  -> empty when the account does not exist or its balance is lower than amount
+     */
+    Optional<AccountResponseDT0> creditBalance(Long id, Money amount);
+
+    Optional<AccountResponseDT0> debitBalance(Long id, Money amount);
+
+    /*
+    Locks the accounts rows of a transfer before their balances are changed, all of them with one statement
+    in ascending id order: two transfers between the same accounts in opposite directions queue on the lower
+    id instead of each holding the row the other one waits for. Deleted and missing accounts are left out.
+
+    shared = false -> no key update, the lock the balance UPDATEs take anyway, the balances read are the
+                      ones the transfer changes
+    shared = true  -> key share, the lock of the bucket statements, for transfers of a hot account: its
+                      bucket changes keep running concurrently, the UPDATEs still decide whether there is enough
+     */
+    List<AccountResponseDT0> lockAccounts(Collection<Long> ids, boolean shared);
+
+    // The ids that are not an account (or a deleted one), in ascending order; one array parameter however many
+    List<Long> findMissingIds(Collection<Long> ids);
+
+    /*
+    Balance buckets of hot accounts (account_buckets), see HotAccounts.
+
+    A bucket statement only takes a key share lock on the accounts row, which does not wait for other
+    balance changes. Statements that lock the accounts row and buckets together take the accounts row
+    first, the same order lockAccounts callers use.
+
+    creditBucket        -> empty when the account has no such bucket (not hot, or demoted meanwhile)
+    debitAnyBucket      -> one random unlocked bucket holding at least amount, empty when there is none
+    debitAcrossBuckets  -> locks the account and all its buckets, empty when the total is lower than amount
+    zeroBuckets         -> sets the buckets of the accounts to 0 and returns what they held, the caller must
+                           already hold the accounts row locks and add it to the balance
+    addBuckets          -> creates missing buckets 1..count with balance 0
+    removeBuckets       -> adds the buckets to the accounts row and deletes them, nothing for a deleted account
+     */
+    Optional<AccountResponseDT0> creditBucket(Long id, int bucket, Money amount);
+
+    Optional<AccountResponseDT0> debitAnyBucket(Long id, Money amount);
+
+    Optional<AccountResponseDT0> debitAcrossBuckets(Long id, Money amount);
+
+    Map<Long, Money> zeroBuckets(Collection<Long> ids);
+
+    int addBuckets(Long id, int count);
+
+    void removeBuckets(Long id);
+
+    List<Long> findBucketedAccountIds();
+}
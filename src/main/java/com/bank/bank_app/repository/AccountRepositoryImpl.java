@@ -0,0 +1,245 @@
+package com.bank.bank_app.repository;
+
+import com.bank.bank_app.dto.AccountResponseDT0;
+import com.bank.bank_app.model.Account;
+import com.bank.bank_app.money.Money;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.query.NativeQuery;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Native because JPQL has no RETURNING, the columns are typed so created_at comes back as LocalDateTime.
+// Account's @SQLRestriction does not reach native SQL: every statement here skips deleted accounts itself
+// Amounts are bound and read as BigDecimal, the driver's type for DECIMAL, and are Money everywhere else
+public class AccountRepositoryImpl implements AccountRepositoryCustom {
+
+    private static final String BUCKET_SUM = """
+            (select coalesce(sum(o.balance), 0) from account_buckets o where o.account_id = accounts.id)""";
+
+    private static final String CREDIT = """
+            update accounts set balance = balance + :amount
+            where id = :id and deleted_at is null
+            returning id, owner, balance + %s as balance, created_at""".formatted(BUCKET_SUM);
+
+    private static final String DEBIT = """
+            update accounts set balance = balance - :amount
+            where id = :id and deleted_at is null and balance >= :amount
+            returning id, owner, balance + %s as balance, created_at""".formatted(BUCKET_SUM);
+
+    // The key share lock is an InitPlan, it is taken before the bucket row is locked
+    private static final String CREDIT_BUCKET = """
+            update account_buckets b set balance = b.balance + :amount
+            from accounts a
+            where a.id = :id
+              and b.account_id = (select id from accounts where id = :id and deleted_at is null for key share)
+              and b.bucket = :bucket
+            returning a.id, a.owner, a.balance + b.balance + (select coalesce(sum(o.balance), 0) from account_buckets o
+                where o.account_id = a.id and o.bucket <> b.bucket) as balance, a.created_at""";
+
+    private static final String DEBIT_ANY_BUCKET = """
+            update account_buckets b set balance = b.balance - :amount
+            from accounts a
+            where a.id = :id
+              and (b.account_id, b.bucket) = (
+                  select s.account_id, s.bucket from account_buckets s
+                  where s.account_id = (select id from accounts where id = :id and deleted_at is null for key share)
+                    and s.balance >= :amount
+                  order by random()
+                  limit 1
+                  for update skip locked)
+            returning a.id, a.owner, a.balance + b.balance + (select coalesce(sum(o.balance), 0) from account_buckets o
+                where o.account_id = a.id and o.bucket <> b.bucket) as balance, a.created_at""";
+
+    private static final String LOCK_ACCOUNT = """
+            select id, owner, balance, created_at from accounts where id = :id and deleted_at is null for no key update""";
+
+    // Locked in the order of the ORDER BY, which is why it is one statement and not one per account
+    private static final String LOCK_ACCOUNTS = """
+            select id, owner, balance + %s as balance, created_at from accounts
+            where id in (:ids) and deleted_at is null
+            order by id
+            for %s""";
+
+    private static final String MISSING_IDS = """
+            select requested.id from unnest(cast(:ids as bigint[])) as requested(id)
+            where not exists (select 1 from accounts a where a.id = requested.id and a.deleted_at is null)
+            order by requested.id""";
+
+    private static final String LOCK_BUCKETS = """
+            select balance from account_buckets where account_id = :id order by bucket for update""";
+
+    private static final String ZERO_BUCKETS = """
+            with moved as (
+                select account_id, bucket, balance from account_buckets
+                where account_id in (:ids) and balance <> 0
+                for update)
+            update account_buckets b set balance = 0
+            from moved m
+            where b.account_id = m.account_id and b.bucket = m.bucket
+            returning m.account_id, m.balance""";
+
+    private static final String ADD_BUCKETS = """
+            insert into account_buckets (account_id, bucket, balance)
+            select :id, g, 0 from generate_series(1, :count) g
+            where exists (select 1 from accounts where id = :id and deleted_at is null)
+            on conflict do nothing""";
+
+    // A deleted account keeps its buckets, they go with it when it is purged
+    private static final String REMOVE_BUCKETS = """
+            with drained as (
+                delete from account_buckets
+                where account_id = (select id from accounts where id = :id and deleted_at is null)
+                returning balance)
+            update accounts set balance = balance + (select coalesce(sum(balance), 0) from drained)
+            where id = :id and deleted_at is null""";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<AccountResponseDT0> creditBalance(Long id, Money amount) {
+        return accountRow(query(CREDIT, id).setParameter("amount", amount.toBigDecimal()));
+    }
+
+    @Override
+    public Optional<AccountResponseDT0> debitBalance(Long id, Money amount) {
+        return accountRow(query(DEBIT, id).setParameter("amount", amount.toBigDecimal()));
+    }
+
+    @Override
+    public Optional<AccountResponseDT0> creditBucket(Long id, int bucket, Money amount) {
+        return accountRow(query(CREDIT_BUCKET, id)
+                .setParameter("bucket", bucket)
+                .setParameter("amount", amount.toBigDecimal()));
+    }
+
+    @Override
+    public Optional<AccountResponseDT0> debitAnyBucket(Long id, Money amount) {
+        return accountRow(query(DEBIT_ANY_BUCKET, id).setParameter("amount", amount.toBigDecimal()));
+    }
+
+    // All buckets are folded into the accounts row, the locks are held anyway
+    @Override
+    @SuppressWarnings("unchecked")
+    public Optional<AccountResponseDT0> debitAcrossBuckets(Long id, Money amount) {
+        Optional<AccountResponseDT0> account = accountRow(query(LOCK_ACCOUNT, id));
+        if (account.isEmpty()) {
+            return Optional.empty();
+        }
+        Money buckets = ((List<BigDecimal>) query(LOCK_BUCKETS, id)
+                .addScalar("balance", BigDecimal.class)
+                .getResultList())
+                .stream()
+                .map(Money::of)
+                .reduce(Money.ZERO, Money::plus);
+        Money balance = account.get().balance().plus(buckets).minus(amount);
+        if (balance.isNegative()) {
+            return Optional.empty();
+        }
+        zeroBuckets(List.of(id));
+        entityManager.createNativeQuery("update accounts set balance = :balance where id = :id")
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(Account.class)
+                .setParameter("balance", balance.toBigDecimal())
+                .setParameter("id", id)
+                .executeUpdate();
+        AccountResponseDT0 locked = account.get();
+        return Optional.of(new AccountResponseDT0(locked.id(), locked.owner(), balance, locked.createdAt()));
+    }
+
+    @Override
+    public List<AccountResponseDT0> lockAccounts(Collection<Long> ids, boolean shared) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return accountRows(entityManager.createNativeQuery(
+                        LOCK_ACCOUNTS.formatted(BUCKET_SUM, shared ? "key share" : "no key update"))
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(Account.class)
+                .setParameterList("ids", ids));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Long> findMissingIds(Collection<Long> ids) {
+        return entityManager.createNativeQuery(MISSING_IDS)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(Account.class)
+                .addScalar("id", Long.class)
+                .setParameter("ids", ids.toArray(Long[]::new))
+                .getResultList();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<Long, Money> zeroBuckets(Collection<Long> ids) {
+        Map<Long, Money> moved = new HashMap<>();
+        if (ids.isEmpty()) {
+            return moved;
+        }
+        List<Object[]> rows = entityManager.createNativeQuery(ZERO_BUCKETS)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(Account.class)
+                .addScalar("account_id", Long.class)
+                .addScalar("balance", BigDecimal.class)
+                .setParameterList("ids", ids)
+                .getResultList();
+        for (Object[] row : rows) {
+            moved.merge((Long) row[0], Money.of((BigDecimal) row[1]), Money::plus);
+        }
+        return moved;
+    }
+
+    @Override
+    public int addBuckets(Long id, int count) {
+        return query(ADD_BUCKETS, id)
+                .setParameter("count", count)
+                .executeUpdate();
+    }
+
+    @Override
+    public void removeBuckets(Long id) {
+        query(LOCK_ACCOUNT, id).getResultList();
+        query(REMOVE_BUCKETS, id).executeUpdate();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Long> findBucketedAccountIds() {
+        return entityManager.createNativeQuery("select distinct account_id from account_buckets")
+                .unwrap(NativeQuery.class)
+                .addScalar("account_id", Long.class)
+                .getResultList();
+    }
+
+    private NativeQuery<?> query(String sql, Long id) {
+        return entityManager.createNativeQuery(sql)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(Account.class)
+                .setParameter("id", id);
+    }
+
+    private Optional<AccountResponseDT0> accountRow(NativeQuery<?> query) {
+        return accountRows(query).stream().findFirst();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<AccountResponseDT0> accountRows(NativeQuery<?> query) {
+        List<Object[]> rows = (List<Object[]>) query
+                .addScalar("id", Long.class)
+                .addScalar("owner", String.class)
+                .addScalar("balance", BigDecimal.class)
+                .addScalar("created_at", LocalDateTime.class)
+                .getResultList();
+        return rows.stream()
+                .map(row -> new AccountResponseDT0((Long) row[0], (String) row[1], Money.of((BigDecimal) row[2]), (LocalDateTime) row[3]))
+                .toList();
+    }
+}
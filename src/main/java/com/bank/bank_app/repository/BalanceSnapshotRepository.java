@@ -0,0 +1,57 @@
+package com.bank.bank_app.repository;
+
+import com.bank.bank_app.model.BalanceSnapshot;
+import com.bank.bank_app.money.Money;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface BalanceSnapshotRepository extends JpaRepository<BalanceSnapshot, BalanceSnapshot.Key> {
+
+    Optional<BalanceSnapshot> findFirstByAccountIdAndTakenAtLessThanEqualOrderByTakenAtDesc(Long accountId, LocalDateTime asOf);
+
+    Optional<BalanceSnapshot> findFirstByAccountIdAndTakenAtGreaterThanOrderByTakenAtAsc(Long accountId, LocalDateTime asOf);
+
+    /*
+    Balance at :cutoff = the current total minus every entry made after it, read in one statement so both
+    come from the same database snapshot. Accounts without entries since their last snapshot are skipped,
+    that snapshot is still exact.
+     */
+    @Modifying
+    @Query(value = """
+            insert into balance_snapshots (account_id, taken_at, balance)
+            select a.id, :cutoff, a.balance
+                   + (select coalesce(sum(b.balance), 0) from account_buckets b where b.account_id = a.id)
+                   - (select coalesce(sum(case when e.entry_type in ('DEPOSIT', 'TRANSFER_IN') then e.amount else -e.amount end), 0)
+                      from entries e where e.account_id = a.id and e.created_at > :cutoff)
+            from accounts a
+            where a.id in (:ids)
+              and a.created_at <= :cutoff
+              and exists (
+                  select 1 from entries e
+                  where e.account_id = a.id
+                    and e.created_at <= :cutoff
+                    and e.created_at > coalesce(
+                        (select max(s.taken_at) from balance_snapshots s where s.account_id = a.id), '-infinity'))
+            on conflict do nothing""", nativeQuery = true)
+    int takeSnapshots(@Param("ids") Collection<Long> ids, @Param("cutoff") LocalDateTime cutoff);
+
+    // Same as a snapshot taken right now, rolled back to :asOf
+    @Query(value = """
+            select a.balance
+                   + (select coalesce(sum(b.balance), 0) from account_buckets b where b.account_id = a.id)
+                   - (select coalesce(sum(case when e.entry_type in ('DEPOSIT', 'TRANSFER_IN') then e.amount else -e.amount end), 0)
+                      from entries e where e.account_id = a.id and e.created_at > :asOf)
+            from accounts a
+            where a.id = :id""", nativeQuery = true)
+    Optional<Money> currentBalanceAsOf(@Param("id") Long id, @Param("asOf") LocalDateTime asOf);
+
+    @Query(value = "select id from accounts where id > :afterId and deleted_at is null order by id limit :limit", nativeQuery = true)
+    List<Long> findAccountIdsAfter(@Param("afterId") long afterId, @Param("limit") int limit);
+}
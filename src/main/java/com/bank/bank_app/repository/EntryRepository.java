@@ -1,11 +1,39 @@
 package com.bank.bank_app.repository;
 
-import com.bank.bank_app.dto.EntryDTO;
 import com.bank.bank_app.model.Entry;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-import java.util.List;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
 
-public interface EntryRepository extends JpaRepository<Entry, Long> {
-    List<EntryDTO> findByAccountId(Long accountId);
+public interface EntryRepository extends JpaRepository<Entry, Long>, EntryRepositoryCustom {
+    // What the entries in (from, to] added to the balance, a range scan of the (account_id, created_at, id) index
+    // (a BigDecimal: the converter of amount does not apply to a sum)
+    @Query("""
+            select coalesce(sum(case when e.entryType in (com.bank.bank_app.entity.EntryType.DEPOSIT,
+                                                          com.bank.bank_app.entity.EntryType.TRANSFER_IN)
+                                     then e.amount else -e.amount end), 0)
+            from Entry e
+            where e.account.id = :accountId and e.createdAt > :from and e.createdAt <= :to""")
+    BigDecimal sumChanges(@Param("accountId") Long accountId,
+                          @Param("from") LocalDateTime from,
+                          @Param("to") LocalDateTime to);
+
+    // The TRANSFER_OUT a cross-shard transfer logged when it held the funds, persisted in an earlier batch.
+    // It is found by its hold id alone, from/to (a day around its transfer) only keep this to a few partitions
+    @Modifying
+    @Query("""
+            update Entry e set e.transferId = :transferId
+            where e.account.id = :accountId and e.holdId = :holdId
+              and e.createdAt >= :from and e.createdAt <= :to
+              and e.entryType = com.bank.bank_app.entity.EntryType.TRANSFER_OUT and e.transferId is null""")
+    int linkTransferOut(@Param("accountId") Long accountId,
+                        @Param("holdId") UUID holdId,
+                        @Param("from") LocalDateTime from,
+                        @Param("to") LocalDateTime to,
+                        @Param("transferId") Long transferId);
 }
@@ -0,0 +1,18 @@
+package com.bank.bank_app.repository;
+
+import com.bank.bank_app.dto.EntryCursor;
+import com.bank.bank_app.dto.EntryDTO;
+import com.bank.bank_app.entity.EntryType;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface EntryRepositoryCustom {
+
+    /*
+    One keyset page of an account's entries projected straight into EntryDTO.
+    With "after" set the page is read oldest first, otherwise newest first.
+     */
+    List<EntryDTO> findPage(Long accountId, EntryCursor before, EntryCursor after,
+                            LocalDateTime from, LocalDateTime to, EntryType entryType, int maxResults);
+}
@@ -0,0 +1,68 @@
+package com.bank.bank_app.repository;
+
+import com.bank.bank_app.dto.EntryCursor;
+import com.bank.bank_app.dto.EntryDTO;
+import com.bank.bank_app.entity.EntryType;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Only the filters that are set end up in the query, so Postgres always gets a plain index range scan
+public class EntryRepositoryImpl implements EntryRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<EntryDTO> findPage(Long accountId, EntryCursor before, EntryCursor after,
+                                   LocalDateTime from, LocalDateTime to, EntryType entryType, int maxResults) {
+        StringBuilder jpql = new StringBuilder("""
+                select new com.bank.bank_app.dto.EntryDTO(e.id, e.amount, e.entryType, e.createdAt, e.balanceAfter)
+                from Entry e
+                where e.account.id = :accountId""");
+
+        if (before != null) {
+            jpql.append(" and e.createdAt <= :beforeCreatedAt and (e.createdAt < :beforeCreatedAt or e.id < :beforeId)");
+        }
+        if (after != null) {
+            jpql.append(" and e.createdAt >= :afterCreatedAt and (e.createdAt > :afterCreatedAt or e.id > :afterId)");
+        }
+        if (from != null) {
+            jpql.append(" and e.createdAt >= :from");
+        }
+        if (to != null) {
+            jpql.append(" and e.createdAt < :to");
+        }
+        if (entryType != null) {
+            jpql.append(" and e.entryType = :entryType");
+        }
+        jpql.append(after != null
+                ? " order by e.createdAt asc, e.id asc"
+                : " order by e.createdAt desc, e.id desc");
+
+        TypedQuery<EntryDTO> query = entityManager.createQuery(jpql.toString(), EntryDTO.class)
+                .setParameter("accountId", accountId)
+                .setMaxResults(maxResults);
+        if (before != null) {
+            query.setParameter("beforeCreatedAt", before.createdAt());
+            query.setParameter("beforeId", before.id());
+        }
+        if (after != null) {
+            query.setParameter("afterCreatedAt", after.createdAt());
+            query.setParameter("afterId", after.id());
+        }
+        if (from != null) {
+            query.setParameter("from", from);
+        }
+        if (to != null) {
+            query.setParameter("to", to);
+        }
+        if (entryType != null) {
+            query.setParameter("entryType", entryType);
+        }
+        return query.getResultList();
+    }
+}
@@ -0,0 +1,17 @@
+package com.bank.bank_app.repository;
+
+import com.bank.bank_app.model.JournalCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface JournalCheckpointRepository extends JpaRepository<JournalCheckpoint, Integer> {
+
+    @Query("select c.appliedLsn from JournalCheckpoint c where c.id = 1")
+    long appliedLsn();
+
+    @Modifying
+    @Query("update JournalCheckpoint c set c.appliedLsn = :lsn where c.id = 1")
+    int advance(@Param("lsn") long lsn);
+}
@@ -0,0 +1,190 @@
+package com.bank.bank_app.rollup;
+
+import com.bank.bank_app.dto.DailyRollupDTO;
+import com.bank.bank_app.entity.EntryType;
+import com.bank.bank_app.exception.AccountNotFoundException;
+import com.bank.bank_app.hotaccount.HotAccounts;
+import com.bank.bank_app.model.Entry;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.repository.AccountRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.query.NativeQuery;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+
+/*
+Per account and day totals of the entries (account_daily_rollups, V13), so a dashboard reads one row per
+account and day instead of adding up every entry.
+
+add   -> called by every path that writes entries, in its transaction: the entries are added up per account
+         and day in memory and merged into the rollups with one multi-row upsert
+find  -> the days of [from, to] that had entries, per account, summed over the slots
+
+The rows are upserted in key order, so two transactions never wait for each other's rollup rows the other way
+round. The upsert runs when add is called, before JPA flushes the entries it adds up (at commit): it needs their
+values, not their rows. It is a native query of the EntityManager, so SqlActivity counts it with the statements
+of the operation. A hot account gets a random slot per transaction (HotAccounts.spread): its concurrent credits
+do not all queue on one rollup row.
+ */
+@Component
+@RequiredArgsConstructor
+public class DailyRollups {
+
+    static final String MERGE = """
+            ON CONFLICT (account_id, day, slot) DO UPDATE SET
+                deposits = account_daily_rollups.deposits + excluded.deposits,
+                deposit_count = account_daily_rollups.deposit_count + excluded.deposit_count,
+                withdrawals = account_daily_rollups.withdrawals + excluded.withdrawals,
+                withdraw_count = account_daily_rollups.withdraw_count + excluded.withdraw_count,
+                transfers_in = account_daily_rollups.transfers_in + excluded.transfers_in,
+                transfer_in_count = account_daily_rollups.transfer_in_count + excluded.transfer_in_count,
+                transfers_out = account_daily_rollups.transfers_out + excluded.transfers_out,
+                transfer_out_count = account_daily_rollups.transfer_out_count + excluded.transfer_out_count""";
+
+    private static final String UPSERT = """
+            INSERT INTO account_daily_rollups (account_id, day, slot, deposits, deposit_count, withdrawals, withdraw_count,
+                                               transfers_in, transfer_in_count, transfers_out, transfer_out_count)
+            VALUES %s
+            """ + MERGE;
+
+    private static final int COLUMNS = 11;
+
+    // One statement per chunk, COLUMNS parameters a row stay well below the 32767 a statement can have
+    private static final int MAX_ROWS = 1000;
+
+    private static final String FIND = """
+            SELECT account_id, day, sum(deposits), sum(deposit_count), sum(withdrawals), sum(withdraw_count),
+                   sum(transfers_in), sum(transfer_in_count), sum(transfers_out), sum(transfer_out_count)
+            FROM account_daily_rollups
+            WHERE account_id = ANY(?::bigint[]) AND day >= ? AND day <= ?
+            GROUP BY account_id, day
+            ORDER BY account_id, day""";
+
+    private static final Comparator<Key> KEY_ORDER = Comparator.comparingLong(Key::accountId)
+            .thenComparing(Key::day)
+            .thenComparingInt(Key::slot);
+
+    private record Key(long accountId, LocalDate day, int slot) {
+    }
+
+    // amounts (cents) and counts by column: deposits, withdrawals, transfers in, transfers out
+    private static final class Totals {
+        private final long[] amounts = new long[4];
+        private final int[] counts = new int[4];
+
+        void add(EntryType entryType, Money amount) {
+            int column = column(entryType);
+            amounts[column] = Math.addExact(amounts[column], amount.cents());
+            counts[column]++;
+        }
+
+        BigDecimal amount(int column) {
+            return Money.ofCents(amounts[column]).toBigDecimal();
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AccountRepository accountRepository;
+    private final HotAccounts hotAccounts;
+    private final RollupProperties properties;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // A new EntryType does not compile until it has its rollup columns
+    private static int column(EntryType entryType) {
+        return switch (entryType) {
+            case DEPOSIT -> 0;
+            case WITHDRAW -> 1;
+            case TRANSFER_IN -> 2;
+            case TRANSFER_OUT -> 3;
+        };
+    }
+
+    // Must run inside the transaction that writes the entries, after they have been saved
+    public void add(Collection<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> slots = new HashMap<>();
+        Map<Key, Totals> rows = new TreeMap<>(KEY_ORDER);
+        for (Entry entry : entries) {
+            Long accountId = entry.getAccount().getId();
+            int slot = slots.computeIfAbsent(accountId, hotAccounts::spread);
+            rows.computeIfAbsent(new Key(accountId, entry.getCreatedAt().toLocalDate(), slot), key -> new Totals())
+                    .add(entry.getEntryType(), entry.getAmount());
+        }
+
+        List<Map.Entry<Key, Totals>> ordered = new ArrayList<>(rows.entrySet());
+        for (int from = 0; from < ordered.size(); from += MAX_ROWS) {
+            upsert(ordered.subList(from, Math.min(from + MAX_ROWS, ordered.size())));
+        }
+    }
+
+    // No entity is mapped to the table, nothing is flushed for it
+    private void upsert(List<Map.Entry<Key, Totals>> rows) {
+        StringJoiner values = new StringJoiner(", ");
+        for (int row = 0; row < rows.size(); row++) {
+            StringJoiner parameters = new StringJoiner(", ", "(", ")");
+            for (int column = 1; column <= COLUMNS; column++) {
+                parameters.add("?" + (row * COLUMNS + column));
+            }
+            values.add(parameters.toString());
+        }
+        NativeQuery<?> query = entityManager.createNativeQuery(UPSERT.formatted(values))
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace("account_daily_rollups");
+        int position = 1;
+        for (Map.Entry<Key, Totals> row : rows) {
+            Key key = row.getKey();
+            Totals totals = row.getValue();
+            query.setParameter(position++, key.accountId());
+            query.setParameter(position++, key.day());
+            query.setParameter(position++, key.slot());
+            for (int column = 0; column < 4; column++) {
+                query.setParameter(position++, totals.amount(column));
+                query.setParameter(position++, totals.counts[column]);
+            }
+        }
+        query.executeUpdate();
+    }
+
+    public List<DailyRollupDTO> find(List<Long> accountIds, LocalDate from, LocalDate to) {
+        if (accountIds == null || accountIds.isEmpty() || accountIds.size() > properties.maxAccounts()) {
+            throw new IllegalArgumentException("A rollup query covers 1 to " + properties.maxAccounts() + " accounts");
+        }
+        if (from == null || to == null || from.isAfter(to)) {
+            throw new IllegalArgumentException("From must not be after to");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= properties.maxDays()) {
+            throw new IllegalArgumentException("A rollup query covers at most " + properties.maxDays() + " days");
+        }
+        Long[] ids = accountIds.toArray(Long[]::new);
+        List<Long> missing = accountRepository.findMissingIds(accountIds);
+        if (!missing.isEmpty()) {
+            throw new AccountNotFoundException("Account not found with id: " + missing.getFirst());
+        }
+
+        return jdbcTemplate.query(FIND, (rs, rowNum) -> new DailyRollupDTO(
+                rs.getLong(1),
+                rs.getObject(2, LocalDate.class),
+                Money.of(rs.getBigDecimal(3)), rs.getLong(4),
+                Money.of(rs.getBigDecimal(5)), rs.getLong(6),
+                Money.of(rs.getBigDecimal(7)), rs.getLong(8),
+                Money.of(rs.getBigDecimal(9)), rs.getLong(10)), ids, from, to);
+    }
+}
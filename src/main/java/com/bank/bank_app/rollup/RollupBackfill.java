@@ -0,0 +1,189 @@
+package com.bank.bank_app.rollup;
+
+import com.bank.bank_app.dto.RollupBackfillDTO;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+Adds the entries written before the rollups existed (ids up to rollup_backfill.up_to, V13) to the daily rollups.
+
+The ids are cut into chunks of chunkSize, aligned to multiples of it, and backfillThreads chunks are added at
+a time, each in a transaction of its own:
+claim -> its first id goes into rollup_backfill_chunks; a chunk that is already there (an earlier run, another
+         instance) is skipped, one being added by another instance right now is waited for, then skipped
+add   -> one INSERT ... SELECT ... GROUP BY account, day over the chunk's ids, merged into slot 0 in key order
+
+A chunk that fails is rolled back together with its claim and added by the next run, so running it again
+(after a failure, on several instances) never counts an entry twice. Entries of detached partitions are no
+longer in entries and are not added.
+ */
+@Slf4j
+@Component
+public class RollupBackfill {
+
+    private static final String ADD_CHUNK = """
+            INSERT INTO account_daily_rollups (account_id, day, slot, deposits, deposit_count, withdrawals, withdraw_count,
+                                               transfers_in, transfer_in_count, transfers_out, transfer_out_count)
+            SELECT account_id, created_at::date, 0,
+                   coalesce(sum(amount) FILTER (WHERE entry_type = 'DEPOSIT'), 0),
+                   count(*) FILTER (WHERE entry_type = 'DEPOSIT'),
+                   coalesce(sum(amount) FILTER (WHERE entry_type = 'WITHDRAW'), 0),
+                   count(*) FILTER (WHERE entry_type = 'WITHDRAW'),
+                   coalesce(sum(amount) FILTER (WHERE entry_type = 'TRANSFER_IN'), 0),
+                   count(*) FILTER (WHERE entry_type = 'TRANSFER_IN'),
+                   coalesce(sum(amount) FILTER (WHERE entry_type = 'TRANSFER_OUT'), 0),
+                   count(*) FILTER (WHERE entry_type = 'TRANSFER_OUT')
+            FROM entries
+            WHERE id >= ? AND id < ?
+            GROUP BY account_id, created_at::date
+            ORDER BY account_id, created_at::date
+            """ + DailyRollups.MERGE;
+
+    private static final class Run {
+        private final long upTo;
+        private final long firstChunk;
+        private final int chunkSize;
+        private final int chunks;
+        private final AtomicInteger added = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private volatile LocalDateTime finishedAt;
+
+        Run(long upTo, long firstChunk, int chunkSize, int chunks) {
+            this.upTo = upTo;
+            this.firstChunk = firstChunk;
+            this.chunkSize = chunkSize;
+            this.chunks = chunks;
+        }
+
+        RollupBackfillDTO toDTO() {
+            return new RollupBackfillDTO(finishedAt == null, upTo, chunks, added.get(), skipped.get(), failed.get(),
+                    startedAt, finishedAt);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RollupProperties properties;
+    private volatile Run current;
+    private volatile boolean stopped;
+
+    public RollupBackfill(JdbcTemplate jdbcTemplate,
+                          PlatformTransactionManager transactionManager,
+                          RollupProperties properties) {
+        if (properties.backfillThreads() < 1 || properties.backfillChunkSize() < 1) {
+            throw new IllegalArgumentException("bank.rollups backfill-threads and backfill-chunk-size must be positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+    }
+
+    // Starts a run in the background, or reports the one still going
+    public synchronized RollupBackfillDTO start() {
+        Run running = current;
+        if (running != null && running.finishedAt == null) {
+            return running.toDTO();
+        }
+        Run run = plan();
+        current = run;
+        Thread thread = new Thread(() -> execute(run), "rollup-backfill");
+        thread.setDaemon(true);
+        thread.start();
+        return run.toDTO();
+    }
+
+    // The run going on, or the last one of this instance
+    public RollupBackfillDTO status() {
+        Run run = current;
+        return run != null ? run.toDTO() : new RollupBackfillDTO(false, 0, 0, 0, 0, 0, null, null);
+    }
+
+    private Run plan() {
+        // The first run fixes the chunk size: chunks cut differently later would overlap the ones already added
+        Map<String, Object> backfill = jdbcTemplate.queryForMap("""
+                UPDATE rollup_backfill SET chunk_size = coalesce(chunk_size, ?) WHERE id = 1 RETURNING up_to, chunk_size""",
+                properties.backfillChunkSize());
+        long upTo = ((Number) backfill.get("up_to")).longValue();
+        int chunkSize = ((Number) backfill.get("chunk_size")).intValue();
+        Long minId = jdbcTemplate.queryForObject("SELECT min(id) FROM entries", Long.class);
+        if (minId == null || minId > upTo) {
+            return new Run(upTo, 0, chunkSize, 0);
+        }
+        long firstChunk = Math.floorDiv(minId, chunkSize) * (long) chunkSize;
+        return new Run(upTo, firstChunk, chunkSize, (int) ((upTo - firstChunk) / chunkSize + 1));
+    }
+
+    private void execute(Run run) {
+        log.info("Rollup backfill of entries up to id {} started, {} chunks", run.upTo, run.chunks);
+        ExecutorService pool = Executors.newFixedThreadPool(properties.backfillThreads(), new ThreadFactory() {
+            private final AtomicInteger threads = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "rollup-backfill-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            for (int i = 0; i < run.chunks; i++) {
+                long firstId = run.firstChunk + (long) i * run.chunkSize;
+                long endId = Math.min(firstId + run.chunkSize, run.upTo + 1);
+                pool.execute(() -> {
+                    if (stopped) {
+                        return;
+                    }
+                    try {
+                        (addChunk(firstId, endId) ? run.added : run.skipped).incrementAndGet();
+                    } catch (RuntimeException e) {
+                        run.failed.incrementAndGet();
+                        log.warn("Rollup backfill of entry ids [{}, {}) failed, it is added by the next run", firstId, endId, e);
+                    }
+                });
+            }
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        } finally {
+            run.finishedAt = LocalDateTime.now();
+            log.info("Rollup backfill finished: {} chunks added, {} already added, {} failed",
+                    run.added.get(), run.skipped.get(), run.failed.get());
+        }
+    }
+
+    // False when the chunk had been added before
+    boolean addChunk(long firstId, long endId) {
+        Boolean added = transactionTemplate.execute(status -> {
+            int claimed = jdbcTemplate.update(
+                    "INSERT INTO rollup_backfill_chunks (first_id) VALUES (?) ON CONFLICT DO NOTHING", firstId);
+            if (claimed == 0) {
+                return false;
+            }
+            jdbcTemplate.update(ADD_CHUNK, firstId, endId);
+            return true;
+        });
+        return Boolean.TRUE.equals(added);
+    }
+
+    // Chunks not started yet are left to the next run
+    @PreDestroy
+    void stop() {
+        stopped = true;
+    }
+}
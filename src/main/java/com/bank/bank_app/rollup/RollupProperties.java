@@ -0,0 +1,19 @@
+package com.bank.bank_app.rollup;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/*
+maxAccounts        -> accounts one rollup query may cover
+maxDays            -> days one rollup query may cover
+backfillThreads    -> chunks of old entries added up at the same time
+backfillChunkSize  -> entry ids per chunk (one transaction each), fixed by the first backfill run
+ */
+@ConfigurationProperties(prefix = "bank.rollups")
+public record RollupProperties(
+        @DefaultValue("1000") int maxAccounts,
+        @DefaultValue("366") int maxDays,
+        @DefaultValue("4") int backfillThreads,
+        @DefaultValue("100000") int backfillChunkSize
+) {
+}
@@ -0,0 +1,114 @@
+package com.bank.bank_app.routing;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+How far the replica is behind, measured in time.
+
+Every lagCheckInterval the primary's WAL position is sampled, then the replica's replay position. Once the
+replica has replayed the position of a sample, it has every transaction that committed before that sample
+was taken: caughtUpTo is the time of the newest such sample.
+- lag            -> now - caughtUpTo
+- read-your-writes -> a write that committed at t is on the replica once caughtUpTo > t
+
+A replica that is not in recovery (e.g. the primary itself, for a local test) counts as caught up. When a
+sample fails (replica down) caughtUpTo stays where it was, the lag grows and reads fall back to the primary.
+
+bank.replica.lag -> seconds the replica is behind (NaN before the first sample)
+ */
+@Slf4j
+public class ReplicaLag {
+
+    private static final String PRIMARY_POSITION = "select pg_wal_lsn_diff(pg_current_wal_lsn(), '0/0')::bigint";
+    private static final String REPLAYED_POSITION = """
+            select pg_wal_lsn_diff(case when pg_is_in_recovery() then pg_last_wal_replay_lsn()
+                                        else pg_current_wal_lsn() end, '0/0')::bigint""";
+
+    private record Sample(long takenAt, long position) {
+    }
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final ReplicaProperties properties;
+    private final Deque<Sample> pending = new ArrayDeque<>();
+    private final ScheduledExecutorService sampler;
+    private volatile long caughtUpTo = Long.MIN_VALUE;
+    private boolean failing;
+
+    public ReplicaLag(JdbcTemplate primary, JdbcTemplate replica, ReplicaProperties properties, MeterRegistry registry) {
+        this.primary = primary;
+        this.replica = replica;
+        this.properties = properties;
+        this.sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("bank.replica.lag", this, lag -> lag.lagMillis(System.currentTimeMillis()) / 1000.0)
+                .description("Seconds the replica is behind the primary")
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    @PostConstruct
+    void start() {
+        long interval = properties.lagCheckInterval().toMillis();
+        sampler.scheduleWithFixedDelay(() -> sample(System.currentTimeMillis()), 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        sampler.shutdownNow();
+    }
+
+    // Everything that committed before this time is on the replica
+    public long caughtUpTo() {
+        return caughtUpTo;
+    }
+
+    public double lagMillis(long now) {
+        long caughtUp = caughtUpTo;
+        return caughtUp == Long.MIN_VALUE ? Double.NaN : now - caughtUp;
+    }
+
+    // Only ever called from the sampler thread (or a test), pending needs no lock
+    void sample(long now) {
+        try {
+            // In this order: the primary's position covers every commit before now, the replica is read after it
+            Long position = primary.queryForObject(PRIMARY_POSITION, Long.class);
+            pending.addLast(new Sample(now, position));
+            Long replayed = replica.queryForObject(REPLAYED_POSITION, Long.class);
+            if (replayed != null) {
+                while (!pending.isEmpty() && pending.peekFirst().position() <= replayed) {
+                    caughtUpTo = Math.max(caughtUpTo, pending.pollFirst().takenAt());
+                }
+            }
+            if (failing) {
+                failing = false;
+                log.info("Replica lag check recovered");
+            }
+        } catch (RuntimeException e) {
+            if (!failing) {
+                failing = true;
+                log.warn("Replica lag check failed, reads fall back to the primary once it is {} behind",
+                        properties.maxLag(), e);
+            }
+        }
+        // A sample only reached after maxLag could no longer send a read to the replica
+        long oldestUseful = now - properties.maxLag().toMillis();
+        while (!pending.isEmpty() && pending.peekFirst().takenAt() < oldestUseful) {
+            pending.pollFirst();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.bank.bank_app.routing;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/*
+Read replica for @ReplicaRead service methods, see ReplicaRoutingConfig.
+
+url, username, password  -> the replica, a streaming standby of spring.datasource.url
+maximumPoolSize          -> connections to the replica
+maxLag                   -> reads go to the primary while the replica is further behind than this
+lagCheckInterval         -> how often the replica's replay position is compared with the primary's
+ */
+@ConfigurationProperties(prefix = "bank.replica")
+public record ReplicaProperties(
+        @DefaultValue("false") boolean enabled,
+        String url,
+        String username,
+        String password,
+        @DefaultValue("10") int maximumPoolSize,
+        @DefaultValue("1s") Duration maxLag,
+        @DefaultValue("100ms") Duration lagCheckInterval
+) {
+}
@@ -0,0 +1,20 @@
+package com.bank.bank_app.routing;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/*
+The read-only transactions of this method may be served by the replica (bank.replica.enabled=true).
+
+Only read-only transactions are routed, a method called from inside a read-write transaction reads from
+the primary. Opt-in rather than every read-only transaction: Spring Data runs its finder methods in
+read-only transactions of their own, also when a service method reads a row it is about to change.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReplicaRead {
+}
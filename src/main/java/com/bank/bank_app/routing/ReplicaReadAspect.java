@@ -0,0 +1,20 @@
+package com.bank.bank_app.routing;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+
+// Marks the thread while a @ReplicaRead method runs, see ReplicaRoutingDataSource
+@Aspect
+public class ReplicaReadAspect {
+
+    @Around("@annotation(com.bank.bank_app.routing.ReplicaRead)")
+    public Object route(ProceedingJoinPoint joinPoint) throws Throwable {
+        ReplicaRoutingDataSource.enterReplicaRead();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ReplicaRoutingDataSource.exitReplicaRead();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.bank.bank_app.routing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/*
+Picks the pool for a connection when it is first used (it sits behind a LazyConnectionDataSourceProxy, so
+by then the transaction's read-only flag is known).
+- read-write transaction, or no transaction         -> primary
+- read-only transaction outside a @ReplicaRead method -> primary
+- read-only transaction in a @ReplicaRead method      -> replica, unless it is more than maxLag behind
+  or has not replayed the write named by the request's X-Read-After header yet
+
+A read-write transaction that commits during a request stamps X-Read-After on the response. Sending it
+back with later reads guarantees they see the write, on the replica if it has caught up, else on the primary.
+The stamp is this instance's clock: instances behind one load balancer need synchronized clocks.
+
+bank.replica.reads{target}      -> @ReplicaRead connections by the pool they went to
+bank.replica.fallbacks{reason}  -> @ReplicaRead connections sent to the primary: lag or read-your-writes
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String READ_AFTER = "X-Read-After";
+
+    enum Target {
+        PRIMARY, REPLICA
+    }
+
+    private record Request(long readAfter, HttpServletResponse response) {
+    }
+
+    private static final ThreadLocal<int[]> REPLICA_READS = ThreadLocal.withInitial(() -> new int[1]);
+    private static final ThreadLocal<Request> REQUEST = new ThreadLocal<>();
+
+    private final ReplicaLag lag;
+    private final long maxLagMillis;
+    private final Counter readsOnReplica;
+    private final Counter readsOnPrimary;
+    private final Counter lagFallbacks;
+    private final Counter readYourWritesFallbacks;
+
+    public ReplicaRoutingDataSource(DataSource primary,
+                                    DataSource replica,
+                                    ReplicaLag lag,
+                                    ReplicaProperties properties,
+                                    MeterRegistry registry) {
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        this.lag = lag;
+        this.maxLagMillis = properties.maxLag().toMillis();
+        this.readsOnReplica = reads(registry, "replica");
+        this.readsOnPrimary = reads(registry, "primary");
+        this.lagFallbacks = fallbacks(registry, "lag");
+        this.readYourWritesFallbacks = fallbacks(registry, "read-your-writes");
+    }
+
+    private static Counter reads(MeterRegistry registry, String target) {
+        return Counter.builder("bank.replica.reads")
+                .description("Connections of @ReplicaRead methods by the pool they were taken from")
+                .tag("target", target)
+                .register(registry);
+    }
+
+    private static Counter fallbacks(MeterRegistry registry, String reason) {
+        return Counter.builder("bank.replica.fallbacks")
+                .description("Connections of @ReplicaRead methods sent to the primary")
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            stampCommit();
+            return Target.PRIMARY;
+        }
+        if (REPLICA_READS.get()[0] == 0) {
+            return Target.PRIMARY;
+        }
+
+        long caughtUpTo = lag.caughtUpTo();
+        if (caughtUpTo <= System.currentTimeMillis() - maxLagMillis) {
+            lagFallbacks.increment();
+            readsOnPrimary.increment();
+            return Target.PRIMARY;
+        }
+        Request request = REQUEST.get();
+        if (request != null && caughtUpTo <= request.readAfter()) {
+            readYourWritesFallbacks.increment();
+            readsOnPrimary.increment();
+            return Target.PRIMARY;
+        }
+        readsOnReplica.increment();
+        return Target.REPLICA;
+    }
+
+    // The stamp is taken after the commit, so a lag sample that is newer covers the write
+    private static void stampCommit() {
+        Request request = REQUEST.get();
+        if (request == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                if (!request.response().isCommitted()) {
+                    request.response().setHeader(READ_AFTER, Long.toString(System.currentTimeMillis()));
+                }
+            }
+        });
+    }
+
+    static void enterReplicaRead() {
+        REPLICA_READS.get()[0]++;
+    }
+
+    static void exitReplicaRead() {
+        REPLICA_READS.get()[0]--;
+    }
+
+    // An X-Read-After that can not be parsed sends every read of the request to the primary
+    static void startRequest(String readAfter, HttpServletResponse response) {
+        long after = 0;
+        if (readAfter != null) {
+            try {
+                after = Long.parseLong(readAfter.strip());
+            } catch (NumberFormatException e) {
+                after = Long.MAX_VALUE;
+            }
+        }
+        REQUEST.set(new Request(after, response));
+    }
+
+    static void endRequest() {
+        REQUEST.remove();
+    }
+}
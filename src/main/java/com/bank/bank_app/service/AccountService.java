@@ -1,26 +1,51 @@
 package com.bank.bank_app.service;
 
+import com.bank.bank_app.dto.AccountImportResultDTO;
+import com.bank.bank_app.dto.AccountPageDTO;
 import com.bank.bank_app.dto.AccountResponseDT0;
 import com.bank.bank_app.dto.AccountRequestDTO;
-import com.bank.bank_app.dto.EntryDTO;
-
-import java.math.BigDecimal;
+import com.bank.bank_app.dto.BalanceAsOfDTO;
+import com.bank.bank_app.dto.DailyRollupDTO;
+import com.bank.bank_app.dto.EntryPageDTO;
+import com.bank.bank_app.dto.EntryPageRequest;
+import com.bank.bank_app.dto.StatementRequest;
+import com.bank.bank_app.dto.TransferBatchResponseDTO;
+import com.bank.bank_app.dto.TransferRequestDTO;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.onboarding.AccountImportFormat;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface AccountService {
 
     AccountResponseDT0 createAccount(AccountRequestDTO accountRequestDTO);
     List<AccountResponseDT0> getAllAccounts();
+    AccountPageDTO getAccounts(Long afterId, int limit);
+    void streamAllAccounts(Consumer<AccountResponseDT0> consumer);
     AccountResponseDT0 getAccountById(Long id);
     AccountResponseDT0 updateAccount(Long id, AccountRequestDTO accountRequestDTO);
     void deleteAccount(Long id);
+    AccountImportResultDTO importAccounts(String importId, AccountImportFormat format, InputStream body);
+
+    AccountResponseDT0 deposit(Long id, Money amount);
+    AccountResponseDT0 withdraw(Long id, Money amount);
 
-    AccountResponseDT0 deposit(Long id, BigDecimal amount);
-    AccountResponseDT0 withdraw(Long id, BigDecimal amount);
+    BalanceAsOfDTO getBalanceAsOf(Long id, LocalDateTime asOf);
 
     //Entries
 
-    List<EntryDTO> getAccountTransactions(Long id);
+    EntryPageDTO getAccountTransactions(Long id, EntryPageRequest pageRequest);
+
+    long exportStatement(StatementRequest request, OutputStream out);
+
+    List<DailyRollupDTO> getDailyRollups(List<Long> accountIds, LocalDate from, LocalDate to);
+
+    AccountResponseDT0 transfer(Long fromAccountId, Long toAccountId, Money amount);
 
-    AccountResponseDT0 transfer(Long fromAccountId, Long toAccountId, BigDecimal amount);
+    TransferBatchResponseDTO transferBatch(List<TransferRequestDTO> transfers);
 }
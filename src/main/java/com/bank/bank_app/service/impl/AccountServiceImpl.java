@@ -1,36 +1,82 @@
 package com.bank.bank_app.service.impl;
 
+import com.bank.bank_app.cache.AccountCache;
+import com.bank.bank_app.concurrency.RetryOnConflict;
+import com.bank.bank_app.config.TransferBatchProperties;
+import com.bank.bank_app.dto.AccountImportResultDTO;
+import com.bank.bank_app.dto.AccountPageDTO;
 import com.bank.bank_app.dto.AccountRequestDTO;
 import com.bank.bank_app.dto.AccountResponseDT0;
+import com.bank.bank_app.dto.BalanceAsOfDTO;
+import com.bank.bank_app.dto.DailyRollupDTO;
+import com.bank.bank_app.dto.EntryCursor;
 import com.bank.bank_app.dto.EntryDTO;
+import com.bank.bank_app.dto.EntryPageDTO;
+import com.bank.bank_app.dto.EntryPageRequest;
+import com.bank.bank_app.dto.StatementRequest;
+import com.bank.bank_app.dto.TransferBatchResponseDTO;
+import com.bank.bank_app.dto.TransferRequestDTO;
+import com.bank.bank_app.dto.TransferResultDTO;
 import com.bank.bank_app.entity.EntryType;
 import com.bank.bank_app.exception.AccountNotFoundException;
+import com.bank.bank_app.hotaccount.HotAccounts;
 import com.bank.bank_app.mapper.AccountMapper;
 import com.bank.bank_app.model.Account;
+import com.bank.bank_app.model.BalanceSnapshot;
 import com.bank.bank_app.model.Entry;
 import com.bank.bank_app.model.Transfer;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.onboarding.AccountImportFormat;
+import com.bank.bank_app.onboarding.AccountImporter;
 import com.bank.bank_app.repository.AccountRepository;
+import com.bank.bank_app.repository.BalanceSnapshotRepository;
 import com.bank.bank_app.repository.EntryRepository;
 import com.bank.bank_app.repository.TransferRepository;
+import com.bank.bank_app.rollup.DailyRollups;
+import com.bank.bank_app.routing.ReplicaRead;
 import com.bank.bank_app.service.AccountService;
-import jakarta.transaction.Transactional;
+import com.bank.bank_app.statement.StatementExporter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class AccountServiceImpl implements AccountService {
 
+    static final int MAX_PAGE_SIZE = 500;
+    // About a month: the first window of a history query reads one or two monthly partitions of entries
+    static final Duration HISTORY_WINDOW = Duration.ofDays(31);
+
     private final AccountRepository accountRepository;
     private final EntryRepository entryRepository;
     private final TransferRepository transferRepository;
+    private final TransferBatchExecutor transferBatchExecutor;
+    private final TransferBatchProperties transferBatchProperties;
+    private final AccountCache accountCache;
+    private final HotAccounts hotAccounts;
+    private final BalanceSnapshotRepository snapshotRepository;
+    private final AccountImporter accountImporter;
+    private final StatementExporter statementExporter;
+    private final DailyRollups dailyRollups;
 
     @Override
     public AccountResponseDT0 createAccount(AccountRequestDTO accountRequestDTO) {
@@ -39,6 +85,8 @@ public class AccountServiceImpl implements AccountService {
     }
 
     @Override
+    @ReplicaRead
+    @Transactional(readOnly = true)
     public List<AccountResponseDT0> getAllAccounts() {
         return accountRepository.findAll()
                 .stream()
@@ -46,144 +94,356 @@ public class AccountServiceImpl implements AccountService {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    @ReplicaRead
+    @Transactional(readOnly = true)
+    public AccountPageDTO getAccounts(Long afterId, int limit) {
+        if(limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        // One extra row tells whether there is anything beyond this page
+        List<AccountResponseDT0> rows = accountRepository.findPageAfter(afterId != null ? afterId : 0L, Limit.of(limit + 1));
+        if (rows.size() <= limit) {
+            return new AccountPageDTO(rows, null);
+        }
+        List<AccountResponseDT0> accounts = List.copyOf(rows.subList(0, limit));
+        return new AccountPageDTO(accounts, accounts.getLast().id());
+    }
+
+    // The cursor needs an open transaction for as long as rows are being consumed
+    @Override
+    @ReplicaRead
+    @Transactional(readOnly = true)
+    public void streamAllAccounts(Consumer<AccountResponseDT0> consumer) {
+        try (Stream<AccountResponseDT0> accounts = accountRepository.streamAll()) {
+            accounts.forEach(consumer);
+        }
+    }
+
+    // Not @ReplicaRead: a replica that is behind would put a balance older than the last write back into the cache
     @Override
     public AccountResponseDT0 getAccountById(Long id) {
-        return accountRepository.findById(id)
+        return accountCache.get(id, key -> accountRepository.findById(key)
                 .map(AccountMapper::toResponseDTO)
-                .orElseThrow(() -> new AccountNotFoundException("Account not found with id: " + id));
+                .orElseThrow(() -> new AccountNotFoundException("Account not found with id: " + key)));
     }
 
     @Override
+    @Transactional
     public AccountResponseDT0 updateAccount(Long id, AccountRequestDTO accountRequestDTO) {
         Account account = accountRepository.findById(id)
                 .orElseThrow(() -> new AccountNotFoundException("Account not found with id: " + id));
 
         account.setOwner(accountRequestDTO.owner());
         account.setBalance(accountRequestDTO.balance());
+        // The new balance replaces the buckets of a hot account too. The change above is flushed (and the
+        // accounts row locked) before the buckets, the order every other bucket statement locks in
+        accountRepository.zeroBuckets(List.of(id));
+        account.setBucketBalance(Money.ZERO);
 
-        return AccountMapper.toResponseDTO(accountRepository.save(account));
+        Account saved = accountRepository.save(account);
+        accountCache.evict(id);
+        return AccountMapper.toResponseDTO(saved);
     }
 
+    // Soft delete: neither the account nor its entries and transfers are loaded, AccountPurgeJob removes them
     @Override
+    @Transactional
     public void deleteAccount(Long id) {
-        Account account = accountRepository.findById(id)
-                .orElseThrow(() -> new AccountNotFoundException("Account not found with id: " + id));
-        accountRepository.delete(account);
+        if (accountRepository.softDelete(id, LocalDateTime.now()) == 0) {
+            throw new AccountNotFoundException("Account not found with id: " + id);
+        }
+        accountCache.evict(id);
     }
 
+    // Not @Transactional: the importer commits every chunk on its own
     @Override
-    public AccountResponseDT0 deposit(Long id, BigDecimal amount) {
-        Account account = accountRepository.findById(id)
-                .orElseThrow(() -> new AccountNotFoundException("Account not found with id: " + id));
+    public AccountImportResultDTO importAccounts(String importId, AccountImportFormat format, InputStream body) {
+        return accountImporter.importAccounts(importId, format, body);
+    }
 
-        if(amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+    // One conditional UPDATE ... RETURNING (on a bucket row for a hot account) and the entry insert,
+    // in one transaction: no read before the write
+    @Override
+    @Transactional
+    public AccountResponseDT0 deposit(Long id, Money amount) {
+        if(amount == null || !amount.isPositive()) {
             throw new IllegalArgumentException("Deposit amount must be greater than zero");
         }
 
-        account.setBalance(account.getBalance().add(amount));
-        Account saved = accountRepository.save(account);
+        AccountResponseDT0 updated = hotAccounts.credit(id, amount)
+                .orElseThrow(() -> new AccountNotFoundException("Account not found with id: " + id));
+        accountCache.evict(id);
 
-        Entry entry = Entry.builder()
-                .account(saved)
-                .amount(amount)
-                .entryType(EntryType.DEPOSIT)
-                .createdAt(LocalDateTime.now())
-                .balanceAfter(saved.getBalance())
-                .build();
-        entryRepository.save(entry);
-        return AccountMapper.toResponseDTO(saved);
+        recordEntry(id, amount, EntryType.DEPOSIT, updated.balance());
+        return updated;
     }
 
     @Override
-    public AccountResponseDT0 withdraw(Long id, BigDecimal amount) {
+    @Transactional
+    public AccountResponseDT0 withdraw(Long id, Money amount) {
+        if(amount == null || !amount.isPositive()) {
+            throw new IllegalArgumentException("Withdrawal amount must be greater than zero");
+        }
+
+        // No row updated: only on this path it matters whether the account exists
+        AccountResponseDT0 updated = hotAccounts.debit(id, amount)
+                .orElseThrow(() -> accountRepository.existsById(id)
+                        ? new IllegalArgumentException("Insufficient funds in account")
+                        : new AccountNotFoundException("Account not found with id: " + id));
+        accountCache.evict(id);
 
+        recordEntry(id, amount, EntryType.WITHDRAW, updated.balance());
+        return updated;
+    }
+
+    /*
+    Nearest snapshot at or before asOf plus the entries since, else the first snapshot after asOf minus the
+    entries in between, else the current balance minus everything after asOf. Only amounts are added up,
+    balance_after is not used: concurrent entries of a hot account do not see each other's buckets.
+     */
+    @Override
+    @ReplicaRead
+    @Transactional(readOnly = true)
+    public BalanceAsOfDTO getBalanceAsOf(Long id, LocalDateTime asOf) {
         Account account = accountRepository.findById(id)
                 .orElseThrow(() -> new AccountNotFoundException("Account not found with id: " + id));
-
-        if(amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new IllegalArgumentException("Withdrawal amount must be greater than zero");
+        if (asOf.isBefore(account.getCreatedAt())) {
+            throw new IllegalArgumentException("Account did not exist at " + asOf);
         }
 
-        if(account.getBalance().compareTo(amount) < 0) {
-            throw new IllegalArgumentException("Insufficient funds in account");
+        Optional<BalanceSnapshot> before = snapshotRepository.findFirstByAccountIdAndTakenAtLessThanEqualOrderByTakenAtDesc(id, asOf);
+        if (before.isPresent()) {
+            Money since = Money.of(entryRepository.sumChanges(id, before.get().getTakenAt(), asOf));
+            return new BalanceAsOfDTO(id, asOf, before.get().getBalance().plus(since));
         }
+        Optional<BalanceSnapshot> after = snapshotRepository.findFirstByAccountIdAndTakenAtGreaterThanOrderByTakenAtAsc(id, asOf);
+        if (after.isPresent()) {
+            Money between = Money.of(entryRepository.sumChanges(id, asOf, after.get().getTakenAt()));
+            return new BalanceAsOfDTO(id, asOf, after.get().getBalance().minus(between));
+        }
+        Money balance = snapshotRepository.currentBalanceAsOf(id, asOf)
+                .orElseThrow(() -> new AccountNotFoundException("Account not found with id: " + id));
+        return new BalanceAsOfDTO(id, asOf, balance);
+    }
 
-        account.setBalance(account.getBalance().subtract(amount));
-        Account saved = accountRepository.save(account);
-
+    private void recordEntry(Long accountId, Money amount, EntryType entryType, Money balanceAfter) {
         Entry entry = Entry.builder()
-                .account(saved)
+                .account(accountRepository.getReferenceById(accountId))
                 .amount(amount)
-                .entryType(EntryType.WITHDRAW)
+                .entryType(entryType)
                 .createdAt(LocalDateTime.now())
-                .balanceAfter(saved.getBalance())
+                .balanceAfter(balanceAfter)
                 .build();
         entryRepository.save(entry);
+        dailyRollups.add(List.of(entry));
+    }
 
-        return AccountMapper.toResponseDTO(saved);
+    @Override
+    @ReplicaRead
+    @Transactional(readOnly = true)
+    public EntryPageDTO getAccountTransactions(Long accountId, EntryPageRequest pageRequest) {
+        if(pageRequest.limit() < 1 || pageRequest.limit() > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if(pageRequest.before() != null && pageRequest.after() != null) {
+            throw new IllegalArgumentException("Only one of before and after can be set");
+        }
+        EntryCursor before = pageRequest.before() != null ? EntryCursor.decode(pageRequest.before()) : null;
+        EntryCursor after = pageRequest.after() != null ? EntryCursor.decode(pageRequest.after()) : null;
+
+        // One extra row tells whether there is anything beyond this page
+        List<EntryDTO> rows = after != null
+                ? entryRepository.findPage(accountId, null, after,
+                        pageRequest.from(), pageRequest.to(), pageRequest.entryType(), pageRequest.limit() + 1)
+                : findNewestFirst(accountId, before, pageRequest);
+        boolean hasMore = rows.size() > pageRequest.limit();
+        List<EntryDTO> entries = new ArrayList<>(hasMore ? rows.subList(0, pageRequest.limit()) : rows);
+
+        String nextCursor;
+        String previousCursor;
+        if (after != null) {
+            Collections.reverse(entries);
+            nextCursor = entries.isEmpty() ? pageRequest.after() : EntryCursor.of(entries.getLast()).encode();
+            previousCursor = hasMore ? EntryCursor.of(entries.getFirst()).encode() : null;
+        } else {
+            nextCursor = hasMore ? EntryCursor.of(entries.getLast()).encode() : null;
+            previousCursor = before != null && !entries.isEmpty() ? EntryCursor.of(entries.getFirst()).encode() : null;
+        }
+        return new EntryPageDTO(entries, nextCursor, previousCursor);
+    }
+
+    /*
+    Read going back from the cursor (or now) a window at a time, each query with a created_at range the planner
+    prunes to the partitions it covers, until the page is full or the window passes "from". The first window
+    is HISTORY_WINDOW, each one after a short read is twice the one before, so a long quiet stretch takes a few
+    queries. Without "from" the account's creation (a day earlier for clock skew between instances) is where
+    the history ends, looked up only when the first window was not enough.
+    The newest window has no upper bound: entries another instance wrote a little ahead of this clock are in it.
+     */
+    private List<EntryDTO> findNewestFirst(Long accountId, EntryCursor before, EntryPageRequest pageRequest) {
+        LocalDateTime floor = pageRequest.from();
+        LocalDateTime to = pageRequest.to();
+        LocalDateTime windowEnd = before != null ? before.createdAt() : LocalDateTime.now();
+        if (to != null && to.isBefore(windowEnd)) {
+            windowEnd = to;
+        }
+        Duration window = HISTORY_WINDOW;
+        List<EntryDTO> rows = new ArrayList<>();
+        while (true) {
+            LocalDateTime from = windowEnd.minus(window);
+            boolean last = floor != null && !from.isAfter(floor);
+            rows.addAll(entryRepository.findPage(accountId, before, null, last ? floor : from, to,
+                    pageRequest.entryType(), pageRequest.limit() + 1 - rows.size()));
+            if (rows.size() > pageRequest.limit() || last) {
+                return rows;
+            }
+            if (floor == null) {
+                Optional<LocalDateTime> createdAt = accountRepository.findCreatedAtById(accountId);
+                if (createdAt.isEmpty() || !from.isAfter(createdAt.get().minusDays(1))) {
+                    return rows;
+                }
+                floor = createdAt.get().minusDays(1);
+            }
+            to = from;
+            windowEnd = from;
+            window = window.multipliedBy(2);
+        }
+    }
+
+    // One row per account and day that had entries, however many entries that day had
+    @Override
+    @ReplicaRead
+    @Transactional(readOnly = true)
+    public List<DailyRollupDTO> getDailyRollups(List<Long> accountIds, LocalDate from, LocalDate to) {
+        return dailyRollups.find(accountIds, from, to);
     }
 
+    // Not @Transactional: the exporter reads in its own read-only transaction
     @Override
-    public List<EntryDTO> getAccountTransactions(Long accountId) {
-        return entryRepository.findByAccountId(accountId);
+    @ReplicaRead
+    public long exportStatement(StatementRequest request, OutputStream out) {
+        return statementExporter.export(request, out);
     }
 
     @Override
+    @RetryOnConflict
     @Transactional
-    public AccountResponseDT0 transfer(Long fromAccountId, Long toAccountId, BigDecimal amount) {
+    public AccountResponseDT0 transfer(Long fromAccountId, Long toAccountId, Money amount) {
 
-        if(amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+        if(amount == null || !amount.isPositive()) {
             throw new IllegalArgumentException("Transfer amount must be greater than zero");
         }
 
-        Account fromAccount = accountRepository.findById(fromAccountId)
-                .orElseThrow(() -> new AccountNotFoundException("Account not found with id: " + fromAccountId));
-
-        Account toAccount = accountRepository.findById(toAccountId)
-                .orElseThrow(() -> new AccountNotFoundException("Account not found with id: " + toAccountId));
+        //Both rows are locked up front, in one statement and in id order (see AccountRepositoryCustom.lockAccounts)
+        Map<Long, AccountResponseDT0> accounts = hotAccounts.lock(List.of(fromAccountId, toAccountId))
+                .stream()
+                .collect(Collectors.toMap(AccountResponseDT0::id, Function.identity()));
+        AccountResponseDT0 fromAccount = accounts.get(fromAccountId);
+        if (fromAccount == null) {
+            throw new AccountNotFoundException("Account not found with id: " + fromAccountId);
+        }
+        if (!accounts.containsKey(toAccountId)) {
+            throw new AccountNotFoundException("Account not found with id: " + toAccountId);
+        }
 
-        if(fromAccount.getBalance().compareTo(amount) < 0) {
+        if(fromAccount.balance().isLessThan(amount)) {
             throw new IllegalArgumentException("Insufficient funds");
         }
 
-        //Deduct from sender
-        fromAccount.setBalance(fromAccount.getBalance().subtract(amount));
-        Account savedFrom = accountRepository.save(fromAccount);
+        //Deduct from sender (checked again by the UPDATE itself) and add to receiver, the lower account id
+        //first like the locks above, the buckets of hot accounts are locked in the same order
+        AccountResponseDT0 savedFrom;
+        AccountResponseDT0 savedTo;
+        if (fromAccountId < toAccountId) {
+            savedFrom = debitSender(fromAccountId, amount);
+            savedTo = creditReceiver(toAccountId, amount);
+        } else {
+            savedTo = creditReceiver(toAccountId, amount);
+            savedFrom = debitSender(fromAccountId, amount);
+        }
+        accountCache.evict(fromAccountId);
+        accountCache.evict(toAccountId);
 
-        //Add to receiver
-        toAccount.setBalance(toAccount.getBalance().add(amount));
-        Account savedTo = accountRepository.save(toAccount);
+        //Record Transfers, first: its id goes on both entries
+        LocalDateTime now = LocalDateTime.now();
+        Transfer transfer = Transfer.builder()
+                .amount(amount)
+                .createdAt(now)
+                .fromAccount(accountRepository.getReferenceById(fromAccountId))
+                .toAccount(accountRepository.getReferenceById(toAccountId))
+                .build();
+        transferRepository.save(transfer);
 
         //Record entries
         Entry fromEntry = Entry.builder()
-                .account(savedFrom)
+                .account(transfer.getFromAccount())
                 .amount(amount)
                 .entryType(EntryType.TRANSFER_OUT)
-                .createdAt(LocalDateTime.now())
-                .balanceAfter(savedFrom.getBalance())
+                .createdAt(now)
+                .balanceAfter(savedFrom.balance())
+                .transferId(transfer.getId())
                 .build();
         entryRepository.save(fromEntry);
 
         Entry toEntry = Entry.builder()
-                .account(savedTo)
+                .account(transfer.getToAccount())
                 .amount(amount)
                 .entryType(EntryType.TRANSFER_IN)
-                .createdAt(LocalDateTime.now())
-                .balanceAfter(savedTo.getBalance())
+                .createdAt(now)
+                .balanceAfter(savedTo.balance())
+                .transferId(transfer.getId())
                 .build();
         entryRepository.save(toEntry);
+        dailyRollups.add(List.of(fromEntry, toEntry));
 
-        //Record Transfers
+        return savedFrom;
+    }
 
-        Transfer transfer = Transfer.builder()
-                .amount(amount)
-                .createdAt(LocalDateTime.now())
-                .fromAccount(savedFrom)
-                .toAccount(savedTo)
-                .build();
-        transferRepository.save(transfer);
+    private AccountResponseDT0 debitSender(Long id, Money amount) {
+        return hotAccounts.debit(id, amount)
+                .orElseThrow(() -> new IllegalArgumentException("Insufficient funds"));
+    }
+
+    private AccountResponseDT0 creditReceiver(Long id, Money amount) {
+        return hotAccounts.credit(id, amount)
+                .orElseThrow(() -> new AccountNotFoundException("Account not found with id: " + id));
+    }
+
+    @Override
+    public TransferBatchResponseDTO transferBatch(List<TransferRequestDTO> transfers) {
+        checkBatchSize(transfers, transferBatchProperties);
+
+        List<TransferResultDTO> results = new ArrayList<>(transfers.size());
+        int chunkSize = transferBatchProperties.chunkSize();
+        for (int start = 0; start < transfers.size(); start += chunkSize) {
+            List<TransferRequestDTO> chunk = transfers.subList(start, Math.min(start + chunkSize, transfers.size()));
+            try {
+                results.addAll(transferBatchExecutor.applyChunk(chunk, start));
+            } catch (RuntimeException e) {
+                // The whole chunk was rolled back, later chunks are still attempted
+                log.error("Transfer batch chunk starting at {} failed", start, e);
+                for (int i = 0; i < chunk.size(); i++) {
+                    results.add(TransferResultDTO.failed(start + i, "Chunk failed: " + e.getMessage()));
+                }
+            }
+        }
+        return toBatchResponse(results);
+    }
+
+    static void checkBatchSize(List<TransferRequestDTO> transfers, TransferBatchProperties properties) {
+        if(transfers == null || transfers.isEmpty()) {
+            throw new IllegalArgumentException("Transfer batch must not be empty");
+        }
+        if(transfers.size() > properties.maxSize()) {
+            throw new IllegalArgumentException("Transfer batch must not contain more than "
+                    + properties.maxSize() + " transfers");
+        }
+    }
 
-        return AccountMapper.toResponseDTO(savedFrom);
+    static TransferBatchResponseDTO toBatchResponse(List<TransferResultDTO> results) {
+        int succeeded = (int) results.stream().filter(TransferResultDTO::success).count();
+        return new TransferBatchResponseDTO(succeeded, results.size() - succeeded, Collections.unmodifiableList(results));
     }
 
 }
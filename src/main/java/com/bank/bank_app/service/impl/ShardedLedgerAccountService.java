@@ -0,0 +1,151 @@
+package com.bank.bank_app.service.impl;
+
+import com.bank.bank_app.config.TransferBatchProperties;
+import com.bank.bank_app.dto.AccountImportResultDTO;
+import com.bank.bank_app.dto.AccountPageDTO;
+import com.bank.bank_app.dto.AccountRequestDTO;
+import com.bank.bank_app.dto.AccountResponseDT0;
+import com.bank.bank_app.dto.BalanceAsOfDTO;
+import com.bank.bank_app.dto.DailyRollupDTO;
+import com.bank.bank_app.dto.EntryPageDTO;
+import com.bank.bank_app.dto.EntryPageRequest;
+import com.bank.bank_app.dto.StatementRequest;
+import com.bank.bank_app.dto.TransferBatchResponseDTO;
+import com.bank.bank_app.dto.TransferRequestDTO;
+import com.bank.bank_app.dto.TransferResultDTO;
+import com.bank.bank_app.ledger.ShardedLedgerEngine;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.onboarding.AccountImportFormat;
+import com.bank.bank_app.service.AccountService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/*
+AccountService backed by the in-memory ShardedLedgerEngine, enabled with bank.ledger.engine=sharded.
+
+Balance changes are serialized per account by the shard that owns it instead of by database locks,
+and reach the database asynchronously. Creating and importing accounts, listing accounts/entries,
+statements, daily rollups and as-of balances still go through the JPA implementation, so those reads can lag a few
+milliseconds behind the shards.
+ */
+@Primary
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "bank.ledger.engine", havingValue = "sharded")
+public class ShardedLedgerAccountService implements AccountService {
+
+    private final ShardedLedgerEngine ledgerEngine;
+    private final AccountServiceImpl jpaAccountService;
+    private final TransferBatchProperties transferBatchProperties;
+
+    @Override
+    public AccountResponseDT0 createAccount(AccountRequestDTO accountRequestDTO) {
+        return jpaAccountService.createAccount(accountRequestDTO);
+    }
+
+    @Override
+    public List<AccountResponseDT0> getAllAccounts() {
+        return jpaAccountService.getAllAccounts();
+    }
+
+    @Override
+    public AccountPageDTO getAccounts(Long afterId, int limit) {
+        return jpaAccountService.getAccounts(afterId, limit);
+    }
+
+    @Override
+    public void streamAllAccounts(Consumer<AccountResponseDT0> consumer) {
+        jpaAccountService.streamAllAccounts(consumer);
+    }
+
+    @Override
+    public AccountResponseDT0 getAccountById(Long id) {
+        return ledgerEngine.getAccount(id);
+    }
+
+    @Override
+    public AccountResponseDT0 updateAccount(Long id, AccountRequestDTO accountRequestDTO) {
+        return ledgerEngine.updateAccount(id, accountRequestDTO);
+    }
+
+    @Override
+    public void deleteAccount(Long id) {
+        ledgerEngine.deleteAccount(id);
+    }
+
+    @Override
+    public AccountImportResultDTO importAccounts(String importId, AccountImportFormat format, InputStream body) {
+        return jpaAccountService.importAccounts(importId, format, body);
+    }
+
+    @Override
+    public AccountResponseDT0 deposit(Long id, Money amount) {
+        if(amount == null || !amount.isPositive()) {
+            throw new IllegalArgumentException("Deposit amount must be greater than zero");
+        }
+        return ledgerEngine.deposit(id, amount);
+    }
+
+    @Override
+    public AccountResponseDT0 withdraw(Long id, Money amount) {
+        if(amount == null || !amount.isPositive()) {
+            throw new IllegalArgumentException("Withdrawal amount must be greater than zero");
+        }
+        return ledgerEngine.withdraw(id, amount);
+    }
+
+    @Override
+    public BalanceAsOfDTO getBalanceAsOf(Long id, LocalDateTime asOf) {
+        return jpaAccountService.getBalanceAsOf(id, asOf);
+    }
+
+    @Override
+    public EntryPageDTO getAccountTransactions(Long id, EntryPageRequest pageRequest) {
+        return jpaAccountService.getAccountTransactions(id, pageRequest);
+    }
+
+    @Override
+    public long exportStatement(StatementRequest request, OutputStream out) {
+        return jpaAccountService.exportStatement(request, out);
+    }
+
+    @Override
+    public List<DailyRollupDTO> getDailyRollups(List<Long> accountIds, LocalDate from, LocalDate to) {
+        return jpaAccountService.getDailyRollups(accountIds, from, to);
+    }
+
+    @Override
+    public AccountResponseDT0 transfer(Long fromAccountId, Long toAccountId, Money amount) {
+        if(amount == null || !amount.isPositive()) {
+            throw new IllegalArgumentException("Transfer amount must be greater than zero");
+        }
+        return ledgerEngine.transfer(fromAccountId, toAccountId, amount);
+    }
+
+    // Transfer ids are only assigned once the ledger log has written them to the database, so results carry none
+    @Override
+    public TransferBatchResponseDTO transferBatch(List<TransferRequestDTO> transfers) {
+        AccountServiceImpl.checkBatchSize(transfers, transferBatchProperties);
+        List<TransferResultDTO> results = new ArrayList<>(transfers.size());
+        for (int i = 0; i < transfers.size(); i++) {
+            TransferRequestDTO request = transfers.get(i);
+            try {
+                AccountResponseDT0 from = transfer(request.fromAccountId(), request.toAccountId(), request.amount());
+                results.add(TransferResultDTO.succeeded(i, null, from.balance()));
+            } catch (RuntimeException e) {
+                results.add(TransferResultDTO.failed(i, e.getMessage()));
+            }
+        }
+        return AccountServiceImpl.toBatchResponse(results);
+    }
+}
@@ -0,0 +1,162 @@
+package com.bank.bank_app.service.impl;
+
+import com.bank.bank_app.cache.AccountCache;
+import com.bank.bank_app.concurrency.RetryOnConflict;
+import com.bank.bank_app.dto.AccountResponseDT0;
+import com.bank.bank_app.dto.TransferRequestDTO;
+import com.bank.bank_app.dto.TransferResultDTO;
+import com.bank.bank_app.entity.EntryType;
+import com.bank.bank_app.exception.AccountNotFoundException;
+import com.bank.bank_app.hotaccount.HotAccounts;
+import com.bank.bank_app.model.Account;
+import com.bank.bank_app.model.Entry;
+import com.bank.bank_app.model.Transfer;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.repository.AccountRepository;
+import com.bank.bank_app.repository.EntryRepository;
+import com.bank.bank_app.repository.TransferRepository;
+import com.bank.bank_app.rollup.DailyRollups;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/*
+Applies one chunk of a transfer batch in a single transaction.
+
+All accounts of the chunk are locked with one statement through HotAccounts.lock (in id order, only key share
+for a chunk with a hot account, as in transfer), the transfers are checked and applied in memory in
+request order (so a later item sees the balance left by an earlier one), and the new entries and transfers
+are written with batched inserts. An item that fails validation is reported and skipped, it does not roll
+back the rest of the chunk.
+
+The balances change last, one credit or debit per account through HotAccounts, in id order like the locks
+(and like transfer does, so concurrent chunks never lock the buckets of two accounts in opposite orders).
+A hot account is credited in a bucket, chunks paying into it do not queue on its accounts row. Should
+concurrent debits of a hot account's buckets leave less than the chunk's net debit, the chunk fails whole.
+ */
+@Component
+@RequiredArgsConstructor
+public class TransferBatchExecutor {
+
+    private final AccountRepository accountRepository;
+    private final EntryRepository entryRepository;
+    private final TransferRepository transferRepository;
+    private final AccountCache accountCache;
+    private final DailyRollups dailyRollups;
+    private final HotAccounts hotAccounts;
+
+    @RetryOnConflict
+    @Transactional
+    public List<TransferResultDTO> applyChunk(List<TransferRequestDTO> chunk, int firstIndex) {
+        Set<Long> ids = new HashSet<>();
+        for (TransferRequestDTO request : chunk) {
+            ids.add(request.fromAccountId());
+            ids.add(request.toAccountId());
+        }
+        ids.remove(null);
+
+        Map<Long, Money> balances = hotAccounts.lock(ids)
+                .stream()
+                .collect(Collectors.toMap(AccountResponseDT0::id, AccountResponseDT0::balance));
+        accountCache.evictAll(balances.keySet());
+        Map<Long, Money> changes = new TreeMap<>();
+
+        List<Entry> entries = new ArrayList<>(chunk.size() * 2);
+        List<Transfer> transfers = new ArrayList<>(chunk.size());
+        Transfer[] applied = new Transfer[chunk.size()];
+        Money[] fromBalances = new Money[chunk.size()];
+        String[] errors = new String[chunk.size()];
+        LocalDateTime now = LocalDateTime.now();
+
+        for (int i = 0; i < chunk.size(); i++) {
+            TransferRequestDTO request = chunk.get(i);
+            errors[i] = validate(request, balances);
+            if (errors[i] != null) {
+                continue;
+            }
+
+            Account fromAccount = accountRepository.getReferenceById(request.fromAccountId());
+            Account toAccount = accountRepository.getReferenceById(request.toAccountId());
+            Money amount = request.amount();
+
+            Money fromBalance = balances.merge(fromAccount.getId(), amount.negate(), Money::plus);
+            Money toBalance = balances.merge(toAccount.getId(), amount, Money::plus);
+            changes.merge(fromAccount.getId(), amount.negate(), Money::plus);
+            changes.merge(toAccount.getId(), amount, Money::plus);
+
+            entries.add(entry(fromAccount, amount, EntryType.TRANSFER_OUT, now, fromBalance));
+            entries.add(entry(toAccount, amount, EntryType.TRANSFER_IN, now, toBalance));
+            applied[i] = Transfer.builder()
+                    .amount(amount)
+                    .createdAt(now)
+                    .fromAccount(fromAccount)
+                    .toAccount(toAccount)
+                    .build();
+            transfers.add(applied[i]);
+            fromBalances[i] = fromBalance;
+        }
+
+        changes.forEach((id, change) -> {
+            if (change.isPositive()) {
+                hotAccounts.credit(id, change)
+                        .orElseThrow(() -> new AccountNotFoundException("Account not found with id: " + id));
+            } else if (change.isNegative()) {
+                hotAccounts.debit(id, change.negate())
+                        .orElseThrow(() -> new IllegalArgumentException("Insufficient funds in account " + id));
+            }
+        });
+
+        // Sequence ids are assigned on persist, so they are known before the inserts are flushed
+        transferRepository.saveAll(transfers);
+        for (int i = 0; i < transfers.size(); i++) {
+            entries.get(2 * i).setTransferId(transfers.get(i).getId());
+            entries.get(2 * i + 1).setTransferId(transfers.get(i).getId());
+        }
+        entryRepository.saveAll(entries);
+        dailyRollups.add(entries);
+
+        List<TransferResultDTO> results = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            results.add(errors[i] != null
+                    ? TransferResultDTO.failed(firstIndex + i, errors[i])
+                    : TransferResultDTO.succeeded(firstIndex + i, applied[i].getId(), fromBalances[i]));
+        }
+        return results;
+    }
+
+    private String validate(TransferRequestDTO request, Map<Long, Money> balances) {
+        if(request.amount() == null || !request.amount().isPositive()) {
+            return "Transfer amount must be greater than zero";
+        }
+        Money fromBalance = balances.get(request.fromAccountId());
+        if (fromBalance == null) {
+            return "Account not found with id: " + request.fromAccountId();
+        }
+        if (!balances.containsKey(request.toAccountId())) {
+            return "Account not found with id: " + request.toAccountId();
+        }
+        if(fromBalance.isLessThan(request.amount())) {
+            return "Insufficient funds";
+        }
+        return null;
+    }
+
+    private Entry entry(Account account, Money amount, EntryType entryType, LocalDateTime createdAt, Money balanceAfter) {
+        return Entry.builder()
+                .account(account)
+                .amount(amount)
+                .entryType(entryType)
+                .createdAt(createdAt)
+                .balanceAfter(balanceAfter)
+                .build();
+    }
+}
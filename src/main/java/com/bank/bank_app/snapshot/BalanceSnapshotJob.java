@@ -0,0 +1,74 @@
+package com.bank.bank_app.snapshot;
+
+import com.bank.bank_app.repository.BalanceSnapshotRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/*
+Periodic per-account balance checkpoints for as-of lookups.
+
+Each run walks all accounts in id order, batchSize per transaction, and snapshots the balance as of
+now - settleDelay of every account that had entries since its previous snapshot. Entries get their
+created_at before they commit, going back settleDelay leaves time for all of them to be visible.
+
+An as-of lookup then adds up at most one interval of entries, however old the account is.
+ */
+@Slf4j
+@Component
+public class BalanceSnapshotJob {
+
+    private final BalanceSnapshotRepository snapshotRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final BalanceSnapshotProperties properties;
+    private final Counter snapshots;
+
+    public BalanceSnapshotJob(BalanceSnapshotRepository snapshotRepository,
+                              PlatformTransactionManager transactionManager,
+                              BalanceSnapshotProperties properties,
+                              MeterRegistry registry) {
+        this.snapshotRepository = snapshotRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        this.snapshots = Counter.builder("bank.snapshots.taken")
+                .description("Account balance snapshots written")
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${bank.snapshots.interval:1h}", initialDelayString = "${bank.snapshots.settle-delay:1m}")
+    public void run() {
+        if (!properties.enabled()) {
+            return;
+        }
+        try {
+            takeSnapshots(LocalDateTime.now().minus(properties.settleDelay()));
+        } catch (RuntimeException e) {
+            log.warn("Balance snapshot run failed, trying again in {}", properties.interval(), e);
+        }
+    }
+
+    // Returns the number of snapshots written
+    public int takeSnapshots(LocalDateTime cutoff) {
+        int taken = 0;
+        long afterId = 0;
+        while (true) {
+            List<Long> ids = snapshotRepository.findAccountIdsAfter(afterId, properties.batchSize());
+            if (ids.isEmpty()) {
+                break;
+            }
+            Integer written = transactionTemplate.execute(status -> snapshotRepository.takeSnapshots(ids, cutoff));
+            taken += written != null ? written : 0;
+            afterId = ids.getLast();
+        }
+        snapshots.increment(taken);
+        log.info("Took {} balance snapshots as of {}", taken, cutoff);
+        return taken;
+    }
+}
@@ -0,0 +1,22 @@
+package com.bank.bank_app.snapshot;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/*
+enabled      -> false stops taking snapshots, as-of lookups then add up more entries over time
+interval     -> time between two runs, also the most entries an as-of lookup has to add up
+settleDelay  -> snapshots are taken this far in the past, must be longer than any transaction and than
+                the persist lag of the sharded ledger so no entry before the snapshot is still missing
+batchSize    -> accounts snapshotted per transaction
+ */
+@ConfigurationProperties(prefix = "bank.snapshots")
+public record BalanceSnapshotProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("1h") Duration interval,
+        @DefaultValue("1m") Duration settleDelay,
+        @DefaultValue("1000") int batchSize
+) {
+}
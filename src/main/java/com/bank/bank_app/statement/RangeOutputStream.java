@@ -0,0 +1,48 @@
+package com.bank.bank_app.statement;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/*
+Passes on bytes first..last (inclusive) of what is written to it and drops the rest. Once byte last has
+been written it throws RangeComplete, so the export behind it stops instead of producing bytes no one reads.
+ */
+public class RangeOutputStream extends FilterOutputStream {
+
+    public static final class RangeComplete extends IOException {
+
+        private RangeComplete() {
+            super("Requested range written");
+        }
+    }
+
+    private final long first;
+    private final long last;
+    private long position;
+
+    public RangeOutputStream(OutputStream out, long first, long last) {
+        super(out);
+        this.first = first;
+        this.last = last;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        long start = Math.max(position, first);
+        long end = Math.min(position + len, last + 1);
+        if (start < end) {
+            out.write(b, off + (int) (start - position), (int) (end - start));
+        }
+        position += len;
+        if (position > last) {
+            out.flush();
+            throw new RangeComplete();
+        }
+    }
+}
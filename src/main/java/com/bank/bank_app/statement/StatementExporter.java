@@ -0,0 +1,175 @@
+package com.bank.bank_app.statement;
+
+import com.bank.bank_app.dto.StatementRequest;
+import com.bank.bank_app.exception.AccountNotFoundException;
+import com.bank.bank_app.repository.AccountRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.zip.GZIPOutputStream;
+
+/*
+Entry statements of one or more accounts over [from, to) as CSV, read through a server-side cursor.
+Postgres formats each row, including the counterparty from the entry's transfer; here the bytes of a row
+are only copied into one reusable buffer on their way to the response (through gzip if asked for).
+Memory use is the same for ten rows and for tens of millions.
+
+Accounts are exported one after the other in id order, each by createdAt and id, all from one
+REPEATABLE READ snapshot. Once `to` lies settleDelay in the past the same request gives the same bytes,
+such statements have an ETag and can be resumed with Range. Their length is remembered after a complete
+export, a resume needs it for Content-Range.
+ */
+@Component
+public class StatementExporter {
+
+    private static final byte[] HEADER = ("entry_id,account_id,created_at,entry_type,amount,balance_after,"
+            + "transfer_id,counterparty_account_id\n").getBytes(StandardCharsets.US_ASCII);
+
+    // Only TRANSFER_IN/TRANSFER_OUT entries have a transfer_id, created at the same time as their transfer or,
+    // for the TRANSFER_OUT of a cross-shard transfer, a moment before: the day bound keeps the lookup to the
+    // entry's month and the next
+    private static final String ROWS = """
+            SELECT e.id || ',' || e.account_id || ',' || to_char(e.created_at, 'YYYY-MM-DD"T"HH24:MI:SS.US')
+                   || ',' || e.entry_type || ',' || e.amount || ',' || e.balance_after
+                   || ',' || coalesce(e.transfer_id::text, '')
+                   || ',' || coalesce((CASE e.entry_type WHEN 'TRANSFER_OUT' THEN t.to_account_id
+                                                         ELSE t.from_account_id END)::text, '')
+            FROM entries e
+            LEFT JOIN transfers t ON t.id = e.transfer_id
+                                 AND t.created_at >= e.created_at AND t.created_at < e.created_at + interval '1 day'
+            WHERE e.account_id = ? AND e.created_at >= ? AND e.created_at < ?
+            ORDER BY e.created_at, e.id""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AccountRepository accountRepository;
+    private final StatementProperties properties;
+    private final Cache<String, Long> lengths;
+
+    public StatementExporter(DataSource dataSource,
+                             PlatformTransactionManager transactionManager,
+                             AccountRepository accountRepository,
+                             StatementProperties properties) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(properties.fetchSize());
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.accountRepository = accountRepository;
+        this.properties = properties;
+        this.lengths = Caffeine.newBuilder().maximumSize(properties.knownLengths()).build();
+    }
+
+    // Checked before the response starts, a failure in the middle of a download can only cut it off
+    public void validate(StatementRequest request) {
+        List<Long> accountIds = request.accountIds();
+        if (accountIds == null || accountIds.isEmpty() || accountIds.size() > properties.maxAccounts()) {
+            throw new IllegalArgumentException("A statement covers 1 to " + properties.maxAccounts() + " accounts");
+        }
+        if (request.from() == null || request.to() == null || !request.from().isBefore(request.to())) {
+            throw new IllegalArgumentException("From must be before to");
+        }
+        List<Long> missing = accountRepository.findMissingIds(accountIds);
+        if (!missing.isEmpty()) {
+            throw new AccountNotFoundException("Account not found with id: " + missing.getFirst());
+        }
+    }
+
+    // Only a statement that can not change any more has an ETag
+    public Optional<String> etag(StatementRequest request) {
+        if (request.to().isAfter(LocalDateTime.now().minus(properties.settleDelay()))) {
+            return Optional.empty();
+        }
+        String key = accountIds(request) + "|" + request.from() + "|" + request.to() + "|" + request.gzip();
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return Optional.of("\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public OptionalLong knownLength(StatementRequest request) {
+        Long length = etag(request).map(lengths::getIfPresent).orElse(null);
+        return length != null ? OptionalLong.of(length) : OptionalLong.empty();
+    }
+
+    // Returns the bytes written to out
+    public long export(StatementRequest request, OutputStream out) {
+        // Taken before reading: a statement that settles while it is exported may still have changed
+        Optional<String> etag = etag(request);
+        CountingOutputStream counted = new CountingOutputStream(out);
+        int bufferSize = (int) properties.bufferSize().toBytes();
+        try (OutputStream target = request.gzip() ? new GZIPOutputStream(counted, bufferSize) : counted;
+             BufferedOutputStream buffer = new BufferedOutputStream(target, bufferSize)) {
+            buffer.write(HEADER);
+            transactionTemplate.executeWithoutResult(status -> {
+                for (Long accountId : accountIds(request)) {
+                    jdbcTemplate.query(ROWS, rs -> {
+                        // A text column: the bytes as Postgres sent them, no String per row
+                        try {
+                            buffer.write(rs.getBytes(1));
+                            buffer.write('\n');
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }, accountId, request.from(), request.to());
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        etag.ifPresent(tag -> lengths.put(tag, counted.count));
+        return counted.count;
+    }
+
+    private static List<Long> accountIds(StatementRequest request) {
+        return request.accountIds().stream().distinct().sorted().toList();
+    }
+
+    // Closing it only flushes, the response stream belongs to the caller
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.bank.bank_app.statement;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/*
+fetchSize     -> rows the cursor fetches per round trip
+maxAccounts   -> accounts one statement may cover
+bufferSize    -> the one buffer rows are copied into before they reach the response (and gzip)
+settleDelay   -> a statement whose `to` is at least this far in the past can not change any more and can be
+                 resumed with Range; keep it above the longest transaction and the sharded ledger's persist lag
+knownLengths  -> lengths of complete statements remembered for Content-Range
+ */
+@ConfigurationProperties(prefix = "bank.statements")
+public record StatementProperties(
+        @DefaultValue("5000") int fetchSize,
+        @DefaultValue("1000") int maxAccounts,
+        @DefaultValue("64KB") DataSize bufferSize,
+        @DefaultValue("1m") Duration settleDelay,
+        @DefaultValue("10000") int knownLengths
+) {
+}
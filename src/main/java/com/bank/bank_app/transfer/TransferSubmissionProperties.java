@@ -0,0 +1,26 @@
+package com.bank.bank_app.transfer;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/*
+Settings for POST /api/accounts/transfers (asynchronous transfers).
+
+lanes            -> worker threads, a source account always goes to the same one
+capacity         -> transfers waiting per lane, a submission beyond that gets a 503
+batchSize        -> transfers a lane commits at once, at most bank.transfers.batch.chunk-size (so a batch is one
+                    transaction) and max-size, checked at startup
+statusRetention  -> how long the status of a finished submission can be polled
+maximumStatuses  -> statuses of finished submissions kept in memory; a waiting submission's status is never evicted
+ */
+@ConfigurationProperties(prefix = "bank.transfers.async")
+public record TransferSubmissionProperties(
+        @DefaultValue("4") int lanes,
+        @DefaultValue("10000") int capacity,
+        @DefaultValue("500") int batchSize,
+        @DefaultValue("1h") Duration statusRetention,
+        @DefaultValue("1000000") long maximumStatuses
+) {
+}
@@ -0,0 +1,215 @@
+package com.bank.bank_app.transfer;
+
+import com.bank.bank_app.config.TransferBatchProperties;
+import com.bank.bank_app.dto.TransferBatchResponseDTO;
+import com.bank.bank_app.dto.TransferRequestDTO;
+import com.bank.bank_app.dto.TransferResultDTO;
+import com.bank.bank_app.dto.TransferSubmissionDTO;
+import com.bank.bank_app.exception.ServiceBusyException;
+import com.bank.bank_app.exception.TransferNotFoundException;
+import com.bank.bank_app.service.AccountService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+/*
+Asynchronous transfers: a submission is queued and answered right away with an id to poll, the request
+thread never waits for a database connection.
+
+Each source account belongs to one lane (fromAccountId mod lanes), a bounded queue drained by one worker
+thread. The worker takes whatever is waiting, up to batchSize, and commits it as one transfer batch, so
+the transfers of a source account are applied in the order they were submitted.
+- lane full      -> ServiceBusyException (503), nothing is queued
+- batch applied  -> every submission COMPLETED or FAILED with the reason (insufficient funds, ...)
+- batch failed   -> every submission of the batch FAILED, the batch is one transaction so none of it was applied
+
+Queued submissions live in memory only: on shutdown the lanes are drained, a crash loses whatever was
+still waiting together with its status. The status of a waiting submission is kept apart from the bounded
+cache of finished ones, it can not be evicted while the transfer may still be applied.
+
+bank.transfers.async.queued    -> submissions waiting in all lanes
+bank.transfers.async.rejected  -> submissions refused because their lane was full
+ */
+@Slf4j
+@Component
+public class TransferSubmissions {
+
+    private static final long POLL_MILLIS = 100;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 30_000;
+
+    private record Submission(String id, TransferRequestDTO request) {
+    }
+
+    private final AccountService accountService;
+    private final TransferSubmissionProperties properties;
+    private final Map<String, TransferSubmissionDTO> pending = new ConcurrentHashMap<>();
+    private final Cache<String, TransferSubmissionDTO> statuses;
+    private final List<BlockingQueue<Submission>> lanes;
+    private final List<Thread> workers;
+    private final Counter rejected;
+    private volatile boolean running = true;
+
+    public TransferSubmissions(AccountService accountService,
+                               TransferSubmissionProperties properties,
+                               TransferBatchProperties batchProperties,
+                               MeterRegistry registry) {
+        if (properties.lanes() < 1 || properties.capacity() < 1 || properties.batchSize() < 1) {
+            throw new IllegalArgumentException("bank.transfers.async lanes, capacity and batch-size must be positive");
+        }
+        // A larger drain would be refused by transferBatch as a whole, or split over several transactions
+        if (properties.batchSize() > batchProperties.chunkSize() || properties.batchSize() > batchProperties.maxSize()) {
+            throw new IllegalArgumentException(
+                    "bank.transfers.async.batch-size must not exceed bank.transfers.batch.chunk-size and max-size");
+        }
+        this.accountService = accountService;
+        this.properties = properties;
+        this.statuses = Caffeine.newBuilder()
+                .maximumSize(properties.maximumStatuses())
+                .expireAfterWrite(properties.statusRetention())
+                .build();
+        this.lanes = new ArrayList<>(properties.lanes());
+        this.workers = new ArrayList<>(properties.lanes());
+        for (int i = 0; i < properties.lanes(); i++) {
+            BlockingQueue<Submission> lane = new ArrayBlockingQueue<>(properties.capacity());
+            lanes.add(lane);
+            workers.add(new Thread(() -> run(lane), "transfer-lane-" + i));
+        }
+        this.rejected = Counter.builder("bank.transfers.async.rejected")
+                .description("Asynchronous transfers refused because their lane was full")
+                .register(registry);
+        Gauge.builder("bank.transfers.async.queued", this, TransferSubmissions::queued)
+                .description("Asynchronous transfers waiting to be applied")
+                .register(registry);
+    }
+
+    @PostConstruct
+    void start() {
+        workers.forEach(Thread::start);
+    }
+
+    public TransferSubmissionDTO submit(TransferRequestDTO request) {
+        TransferSubmissionDTO queued = prepare(request);
+        enqueue(queued);
+        return queued;
+    }
+
+    // The submission with its id, not queued yet. Only what needs no database is checked here, the rest is
+    // reported through the status
+    public TransferSubmissionDTO prepare(TransferRequestDTO request) {
+        if (request.fromAccountId() == null || request.toAccountId() == null) {
+            throw new IllegalArgumentException("Transfer needs a source and a destination account");
+        }
+        if (request.amount() == null || !request.amount().isPositive()) {
+            throw new IllegalArgumentException("Transfer amount must be greater than zero");
+        }
+        if (!running) {
+            throw new ServiceBusyException("Transfers are not accepted while shutting down");
+        }
+        return TransferSubmissionDTO.queued(UUID.randomUUID().toString(), request, LocalDateTime.now());
+    }
+
+    // Hands a prepared submission to its lane, ServiceBusyException when the lane is full
+    public void enqueue(TransferSubmissionDTO queued) {
+        Submission submission = new Submission(queued.id(),
+                new TransferRequestDTO(queued.fromAccountId(), queued.toAccountId(), queued.amount()));
+        // Stored first, the worker may finish the transfer before offer returns
+        pending.put(submission.id(), queued);
+        if (!lane(queued.fromAccountId()).offer(submission)) {
+            pending.remove(submission.id());
+            rejected.increment();
+            throw new ServiceBusyException("Too many transfers waiting, try again later");
+        }
+    }
+
+    // Pending first: a finished status is in the cache before it leaves pending
+    public TransferSubmissionDTO status(String id) {
+        TransferSubmissionDTO status = pending.get(id);
+        if (status == null) {
+            status = statuses.getIfPresent(id);
+        }
+        if (status == null) {
+            throw new TransferNotFoundException("Transfer not found with id: " + id);
+        }
+        return status;
+    }
+
+    public int queued() {
+        return lanes.stream().mapToInt(BlockingQueue::size).sum();
+    }
+
+    private BlockingQueue<Submission> lane(long fromAccountId) {
+        return lanes.get(Math.floorMod(fromAccountId, lanes.size()));
+    }
+
+    private void run(BlockingQueue<Submission> lane) {
+        List<Submission> batch = new ArrayList<>(properties.batchSize());
+        while (running || !lane.isEmpty()) {
+            try {
+                Submission first = lane.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                lane.drainTo(batch, properties.batchSize() - 1);
+                apply(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                running = false;
+            }
+        }
+    }
+
+    private void apply(List<Submission> batch) {
+        List<TransferRequestDTO> requests = batch.stream().map(Submission::request).toList();
+        try {
+            TransferBatchResponseDTO response = accountService.transferBatch(requests);
+            LocalDateTime now = LocalDateTime.now();
+            for (TransferResultDTO result : response.results()) {
+                finish(batch.get(result.index()).id(), status -> status.completed(result, now));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Batch of {} asynchronous transfers failed", batch.size(), e);
+            LocalDateTime now = LocalDateTime.now();
+            for (Submission submission : batch) {
+                finish(submission.id(), status -> status.failed(e.getMessage(), now));
+            }
+        }
+    }
+
+    private void finish(String id, UnaryOperator<TransferSubmissionDTO> outcome) {
+        TransferSubmissionDTO status = pending.get(id);
+        if (status != null) {
+            statuses.put(id, outcome.apply(status));
+            pending.remove(id);
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MILLIS;
+        for (Thread worker : workers) {
+            worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+        }
+        if (queued() > 0) {
+            log.warn("Shutting down with {} asynchronous transfers not applied", queued());
+        }
+    }
+}
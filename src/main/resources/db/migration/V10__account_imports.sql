@@ -0,0 +1,9 @@
+-- Progress of a bulk account import, advanced in the same transaction as each chunk it copies
+-- into accounts, so sending the same import again skips exactly the lines already committed.
+CREATE TABLE account_imports (
+    import_id VARCHAR(64) PRIMARY KEY,
+    lines_committed BIGINT NOT NULL,
+    accounts_created BIGINT NOT NULL,
+    rows_rejected BIGINT NOT NULL,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
@@ -0,0 +1,4 @@
+-- The transfer a TRANSFER_IN/TRANSFER_OUT entry belongs to. The entries and their transfer are written
+-- with the same created_at, so (transfer_id, created_at) finds the transfer in a single partition.
+-- Entries written before this column existed keep NULL.
+ALTER TABLE entries ADD COLUMN transfer_id BIGINT;
@@ -0,0 +1,10 @@
+-- Idempotency-Key of a deposit, withdraw or transfer (IdempotencyStore). A row without a response is
+-- still being executed; rows older than bank.idempotency.ttl are purged.
+CREATE TABLE idempotency_keys (
+    idempotency_key VARCHAR(255) PRIMARY KEY,
+    request VARCHAR(255) NOT NULL,
+    response TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_idempotency_keys_created_at ON idempotency_keys(created_at);
@@ -0,0 +1,37 @@
+-- Per account and day totals of the entries (DailyRollups), upserted by the write paths in the transaction
+-- that writes the entries, so range queries read one row per day instead of adding up entries.
+-- A hot account spreads its rows over slots (1..buckets) the way it spreads its balance over buckets,
+-- every other account only has slot 0. The totals of a day are the sum of its slots.
+CREATE TABLE account_daily_rollups (
+    account_id BIGINT NOT NULL
+        REFERENCES accounts(id)
+        ON DELETE CASCADE,
+    day DATE NOT NULL,
+    slot SMALLINT NOT NULL,
+    deposits DECIMAL(19, 2) NOT NULL,
+    deposit_count INTEGER NOT NULL,
+    withdrawals DECIMAL(19, 2) NOT NULL,
+    withdraw_count INTEGER NOT NULL,
+    transfers_in DECIMAL(19, 2) NOT NULL,
+    transfer_in_count INTEGER NOT NULL,
+    transfers_out DECIMAL(19, 2) NOT NULL,
+    transfer_out_count INTEGER NOT NULL,
+    PRIMARY KEY (account_id, day, slot)
+);
+
+-- Entries written before this migration are not in the rollups. Hibernate only uses ids below the
+-- sequence values it has drawn, so they are exactly the ids up to the sequence's current value;
+-- RollupBackfill adds them up in chunks of chunk_size ids (fixed by its first run) and records every
+-- chunk it has added, so no chunk is counted twice.
+CREATE TABLE rollup_backfill (
+    id SMALLINT PRIMARY KEY CHECK (id = 1),
+    up_to BIGINT NOT NULL,
+    chunk_size INTEGER
+);
+INSERT INTO rollup_backfill (id, up_to)
+SELECT 1, CASE WHEN is_called THEN last_value ELSE 0 END FROM entries_id_seq;
+
+CREATE TABLE rollup_backfill_chunks (
+    first_id BIGINT PRIMARY KEY,
+    done_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
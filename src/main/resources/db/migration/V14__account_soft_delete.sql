@@ -0,0 +1,5 @@
+-- A deleted account only gets deleted_at set, which hides it right away; AccountPurgeJob then removes its
+-- entries and transfers in small batches and finally the row, whose ON DELETE CASCADE takes the rest.
+ALTER TABLE accounts ADD COLUMN deleted_at TIMESTAMP;
+
+CREATE INDEX idx_accounts_deleted_at ON accounts(deleted_at, id) WHERE deleted_at IS NOT NULL;
@@ -0,0 +1,22 @@
+-- The change feed (LedgerFeed) hands out entries and transfers in the order of the transactions that
+-- wrote them. tx_id is the id of the writing transaction: once every transaction below an xid has ended
+-- (pg_snapshot_xmin), no row with a lower tx_id can still appear, so a reader that stops there never
+-- skips a row that commits later. Ids alone would: a pooled sequence block can be committed long after a
+-- higher one. Rows written before this migration keep NULL and are not in the feed; setting the default
+-- after adding the column leaves them as they are instead of rewriting the tables.
+ALTER TABLE entries ADD COLUMN tx_id xid8;
+ALTER TABLE entries ALTER COLUMN tx_id SET DEFAULT pg_current_xact_id();
+CREATE INDEX idx_entries_tx_id_id ON entries(tx_id, id) WHERE tx_id IS NOT NULL;
+
+ALTER TABLE transfers ADD COLUMN tx_id xid8;
+ALTER TABLE transfers ALTER COLUMN tx_id SET DEFAULT pg_current_xact_id();
+CREATE INDEX idx_transfers_tx_id_id ON transfers(tx_id, id) WHERE tx_id IS NOT NULL;
+
+-- The position each feed consumer has acknowledged, it goes on from there when it reconnects
+CREATE TABLE feed_consumers (
+    name VARCHAR(100) PRIMARY KEY,
+    tx_id xid8 NOT NULL,
+    kind SMALLINT NOT NULL,
+    id BIGINT NOT NULL,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
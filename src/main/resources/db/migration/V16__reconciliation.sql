@@ -0,0 +1,39 @@
+-- Reconciliation runs (Reconciliation): every account's balance against its entries, the account id space cut
+-- into ranges of range_size ids from first_range on. A range that has been checked has its row in
+-- reconciliation_ranges, written together with what was found in it, so a run that stopped (a restart,
+-- a failed range) goes on with the ranges still missing and never reports a range twice.
+CREATE TABLE reconciliation_runs (
+    id BIGSERIAL PRIMARY KEY,
+    up_to BIGINT NOT NULL,
+    first_range BIGINT NOT NULL,
+    range_size INTEGER NOT NULL,
+    ranges INTEGER NOT NULL,
+    started_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    finished_at TIMESTAMP
+);
+
+-- At most one unfinished run, instances starting one at the same time end up sharing it
+CREATE UNIQUE INDEX idx_reconciliation_runs_unfinished ON reconciliation_runs ((true)) WHERE finished_at IS NULL;
+
+CREATE TABLE reconciliation_ranges (
+    run_id BIGINT NOT NULL REFERENCES reconciliation_runs(id) ON DELETE CASCADE,
+    first_id BIGINT NOT NULL,
+    accounts INTEGER NOT NULL,
+    entries BIGINT NOT NULL,
+    discrepancies INTEGER NOT NULL,
+    done_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (run_id, first_id)
+);
+
+-- No foreign key to accounts: the report outlives a purged account
+CREATE TABLE reconciliation_discrepancies (
+    id BIGSERIAL PRIMARY KEY,
+    run_id BIGINT NOT NULL REFERENCES reconciliation_runs(id) ON DELETE CASCADE,
+    account_id BIGINT NOT NULL,
+    kind VARCHAR(20) NOT NULL,
+    entry_id BIGINT,
+    expected DECIMAL(19, 2) NOT NULL,
+    actual DECIMAL(19, 2) NOT NULL
+);
+
+CREATE INDEX idx_reconciliation_discrepancies_run_id ON reconciliation_discrepancies(run_id, id);
@@ -0,0 +1,3 @@
+-- The hold a cross-shard TRANSFER_OUT was logged under (sharded ledger engine). Its transfer is written
+-- later with the same hold id, which links the entry to it. NULL for every other entry.
+ALTER TABLE entries ADD COLUMN hold_id UUID;
@@ -0,0 +1,6 @@
+-- Hand out ids in blocks of 50 so Hibernate can assign them before insert and batch the inserts
+-- (IDENTITY forces one round trip per row). Values taken by the column defaults stay unique
+-- because the pooled optimizer only uses the 50 values below each number it draws.
+ALTER SEQUENCE accounts_id_seq INCREMENT BY 50;
+ALTER SEQUENCE entries_id_seq INCREMENT BY 50;
+ALTER SEQUENCE transfers_id_seq INCREMENT BY 50;
@@ -0,0 +1,4 @@
+-- Keyset pagination of an account's history walks (account_id, created_at, id) in either
+-- direction, this index serves it and every lookup the old account_id index was used for
+DROP INDEX IF EXISTS idx_entries_account_id;
+CREATE INDEX idx_entries_account_created_at_id ON entries(account_id, created_at, id);
@@ -0,0 +1,8 @@
+-- Last ledger journal record written to the database (bank.ledger.durability=journal).
+-- Updated in the same transaction as the records it covers, so a record is applied exactly once.
+CREATE TABLE ledger_journal_checkpoint (
+    id INT PRIMARY KEY CHECK (id = 1),
+    applied_lsn BIGINT NOT NULL
+);
+
+INSERT INTO ledger_journal_checkpoint (id, applied_lsn) VALUES (1, 0);
@@ -0,0 +1,10 @@
+-- Extra balance rows of a hot account (HotAccounts), the balance of the account is accounts.balance plus
+-- the sum of its buckets. Credits go to a random bucket, so they do not all wait for the accounts row lock.
+CREATE TABLE account_buckets (
+    account_id BIGINT NOT NULL
+        REFERENCES accounts(id)
+        ON DELETE CASCADE,
+    bucket SMALLINT NOT NULL,
+    balance DECIMAL(19, 2) NOT NULL,
+    PRIMARY KEY (account_id, bucket)
+);
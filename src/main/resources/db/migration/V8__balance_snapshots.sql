@@ -0,0 +1,8 @@
+-- Balance of an account as of taken_at, so an as-of lookup only adds up the entries since the nearest
+-- snapshot. Written by BalanceSnapshotJob, only for accounts that had entries since their previous one.
+CREATE TABLE balance_snapshots (
+    account_id BIGINT NOT NULL REFERENCES accounts(id) ON DELETE CASCADE,
+    taken_at TIMESTAMP NOT NULL,
+    balance DECIMAL(19,2) NOT NULL,
+    PRIMARY KEY (account_id, taken_at)
+);
@@ -0,0 +1,87 @@
+-- entries and transfers become range partitioned by created_at, one partition per month named
+-- <table>_pYYYYMM, so queries on recent data only touch recent partitions and old months can be
+-- detached as a whole. PartitionMaintenance creates the months ahead and detaches expired ones.
+-- Rows outside every monthly partition (backdated or far future) land in <table>_default.
+-- The primary key has to include the partition key, ids stay unique through their sequences.
+
+CREATE SCHEMA IF NOT EXISTS archive;
+
+CREATE FUNCTION create_month_partition(parent TEXT, month DATE) RETURNS VOID AS $$
+BEGIN
+    EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                   parent || '_p' || to_char(month, 'YYYYMM'), parent,
+                   date_trunc('month', month), date_trunc('month', month) + INTERVAL '1 month');
+END
+$$ LANGUAGE plpgsql;
+
+-- entries
+
+ALTER TABLE entries RENAME TO entries_unpartitioned;
+ALTER TABLE entries_unpartitioned RENAME CONSTRAINT entries_pkey TO entries_unpartitioned_pkey;
+ALTER SEQUENCE entries_id_seq OWNED BY NONE;
+
+CREATE TABLE entries (
+    id BIGINT NOT NULL DEFAULT nextval('entries_id_seq'),
+    amount DECIMAL(19,2) NOT NULL,
+    entry_type VARCHAR(50) NOT NULL, -- store enum as string
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    balance_after DECIMAL(19,2) NOT NULL,
+    account_id BIGINT NOT NULL,
+    PRIMARY KEY (id, created_at),
+    CONSTRAINT fk_account
+        FOREIGN KEY(account_id)
+        REFERENCES accounts(id)
+        ON DELETE CASCADE
+) PARTITION BY RANGE (created_at);
+ALTER SEQUENCE entries_id_seq OWNED BY entries.id;
+
+CREATE TABLE entries_default PARTITION OF entries DEFAULT;
+SELECT create_month_partition('entries', month::DATE)
+FROM generate_series(
+        date_trunc('month', LEAST((SELECT min(created_at) FROM entries_unpartitioned), now())),
+        date_trunc('month', now()) + INTERVAL '3 months',
+        INTERVAL '1 month') month;
+
+INSERT INTO entries (id, amount, entry_type, created_at, balance_after, account_id)
+SELECT id, amount, entry_type, created_at, balance_after, account_id FROM entries_unpartitioned;
+DROP TABLE entries_unpartitioned;
+
+CREATE INDEX idx_entries_account_created_at_id ON entries(account_id, created_at, id);
+
+-- transfers
+
+ALTER TABLE transfers RENAME TO transfers_unpartitioned;
+ALTER TABLE transfers_unpartitioned RENAME CONSTRAINT transfers_pkey TO transfers_unpartitioned_pkey;
+ALTER SEQUENCE transfers_id_seq OWNED BY NONE;
+
+CREATE TABLE transfers (
+    id BIGINT NOT NULL DEFAULT nextval('transfers_id_seq'),
+    amount DECIMAL(19,2) NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    from_account_id BIGINT NOT NULL,
+    to_account_id BIGINT NOT NULL,
+    PRIMARY KEY (id, created_at),
+    CONSTRAINT fk_from_account
+        FOREIGN KEY(from_account_id)
+        REFERENCES accounts(id)
+        ON DELETE CASCADE,
+    CONSTRAINT fk_to_account
+        FOREIGN KEY(to_account_id)
+        REFERENCES accounts(id)
+        ON DELETE CASCADE
+) PARTITION BY RANGE (created_at);
+ALTER SEQUENCE transfers_id_seq OWNED BY transfers.id;
+
+CREATE TABLE transfers_default PARTITION OF transfers DEFAULT;
+SELECT create_month_partition('transfers', month::DATE)
+FROM generate_series(
+        date_trunc('month', LEAST((SELECT min(created_at) FROM transfers_unpartitioned), now())),
+        date_trunc('month', now()) + INTERVAL '3 months',
+        INTERVAL '1 month') month;
+
+INSERT INTO transfers (id, amount, created_at, from_account_id, to_account_id)
+SELECT id, amount, created_at, from_account_id, to_account_id FROM transfers_unpartitioned;
+DROP TABLE transfers_unpartitioned;
+
+CREATE INDEX idx_transfers_from_account_id ON transfers(from_account_id);
+CREATE INDEX idx_transfers_to_account_id ON transfers(to_account_id);
@@ -0,0 +1,78 @@
+package com.bank.bank_app.concurrency;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+
+import java.sql.SQLException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ConflictRetryAspectTest {
+
+    private SimpleMeterRegistry registry;
+    private ConflictRetryAspect aspect;
+    private ProceedingJoinPoint joinPoint;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        aspect = new ConflictRetryAspect(new ConflictRetryProperties(3, Duration.ofMillis(1), Duration.ofMillis(4)), registry);
+        joinPoint = mock(ProceedingJoinPoint.class);
+        Signature signature = mock(Signature.class);
+        when(signature.getName()).thenReturn("transfer");
+        when(joinPoint.getSignature()).thenReturn(signature);
+    }
+
+    // How Spring hands over a transaction PostgreSQL aborted
+    private static RuntimeException aborted(String sqlState) {
+        return new CannotAcquireLockException("could not execute statement", new SQLException("aborted", sqlState));
+    }
+
+    @Test
+    void testDeadlockVictimIsRunAgain() throws Throwable {
+        when(joinPoint.proceed())
+                .thenThrow(aborted(ConflictRetryAspect.DEADLOCK))
+                .thenThrow(aborted(ConflictRetryAspect.SERIALIZATION_FAILURE))
+                .thenReturn("done");
+
+        assertEquals("done", aspect.retry(joinPoint));
+        verify(joinPoint, times(3)).proceed();
+        assertEquals(1, registry.get("bank.concurrency.retries").tag("reason", "deadlock").counter().count());
+        assertEquals(1, registry.get("bank.concurrency.retries").tag("reason", "serialization").counter().count());
+    }
+
+    @Test
+    void testConflictIsThrownAfterMaxAttempts() throws Throwable {
+        RuntimeException deadlock = aborted(ConflictRetryAspect.DEADLOCK);
+        when(joinPoint.proceed()).thenThrow(deadlock);
+
+        assertSame(deadlock, assertThrows(RuntimeException.class, () -> aspect.retry(joinPoint)));
+        verify(joinPoint, times(3)).proceed();
+        assertEquals(1, registry.get("bank.concurrency.retries.exhausted").tag("operation", "transfer").counter().count());
+    }
+
+    @Test
+    void testOtherFailuresAreNotRetried() throws Throwable {
+        when(joinPoint.proceed()).thenThrow(new IllegalArgumentException("Insufficient funds"));
+
+        assertThrows(IllegalArgumentException.class, () -> aspect.retry(joinPoint));
+        verify(joinPoint, times(1)).proceed();
+        assertNull(registry.find("bank.concurrency.retries").counter());
+    }
+
+    @Test
+    void testBackoffIsJitteredAndCapped() {
+        for (int i = 0; i < 100; i++) {
+            long first = aspect.backOffNanos(1);
+            assertTrue(first >= Duration.ofMillis(1).toNanos() / 2 && first <= Duration.ofMillis(1).toNanos());
+            long late = aspect.backOffNanos(30);
+            assertTrue(late >= Duration.ofMillis(2).toNanos() && late <= Duration.ofMillis(4).toNanos());
+        }
+    }
+}
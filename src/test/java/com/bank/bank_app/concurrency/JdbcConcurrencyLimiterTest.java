@@ -0,0 +1,73 @@
+package com.bank.bank_app.concurrency;
+
+import com.bank.bank_app.exception.ServiceBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class JdbcConcurrencyLimiterTest {
+
+    private SimpleMeterRegistry registry;
+    private JdbcConcurrencyLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        limiter = new JdbcConcurrencyLimiter(mock(DataSource.class),
+                new JdbcConcurrencyProperties(1, Duration.ofMillis(50)), registry);
+    }
+
+    @Test
+    void testNestedCallUsesPermitOfOuterCall() throws Throwable {
+        ProceedingJoinPoint inner = mock(ProceedingJoinPoint.class);
+        when(inner.proceed()).thenReturn("inner");
+        ProceedingJoinPoint outer = mock(ProceedingJoinPoint.class);
+        when(outer.proceed()).thenAnswer(invocation -> limiter.limit(inner));
+
+        assertEquals("inner", limiter.limit(outer));
+        assertEquals(1, limiter.availablePermits());
+    }
+
+    @Test
+    void testCallIsRejectedWhenNoPermitBecomesAvailable() throws Throwable {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ProceedingJoinPoint slow = mock(ProceedingJoinPoint.class);
+        when(slow.proceed()).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return null;
+        });
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        Future<Object> holder = executor.submit(() -> {
+            try {
+                return limiter.limit(slow);
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        started.await();
+
+        Exception exception = assertThrows(ServiceBusyException.class,
+                () -> limiter.limit(mock(ProceedingJoinPoint.class)));
+        assertEquals("Too many concurrent requests, try again later", exception.getMessage());
+        assertEquals(1.0, registry.get("bank.jdbc.limiter.rejected").counter().count());
+
+        release.countDown();
+        holder.get();
+        executor.shutdown();
+        assertEquals(1, limiter.availablePermits());
+    }
+}
@@ -0,0 +1,113 @@
+package com.bank.bank_app.controller;
+
+import com.bank.bank_app.dto.AccountRequestDTO;
+import com.bank.bank_app.dto.AccountResponseDT0;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.service.AccountService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// The three shapes of GET /api/accounts: the whole list, a page when afterId or limit is given, NDJSON when asked for
+@SpringBootTest
+@AutoConfigureMockMvc
+class AccountListTest {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private long first;
+    private long second;
+
+    @BeforeEach
+    void setUp() {
+        first = accountService.createAccount(new AccountRequestDTO("Listed first", Money.of("10.00"))).id();
+        second = accountService.createAccount(new AccountRequestDTO("Listed second", Money.of("20.00"))).id();
+    }
+
+    @AfterEach
+    void tearDown() {
+        accountService.deleteAccount(first);
+        accountService.deleteAccount(second);
+    }
+
+    @Test
+    void testWithoutParametersEveryAccountIsListed() throws Exception {
+        mockMvc.perform(get("/api/accounts"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$").isArray())
+                .andExpect(jsonPath("$[?(@.id == %d)].owner", first).value("Listed first"))
+                .andExpect(jsonPath("$[?(@.id == %d)].balance", second).value(20.00));
+    }
+
+    @Test
+    void testAfterIdOrLimitGivesAPage() throws Exception {
+        mockMvc.perform(get("/api/accounts")
+                        .param("afterId", String.valueOf(first - 1))
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.accounts.length()").value(1))
+                .andExpect(jsonPath("$.accounts[0].id").value(first))
+                .andExpect(jsonPath("$.accounts[0].owner").value("Listed first"))
+                .andExpect(jsonPath("$.nextAfterId").value(first));
+
+        // afterId alone: up to 50, nothing comes after the last account
+        mockMvc.perform(get("/api/accounts").param("afterId", String.valueOf(first)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accounts[0].id").value(second))
+                .andExpect(jsonPath("$.nextAfterId").isEmpty());
+        mockMvc.perform(get("/api/accounts").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testNdjsonStreamsOneAccountPerLine() throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/accounts").accept(NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        assertTrue(body.endsWith("\n"));
+        List<AccountResponseDT0> accounts = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            accounts.add(objectMapper.readValue(line, AccountResponseDT0.class));
+        }
+        assertEquals(accounts.stream().map(AccountResponseDT0::id).distinct().count(), accounts.size());
+        assertEquals(List.of("Listed first", "Listed second"), accounts.stream()
+                .filter(account -> account.id() == first || account.id() == second)
+                .map(AccountResponseDT0::owner)
+                .toList());
+    }
+}
@@ -0,0 +1,56 @@
+package com.bank.bank_app.feed;
+
+import com.bank.bank_app.entity.EntryType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FeedPositionTest {
+
+    @Test
+    void testPositionsRoundTripAndRejectAnythingElse() {
+        for (FeedPosition position : List.of(FeedPosition.START, new FeedPosition(140567, FeedPosition.ENTRY, 320115154),
+                FeedPosition.before(140568))) {
+            assertEquals(position, FeedPosition.decode(position.encode()));
+        }
+        for (String invalid : List.of("", "not base64!", "MXwy", "LTF8MHww", "MXw3fDE", "MXwwfDF8Mg")) {
+            assertThrows(IllegalArgumentException.class, () -> FeedPosition.decode(invalid), invalid);
+        }
+    }
+
+    // A transfer and its entries follow each other, the end of a transaction comes before the next one
+    @Test
+    void testEventsAreOrderedByTransactionThenTransfersThenId() {
+        FeedPosition transfer = new FeedPosition(10, FeedPosition.TRANSFER, 900);
+        FeedPosition out = new FeedPosition(10, FeedPosition.ENTRY, 5);
+        FeedPosition in = new FeedPosition(10, FeedPosition.ENTRY, 6);
+        FeedPosition nextTransaction = new FeedPosition(11, FeedPosition.TRANSFER, 1);
+
+        List<FeedPosition> sorted = new ArrayList<>(List.of(nextTransaction, in, FeedPosition.before(11), out, transfer));
+        sorted.sort(null);
+        assertEquals(List.of(transfer, out, in, FeedPosition.before(11), nextTransaction), sorted);
+
+        assertEquals(900, transfer.idAfter(FeedPosition.TRANSFER));
+        assertEquals(0, transfer.idAfter(FeedPosition.ENTRY));
+        assertEquals(Long.MAX_VALUE, out.idAfter(FeedPosition.TRANSFER));
+        assertEquals(5, out.idAfter(FeedPosition.ENTRY));
+    }
+
+    @Test
+    void testFilterMatchesAccountsOnBothSidesOfATransfer() {
+        FeedEvent transfer = new FeedEvent(new FeedPosition(1, FeedPosition.TRANSFER, 1), 7L, 8L, null, "{}");
+        FeedEvent deposit = new FeedEvent(new FeedPosition(2, FeedPosition.ENTRY, 1), 8L, null, EntryType.DEPOSIT, "{}");
+
+        assertTrue(FeedFilter.ALL.matches(transfer));
+        assertTrue(new FeedFilter(Set.of(8L), Set.of(), true).matches(transfer));
+        assertFalse(new FeedFilter(Set.of(9L), Set.of(), true).matches(transfer));
+        assertFalse(new FeedFilter(Set.of(8L), Set.of(), false).matches(transfer));
+        assertTrue(new FeedFilter(Set.of(8L), Set.of(EntryType.DEPOSIT), false).matches(deposit));
+        assertFalse(new FeedFilter(Set.of(), Set.of(EntryType.WITHDRAW), true).matches(deposit));
+        assertTrue(new FeedFilter(Set.of(), Set.of(EntryType.WITHDRAW), true).matches(transfer));
+    }
+}
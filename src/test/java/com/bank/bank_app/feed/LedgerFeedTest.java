@@ -0,0 +1,94 @@
+package com.bank.bank_app.feed;
+
+import com.bank.bank_app.dto.AccountRequestDTO;
+import com.bank.bank_app.entity.EntryType;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.service.AccountService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Deposits and a transfer against the database come out of the feed in the order they were written, the
+// same from the in-memory buffer and from the database
+@SpringBootTest
+class LedgerFeedTest {
+
+    @Autowired
+    private LedgerFeed ledgerFeed;
+
+    @Autowired
+    private FeedReader feedReader;
+
+    @Autowired
+    private FeedConsumers feedConsumers;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Test
+    void testTransferAndEntriesComeInWriteOrder() throws Exception {
+        FeedPosition start = FeedPosition.before(feedReader.horizon());
+        Long from = accountService.createAccount(new AccountRequestDTO("Feed from", Money.of("100.00"))).id();
+        Long to = accountService.createAccount(new AccountRequestDTO("Feed to", Money.of("0.00"))).id();
+        accountService.deposit(from, Money.of("5.00"));
+        accountService.transfer(from, to, Money.of("30.00"));
+
+        FeedFilter filter = new FeedFilter(Set.of(from, to), Set.of(), true);
+        List<FeedEvent> events = take(start, filter, 4);
+        assertEquals(List.of("entry", "transfer", "entry", "entry"), events.stream().map(FeedEvent::kindName).toList());
+        assertEquals(EntryType.DEPOSIT, events.get(0).entryType());
+        assertEquals(List.of(from, to), List.of(events.get(1).accountId(), events.get(1).toAccountId()));
+        assertEquals(EntryType.TRANSFER_OUT, events.get(2).entryType());
+        assertEquals(from, events.get(2).accountId());
+        assertEquals(EntryType.TRANSFER_IN, events.get(3).entryType());
+        assertTrue(events.get(3).json().contains("\"balanceAfter\":30.00"), events.get(3).json());
+        assertEquals(events.get(1).position().txId(), events.get(3).position().txId());
+
+        // What a subscriber that fell behind the buffer reads instead
+        FeedPosition upTo = FeedPosition.before(feedReader.horizon());
+        List<FeedEvent> fromDatabase = feedReader.read(start, upTo, 10_000).stream().filter(filter::matches).toList();
+        assertEquals(events.stream().map(FeedEvent::json).toList(), fromDatabase.stream().map(FeedEvent::json).toList());
+
+        List<FeedEvent> deposits = take(start, new FeedFilter(Set.of(from, to), Set.of(EntryType.DEPOSIT), false), 1);
+        assertEquals(events.get(0).position(), deposits.get(0).position());
+    }
+
+    @Test
+    void testNothingNewEndsWithAnEmptyBatchAtTheEnd() throws Exception {
+        FeedPosition start = FeedPosition.before(feedReader.horizon());
+        LedgerFeed.Batch batch = ledgerFeed.next(start, new FeedFilter(Set.of(-1L), Set.of(), true), 10, Duration.ofMillis(300)).get();
+        assertTrue(batch.events().isEmpty());
+        assertFalse(start.isAfter(batch.next()));
+    }
+
+    @Test
+    void testAcknowledgedPositionIsKept() {
+        String name = "test-" + UUID.randomUUID();
+        assertTrue(feedConsumers.position(name).isEmpty());
+        FeedPosition position = new FeedPosition(42, FeedPosition.ENTRY, 7);
+        feedConsumers.acknowledge(name, position);
+        feedConsumers.acknowledge(name, FeedPosition.before(43));
+        assertEquals(FeedPosition.before(43), feedConsumers.position(name).orElseThrow());
+        assertThrows(IllegalArgumentException.class, () -> feedConsumers.position("no spaces"));
+    }
+
+    private List<FeedEvent> take(FeedPosition after, FeedFilter filter, int count) throws Exception {
+        List<FeedEvent> events = new ArrayList<>();
+        FeedPosition position = after;
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (events.size() < count && System.nanoTime() < deadline) {
+            LedgerFeed.Batch batch = ledgerFeed.next(position, filter, count - events.size(), Duration.ofSeconds(1)).get();
+            events.addAll(batch.events());
+            position = batch.next();
+        }
+        return events;
+    }
+}
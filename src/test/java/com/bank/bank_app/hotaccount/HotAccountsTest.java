@@ -0,0 +1,120 @@
+package com.bank.bank_app.hotaccount;
+
+import com.bank.bank_app.dto.AccountResponseDT0;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.repository.AccountRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class HotAccountsTest {
+
+    private static final int WRITERS = 4;
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private HotAccounts hotAccounts;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        HotAccountProperties properties = new HotAccountProperties(true, 8, WRITERS - 1, 1, Duration.ofSeconds(10));
+        hotAccounts = new HotAccounts(accountRepository, transactionManager, properties, new SimpleMeterRegistry());
+    }
+
+    private AccountResponseDT0 response(double balance) {
+        return new AccountResponseDT0(1L, "Fees", Money.of(BigDecimal.valueOf(balance)), null);
+    }
+
+    @Test
+    void testCreditOfHotAccountGoesToBucket() {
+        hotAccounts.promote(1L);
+        when(accountRepository.creditBucket(eq(1L), anyInt(), eq(Money.of("10.00")))).thenReturn(Optional.of(response(110.00)));
+
+        assertEquals(Money.of("110.00"), hotAccounts.credit(1L, Money.of("10.00")).orElseThrow().balance());
+
+        verify(accountRepository).addBuckets(1L, 8);
+        verify(accountRepository).creditBucket(eq(1L), intThat(bucket -> bucket >= 1 && bucket <= 8), eq(Money.of("10.00")));
+        verify(accountRepository, never()).creditBalance(any(), any());
+    }
+
+    @Test
+    void testCreditFallsBackToAccountRowWhenBucketIsGone() {
+        hotAccounts.promote(1L);
+        when(accountRepository.creditBucket(eq(1L), anyInt(), any())).thenReturn(Optional.empty());
+        when(accountRepository.creditBalance(1L, Money.of("10.00"))).thenReturn(Optional.of(response(110.00)));
+
+        assertTrue(hotAccounts.credit(1L, Money.of("10.00")).isPresent());
+    }
+
+    @Test
+    void testDebitChecksTotalWhenNoSingleRowHoldsEnough() {
+        hotAccounts.promote(1L);
+        when(accountRepository.debitAnyBucket(1L, Money.of("10.00"))).thenReturn(Optional.empty());
+        when(accountRepository.debitBalance(1L, Money.of("10.00"))).thenReturn(Optional.empty());
+        when(accountRepository.debitAcrossBuckets(1L, Money.of("10.00"))).thenReturn(Optional.of(response(5.00)));
+
+        assertEquals(Money.of("5.00"), hotAccounts.debit(1L, Money.of("10.00")).orElseThrow().balance());
+    }
+
+    @Test
+    void testTransferOfHotAccountLocksRowsShared() {
+        hotAccounts.lock(List.of(2L, 1L));
+        verify(accountRepository).lockAccounts(List.of(2L, 1L), false);
+
+        hotAccounts.promote(1L);
+        hotAccounts.lock(List.of(2L, 1L));
+        verify(accountRepository).lockAccounts(List.of(2L, 1L), true);
+    }
+
+    @Test
+    void testContendedAccountIsPromotedAndDemotedWhenQuiet() throws Exception {
+        // All writers are inside the UPDATE at the same time, every one after the first had to wait
+        CyclicBarrier together = new CyclicBarrier(WRITERS);
+        when(accountRepository.creditBalance(1L, Money.of("1.00"))).thenAnswer(invocation -> {
+            together.await();
+            return Optional.of(response(1.00));
+        });
+        List<Future<?>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(WRITERS)) {
+            for (int i = 0; i < WRITERS; i++) {
+                results.add(executor.submit(() -> hotAccounts.credit(1L, Money.of("1.00"))));
+            }
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+
+        when(accountRepository.findBucketedAccountIds()).thenReturn(List.of());
+        hotAccounts.evaluate();
+        verify(accountRepository).addBuckets(1L, 8);
+
+        // Nothing waited during the next interval
+        when(accountRepository.findBucketedAccountIds()).thenReturn(List.of(1L));
+        hotAccounts.evaluate();
+        verify(accountRepository).removeBuckets(1L);
+        hotAccounts.credit(1L, Money.of("10.00"));
+        verify(accountRepository, never()).creditBucket(any(), anyInt(), any());
+    }
+}
@@ -0,0 +1,311 @@
+package com.bank.bank_app.idempotency;
+
+import com.bank.bank_app.dto.AccountRequestDTO;
+import com.bank.bank_app.dto.AccountResponseDT0;
+import com.bank.bank_app.dto.TransferSubmissionDTO;
+import com.bank.bank_app.exception.IdempotencyConflictException;
+import com.bank.bank_app.exception.ServiceBusyException;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.service.AccountService;
+import com.bank.bank_app.transfer.TransferSubmissions;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.json.JsonCompareMode;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Against the database: a key moves money once, whether the retry hits memory, the table or runs concurrently
+@SpringBootTest
+@AutoConfigureMockMvc
+class IdempotencyStoreTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private IdempotentTransaction transaction;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TransferSubmissions transferSubmissions;
+
+    private final String prefix = "test-" + UUID.randomUUID() + "-";
+    private IdempotencyStore store;
+    private long accountId;
+
+    @BeforeEach
+    void setUp() {
+        store = newStore();
+        accountId = accountService.createAccount(new AccountRequestDTO("Idempotent", Money.ZERO)).id();
+    }
+
+    @AfterEach
+    void tearDown() {
+        accountService.deleteAccount(accountId);
+        jdbcTemplate.update("delete from idempotency_keys where idempotency_key like ?", prefix + "%");
+    }
+
+    // Another instance: same table, its own memory
+    private IdempotencyStore newStore() {
+        return new IdempotencyStore(jdbcTemplate, transaction, objectMapper,
+                new IdempotencyProperties(true, 1000, Duration.ofHours(24), Duration.ofMinutes(1), Duration.ofHours(1), 2),
+                new SimpleMeterRegistry());
+    }
+
+    private AccountResponseDT0 deposit(IdempotencyStore store, String key, String amount) {
+        return store.execute(prefix + key, "deposit:" + accountId + ":" + amount, AccountResponseDT0.class,
+                () -> accountService.deposit(accountId, Money.of(amount)));
+    }
+
+    private Money balance() {
+        return accountService.getAccountById(accountId).balance();
+    }
+
+    @Test
+    void testRetryGetsStoredResponse() {
+        AccountResponseDT0 first = deposit(store, "a", "10");
+        assertEquals(first, deposit(store, "a", "10"));
+        assertEquals(first, deposit(newStore(), "a", "10"));
+        assertEquals(0, Money.of("10").compareTo(balance()));
+
+        assertThrows(IllegalArgumentException.class, () -> deposit(store, "a", "20"));
+        assertThrows(IllegalArgumentException.class, () -> deposit(newStore(), "a", "20"));
+        assertEquals(0, Money.of("10").compareTo(balance()));
+    }
+
+    @Test
+    void testConcurrentDuplicatesWaitForTheFirst() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<AccountResponseDT0>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> store.execute(prefix + "b", "deposit", AccountResponseDT0.class, () -> {
+                    executions.incrementAndGet();
+                    await(release);
+                    return accountService.deposit(accountId, Money.of("1.00"));
+                })));
+            }
+            Thread.sleep(200);
+            // A duplicate on another instance does not wait, the key is taken
+            assertThrows(IdempotencyConflictException.class, () -> newStore().execute(prefix + "b", "deposit",
+                    AccountResponseDT0.class, () -> accountService.deposit(accountId, Money.of("1.00"))));
+            release.countDown();
+        }
+        for (Future<AccountResponseDT0> result : results) {
+            assertEquals(results.getFirst().get(), result.get());
+        }
+        assertEquals(1, executions.get());
+        assertEquals(0, Money.of("1.00").compareTo(balance()));
+    }
+
+    @Test
+    void testFailedRequestRunsAgain() {
+        assertThrows(IllegalArgumentException.class, () -> store.execute(prefix + "c", "withdraw", AccountResponseDT0.class,
+                () -> accountService.withdraw(accountId, Money.of("10.00"))));
+        accountService.deposit(accountId, Money.of("10.00"));
+        AccountResponseDT0 retried = store.execute(prefix + "c", "withdraw", AccountResponseDT0.class,
+                () -> accountService.withdraw(accountId, Money.of("10.00")));
+        assertEquals(Money.ZERO, retried.balance());
+    }
+
+    @Test
+    void testClaimOfADeadExecutionIsTakenOver() {
+        // Claimed by an instance that died before storing a response: nothing moved, it was one transaction
+        jdbcTemplate.update("insert into idempotency_keys (idempotency_key, request, created_at) values (?, ?, ?)",
+                prefix + "d", "deposit:" + accountId + ":5", LocalDateTime.now().minusSeconds(10));
+        assertThrows(IdempotencyConflictException.class, () -> deposit(store, "d", "5"));
+
+        jdbcTemplate.update("update idempotency_keys set created_at = created_at - interval '2 minutes' where idempotency_key = ?",
+                prefix + "d");
+        AccountResponseDT0 first = deposit(store, "d", "5");
+        assertEquals(first, deposit(newStore(), "d", "5"));
+        assertEquals(0, Money.of("5").compareTo(balance()));
+    }
+
+    @Test
+    void testOnlyTheFirstExecutionToStoreItsResponseMovesMoney() {
+        AccountResponseDT0 other = new AccountResponseDT0(accountId, "Idempotent", Money.of("3.00"), null);
+        AccountResponseDT0 response = store.execute(prefix + "e", "deposit", AccountResponseDT0.class, () -> {
+            AccountResponseDT0 deposited = accountService.deposit(accountId, Money.of("1.00"));
+            // Meanwhile the execution that took the claim over commits first
+            CompletableFuture.runAsync(() -> jdbcTemplate.update("update idempotency_keys set response = ? where idempotency_key = ?",
+                    write(other), prefix + "e")).join();
+            return deposited;
+        });
+
+        assertEquals(other, response);
+        assertEquals(Money.ZERO, balance());
+    }
+
+    @Test
+    void testOnlyTheFirstExecutionToStoreItsResponseIsHandedOver() {
+        AccountResponseDT0 other = new AccountResponseDT0(accountId, "Idempotent", Money.of("3.00"), null);
+        AtomicInteger handedOver = new AtomicInteger();
+        AccountResponseDT0 response = store.execute(prefix + "g", "deposit", AccountResponseDT0.class, () -> {
+            CompletableFuture.runAsync(() -> jdbcTemplate.update("update idempotency_keys set response = ? where idempotency_key = ?",
+                    write(other), prefix + "g")).join();
+            return new AccountResponseDT0(accountId, "Idempotent", Money.of("1.00"), null);
+        }, prepared -> handedOver.incrementAndGet());
+
+        assertEquals(other, response);
+        assertEquals(0, handedOver.get());
+    }
+
+    @Test
+    void testFailedHandOverIsForgotten() {
+        assertThrows(ServiceBusyException.class, () -> store.execute(prefix + "h", "deposit", AccountResponseDT0.class,
+                () -> accountService.getAccountById(accountId), prepared -> {
+                    throw new ServiceBusyException("Too many transfers waiting, try again later");
+                }));
+        AtomicInteger handedOver = new AtomicInteger();
+        newStore().execute(prefix + "h", "deposit", AccountResponseDT0.class,
+                () -> accountService.getAccountById(accountId), prepared -> handedOver.incrementAndGet());
+        assertEquals(1, handedOver.get());
+    }
+
+    @Test
+    void testReplayedTransferSubmissionIsAppliedOnce() throws Exception {
+        long receiver = accountService.createAccount(new AccountRequestDTO("Receiver", Money.ZERO)).id();
+        accountService.deposit(accountId, Money.of("10.00"));
+        try {
+            TransferSubmissionDTO first = submitTransfer("f", receiver);
+            assertEquals(TransferSubmissionDTO.Status.COMPLETED, awaitTransfer(first.id()).status());
+
+            assertEquals(first.id(), submitTransfer("f", receiver).id());
+            // From the table: neither prepared nor queued again
+            TransferSubmissionDTO replayed = newStore().execute(prefix + "f",
+                    "submit-transfer:" + accountId + ":" + receiver + ":3", TransferSubmissionDTO.class,
+                    () -> fail("prepared again"), submission -> fail("queued again"));
+            assertEquals(first.id(), replayed.id());
+            assertEquals(0, Money.of("7.00").compareTo(balance()));
+            assertEquals(0, Money.of("3.00").compareTo(accountService.getAccountById(receiver).balance()));
+        } finally {
+            accountService.deleteAccount(receiver);
+        }
+    }
+
+    @Test
+    void testReplayedHeaderGetsTheStoredResponse() throws Exception {
+        String first = mockMvc.perform(postDeposit("i", "10"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+
+        // The same amount, written differently
+        mockMvc.perform(postDeposit("i", "10.00"))
+                .andExpect(status().isCreated())
+                .andExpect(content().json(first, JsonCompareMode.STRICT));
+        assertEquals(0, Money.of("10").compareTo(balance()));
+    }
+
+    @Test
+    void testHeaderReusedForAnotherRequestIsRejected() throws Exception {
+        mockMvc.perform(postDeposit("j", "10")).andExpect(status().isCreated());
+
+        mockMvc.perform(postDeposit("j", "20")).andExpect(status().isBadRequest());
+        assertEquals(0, Money.of("10").compareTo(balance()));
+    }
+
+    @Test
+    void testHeaderOfARequestStillRunningIsAConflict() throws Exception {
+        // Claimed by another instance a moment ago, no response yet
+        jdbcTemplate.update("insert into idempotency_keys (idempotency_key, request, created_at) values (?, ?, ?)",
+                prefix + "k", "deposit:" + accountId + ":5", LocalDateTime.now());
+
+        mockMvc.perform(postDeposit("k", "5")).andExpect(status().isConflict());
+        assertEquals(Money.ZERO, balance());
+    }
+
+    @Test
+    void testPurgeDeletesExpiredKeys() {
+        for (int i = 0; i < 5; i++) {
+            deposit(store, "old-" + i, "1");
+        }
+        deposit(store, "new", "1");
+        jdbcTemplate.update("update idempotency_keys set created_at = created_at - interval '2 days' where idempotency_key like ?",
+                prefix + "old-%");
+
+        assertTrue(store.purge(LocalDateTime.now().minusDays(1)) >= 5);
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from idempotency_keys where idempotency_key like ?",
+                Integer.class, prefix + "%"));
+        // Forgotten by the table: another instance runs it again
+        deposit(newStore(), "old-0", "1");
+        assertEquals(0, Money.of("7").compareTo(balance()));
+    }
+
+    private MockHttpServletRequestBuilder postDeposit(String key, String amount) {
+        return post("/api/accounts/{id}/deposit", accountId)
+                .header("Idempotency-Key", prefix + key)
+                .param("amount", amount);
+    }
+
+    private TransferSubmissionDTO submitTransfer(String key, long receiver) throws Exception {
+        String body = mockMvc.perform(post("/api/accounts/transfers")
+                        .header("Idempotency-Key", prefix + key)
+                        .param("fromAccountId", String.valueOf(accountId))
+                        .param("toAccountId", String.valueOf(receiver))
+                        .param("amount", "3.00"))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(body, TransferSubmissionDTO.class);
+    }
+
+    private TransferSubmissionDTO awaitTransfer(String id) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        TransferSubmissionDTO status = transferSubmissions.status(id);
+        while (status.status() == TransferSubmissionDTO.Status.QUEUED && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            status = transferSubmissions.status(id);
+        }
+        return status;
+    }
+
+    private String write(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
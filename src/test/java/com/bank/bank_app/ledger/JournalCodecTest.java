@@ -0,0 +1,81 @@
+package com.bank.bank_app.ledger;
+
+import com.bank.bank_app.entity.EntryType;
+import com.bank.bank_app.money.Money;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalCodecTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 1, 2, 3, 4, 5);
+
+    @Test
+    void testAmountsAreWrittenAsBigDecimalWroteThem() {
+        for (long cents : new long[]{0, 1, -1, 127, 128, -128, -129, 123456789, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            ByteBuffer buffer = ByteBuffer.allocate(64);
+            JournalCodec.encode(List.of(new LedgerWrite.AccountWrite(1L, null, Money.ofCents(cents))), buffer);
+            ByteBuffer previous = ByteBuffer.allocate(64);
+            writeAccount(previous, BigDecimal.valueOf(cents, 2));
+            assertEquals(previous.flip(), buffer.flip(), "cents " + cents);
+
+            assertEquals(List.of(new LedgerWrite.AccountWrite(1L, null, Money.ofCents(cents))), JournalCodec.decode(buffer));
+        }
+    }
+
+    // Before amounts were Money an amount kept the scale it was sent with
+    @Test
+    void testRecordsOfThePreviousVersionStillRead() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        writeAccount(buffer, new BigDecimal("10"));
+        assertEquals(List.of(new LedgerWrite.AccountWrite(1L, null, Money.of("10.00"))), JournalCodec.decode(buffer.flip()));
+
+        buffer.clear();
+        writeAccount(buffer, new BigDecimal("1.005"));
+        assertEquals(List.of(new LedgerWrite.AccountWrite(1L, null, Money.of("1.01"))), JournalCodec.decode(buffer.flip()));
+
+        buffer.clear();
+        JournalCodec.encode(List.of(new LedgerWrite.EntryWrite(2L, EntryType.DEPOSIT, Money.of("0.05"), Money.of("-3.00"), NOW)), buffer);
+        assertEquals(List.of(new LedgerWrite.EntryWrite(2L, EntryType.DEPOSIT, Money.of("0.05"), Money.of("-3.00"), NOW)),
+                JournalCodec.decode(buffer.flip()));
+    }
+
+    // A transfer logged at once keeps the layout it always had; a held one and its TRANSFER_OUT carry the hold id,
+    // also when both have the same time
+    @Test
+    void testTransfersHeldBeforeCarryTheHoldId() {
+        ByteBuffer buffer = ByteBuffer.allocate(128);
+        LedgerWrite.TransferWrite atOnce = new LedgerWrite.TransferWrite(1L, 2L, Money.of("5.00"), NOW);
+        JournalCodec.encode(List.of(atOnce), buffer);
+        assertEquals(2 + 1 + 8 + 8 + 5 + 12, buffer.position());
+        assertEquals(List.of(atOnce), JournalCodec.decode(buffer.flip()));
+
+        buffer.clear();
+        UUID holdId = UUID.randomUUID();
+        List<LedgerWrite> held = List.of(
+                new LedgerWrite.EntryWrite(1L, EntryType.TRANSFER_OUT, Money.of("5.00"), Money.ZERO, NOW, holdId),
+                new LedgerWrite.TransferWrite(1L, 2L, Money.of("5.00"), NOW, holdId));
+        JournalCodec.encode(held, buffer);
+        List<LedgerWrite> decoded = JournalCodec.decode(buffer.flip());
+        assertEquals(held, decoded);
+        assertTrue(((LedgerWrite.TransferWrite) decoded.get(1)).heldBefore());
+    }
+
+    // One AccountWrite with a null owner, in the layout of the previous version
+    private static void writeAccount(ByteBuffer buffer, BigDecimal balanceChange) {
+        byte[] unscaled = balanceChange.unscaledValue().toByteArray();
+        buffer.putShort((short) 1);
+        buffer.put((byte) 3);
+        buffer.putLong(1L);
+        buffer.putShort((short) -1);
+        buffer.putShort((short) balanceChange.scale());
+        buffer.put((byte) unscaled.length);
+        buffer.put(unscaled);
+    }
+}
@@ -0,0 +1,186 @@
+package com.bank.bank_app.ledger;
+
+import com.bank.bank_app.entity.EntryType;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.repository.JournalCheckpointRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/*
+The database is faked by the transaction manager below: the writes and the checkpoint of a transaction only
+become visible on commit, an exception rolls both back. Every operation deposits into its own account,
+so "applied exactly once" means every account id shows up once in the committed writes.
+ */
+public class JournalLedgerLogTest {
+
+    private static final int OPERATIONS = 100;
+
+    @TempDir
+    private Path directory;
+
+    private final FakeDatabase database = new FakeDatabase();
+    private final AtomicInteger batches = new AtomicInteger();
+    private volatile boolean databaseDown;
+
+    private LedgerBatchWriter writer;
+    private JournalCheckpointRepository checkpointRepository;
+    private LedgerProperties properties;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        writer = mock(LedgerBatchWriter.class);
+        doAnswer(invocation -> {
+            // Half of the batch is written before the failure, it must not survive the rollback
+            List<List<LedgerWrite>> operations = invocation.getArgument(0);
+            List<LedgerWrite> batch = operations.stream().flatMap(List::stream).toList();
+            database.pendingWrites.addAll(batch.subList(0, batch.size() / 2));
+            batches.incrementAndGet();
+            if (databaseDown) {
+                throw new IllegalStateException("Connection refused");
+            }
+            database.pendingWrites.addAll(batch.subList(batch.size() / 2, batch.size()));
+            return null;
+        }).when(writer).write(anyList());
+
+        checkpointRepository = mock(JournalCheckpointRepository.class);
+        when(checkpointRepository.appliedLsn()).thenAnswer(invocation -> database.checkpoint);
+        when(checkpointRepository.advance(anyLong())).thenAnswer(invocation -> {
+            database.pendingCheckpoint = invocation.getArgument(0);
+            return 1;
+        });
+
+        properties = new LedgerProperties("sharded", 1, "journal", 10, Duration.ofMillis(5), 1000,
+                new LedgerProperties.Journal(directory, DataSize.ofKilobytes(8), 16, Duration.ofMillis(1)));
+    }
+
+    private JournalLedgerLog open() throws Exception {
+        return new JournalLedgerLog(writer, checkpointRepository, database, properties);
+    }
+
+    private static List<LedgerWrite> deposit(long accountId) {
+        return List.of(new LedgerWrite.EntryWrite(accountId, EntryType.DEPOSIT, Money.of("1.00"), Money.of("1.00"), LocalDateTime.now()));
+    }
+
+    @Test
+    void testEveryOperationIsAppliedOnceInOrder() throws Exception {
+        JournalLedgerLog ledgerLog = open();
+        ledgerLog.start();
+        for (long id = 1; id <= OPERATIONS; id++) {
+            ledgerLog.append(deposit(id));
+        }
+        ledgerLog.awaitDurable();
+        awaitApplied(ledgerLog, OPERATIONS);
+        ledgerLog.stop();
+
+        assertEquals(OPERATIONS, database.checkpoint);
+        assertEquals(ids(1, OPERATIONS), database.committedAccountIds());
+    }
+
+    @Test
+    void testOperationsNotAppliedBeforeStopAreReplayedOnce() throws Exception {
+        JournalLedgerLog ledgerLog = open();
+        ledgerLog.start();
+        for (long id = 1; id <= OPERATIONS / 2; id++) {
+            ledgerLog.append(deposit(id));
+        }
+        ledgerLog.awaitDurable();
+        awaitApplied(ledgerLog, OPERATIONS / 2);
+
+        // The database goes away: the next batch fails half-written and the rest waits in the journal
+        databaseDown = true;
+        int failedBefore = batches.get();
+        for (long id = OPERATIONS / 2 + 1; id <= OPERATIONS; id++) {
+            ledgerLog.append(deposit(id));
+        }
+        ledgerLog.awaitDurable();
+        while (batches.get() == failedBefore) {
+            Thread.sleep(5);
+        }
+        ledgerLog.stop();
+        assertEquals(OPERATIONS / 2, database.checkpoint);
+
+        // Replay happens while the bean is created, before the shards can read any balance
+        databaseDown = false;
+        JournalLedgerLog reopened = open();
+        assertEquals(OPERATIONS, database.checkpoint);
+        assertEquals(ids(1, OPERATIONS), database.committedAccountIds());
+
+        reopened.start();
+        reopened.append(deposit(OPERATIONS + 1));
+        reopened.awaitDurable();
+        awaitApplied(reopened, OPERATIONS + 1);
+        reopened.stop();
+
+        // Opening once more finds nothing left to replay
+        JournalLedgerLog again = open();
+        again.stop();
+        assertEquals(ids(1, OPERATIONS + 1), database.committedAccountIds());
+    }
+
+    private static void awaitApplied(JournalLedgerLog ledgerLog, long lsn) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (ledgerLog.appliedLsn() < lsn) {
+            assertTrue(System.nanoTime() < deadline, "Journal not applied up to " + lsn);
+            Thread.sleep(5);
+        }
+    }
+
+    private static List<Long> ids(long from, long to) {
+        List<Long> ids = new ArrayList<>();
+        for (long id = from; id <= to; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private static final class FakeDatabase implements PlatformTransactionManager {
+
+        final List<LedgerWrite> pendingWrites = new ArrayList<>();
+        final List<LedgerWrite> committedWrites = new ArrayList<>();
+        volatile long pendingCheckpoint;
+        volatile long checkpoint;
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            pendingCheckpoint = checkpoint;
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public synchronized void commit(TransactionStatus status) {
+            committedWrites.addAll(pendingWrites);
+            pendingWrites.clear();
+            checkpoint = pendingCheckpoint;
+        }
+
+        @Override
+        public synchronized void rollback(TransactionStatus status) {
+            pendingWrites.clear();
+        }
+
+        synchronized List<Long> committedAccountIds() {
+            return committedWrites.stream()
+                    .map(write -> ((LedgerWrite.EntryWrite) write).accountId())
+                    .toList();
+        }
+    }
+}
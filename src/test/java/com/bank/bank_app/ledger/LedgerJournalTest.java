@@ -0,0 +1,206 @@
+package com.bank.bank_app.ledger;
+
+import com.bank.bank_app.entity.EntryType;
+import com.bank.bank_app.money.Money;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+The crash tests have no hook into the journal, they copy its files at two points in time instead:
+
+durable  -> after awaitDurable(K), everything a caller has been told is safe
+crashed  -> after more appends nobody waited for, with every 512-byte block of the last segment that changed
+            since "durable" either kept or reverted, and blocks that were still unused also filled with
+            random bytes, the way a power loss can leave blocks that were not forced yet
+
+Reopening the crashed copy must give back records 1..K exactly, then at most a gap-free run of the later
+records, and appending must carry on right after the last record recovered.
+ */
+public class LedgerJournalTest {
+
+    private static final int SEGMENT_SIZE = 8192;
+    private static final int BLOCK_SIZE = 512;
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 3, 14, 9, 26, 53, 589_793_238);
+
+    @TempDir
+    private Path directory;
+
+    private LedgerJournal open(Path directory, long appliedLsn) throws IOException {
+        return LedgerJournal.open(directory, SEGMENT_SIZE, 16, Duration.ofMillis(1), appliedLsn);
+    }
+
+    // Every kind of write, different sizes, so records straddle blocks and segments in different places
+    private static List<LedgerWrite> operation(int i) {
+        Money amount = Money.ofCents(i);
+        return switch (i % 4) {
+            case 0 -> List.of(new LedgerWrite.EntryWrite((long) i, EntryType.DEPOSIT, amount, amount.plus(Money.of("10.00")), NOW));
+            case 1 -> List.of(
+                    new LedgerWrite.EntryWrite((long) i, EntryType.TRANSFER_OUT, amount, Money.ZERO, NOW.plusNanos(i),
+                            i % 8 == 5 ? new UUID(i, -i) : null),
+                    new LedgerWrite.EntryWrite(i + 1L, EntryType.TRANSFER_IN, amount, Money.ofCents(Long.MIN_VALUE), NOW),
+                    new LedgerWrite.TransferWrite((long) i, i + 1L, amount, NOW, i % 8 == 5 ? new UUID(i, -i) : null));
+            case 2 -> List.of(new LedgerWrite.AccountWrite((long) i, "Owner ü " + "x".repeat(i % 50), amount.negate()));
+            default -> List.of(new LedgerWrite.AccountWrite((long) i, null, Money.ZERO), new LedgerWrite.AccountDelete((long) i));
+        };
+    }
+
+    private static List<LedgerJournal.Record> readAll(LedgerJournal journal, long fromLsn) {
+        return journal.cursor(fromLsn).next(Integer.MAX_VALUE);
+    }
+
+    @Test
+    void testRecordsSurviveReopenAcrossSegments() throws Exception {
+        try (LedgerJournal journal = open(directory, 0)) {
+            for (int i = 1; i <= 300; i++) {
+                assertEquals(i, journal.append(operation(i)));
+            }
+            journal.awaitDurable(300);
+        }
+        assertTrue(segmentFiles(directory).size() >= 3);
+
+        try (LedgerJournal journal = open(directory, 0)) {
+            List<LedgerJournal.Record> records = readAll(journal, 1);
+            assertEquals(300, records.size());
+            for (int i = 1; i <= 300; i++) {
+                assertEquals(new LedgerJournal.Record(i, operation(i)), records.get(i - 1));
+            }
+            assertEquals(301, journal.append(operation(301)));
+        }
+    }
+
+    @Test
+    void testAppliedSegmentsAreReleased() throws Exception {
+        try (LedgerJournal journal = open(directory, 0)) {
+            for (int i = 1; i <= 300; i++) {
+                journal.append(operation(i));
+            }
+            journal.awaitDurable(300);
+            int before = segmentFiles(directory).size();
+
+            journal.release(250);
+
+            assertTrue(segmentFiles(directory).size() < before);
+            assertEquals(251, readAll(journal, 251).getFirst().lsn());
+        }
+
+        // Reopened with 250 applied, the applier sees 251..300 only
+        try (LedgerJournal journal = open(directory, 250)) {
+            List<LedgerJournal.Record> records = readAll(journal, 251);
+            assertEquals(50, records.size());
+            assertEquals(251, records.getFirst().lsn());
+        }
+    }
+
+    @Test
+    void testOpenContinuesAfterAppliedWhenJournalIsGone() throws Exception {
+        try (LedgerJournal journal = open(directory, 42)) {
+            assertTrue(readAll(journal, 43).isEmpty());
+            assertEquals(43, journal.append(operation(43)));
+        }
+    }
+
+    @Test
+    void testPowerLossKeepsEveryDurableRecord() throws Exception {
+        for (int seed = 0; seed < 40; seed++) {
+            Random random = new Random(seed);
+            int durable = 1 + random.nextInt(250);
+            int unsynced = random.nextInt(120);
+            Path live = Files.createDirectory(directory.resolve("live-" + seed));
+            Path durableCopy = directory.resolve("durable-" + seed);
+            Path crashedCopy = directory.resolve("crashed-" + seed);
+
+            try (LedgerJournal journal = open(live, 0)) {
+                for (int i = 1; i <= durable; i++) {
+                    journal.append(operation(i));
+                }
+                journal.awaitDurable(durable);
+                copy(live, durableCopy);
+                for (int i = durable + 1; i <= durable + unsynced; i++) {
+                    journal.append(operation(i));
+                }
+                copy(live, crashedCopy);
+            }
+            losePowerOnLastSegment(durableCopy, crashedCopy, random);
+
+            String context = "seed " + seed + ", " + durable + " durable, " + unsynced + " not waited for";
+            long recovered;
+            try (LedgerJournal journal = open(crashedCopy, 0)) {
+                List<LedgerJournal.Record> records = readAll(journal, 1);
+                assertTrue(records.size() >= durable, context);
+                assertTrue(records.size() <= durable + unsynced, context);
+                for (int i = 1; i <= records.size(); i++) {
+                    assertEquals(new LedgerJournal.Record(i, operation(i)), records.get(i - 1), context);
+                }
+                recovered = records.size();
+                assertEquals(recovered + 1, journal.append(operation(1000)), context);
+                journal.awaitDurable(recovered + 1);
+            }
+
+            // The torn tail stays behind in its segment, it must not be read again on the next open
+            try (LedgerJournal journal = open(crashedCopy, 0)) {
+                List<LedgerJournal.Record> records = readAll(journal, 1);
+                assertEquals(recovered + 1, records.size(), context);
+                assertEquals(new LedgerJournal.Record(recovered + 1, operation(1000)), records.getLast(), context);
+            }
+        }
+    }
+
+    /*
+    Segments before the last one were forced when they were rotated out and survive as they are.
+    In the last segment each block that differs from the durable copy (or from zeros, if the segment
+    was started after it) is kept or reverted, an unused block can also end up as random bytes.
+     */
+    private static void losePowerOnLastSegment(Path durableCopy, Path crashedCopy, Random random) throws IOException {
+        Path last = segmentFiles(crashedCopy).getLast();
+        Path before = durableCopy.resolve(last.getFileName());
+        byte[] crashed = Files.readAllBytes(last);
+        byte[] durable = Files.exists(before) ? Files.readAllBytes(before) : new byte[crashed.length];
+
+        for (int block = 0; block < crashed.length; block += BLOCK_SIZE) {
+            int end = Math.min(block + BLOCK_SIZE, crashed.length);
+            if (Arrays.equals(crashed, block, end, durable, block, end)) {
+                continue;
+            }
+            boolean unused = Arrays.equals(durable, block, end, new byte[BLOCK_SIZE], 0, end - block);
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                }
+                // A block holding durable records is written whole or not at all (sector atomicity)
+                case 1 -> System.arraycopy(durable, block, crashed, block, end - block);
+                default -> {
+                    byte[] noise = new byte[end - block];
+                    random.nextBytes(noise);
+                    System.arraycopy(unused ? noise : durable, unused ? 0 : block, crashed, block, end - block);
+                }
+            }
+        }
+        Files.write(last, crashed);
+    }
+
+    private static void copy(Path from, Path to) throws IOException {
+        Files.createDirectories(to);
+        for (Path file : segmentFiles(from)) {
+            Files.copy(file, to.resolve(file.getFileName()));
+        }
+    }
+
+    private static List<Path> segmentFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return new ArrayList<>(files.sorted().toList());
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.bank.bank_app.ledger;
+
+import com.bank.bank_app.dto.AccountResponseDT0;
+import com.bank.bank_app.entity.EntryType;
+import com.bank.bank_app.exception.AccountNotFoundException;
+import com.bank.bank_app.model.Account;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.repository.AccountRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class ShardedLedgerEngineTest {
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private LedgerLog ledgerLog;
+
+    private ShardedLedgerEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        // 2 shards: account 2 lives on shard 0, accounts 1 and 3 on shard 1
+        LedgerProperties properties = new LedgerProperties("sharded", 2, "async", 500, Duration.ofMillis(20), 1000, null);
+        engine = new ShardedLedgerEngine(accountRepository, ledgerLog, properties);
+
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(account(1L, 1000.00)));
+        when(accountRepository.findById(2L)).thenReturn(Optional.of(account(2L, 500.00)));
+        when(accountRepository.findById(3L)).thenReturn(Optional.of(account(3L, 0.00)));
+        when(accountRepository.findById(99L)).thenReturn(Optional.empty());
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.stop();
+    }
+
+    private Account account(Long id, double balance) {
+        return Account.builder()
+                .id(id)
+                .owner("Owner " + id)
+                .balance(Money.of(BigDecimal.valueOf(balance)))
+                .build();
+    }
+
+    @Test
+    void testConcurrentDepositsAreNotLost() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        List<Future<AccountResponseDT0>> results = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            results.add(clients.submit(() -> engine.deposit(1L, Money.of("1.00"))));
+        }
+        for (Future<AccountResponseDT0> result : results) {
+            result.get();
+        }
+        clients.shutdown();
+
+        assertEquals(Money.of("2000.00"), engine.getAccount(1L).balance());
+        verify(accountRepository, times(1)).findById(1L);
+        verify(ledgerLog, times(1000)).append(anyList());
+        verify(ledgerLog, times(1000)).awaitDurable();
+    }
+
+    @Test
+    void testCrossShardTransfer() {
+        AccountResponseDT0 accountResponseDT0 = engine.transfer(2L, 1L, Money.of("200.00"));
+
+        assertEquals(Money.of("300.00"), accountResponseDT0.balance());
+        assertEquals(Money.of("1200.00"), engine.getAccount(1L).balance());
+        // The source shard logs the TRANSFER_OUT when it holds the funds, the target shard the rest
+        List<List<LedgerWrite>> logged = loggedOperations();
+        LedgerWrite.EntryWrite out = (LedgerWrite.EntryWrite) logged.get(0).get(0);
+        LocalDateTime createdAt = ((LedgerWrite.EntryWrite) logged.get(1).get(0)).createdAt();
+        assertNotNull(out.holdId());
+        assertEquals(List.of(List.of(
+                        new LedgerWrite.EntryWrite(2L, EntryType.TRANSFER_OUT, Money.of("200.00"), Money.of("300.00"),
+                                out.createdAt(), out.holdId())),
+                List.of(
+                        new LedgerWrite.EntryWrite(1L, EntryType.TRANSFER_IN, Money.of("200.00"), Money.of("1200.00"), createdAt),
+                        new LedgerWrite.TransferWrite(2L, 1L, Money.of("200.00"), createdAt, out.holdId()))), logged);
+        assertFalse(createdAt.isBefore(out.createdAt()));
+    }
+
+    @Test
+    void testCrossShardTransferToMissingAccountLogsNothing() {
+        Exception exception = assertThrows(AccountNotFoundException.class,
+                () -> engine.transfer(2L, 99L, Money.of("200.00")));
+
+        assertEquals("Account not found with id: 99", exception.getMessage());
+        assertEquals(Money.of("500.00"), engine.getAccount(2L).balance());
+        verify(ledgerLog, never()).append(anyList());
+        assertDoesNotThrow(() -> engine.deleteAccount(2L));
+    }
+
+    @Test
+    void testCrossShardTransferRefusedByTheLogGivesFundsBack() {
+        doAnswer(invocation -> {
+            List<LedgerWrite> writes = invocation.getArgument(0);
+            if (writes.getLast() instanceof LedgerWrite.TransferWrite) {
+                throw new IllegalStateException("Ledger journal failed");
+            }
+            return null;
+        }).when(ledgerLog).append(anyList());
+
+        assertThrows(IllegalStateException.class, () -> engine.transfer(2L, 1L, Money.of("200.00")));
+
+        assertEquals(Money.of("500.00"), engine.getAccount(2L).balance());
+        assertEquals(Money.of("1000.00"), engine.getAccount(1L).balance());
+        // The TRANSFER_OUT stays in the log, the funds come back after it
+        List<List<LedgerWrite>> logged = loggedOperations();
+        assertEquals(3, logged.size());
+        assertEquals(EntryType.TRANSFER_OUT, ((LedgerWrite.EntryWrite) logged.get(0).get(0)).entryType());
+        LedgerWrite.EntryWrite givenBack = (LedgerWrite.EntryWrite) logged.get(2).get(0);
+        assertEquals(List.of(givenBack), logged.get(2));
+        assertEquals(new LedgerWrite.EntryWrite(2L, EntryType.TRANSFER_IN, Money.of("200.00"), Money.of("500.00"),
+                givenBack.createdAt()), givenBack);
+        assertDoesNotThrow(() -> engine.deleteAccount(2L));
+    }
+
+    @Test
+    void testRefusedTransferKeepsFundsHeldWhenTheLogRefusesTheGiveBack() {
+        doAnswer(invocation -> {
+            List<LedgerWrite> writes = invocation.getArgument(0);
+            if (writes.getFirst() instanceof LedgerWrite.EntryWrite entry && entry.entryType() == EntryType.TRANSFER_OUT) {
+                return null;
+            }
+            throw new IllegalStateException("Ledger journal failed");
+        }).when(ledgerLog).append(anyList());
+
+        Exception exception = assertThrows(IllegalStateException.class, () -> engine.transfer(2L, 1L, Money.of("200.00")));
+
+        // The log has the TRANSFER_OUT only, so does the shard
+        assertEquals(1, exception.getSuppressed().length);
+        assertEquals(Money.of("300.00"), engine.getAccount(2L).balance());
+        assertEquals(Money.of("1000.00"), engine.getAccount(1L).balance());
+        assertThrows(IllegalArgumentException.class, () -> engine.deleteAccount(2L));
+    }
+
+    @Test
+    void testSameShardTransferInsufficientFunds() {
+        Exception exception = assertThrows(IllegalArgumentException.class,
+                () -> engine.transfer(3L, 1L, Money.of("10.00")));
+
+        assertEquals("Insufficient funds", exception.getMessage());
+        assertEquals(Money.of("0.00"), engine.getAccount(3L).balance());
+        verify(ledgerLog, never()).append(anyList());
+    }
+
+    @Test
+    void testDeletedAccountIsNotFound() {
+        engine.deleteAccount(1L);
+
+        assertThrows(AccountNotFoundException.class, () -> engine.deposit(1L, Money.of("1.00")));
+        verify(ledgerLog, times(1)).append(List.of(new LedgerWrite.AccountDelete(1L)));
+    }
+
+    @Test
+    void testFailedAppendLeavesStateUntouched() {
+        doThrow(new IllegalStateException("Ledger journal failed")).when(ledgerLog).append(anyList());
+
+        assertThrows(IllegalStateException.class, () -> engine.transfer(2L, 1L, Money.of("200.00")));
+
+        assertEquals(Money.of("500.00"), engine.getAccount(2L).balance());
+        assertEquals(Money.of("1000.00"), engine.getAccount(1L).balance());
+        verify(ledgerLog, never()).awaitDurable();
+    }
+
+    @Test
+    void testFailedDurabilityWaitKeepsCrossShardTransfer() {
+        doThrow(new IllegalStateException("Journal failed, the operation may not be durable")).when(ledgerLog).awaitDurable();
+
+        assertThrows(IllegalStateException.class, () -> engine.transfer(2L, 1L, Money.of("200.00")));
+
+        // The transfer is in the log, giving the funds back would count them twice on replay
+        assertEquals(Money.of("300.00"), engine.getAccount(2L).balance());
+        assertEquals(Money.of("1200.00"), engine.getAccount(1L).balance());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<LedgerWrite>> loggedOperations() {
+        ArgumentCaptor<List<LedgerWrite>> captor = ArgumentCaptor.forClass(List.class);
+        verify(ledgerLog, atLeastOnce()).append(captor.capture());
+        return captor.getAllValues();
+    }
+}
@@ -0,0 +1,30 @@
+package com.bank.bank_app.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SqlActivityTest {
+
+    @Test
+    void testTypeOf() {
+        assertEquals(SqlActivity.SELECT, SqlActivity.typeOf("select a1_0.id from accounts a1_0 where a1_0.id=?"));
+        assertEquals(SqlActivity.SELECT, SqlActivity.typeOf("  (SELECT 1)"));
+        assertEquals(SqlActivity.INSERT, SqlActivity.typeOf("insert into entries (account_id,amount) values (?,?)"));
+        assertEquals(SqlActivity.UPDATE, SqlActivity.typeOf("UPDATE accounts SET balance = balance + ? WHERE id = ?"));
+        assertEquals(SqlActivity.DELETE, SqlActivity.typeOf("delete from accounts where id=?"));
+        assertEquals(SqlActivity.OTHER, SqlActivity.typeOf("call next value for entries_id_seq"));
+    }
+
+    @Test
+    void testStatementsAreCountedPerThread() throws InterruptedException {
+        long before = SqlActivity.current()[SqlActivity.INSERT];
+        SqlActivity.statement("insert into transfers (amount) values (?)");
+
+        Thread other = new Thread(() -> SqlActivity.statement("insert into transfers (amount) values (?)"));
+        other.start();
+        other.join();
+
+        assertEquals(before + 1, SqlActivity.current()[SqlActivity.INSERT]);
+    }
+}
@@ -0,0 +1,64 @@
+package com.bank.bank_app.money;
+
+import com.bank.bank_app.dto.AccountResponseDT0;
+import com.bank.bank_app.dto.TransferRequestDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.ValueInstantiationException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Test
+    void testScaleIsStrict() {
+        assertEquals(Money.ofCents(1000), Money.of("10"));
+        assertEquals(Money.ofCents(1000), Money.of("10.000"));
+        assertEquals(Money.ofCents(-5), Money.of(new BigDecimal("-0.05")));
+        assertThrows(IllegalArgumentException.class, () -> Money.of("10.005"));
+        assertThrows(IllegalArgumentException.class, () -> Money.of("1e30"));
+        assertThrows(IllegalArgumentException.class, () -> Money.of("ten"));
+    }
+
+    @Test
+    void testArithmeticIsOverflowChecked() {
+        assertEquals(Money.of("7.66"), Money.of("10.00").minus(Money.of("2.34")));
+        assertTrue(Money.of("2.34").isLessThan(Money.of("10.00")));
+        assertTrue(Money.of("0.01").minus(Money.of("0.02")).isNegative());
+        assertThrows(ArithmeticException.class, () -> Money.ofCents(Long.MAX_VALUE).plus(Money.of("0.01")));
+        assertThrows(ArithmeticException.class, () -> Money.ofCents(Long.MIN_VALUE).negate());
+    }
+
+    @Test
+    void testTextMatchesBigDecimal() {
+        for (long cents : new long[]{0, 5, -5, 100, -100, 123456, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            Money money = Money.ofCents(cents);
+            assertEquals(BigDecimal.valueOf(cents, 2).toPlainString(), money.toString());
+            assertEquals(BigDecimal.valueOf(cents, 2), money.toBigDecimal());
+        }
+    }
+
+    @Test
+    void testJsonIsUnchanged() throws Exception {
+        LocalDateTime createdAt = LocalDateTime.of(2025, 1, 2, 3, 4, 5);
+        String json = objectMapper.writeValueAsString(new AccountResponseDT0(1L, "Alice", Money.of("1000"), createdAt));
+        assertEquals(objectMapper.writeValueAsString(new Legacy(1L, "Alice", new BigDecimal("1000.00"), createdAt)), json);
+        assertEquals(new AccountResponseDT0(1L, "Alice", Money.of("1000.00"), createdAt),
+                objectMapper.readValue(json, AccountResponseDT0.class));
+
+        assertEquals(Money.of("12.30"),
+                objectMapper.readValue("{\"fromAccountId\":1,\"toAccountId\":2,\"amount\":12.3}", TransferRequestDTO.class).amount());
+        assertThrows(ValueInstantiationException.class,
+                () -> objectMapper.readValue("{\"fromAccountId\":1,\"toAccountId\":2,\"amount\":1.005}", TransferRequestDTO.class));
+    }
+
+    // AccountResponseDT0 as it was before balances were Money
+    private record Legacy(Long id, String owner, BigDecimal balance, LocalDateTime createdAt) {
+    }
+}
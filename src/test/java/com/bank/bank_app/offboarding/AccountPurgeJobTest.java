@@ -0,0 +1,78 @@
+package com.bank.bank_app.offboarding;
+
+import com.bank.bank_app.dto.AccountRequestDTO;
+import com.bank.bank_app.exception.AccountNotFoundException;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.service.AccountService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Against the database: a deleted account is gone at once but its rows stay until the purge removes them in batches
+@SpringBootTest
+class AccountPurgeJobTest {
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long closed;
+    private long counterparty;
+
+    @BeforeEach
+    void setUp() {
+        closed = accountService.createAccount(new AccountRequestDTO("Closed", Money.ZERO)).id();
+        counterparty = accountService.createAccount(new AccountRequestDTO("Counterparty", Money.ZERO)).id();
+        for (int i = 0; i < 5; i++) {
+            accountService.deposit(closed, Money.of("10.00"));
+        }
+        accountService.deposit(counterparty, Money.of("10.00"));
+        for (int i = 0; i < 3; i++) {
+            accountService.transfer(closed, counterparty, Money.of("1.00"));
+        }
+        accountService.transfer(counterparty, closed, Money.of("1.00"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        accountService.deleteAccount(counterparty);
+    }
+
+    @Test
+    void testDeletedAccountIsHiddenThenPurgedInBatches() {
+        accountService.deleteAccount(closed);
+
+        assertThrows(AccountNotFoundException.class, () -> accountService.getAccountById(closed));
+        assertThrows(AccountNotFoundException.class, () -> accountService.deposit(closed, Money.of("1.00")));
+        assertThrows(AccountNotFoundException.class, () -> accountService.transfer(counterparty, closed, Money.of("1.00")));
+        assertThrows(AccountNotFoundException.class, () -> accountService.deleteAccount(closed));
+        assertEquals(9, count("select count(*) from entries where account_id = ?", closed));
+
+        AccountPurgeJob job = new AccountPurgeJob(jdbcTemplate,
+                new AccountPurgeProperties(true, Duration.ofMinutes(1), 2), new SimpleMeterRegistry());
+        assertTrue(job.purgeAccount(closed));
+
+        assertEquals(0, count("select count(*) from accounts where id = ?", closed));
+        assertEquals(0, count("select count(*) from entries where account_id = ?", closed));
+        assertEquals(0, count("select count(*) from transfers where from_account_id = ? or to_account_id = ?", closed, closed));
+        assertEquals(0, count("select count(*) from account_daily_rollups where account_id = ?", closed));
+        assertEquals(5, count("select count(*) from entries where account_id = ?", counterparty));
+        assertEquals(9, job.status().deletedEntries());
+        assertEquals(4, job.status().deletedTransfers());
+        assertEquals(1, job.status().purgedAccounts());
+    }
+
+    private long count(String sql, Object... args) {
+        return jdbcTemplate.queryForObject(sql, Long.class, args);
+    }
+}
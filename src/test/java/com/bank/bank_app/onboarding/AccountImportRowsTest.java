@@ -0,0 +1,51 @@
+package com.bank.bank_app.onboarding;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountImportRowsTest {
+
+    private final AccountImportRows rows = new AccountImportRows(new JsonFactory());
+
+    private String copyRow(String line, AccountImportFormat format) {
+        StringBuilder out = new StringBuilder();
+        rows.appendCopyRow(line, format, out);
+        return out.toString();
+    }
+
+    private String rejection(String line, AccountImportFormat format) {
+        return assertThrows(IllegalArgumentException.class, () -> copyRow(line, format)).getMessage();
+    }
+
+    @Test
+    void testCsvRows() {
+        assertEquals("Alice\t100.50\n", copyRow("Alice,100.50", AccountImportFormat.CSV));
+        assertEquals("Smith, Bob \"Jr\"\t0.00\n", copyRow("\"Smith, Bob \"\"Jr\"\"\",0", AccountImportFormat.CSV));
+        // Characters that delimit COPY columns and rows are escaped
+        assertEquals("a\\\\b\\tc\t1.00\n", copyRow("a\\b\tc,1", AccountImportFormat.CSV));
+        assertTrue(AccountImportRows.isCsvHeader("owner, balance"));
+    }
+
+    @Test
+    void testNdjsonRows() {
+        assertEquals("Alice\t100.50\n", copyRow("{\"owner\":\"Alice\",\"balance\":100.50}", AccountImportFormat.NDJSON));
+        assertEquals("Bob\t7.00\n", copyRow("{\"balance\":\"7\",\"note\":{\"x\":1},\"owner\":\"Bob\"}", AccountImportFormat.NDJSON));
+    }
+
+    @Test
+    void testInvalidRowsAreRejected() {
+        assertEquals("Expected 2 fields: owner,balance", rejection("Alice", AccountImportFormat.CSV));
+        assertEquals("Expected 2 fields: owner,balance", rejection("Alice,1,2", AccountImportFormat.CSV));
+        assertEquals("Owner is required", rejection(" ,1", AccountImportFormat.CSV));
+        assertEquals("Balance is required", rejection("Alice,", AccountImportFormat.CSV));
+        assertEquals("Balance is not a number: ten", rejection("Alice,ten", AccountImportFormat.CSV));
+        assertEquals("Balance must not be negative", rejection("Alice,-1", AccountImportFormat.CSV));
+        assertEquals("Balance has more than 2 decimals", rejection("Alice,1.005", AccountImportFormat.CSV));
+        assertEquals("Balance is too large", rejection("Alice,123456789012345678", AccountImportFormat.CSV));
+        assertEquals("Owner is longer than 255 characters", rejection("x".repeat(256) + ",1", AccountImportFormat.CSV));
+        assertEquals("Expected a JSON object", rejection("[1]", AccountImportFormat.NDJSON));
+        assertTrue(rejection("{\"owner\":", AccountImportFormat.NDJSON).startsWith("Malformed JSON"));
+    }
+}
@@ -0,0 +1,106 @@
+package com.bank.bank_app.onboarding;
+
+import com.bank.bank_app.dto.AccountImportResultDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Against the database: a body that breaks off keeps its committed chunks, resending it creates the rest once
+@SpringBootTest
+class AccountImporterTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private AccountImporter importer;
+    private final String owner = "import-" + UUID.randomUUID();
+    private final String importId = UUID.randomUUID().toString();
+
+    @BeforeEach
+    void setUp() {
+        importer = new AccountImporter(dataSource, jdbcTemplate, transactionManager,
+                new AccountImportProperties(4, 64, 10, DataSize.ofKilobytes(1)), new ObjectMapper(), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from accounts where owner like ?", owner + "%");
+        jdbcTemplate.update("delete from account_imports where import_id = ?", importId);
+    }
+
+    @Test
+    void testResumesAfterBrokenBody() {
+        StringBuilder csv = new StringBuilder("owner,balance\n");
+        for (int i = 1; i <= 10; i++) {
+            csv.append(owner).append('-').append(i).append(',').append(i).append(".25\n");
+        }
+        csv.append("bad,row\n").append(owner).append("-x".repeat(40)).append(",1\r\n");
+        byte[] body = csv.toString().getBytes(StandardCharsets.UTF_8);
+
+        // Breaks off in the middle of line 7, the second chunk (lines 5 to 8) is rolled back
+        int broken = csv.indexOf(owner + "-6,") + owner.length() + 3;
+        AccountImportResultDTO first = importer.importAccounts(importId, AccountImportFormat.CSV, failingAfter(body, broken));
+        assertFalse(first.completed());
+        assertEquals(4, first.linesCommitted());
+        assertEquals(3, first.accountsCreated());
+        assertEquals(3, countAccounts());
+
+        AccountImportResultDTO resumed = importer.importAccounts(importId, AccountImportFormat.CSV, new ByteArrayInputStream(body));
+        assertTrue(resumed.completed(), resumed.error());
+        assertEquals(13, resumed.linesCommitted());
+        assertEquals(7, resumed.accountsCreated());
+        assertEquals(List.of(new AccountImportResultDTO.RejectedRow(12, "Balance is not a number: row"),
+                new AccountImportResultDTO.RejectedRow(13, "Line is longer than 64 characters")), resumed.rejected());
+        assertEquals(10, countAccounts());
+        assertEquals(0, jdbcTemplate.queryForObject("select balance from accounts where owner = ?",
+                BigDecimal.class, owner + "-10").compareTo(new BigDecimal("10.25")));
+
+        // Everything is committed, sending it once more creates nothing
+        AccountImportResultDTO again = importer.importAccounts(importId, AccountImportFormat.CSV, new ByteArrayInputStream(body));
+        assertTrue(again.completed());
+        assertEquals(0, again.accountsCreated());
+        assertEquals(10, countAccounts());
+    }
+
+    private int countAccounts() {
+        return jdbcTemplate.queryForObject("select count(*) from accounts where owner like ?", Integer.class, owner + "%");
+    }
+
+    private static InputStream failingAfter(byte[] body, int bytes) {
+        InputStream head = new ByteArrayInputStream(body, 0, bytes);
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                int read = head.read();
+                if (read < 0) {
+                    throw new IOException("Connection reset");
+                }
+                return read;
+            }
+        };
+    }
+}
@@ -0,0 +1,51 @@
+package com.bank.bank_app.partition;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.YearMonth;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Against the database: months ahead are created, a month past retention ends up in the archive schema
+@SpringBootTest
+class PartitionMaintenanceTest {
+
+    private static final YearMonth EXPIRED = YearMonth.of(2001, 1);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("drop table if exists archive.entries_p200101, archive.transfers_p200101");
+    }
+
+    @Test
+    void testCreatesAheadAndArchivesExpired() {
+        PartitionMaintenance maintenance = new PartitionMaintenance(jdbcTemplate, transactionManager,
+                new PartitionProperties(true, 6, 120, Duration.ofHours(6)));
+        YearMonth current = YearMonth.now();
+        maintenance.createPartition("entries", EXPIRED);
+        maintenance.createPartition("transfers", EXPIRED);
+        assertTrue(maintenance.partitions("entries").contains(EXPIRED));
+
+        maintenance.maintain(current);
+
+        for (String table : PartitionMaintenance.TABLES) {
+            assertTrue(maintenance.partitions(table).contains(current.plusMonths(6)), table);
+            assertFalse(maintenance.partitions(table).contains(EXPIRED), table);
+            assertEquals(1, jdbcTemplate.queryForObject(
+                    "select count(*) from pg_tables where schemaname = 'archive' and tablename = ?",
+                    Integer.class, PartitionMaintenance.partitionName(table, EXPIRED)), table);
+        }
+    }
+}
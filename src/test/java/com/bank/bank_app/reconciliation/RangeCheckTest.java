@@ -0,0 +1,84 @@
+package com.bank.bank_app.reconciliation;
+
+import com.bank.bank_app.dto.DiscrepancyDTO;
+import com.bank.bank_app.money.Money;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RangeCheckTest {
+
+    @Test
+    void testConsistentAccountsHaveNoDiscrepancies() {
+        RangeCheck check = new RangeCheck(List.of(account(1, 15_000, false), account(2, 500, false), account(3, 700, false)));
+        // Opened with 100.00, which has no entry
+        check.entry(1, 10, 5_000, 15_000);
+        check.entry(1, 11, -2_000, 13_000);
+        check.entry(1, 12, 2_000, 15_000);
+        check.entry(2, 13, 500, 500);
+
+        assertEquals(new RangeCheck.Result(3, 4, List.of()), check.finish());
+    }
+
+    @Test
+    void testLostUpdateAndBalanceWithoutEntryAreReported() {
+        RangeCheck check = new RangeCheck(List.of(account(1, 10_100, false), account(2, 3_000, false)));
+        check.entry(1, 10, 5_000, 15_000);
+        // The second deposit did not see the first one; checking goes on from what it wrote
+        check.entry(1, 11, 100, 15_000);
+        check.entry(1, 12, -5_000, 10_000);
+        // 10.00 more than the entries add up to
+        check.entry(2, 13, 1_000, 2_000);
+
+        assertEquals(List.of(
+                discrepancy(1, DiscrepancyKind.CHAIN, 11L, 15_100, 15_000),
+                discrepancy(2, DiscrepancyKind.BALANCE, null, 2_000, 3_000)), check.finish().discrepancies());
+    }
+
+    @Test
+    void testHotAccountsOnlyHaveTheirBalanceChecked() {
+        RangeCheck check = new RangeCheck(List.of(account(1, 300, true)));
+        check.entry(1, 10, 100, 100);
+        check.entry(1, 11, 100, 100);
+        check.entry(1, 12, 100, 300);
+
+        assertEquals(List.of(), check.finish().discrepancies());
+    }
+
+    @Test
+    void testEntriesOfAccountsNotInTheRangeAreSkipped() {
+        RangeCheck check = new RangeCheck(List.of(account(2, 100, false), account(4, 0, false)));
+        check.entry(1, 10, 100, 999);
+        check.entry(2, 11, 100, 100);
+        check.entry(3, 12, 100, 999);
+        check.entry(3, 13, 100, 5);
+
+        RangeCheck.Result result = check.finish();
+        assertEquals(List.of(), result.discrepancies());
+        assertEquals(2, result.accounts());
+        assertEquals(4, result.entries());
+    }
+
+    @Test
+    void testChainBreaksAreCappedPerAccount() {
+        RangeCheck check = new RangeCheck(List.of(account(1, 0, false)));
+        check.entry(1, 0, 0, 0);
+        for (int i = 1; i <= 50; i++) {
+            check.entry(1, i, 100, 0);
+        }
+
+        List<DiscrepancyDTO> discrepancies = check.finish().discrepancies();
+        assertEquals(RangeCheck.MAX_CHAIN_BREAKS + 1, discrepancies.size());
+        assertEquals(discrepancy(1, DiscrepancyKind.BALANCE, null, 5_000, 0), discrepancies.getLast());
+    }
+
+    private static RangeCheck.AccountRow account(long id, long balance, boolean hot) {
+        return new RangeCheck.AccountRow(id, balance, hot);
+    }
+
+    private static DiscrepancyDTO discrepancy(long accountId, DiscrepancyKind kind, Long entryId, long expected, long actual) {
+        return new DiscrepancyDTO(null, accountId, kind, entryId, Money.ofCents(expected), Money.ofCents(actual));
+    }
+}
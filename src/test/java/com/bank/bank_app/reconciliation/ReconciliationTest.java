@@ -0,0 +1,70 @@
+package com.bank.bank_app.reconciliation;
+
+import com.bank.bank_app.dto.AccountRequestDTO;
+import com.bank.bank_app.dto.DiscrepancyDTO;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.service.AccountService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Accounts written through the service against the database, two of them then damaged behind its back: the
+// range check finds exactly those, and recording a range twice keeps its discrepancies once
+@SpringBootTest
+class ReconciliationTest {
+
+    @Autowired
+    private Reconciliation reconciliation;
+
+    @Autowired
+    private ReconciliationReader reader;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testDamagedAccountsAreFoundAndRecordedOnce() {
+        Long clean = accountService.createAccount(new AccountRequestDTO("Reconciled", Money.of("100.00"))).id();
+        Long changed = accountService.createAccount(new AccountRequestDTO("Balance changed", Money.of("50.00"))).id();
+        Long broken = accountService.createAccount(new AccountRequestDTO("Chain broken", Money.of("0.00"))).id();
+        accountService.deposit(clean, Money.of("25.00"));
+        accountService.withdraw(clean, Money.of("5.00"));
+        accountService.transfer(clean, changed, Money.of("20.00"));
+        accountService.deposit(broken, Money.of("1.00"));
+        accountService.deposit(broken, Money.of("2.00"));
+        accountService.deposit(broken, Money.of("3.00"));
+
+        jdbcTemplate.update("UPDATE accounts SET balance = balance + 7 WHERE id = ?", changed);
+        Long middle = jdbcTemplate.queryForObject(
+                "SELECT id FROM entries WHERE account_id = ? AND amount = 2", Long.class, broken);
+        Long last = jdbcTemplate.queryForObject(
+                "SELECT id FROM entries WHERE account_id = ? AND amount = 3", Long.class, broken);
+        jdbcTemplate.update("UPDATE entries SET balance_after = 1.00 WHERE id = ?", middle);
+
+        RangeCheck.Result result = reader.check(clean, broken + 1);
+        List<DiscrepancyDTO> found = result.discrepancies().stream()
+                .filter(d -> List.of(clean, changed, broken).contains(d.accountId()))
+                .toList();
+        assertEquals(List.of(
+                new DiscrepancyDTO(null, changed, DiscrepancyKind.BALANCE, null, Money.of("70.00"), Money.of("77.00")),
+                new DiscrepancyDTO(null, broken, DiscrepancyKind.CHAIN, middle, Money.of("3.00"), Money.of("1.00")),
+                new DiscrepancyDTO(null, broken, DiscrepancyKind.CHAIN, last, Money.of("4.00"), Money.of("6.00"))),
+                found);
+
+        Long runId = jdbcTemplate.queryForObject("""
+                INSERT INTO reconciliation_runs (up_to, first_range, range_size, ranges, finished_at)
+                VALUES (?, ?, ?, 1, now()) RETURNING id""", Long.class, broken, clean, broken + 1 - clean);
+        Reconciliation.Run run = new Reconciliation.Run(runId, clean, (int) (broken + 1 - clean), 1);
+        assertTrue(reconciliation.record(run, clean, result));
+        assertFalse(reconciliation.record(run, clean, result));
+        assertEquals(result.discrepancies().size(), reconciliation.discrepancies(runId, 0, 1000).size());
+    }
+}
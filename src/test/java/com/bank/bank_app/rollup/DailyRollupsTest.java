@@ -0,0 +1,137 @@
+package com.bank.bank_app.rollup;
+
+import com.bank.bank_app.dto.AccountRequestDTO;
+import com.bank.bank_app.dto.DailyRollupDTO;
+import com.bank.bank_app.dto.TransferRequestDTO;
+import com.bank.bank_app.hotaccount.HotAccounts;
+import com.bank.bank_app.metrics.SqlActivity;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.service.AccountService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Against the database: every write path keeps the rollups, a hot account's slots add up, the backfill
+// rebuilds the same rows from the entries and adds a chunk only once
+@SpringBootTest
+@AutoConfigureMockMvc
+class DailyRollupsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private HotAccounts hotAccounts;
+
+    @Autowired
+    private DailyRollups dailyRollups;
+
+    @Autowired
+    private RollupBackfill rollupBackfill;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long sender;
+    private long receiver;
+    private final LocalDate today = LocalDate.now();
+
+    @BeforeEach
+    void setUp() {
+        sender = accountService.createAccount(new AccountRequestDTO("Sender", Money.ZERO)).id();
+        receiver = accountService.createAccount(new AccountRequestDTO("Receiver", Money.ZERO)).id();
+        hotAccounts.promote(sender);
+        for (int i = 0; i < 4; i++) {
+            accountService.deposit(sender, Money.of("50.00"));
+        }
+        accountService.withdraw(sender, Money.of("10.00"));
+        accountService.transfer(sender, receiver, Money.of("30.00"));
+        accountService.transferBatch(List.of(new TransferRequestDTO(sender, receiver, Money.of("5.00"))));
+    }
+
+    @AfterEach
+    void tearDown() {
+        hotAccounts.demote(sender);
+        accountService.deleteAccount(sender);
+        accountService.deleteAccount(receiver);
+    }
+
+    @Test
+    void testWritePathsKeepTheDailyTotals() throws Exception {
+        mockMvc.perform(get("/api/accounts/rollups")
+                        .param("accountId", String.valueOf(receiver), String.valueOf(sender))
+                        .param("from", today.minusDays(7).toString())
+                        .param("to", today.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].accountId").value(sender))
+                .andExpect(jsonPath("$[0].day").value(today.toString()))
+                .andExpect(jsonPath("$[0].deposits").value(200.00))
+                .andExpect(jsonPath("$[0].depositCount").value(4))
+                .andExpect(jsonPath("$[0].withdrawals").value(10.00))
+                .andExpect(jsonPath("$[0].withdrawCount").value(1))
+                .andExpect(jsonPath("$[0].transfersOut").value(35.00))
+                .andExpect(jsonPath("$[0].transferOutCount").value(2))
+                .andExpect(jsonPath("$[0].transferInCount").value(0))
+                .andExpect(jsonPath("$[1].accountId").value(receiver))
+                .andExpect(jsonPath("$[1].transfersIn").value(35.00))
+                .andExpect(jsonPath("$[1].transferInCount").value(2));
+
+        mockMvc.perform(get("/api/accounts/rollups")
+                        .param("accountId", String.valueOf(sender))
+                        .param("from", today.toString())
+                        .param("to", today.minusDays(1).toString()))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/accounts/rollups")
+                        .param("accountId", String.valueOf(Long.MAX_VALUE))
+                        .param("from", today.toString())
+                        .param("to", today.toString()))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testUpsertIsCountedWithTheOperationStatements() {
+        long inserts = SqlActivity.current()[SqlActivity.INSERT];
+
+        accountService.deposit(receiver, Money.of("1.00"));
+
+        // The entry and the rollup
+        assertEquals(inserts + 2, SqlActivity.current()[SqlActivity.INSERT]);
+    }
+
+    @Test
+    void testBackfillRebuildsTheRollupsOnce() {
+        List<DailyRollupDTO> maintained = dailyRollups.find(List.of(sender, receiver), today, today);
+        jdbcTemplate.update("delete from account_daily_rollups where account_id in (?, ?)", sender, receiver);
+        long firstId = jdbcTemplate.queryForObject(
+                "select min(id) from entries where account_id in (?, ?)", Long.class, sender, receiver);
+        long lastId = jdbcTemplate.queryForObject(
+                "select max(id) from entries where account_id in (?, ?)", Long.class, sender, receiver);
+
+        try {
+            assertTrue(rollupBackfill.addChunk(firstId, lastId + 1));
+            assertEquals(maintained, dailyRollups.find(List.of(sender, receiver), today, today));
+
+            assertFalse(rollupBackfill.addChunk(firstId, lastId + 1));
+            assertEquals(maintained, dailyRollups.find(List.of(sender, receiver), today, today));
+        } finally {
+            jdbcTemplate.update("delete from rollup_backfill_chunks where first_id = ?", firstId);
+        }
+    }
+}
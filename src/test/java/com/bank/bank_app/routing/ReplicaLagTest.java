@@ -0,0 +1,67 @@
+package com.bank.bank_app.routing;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ReplicaLagTest {
+
+    private final JdbcTemplate primary = mock(JdbcTemplate.class);
+    private final JdbcTemplate replica = mock(JdbcTemplate.class);
+    private final ReplicaLag lag = new ReplicaLag(primary, replica,
+            new ReplicaProperties(true, "jdbc:postgresql://replica/db", null, null, 10,
+                    Duration.ofSeconds(1), Duration.ofMillis(100)),
+            new SimpleMeterRegistry());
+
+    @Test
+    void testReplicaIsCaughtUpToTheNewestReplayedSample() {
+        when(primary.queryForObject(anyString(), eq(Long.class))).thenReturn(100L, 200L, 300L);
+        when(replica.queryForObject(anyString(), eq(Long.class))).thenReturn(50L, 150L, 300L);
+
+        lag.sample(1000);
+        assertEquals(Long.MIN_VALUE, lag.caughtUpTo());
+        assertTrue(Double.isNaN(lag.lagMillis(1000)));
+
+        lag.sample(1100);
+        assertEquals(1000, lag.caughtUpTo());
+        assertEquals(100, lag.lagMillis(1100));
+
+        lag.sample(1200);
+        assertEquals(1200, lag.caughtUpTo());
+    }
+
+    @Test
+    void testLagGrowsWhileTheReplicaCannotBeReached() {
+        when(primary.queryForObject(anyString(), eq(Long.class))).thenReturn(100L, 200L);
+        when(replica.queryForObject(anyString(), eq(Long.class)))
+                .thenReturn(100L)
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"));
+
+        lag.sample(1000);
+        lag.sample(1100);
+
+        assertEquals(1000, lag.caughtUpTo());
+        assertEquals(2000, lag.lagMillis(3000));
+    }
+
+    @Test
+    void testSamplesOlderThanMaxLagAreDropped() {
+        when(primary.queryForObject(anyString(), eq(Long.class))).thenReturn(100L, 200L, 300L);
+        when(replica.queryForObject(anyString(), eq(Long.class))).thenReturn(0L, 0L, 100L);
+
+        lag.sample(1000);
+        lag.sample(2500);
+        // Position 100 is replayed now, but the sample that saw it was dropped with the replica that far behind
+        lag.sample(2600);
+
+        assertEquals(Long.MIN_VALUE, lag.caughtUpTo());
+    }
+}
@@ -0,0 +1,102 @@
+package com.bank.bank_app.routing;
+
+import com.bank.bank_app.dto.AccountRequestDTO;
+import com.bank.bank_app.dto.EntryPageRequest;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.service.AccountService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// The "replica" is the primary itself, which is never behind: what is tested is where connections go
+@SpringBootTest(properties = {
+        "bank.replica.enabled=true",
+        "bank.replica.url=${spring.datasource.url}",
+        "bank.replica.maximum-pool-size=2"
+})
+@AutoConfigureMockMvc
+class ReplicaRoutingTest {
+
+    private static final EntryPageRequest FIRST_PAGE = new EntryPageRequest(50, null, null, null, null, null);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ReplicaLag replicaLag;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private long accountId;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        accountId = accountService.createAccount(new AccountRequestDTO("Routed", Money.of("10.00"))).id();
+        // The first lag sample has to be in before anything is read from the replica
+        long deadline = System.currentTimeMillis() + 5000;
+        while (replicaLag.caughtUpTo() < System.currentTimeMillis() - 500 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    void testReadOnlyServiceReadsGoToTheReplica() {
+        double before = reads("replica");
+
+        accountService.getAccountTransactions(accountId, FIRST_PAGE);
+
+        assertEquals(before + 1, reads("replica"));
+    }
+
+    @Test
+    void testReadsInsideAWriteTransactionStayOnThePrimary() {
+        double before = reads("replica");
+
+        transactionTemplate.executeWithoutResult(status -> {
+            accountService.deposit(accountId, Money.of("1.00"));
+            assertEquals(1, accountService.getAccountTransactions(accountId, FIRST_PAGE).entries().size());
+        });
+
+        assertEquals(before, reads("replica"));
+    }
+
+    @Test
+    void testReadAfterAWriteTheReplicaHasNotReplayedGoesToThePrimary() throws Exception {
+        String readAfter = mockMvc.perform(post("/api/accounts/{id}/deposit", accountId).param("amount", "5"))
+                .andExpect(status().isCreated())
+                .andExpect(header().exists(ReplicaRoutingDataSource.READ_AFTER))
+                .andReturn().getResponse().getHeader(ReplicaRoutingDataSource.READ_AFTER);
+        assertNotNull(readAfter);
+        double fallbacks = registry.get("bank.replica.fallbacks").tag("reason", "read-your-writes").counter().count();
+
+        // A token from the future: no lag sample can have covered it yet
+        mockMvc.perform(get("/api/accounts/{id}/transactions", accountId)
+                        .header(ReplicaRoutingDataSource.READ_AFTER, Long.parseLong(readAfter) + 60_000))
+                .andExpect(status().isOk());
+
+        assertEquals(fallbacks + 1,
+                registry.get("bank.replica.fallbacks").tag("reason", "read-your-writes").counter().count());
+    }
+
+    private double reads(String target) {
+        return registry.get("bank.replica.reads").tag("target", target).counter().count();
+    }
+}
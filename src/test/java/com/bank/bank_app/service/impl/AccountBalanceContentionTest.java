@@ -0,0 +1,64 @@
+package com.bank.bank_app.service.impl;
+
+import com.bank.bank_app.dto.AccountRequestDTO;
+import com.bank.bank_app.dto.AccountResponseDT0;
+import com.bank.bank_app.dto.EntryPageRequest;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.service.AccountService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Concurrent deposits and withdrawals on one account against the database: none may be lost or overdraw it
+@SpringBootTest
+class AccountBalanceContentionTest {
+
+    @Autowired
+    private AccountService accountService;
+
+    @Test
+    void testConcurrentWithdrawalsNeverOverdraw() throws Exception {
+        AccountResponseDT0 account = accountService.createAccount(new AccountRequestDTO("Contention", Money.of("1000.00")));
+
+        List<Future<Boolean>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(16)) {
+            for (int i = 0; i < 200; i++) {
+                results.add(executor.submit(() -> {
+                    try {
+                        accountService.withdraw(account.id(), Money.of("10.00"));
+                        return true;
+                    } catch (IllegalArgumentException e) {
+                        return false;
+                    }
+                }));
+                results.add(executor.submit(() -> {
+                    accountService.deposit(account.id(), Money.of("1.00"));
+                    return true;
+                }));
+            }
+        }
+
+        long withdrawals = 0;
+        for (int i = 0; i < results.size(); i += 2) {
+            withdrawals += results.get(i).get() ? 1 : 0;
+            assertTrue(results.get(i + 1).get());
+        }
+
+        // 1000 + 200 deposits of 1, every successful withdrawal of 10 left a non-negative balance
+        Money expected = Money.ofCents(100 * (1200 - 10 * withdrawals));
+        assertEquals(0, expected.compareTo(accountService.getAccountById(account.id()).balance()));
+        assertFalse(expected.isNegative());
+        assertEquals(200 + withdrawals, accountService.getAccountTransactions(account.id(),
+                new EntryPageRequest(500, null, null, null, null, null)).entries().size());
+
+        accountService.deleteAccount(account.id());
+    }
+}
@@ -35,21 +35,46 @@ By default, these annotations don’t do anything unless you initialize them. 
 
 package com.bank.bank_app.service.impl;
 
+import com.bank.bank_app.cache.AccountCache;
+import com.bank.bank_app.cache.AccountCacheProperties;
+import com.bank.bank_app.config.TransferBatchProperties;
+import com.bank.bank_app.dto.AccountPageDTO;
 import com.bank.bank_app.dto.AccountResponseDT0;
+import com.bank.bank_app.dto.BalanceAsOfDTO;
+import com.bank.bank_app.dto.EntryCursor;
+import com.bank.bank_app.dto.EntryDTO;
+import com.bank.bank_app.dto.EntryPageDTO;
+import com.bank.bank_app.dto.EntryPageRequest;
+import com.bank.bank_app.dto.TransferBatchResponseDTO;
+import com.bank.bank_app.dto.TransferRequestDTO;
+import com.bank.bank_app.dto.TransferResultDTO;
+import com.bank.bank_app.entity.EntryType;
 import com.bank.bank_app.exception.AccountNotFoundException;
+import com.bank.bank_app.hotaccount.HotAccounts;
+import com.bank.bank_app.mapper.AccountMapper;
 import com.bank.bank_app.model.Account;
+import com.bank.bank_app.model.BalanceSnapshot;
 import com.bank.bank_app.model.Entry;
 import com.bank.bank_app.model.Transfer;
+import com.bank.bank_app.money.Money;
 import com.bank.bank_app.repository.AccountRepository;
+import com.bank.bank_app.repository.BalanceSnapshotRepository;
 import com.bank.bank_app.repository.EntryRepository;
 import com.bank.bank_app.repository.TransferRepository;
+import com.bank.bank_app.rollup.DailyRollups;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -66,6 +91,24 @@ public class AccountServiceImplTest {
     @Mock
     private TransferRepository transferRepository;
 
+    @Mock
+    private TransferBatchExecutor transferBatchExecutor;
+
+    @Mock
+    private TransferBatchProperties transferBatchProperties;
+
+    @Mock
+    private HotAccounts hotAccounts;
+
+    @Mock
+    private BalanceSnapshotRepository snapshotRepository;
+
+    @Mock
+    private DailyRollups dailyRollups;
+
+    @Spy
+    private AccountCache accountCache = new AccountCache(new AccountCacheProperties(true, 100, Duration.ofMinutes(1)));
+
     @InjectMocks
     private AccountServiceImpl accountService;
 
@@ -81,66 +124,111 @@ public class AccountServiceImplTest {
         account = Account.builder()
                 .id(1L)
                 .owner("John Doe")
-                .balance(BigDecimal.valueOf(1000.00))
+                .balance(Money.of("1000.00"))
                 .build();
 
 
         fromAccount = Account.builder()
                 .id(2L)
                 .owner("Pasang Gurung")
-                .balance(BigDecimal.valueOf(1000.00))
+                .balance(Money.of("1000.00"))
                 .build();
 
         toAccount = Account.builder()
                 .id(3L)
                 .owner("Kaushal Gurung")
-                .balance(BigDecimal.valueOf(500.00))
+                .balance(Money.of("500.00"))
                 .build();
     }
 
+    @Test
+    void testBalanceAsOfAddsEntriesSinceEarlierSnapshot() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 1, 1, 0, 0);
+        LocalDateTime snapshotAt = createdAt.plusDays(30);
+        LocalDateTime asOf = snapshotAt.plusMinutes(20);
+        account.setCreatedAt(createdAt);
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
+        when(snapshotRepository.findFirstByAccountIdAndTakenAtLessThanEqualOrderByTakenAtDesc(1L, asOf))
+                .thenReturn(Optional.of(new BalanceSnapshot(1L, snapshotAt, Money.of("700.00"))));
+        when(entryRepository.sumChanges(1L, snapshotAt, asOf)).thenReturn(new BigDecimal("-50.00"));
+
+        BalanceAsOfDTO balance = accountService.getBalanceAsOf(1L, asOf);
+
+        assertEquals(new BalanceAsOfDTO(1L, asOf, Money.of("650.00")), balance);
+        verify(snapshotRepository, never()).currentBalanceAsOf(any(), any());
+    }
+
+    @Test
+    void testBalanceAsOfBeforeFirstSnapshotSubtractsEntriesUpToIt() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 1, 1, 0, 0);
+        LocalDateTime asOf = createdAt.plusMinutes(5);
+        LocalDateTime snapshotAt = createdAt.plusHours(1);
+        account.setCreatedAt(createdAt);
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
+        when(snapshotRepository.findFirstByAccountIdAndTakenAtLessThanEqualOrderByTakenAtDesc(1L, asOf)).thenReturn(Optional.empty());
+        when(snapshotRepository.findFirstByAccountIdAndTakenAtGreaterThanOrderByTakenAtAsc(1L, asOf))
+                .thenReturn(Optional.of(new BalanceSnapshot(1L, snapshotAt, Money.of("700.00"))));
+        when(entryRepository.sumChanges(1L, asOf, snapshotAt)).thenReturn(new BigDecimal("200.00"));
+
+        assertEquals(Money.of("500.00"), accountService.getBalanceAsOf(1L, asOf).balance());
+    }
+
+    @Test
+    void testBalanceAsOfBeforeAccountExisted() {
+        account.setCreatedAt(LocalDateTime.of(2024, 1, 1, 0, 0));
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> accountService.getBalanceAsOf(1L, LocalDateTime.of(2023, 12, 31, 23, 59)));
+        verifyNoInteractions(snapshotRepository, entryRepository);
+    }
+
     @Test
     void testSuccessfulTransfers() {
-        when(accountRepository.findById(2L)).thenReturn(Optional.of(fromAccount));
-        when(accountRepository.findById(3L)).thenReturn(Optional.of(account));
-        when(accountRepository.save(any(Account.class))).thenAnswer(i -> i.getArgument(0));
+        when(hotAccounts.lock(List.of(2L, 3L))).thenReturn(locked(fromAccount, toAccount));
+        when(hotAccounts.debit(2L, Money.of("200.00"))).thenReturn(Optional.of(response(fromAccount, 800.00)));
+        when(hotAccounts.credit(3L, Money.of("200.00"))).thenReturn(Optional.of(response(account, 1200.00)));
         when(entryRepository.save(any(Entry.class))).thenAnswer(i -> i.getArgument(0));
         when(transferRepository.save(any(Transfer.class))).thenAnswer(i -> i.getArgument(0));
 
-        AccountResponseDT0 accountResponseDT0 = accountService.transfer(2L, 3L, BigDecimal.valueOf(200.00));
+        AccountResponseDT0 accountResponseDT0 = accountService.transfer(2L, 3L, Money.of("200.00"));
 
         assertNotNull(accountResponseDT0);
-        assertEquals(BigDecimal.valueOf(800.00), accountResponseDT0.balance());
+        assertEquals(Money.of("800.00"), accountResponseDT0.balance());
 
-        verify(accountRepository,times(2)).save(any(Account.class));
+        // Conditional UPDATEs after the rows were locked, no entity is loaded or written back
+        verify(accountRepository, never()).findById(any());
+        verify(accountRepository, never()).save(any(Account.class));
+        verify(entryRepository).save(argThat(entry ->
+                entry.getEntryType() == EntryType.TRANSFER_IN && entry.getBalanceAfter().equals(Money.of("1200.00"))));
         verify(entryRepository,times(2)).save(any(Entry.class));
         verify(transferRepository,times(1)).save(any(Transfer.class));
+        verify(dailyRollups).add(argThat(entries -> entries.size() == 2));
 
     }
 
     @Test
     void testTransferInsufficientFunds(){
-        when(accountRepository.findById(2L)).thenReturn(Optional.of(fromAccount));
-        when(accountRepository.findById(3L)).thenReturn(Optional.of(account));
+        when(hotAccounts.lock(List.of(2L, 3L))).thenReturn(locked(fromAccount, toAccount));
 
         Exception exception = assertThrows(IllegalArgumentException.class,
-                () -> accountService.transfer(2L, 3L, BigDecimal.valueOf(10000.00)));
+                () -> accountService.transfer(2L, 3L, Money.of("10000.00")));
 
         assertEquals("Insufficient funds", exception.getMessage());
 
-        verify(accountRepository, never()).save(fromAccount);
+        verify(hotAccounts, never()).debit(any(), any());
         verify(entryRepository, never()).save(any(Entry.class));
         verify(transferRepository, never()).save(any(Transfer.class));
     }
 
     @Test
     void testTransferNegativeAmount() {
-        when(accountRepository.findById(1L)).thenReturn(Optional.of(fromAccount));
-        when(accountRepository.findById(2L)).thenReturn(Optional.of(toAccount));
 
         Exception exception = assertThrows(IllegalArgumentException.class, () ->
-                accountService.transfer(1L, 2L, BigDecimal.valueOf(-100.00)));
+                accountService.transfer(1L, 2L, Money.of("-100.00")));
 
         assertEquals("Transfer amount must be greater than zero", exception.getMessage());
+        verify(hotAccounts, never()).lock(any());
         verify(accountRepository, never()).save(any(Account.class));
         verify(entryRepository, never()).save(any(Entry.class));
         verify(transferRepository, never()).save(any(Transfer.class));
@@ -148,10 +236,10 @@ public class AccountServiceImplTest {
 
     @Test
     void testTransferFromAccountNotFound() {
-        when(accountRepository.findById(2L)).thenReturn(Optional.empty());
+        when(hotAccounts.lock(List.of(2L, 3L))).thenReturn(locked(toAccount));
 
         Exception exception = assertThrows(AccountNotFoundException.class, () ->
-                accountService.transfer(2L, 3L, BigDecimal.valueOf(100.00)));
+                accountService.transfer(2L, 3L, Money.of("100.00")));
 
         assertEquals("Account not found with id: 2", exception.getMessage());
         verify(accountRepository, never()).save(any(Account.class));
@@ -161,11 +249,10 @@ public class AccountServiceImplTest {
 
     @Test
     void testTransferToAccountNotFound() {
-        when(accountRepository.findById(2L)).thenReturn(Optional.of(fromAccount));
-        when(accountRepository.findById(3L)).thenReturn(Optional.empty());
+        when(hotAccounts.lock(List.of(2L, 3L))).thenReturn(locked(fromAccount));
 
         Exception exception = assertThrows(AccountNotFoundException.class, () ->
-                accountService.transfer(2L, 3L, BigDecimal.valueOf(100.00)));
+                accountService.transfer(2L, 3L, Money.of("100.00")));
 
         assertEquals("Account not found with id: 3", exception.getMessage());
         verify(accountRepository, never()).save(any(Account.class));
@@ -182,7 +269,7 @@ public class AccountServiceImplTest {
 
         assertNotNull(accountResponseDT0);
         assertEquals("John Doe", accountResponseDT0.owner());
-        assertEquals(BigDecimal.valueOf(1000.00), accountResponseDT0.balance());
+        assertEquals(Money.of("1000.00"), accountResponseDT0.balance());
 
         // Verify repository interaction
         verify(accountRepository, times(1)).findById(1L);
@@ -194,41 +281,236 @@ public class AccountServiceImplTest {
         assertThrows(AccountNotFoundException.class, () -> accountService.getAccountById(2L));
     }
 
+    @Test
+    void testDeleteAccount_SoftDeletesWithoutLoading() {
+        when(accountRepository.softDelete(eq(1L), any(LocalDateTime.class))).thenReturn(1);
+
+        accountService.deleteAccount(1L);
+
+        verify(accountRepository, never()).findById(any());
+        verify(accountRepository, never()).delete(any(Account.class));
+        assertThrows(AccountNotFoundException.class, () -> accountService.deleteAccount(2L));
+    }
+
     @Test
     void testDeposit_Success() {
-        when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
-        // Stub save to just return the same object
-        when(accountRepository.save(any(Account.class))).thenAnswer(i-> i.getArgument(0));
+        when(hotAccounts.credit(1L, Money.of("5000.00")))
+                .thenReturn(Optional.of(response(account, 6000.00)));
+        when(accountRepository.getReferenceById(1L)).thenReturn(account);
 
-        AccountResponseDT0 accountResponseDT0 = accountService.deposit(1L, BigDecimal.valueOf(5000.00));
+        AccountResponseDT0 accountResponseDT0 = accountService.deposit(1L, Money.of("5000.00"));
 
-        assertEquals(BigDecimal.valueOf(6000.00), accountResponseDT0.balance());
+        assertEquals(Money.of("6000.00"), accountResponseDT0.balance());
 
-        verify(accountRepository, times(1)).save(account);
+        // No read before the update, no entity save
+        verify(accountRepository, never()).findById(1L);
+        verify(accountRepository, never()).save(any(Account.class));
+        verify(entryRepository, times(1)).save(argThat(entry ->
+                entry.getEntryType() == EntryType.DEPOSIT && entry.getBalanceAfter().equals(Money.of("6000.00"))));
+        verify(dailyRollups).add(argThat(entries -> entries.size() == 1));
     }
 
     @Test
     void testDeposit_Invalid() {
-        when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
-        assertThrows(IllegalArgumentException.class, () -> accountService.deposit(1L, BigDecimal.valueOf(-1000.00)));
+        assertThrows(IllegalArgumentException.class, () -> accountService.deposit(1L, Money.of("-1000.00")));
+        verify(hotAccounts, never()).credit(any(), any());
+    }
+
+    @Test
+    void testDeposit_AccountNotFound() {
+        when(hotAccounts.credit(99L, Money.of("10.00"))).thenReturn(Optional.empty());
+
+        assertThrows(AccountNotFoundException.class, () -> accountService.deposit(99L, Money.of("10.00")));
+        verify(entryRepository, never()).save(any(Entry.class));
     }
 
     @Test
     void testWithdraw_Success() {
-        when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
-        when(accountRepository.save(any(Account.class))).thenAnswer(i -> i.getArgument(0));
+        when(hotAccounts.debit(1L, Money.of("200.00")))
+                .thenReturn(Optional.of(response(account, 800.00)));
+        when(accountRepository.getReferenceById(1L)).thenReturn(account);
 
-        AccountResponseDT0 accountResponseDT0 = accountService.withdraw(1L, BigDecimal.valueOf(200.00));
+        AccountResponseDT0 accountResponseDT0 = accountService.withdraw(1L, Money.of("200.00"));
 
-        assertEquals(BigDecimal.valueOf(800.00), accountResponseDT0.balance());
+        assertEquals(Money.of("800.00"), accountResponseDT0.balance());
 
-        verify(accountRepository, times(1)).save(account);
+        verify(accountRepository, never()).existsById(1L);
+        verify(entryRepository, times(1)).save(any(Entry.class));
     }
 
     @Test
     void testWithdraw_InsufficientFunds(){
+        when(hotAccounts.debit(1L, Money.of("2000.00"))).thenReturn(Optional.empty());
+        when(accountRepository.existsById(1L)).thenReturn(true);
+
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> accountService.withdraw(1L, Money.of("2000.00")));
+
+        assertEquals("Insufficient funds in account", exception.getMessage());
+        verify(entryRepository, never()).save(any(Entry.class));
+    }
+
+    @Test
+    void testWithdraw_AccountNotFound() {
+        when(hotAccounts.debit(99L, Money.of("10.00"))).thenReturn(Optional.empty());
+        when(accountRepository.existsById(99L)).thenReturn(false);
+
+        assertThrows(AccountNotFoundException.class, () -> accountService.withdraw(99L, Money.of("10.00")));
+    }
+
+    private AccountResponseDT0 response(Account account, double balance) {
+        return new AccountResponseDT0(account.getId(), account.getOwner(), Money.of(BigDecimal.valueOf(balance)), account.getCreatedAt());
+    }
+
+    // What HotAccounts.lock returns for the accounts that exist
+    private List<AccountResponseDT0> locked(Account... accounts) {
+        return Arrays.stream(accounts).map(AccountMapper::toResponseDTO).toList();
+    }
+
+    @Test
+    void testTransferBatch_SplitsIntoChunks() {
+        when(transferBatchProperties.chunkSize()).thenReturn(2);
+        when(transferBatchProperties.maxSize()).thenReturn(10);
+        when(transferBatchExecutor.applyChunk(anyList(), eq(0))).thenReturn(List.of(
+                TransferResultDTO.succeeded(0, 10L, Money.of("900.00")),
+                TransferResultDTO.failed(1, "Insufficient funds")));
+        when(transferBatchExecutor.applyChunk(anyList(), eq(2))).thenThrow(new IllegalStateException("connection lost"));
+
+        TransferRequestDTO request = new TransferRequestDTO(2L, 3L, Money.of("100.00"));
+        TransferBatchResponseDTO response = accountService.transferBatch(Collections.nCopies(3, request));
+
+        assertEquals(1, response.succeeded());
+        assertEquals(2, response.failed());
+        assertEquals(10L, response.results().get(0).transferId());
+        assertEquals("Chunk failed: connection lost", response.results().get(2).error());
+        verify(transferBatchExecutor, times(2)).applyChunk(anyList(), anyInt());
+    }
+
+    @Test
+    void testTransferBatch_TooLarge() {
+        when(transferBatchProperties.maxSize()).thenReturn(2);
+
+        TransferRequestDTO request = new TransferRequestDTO(2L, 3L, Money.of("100.00"));
+        assertThrows(IllegalArgumentException.class,
+                () -> accountService.transferBatch(Collections.nCopies(3, request)));
+        verify(transferBatchExecutor, never()).applyChunk(anyList(), anyInt());
+    }
+
+    @Test
+    void testGetAccountTransactionsPage_HasMore() {
+        LocalDateTime now = LocalDateTime.now();
+        List<EntryDTO> rows = List.of(
+                new EntryDTO(3L, Money.of("10.00"), EntryType.DEPOSIT, now, Money.of("30.00")),
+                new EntryDTO(2L, Money.of("10.00"), EntryType.DEPOSIT, now.minusSeconds(1), Money.of("20.00")),
+                new EntryDTO(1L, Money.of("10.00"), EntryType.DEPOSIT, now.minusSeconds(2), Money.of("10.00")));
+        when(entryRepository.findPage(eq(1L), isNull(), isNull(), any(), isNull(), isNull(), eq(3))).thenReturn(rows);
+
+        EntryPageDTO page = accountService.getAccountTransactions(1L, new EntryPageRequest(2, null, null, null, null, null));
+
+        assertEquals(2, page.entries().size());
+        assertEquals(new EntryCursor(now.minusSeconds(1), 2L), EntryCursor.decode(page.nextCursor()));
+        assertNull(page.previousCursor());
+        // The first window was enough, the account's creation is not needed
+        verify(accountRepository, never()).findCreatedAtById(any());
+    }
+
+    @Test
+    void testGetAccountTransactionsPage_WindowsGoBackToAccountCreation() {
+        LocalDateTime cursorAt = LocalDateTime.of(2025, 6, 1, 12, 0);
+        EntryCursor before = new EntryCursor(cursorAt, 10L);
+        LocalDateTime firstFrom = cursorAt.minus(AccountServiceImpl.HISTORY_WINDOW);
+        LocalDateTime secondFrom = firstFrom.minus(AccountServiceImpl.HISTORY_WINDOW.multipliedBy(2));
+        EntryDTO recent = new EntryDTO(9L, Money.of("10.00"), EntryType.DEPOSIT, cursorAt.minusDays(1), Money.of("30.00"));
+        EntryDTO older = new EntryDTO(5L, Money.of("10.00"), EntryType.DEPOSIT, cursorAt.minusDays(60), Money.of("20.00"));
+        EntryDTO oldest = new EntryDTO(1L, Money.of("10.00"), EntryType.DEPOSIT, cursorAt.minusDays(99), Money.of("10.00"));
+        when(entryRepository.findPage(1L, before, null, firstFrom, null, null, 6)).thenReturn(List.of(recent));
+        when(entryRepository.findPage(1L, before, null, secondFrom, firstFrom, null, 5)).thenReturn(List.of(older));
+        when(accountRepository.findCreatedAtById(1L)).thenReturn(Optional.of(cursorAt.minusDays(100)));
+        when(entryRepository.findPage(1L, before, null, cursorAt.minusDays(101), secondFrom, null, 4))
+                .thenReturn(List.of(oldest));
+
+        EntryPageDTO page = accountService.getAccountTransactions(1L,
+                new EntryPageRequest(5, before.encode(), null, null, null, null));
+
+        assertEquals(List.of(recent, older, oldest), page.entries());
+        assertNull(page.nextCursor());
+        verify(entryRepository, times(3)).findPage(any(), any(), any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void testGetAccountTransactionsPage_AfterIsReturnedNewestFirst() {
+        LocalDateTime now = LocalDateTime.now();
+        EntryCursor after = new EntryCursor(now.minusSeconds(3), 1L);
+        List<EntryDTO> rows = List.of(
+                new EntryDTO(2L, Money.of("10.00"), EntryType.DEPOSIT, now.minusSeconds(2), Money.of("20.00")),
+                new EntryDTO(3L, Money.of("10.00"), EntryType.DEPOSIT, now.minusSeconds(1), Money.of("30.00")));
+        when(entryRepository.findPage(1L, null, after, null, null, null, 3)).thenReturn(rows);
+
+        EntryPageDTO page = accountService.getAccountTransactions(1L,
+                new EntryPageRequest(2, null, after.encode(), null, null, null));
+
+        assertEquals(3L, page.entries().get(0).id());
+        assertEquals(2L, page.entries().get(1).id());
+        assertEquals(new EntryCursor(now.minusSeconds(2), 2L), EntryCursor.decode(page.nextCursor()));
+        assertNull(page.previousCursor());
+    }
+
+    @Test
+    void testGetAccountTransactionsPage_InvalidCursor() {
+        assertThrows(IllegalArgumentException.class, () -> accountService.getAccountTransactions(1L,
+                new EntryPageRequest(50, "not-a-cursor", null, null, null, null)));
+        verify(entryRepository, never()).findPage(any(), any(), any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void testGetAccounts_Page() {
+        AccountResponseDT0 second = new AccountResponseDT0(2L, "Pasang Gurung", Money.of("1000.00"), null);
+        AccountResponseDT0 third = new AccountResponseDT0(3L, "Pasang Gurung", Money.of("500.00"), null);
+        when(accountRepository.findPageAfter(eq(1L), any())).thenReturn(List.of(second, third));
+        when(accountRepository.findPageAfter(eq(2L), any())).thenReturn(List.of(third));
+
+        AccountPageDTO first = accountService.getAccounts(1L, 1);
+        AccountPageDTO last = accountService.getAccounts(first.nextAfterId(), 1);
+
+        assertEquals(List.of(second), first.accounts());
+        assertEquals(2L, first.nextAfterId());
+        assertEquals(List.of(third), last.accounts());
+        assertNull(last.nextAfterId());
+        assertThrows(IllegalArgumentException.class, () -> accountService.getAccounts(1L, 0));
+    }
+
+    @Test
+    void testGetAllAccounts() {
+        when(accountRepository.findAll()).thenReturn(List.of(account));
+
+        List<AccountResponseDT0> accounts = accountService.getAllAccounts();
+
+        assertEquals(1, accounts.size());
+        assertEquals(account.getId(), accounts.getFirst().id());
+    }
+
+    @Test
+    void testGetAccountById_Cached() {
         when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
-        assertThrows(IllegalArgumentException.class, () -> accountService.withdraw(1L, BigDecimal.valueOf(2000.00)));
+
+        accountService.getAccountById(1L);
+        accountService.getAccountById(1L);
+
+        verify(accountRepository, times(1)).findById(1L);
+        assertEquals(1, accountCache.stats().hits());
+    }
+
+    @Test
+    void testDeposit_EvictsCachedAccount() {
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
+        when(hotAccounts.credit(1L, Money.of("500.00")))
+                .thenReturn(Optional.of(response(account, 1500.00)));
+
+        accountService.getAccountById(1L);
+        accountService.deposit(1L, Money.of("500.00"));
+        accountService.getAccountById(1L);
+
+        verify(accountRepository, times(2)).findById(1L);
+        verify(accountCache, times(1)).evict(1L);
     }
 
 }
@@ -0,0 +1,82 @@
+package com.bank.bank_app.service.impl;
+
+import com.bank.bank_app.dto.AccountRequestDTO;
+import com.bank.bank_app.dto.AccountResponseDT0;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.repository.BalanceSnapshotRepository;
+import com.bank.bank_app.service.AccountService;
+import com.bank.bank_app.snapshot.BalanceSnapshotJob;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// As-of balances against the database, from before, between and after snapshots
+@SpringBootTest
+class BalanceAsOfTest {
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private BalanceSnapshotJob snapshotJob;
+
+    @Autowired
+    private BalanceSnapshotRepository snapshotRepository;
+
+    @Test
+    void testBalanceAsOfMatchesHistory() throws Exception {
+        AccountResponseDT0 account = accountService.createAccount(new AccountRequestDTO("As Of", Money.of("100.00")));
+        AccountResponseDT0 other = accountService.createAccount(new AccountRequestDTO("Other", Money.of("100.00")));
+        LocalDateTime created = instant();
+
+        accountService.deposit(account.id(), Money.of("50.00"));
+        LocalDateTime afterDeposit = instant();
+        accountService.transfer(account.id(), other.id(), Money.of("30.00"));
+        LocalDateTime firstSnapshot = instant();
+        snapshotJob.takeSnapshots(firstSnapshot);
+
+        accountService.withdraw(account.id(), Money.of("20.00"));
+        LocalDateTime afterWithdraw = instant();
+        accountService.transfer(other.id(), account.id(), Money.of("5.00"));
+        LocalDateTime secondSnapshot = instant();
+        snapshotJob.takeSnapshots(secondSnapshot);
+        // Nothing happened since, nothing to snapshot
+        snapshotJob.takeSnapshots(instant());
+        assertEquals(2, snapshotRepository.findAll().stream()
+                .filter(snapshot -> snapshot.getAccountId().equals(account.id()))
+                .count());
+
+        accountService.deposit(account.id(), Money.of("1.00"));
+
+        assertBalance(100, account, created);
+        assertBalance(150, account, afterDeposit);
+        assertBalance(120, account, firstSnapshot);
+        assertBalance(100, account, afterWithdraw);
+        assertBalance(105, account, secondSnapshot);
+        assertBalance(106, account, LocalDateTime.now());
+        assertBalance(130, other, afterWithdraw);
+        assertBalance(125, other, secondSnapshot);
+        assertThrows(IllegalArgumentException.class,
+                () -> accountService.getBalanceAsOf(account.id(), account.createdAt().minusSeconds(1)));
+
+        accountService.deleteAccount(account.id());
+        accountService.deleteAccount(other.id());
+    }
+
+    private void assertBalance(long expected, AccountResponseDT0 account, LocalDateTime asOf) {
+        assertEquals(0, Money.ofCents(100 * expected).compareTo(accountService.getBalanceAsOf(account.id(), asOf).balance()),
+                "balance of " + account.owner() + " as of " + asOf);
+    }
+
+    // A point in time strictly between the entries written before and after it
+    private static LocalDateTime instant() throws InterruptedException {
+        Thread.sleep(2);
+        LocalDateTime now = LocalDateTime.now();
+        Thread.sleep(2);
+        return now;
+    }
+}
@@ -0,0 +1,161 @@
+package com.bank.bank_app.service.impl;
+
+import com.bank.bank_app.dto.AccountRequestDTO;
+import com.bank.bank_app.dto.AccountResponseDT0;
+import com.bank.bank_app.dto.TransferRequestDTO;
+import com.bank.bank_app.hotaccount.HotAccounts;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.service.AccountService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// A hot account against the database: bucket rows must not lose, invent or overdraw any money
+@SpringBootTest
+class HotAccountContentionTest {
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private HotAccounts hotAccounts;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testHotAccountKeepsExactBalance() throws Exception {
+        AccountResponseDT0 fees = accountService.createAccount(new AccountRequestDTO("Fees", Money.of("100.00")));
+        AccountResponseDT0 customer = accountService.createAccount(new AccountRequestDTO("Customer", Money.of("1000.00")));
+        assertTrue(hotAccounts.promote(fees.id()));
+
+        List<Future<Boolean>> deposits = new ArrayList<>();
+        List<Future<Boolean>> withdrawals = new ArrayList<>();
+        List<Future<Boolean>> transfersIn = new ArrayList<>();
+        List<Future<Boolean>> transfersOut = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(16)) {
+            for (int i = 0; i < 100; i++) {
+                deposits.add(executor.submit(refusable(() -> accountService.deposit(fees.id(), Money.of("1.00")))));
+                withdrawals.add(executor.submit(refusable(() -> accountService.withdraw(fees.id(), Money.of("10.00")))));
+                transfersIn.add(executor.submit(refusable(() -> accountService.transfer(customer.id(), fees.id(), Money.of("5.00")))));
+                transfersOut.add(executor.submit(refusable(() -> accountService.transfer(fees.id(), customer.id(), Money.of("3.00")))));
+            }
+        }
+
+        long deposited = succeeded(deposits);
+        long withdrawn = succeeded(withdrawals);
+        long received = succeeded(transfersIn);
+        long sent = succeeded(transfersOut);
+        assertEquals(100, deposited);
+        assertEquals(100, received);
+
+        Money expectedFees = Money.ofCents(100 * (100 + deposited - 10 * withdrawn + 5 * received - 3 * sent));
+        Money expectedCustomer = Money.ofCents(100 * (1000 - 5 * received + 3 * sent));
+        assertFalse(expectedFees.isNegative());
+        assertEquals(0, expectedFees.compareTo(accountService.getAccountById(fees.id()).balance()));
+        assertEquals(0, expectedCustomer.compareTo(accountService.getAccountById(customer.id()).balance()));
+
+        assertDemotedWhole(fees.id(), expectedFees);
+
+        accountService.deleteAccount(fees.id());
+        accountService.deleteAccount(customer.id());
+    }
+
+    @Test
+    void testBatchesPayIntoHotAccountBuckets() throws Exception {
+        AccountResponseDT0 fees = accountService.createAccount(new AccountRequestDTO("Fees", Money.ZERO));
+        AccountResponseDT0 customer = accountService.createAccount(new AccountRequestDTO("Customer", Money.of("1000.00")));
+        AccountResponseDT0 merchant = accountService.createAccount(new AccountRequestDTO("Merchant", Money.ZERO));
+        assertTrue(hotAccounts.promote(fees.id()));
+
+        List<Future<Long>> paid = new ArrayList<>();
+        List<Future<Boolean>> transfersOut = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(16)) {
+            for (int i = 0; i < 50; i++) {
+                // A payment with its fee, in one chunk; each item is checked against what the ones before left
+                paid.add(executor.submit(() -> (long) accountService.transferBatch(List.of(
+                        new TransferRequestDTO(customer.id(), merchant.id(), Money.of("9.00")),
+                        new TransferRequestDTO(customer.id(), fees.id(), Money.of("1.00")))).succeeded()));
+                transfersOut.add(executor.submit(refusable(() -> accountService.transfer(fees.id(), merchant.id(), Money.of("0.50")))));
+            }
+        }
+
+        long items = 0;
+        for (Future<Long> result : paid) {
+            items += result.get();
+        }
+        long sent = succeeded(transfersOut);
+        assertEquals(100, items);
+
+        Money expectedFees = Money.ofCents(50 * 100 - 50 * sent);
+        assertEquals(0, expectedFees.compareTo(accountService.getAccountById(fees.id()).balance()));
+        assertEquals(0, Money.of("500.00").compareTo(accountService.getAccountById(customer.id()).balance()));
+        assertEquals(0, Money.ofCents(50 * 900 + 50 * sent).compareTo(accountService.getAccountById(merchant.id()).balance()));
+        // The fees were credited to buckets, not to the accounts row every chunk would have queued on
+        assertTrue(jdbcTemplate.queryForObject("select count(*) from account_buckets where account_id = ? and balance <> 0",
+                Integer.class, fees.id()) > 0);
+        assertDemotedWhole(fees.id(), expectedFees);
+
+        accountService.deleteAccount(fees.id());
+        accountService.deleteAccount(customer.id());
+        accountService.deleteAccount(merchant.id());
+    }
+
+    @Test
+    void testDeletedAccountKeepsItsBucketsUntilPurged() {
+        AccountResponseDT0 fees = accountService.createAccount(new AccountRequestDTO("Fees", Money.ZERO));
+        assertTrue(hotAccounts.promote(fees.id()));
+        accountService.deposit(fees.id(), Money.of("5.00"));
+        accountService.deleteAccount(fees.id());
+
+        assertTrue(hotAccounts.demote(fees.id()));
+
+        // Not folded into the deleted account's row, the buckets still hold the deposit
+        assertEquals(0, new BigDecimal("5.00").compareTo(jdbcTemplate.queryForObject(
+                "select sum(balance) from account_buckets where account_id = ?", BigDecimal.class, fees.id())));
+        assertEquals(0, BigDecimal.ZERO.compareTo(jdbcTemplate.queryForObject(
+                "select balance from accounts where id = ?", BigDecimal.class, fees.id())));
+    }
+
+    // Folding the buckets back into the account row changes nothing a reader can see, and the whole balance
+    // can then be withdrawn at once. One more cent is paid in first: the contention may leave it at zero,
+    // which can not be withdrawn
+    private void assertDemotedWhole(Long id, Money expected) {
+        assertTrue(hotAccounts.demote(id));
+        assertEquals(0, expected.compareTo(accountService.getAccountById(id).balance()));
+        accountService.deposit(id, Money.of("0.01"));
+        accountService.withdraw(id, expected.plus(Money.of("0.01")));
+        assertEquals(Money.ZERO, accountService.getAccountById(id).balance());
+    }
+
+    // Refused for lack of funds counts as not done, anything else fails the test
+    private static Callable<Boolean> refusable(Runnable operation) {
+        return () -> {
+            try {
+                operation.run();
+                return true;
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        };
+    }
+
+    private static long succeeded(List<Future<Boolean>> results) throws Exception {
+        long succeeded = 0;
+        for (Future<Boolean> result : results) {
+            succeeded += result.get() ? 1 : 0;
+        }
+        return succeeded;
+    }
+}
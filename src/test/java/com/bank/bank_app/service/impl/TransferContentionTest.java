@@ -0,0 +1,96 @@
+package com.bank.bank_app.service.impl;
+
+import com.bank.bank_app.dto.AccountRequestDTO;
+import com.bank.bank_app.dto.AccountResponseDT0;
+import com.bank.bank_app.dto.TransferRequestDTO;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.service.AccountService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Transfers in both directions between a few accounts against the database: money is neither lost nor
+// invented, and the ordered row locks leave nothing to deadlock on (no transaction had to be retried)
+@SpringBootTest
+class TransferContentionTest {
+
+    private static final int ACCOUNTS = 4;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Test
+    void testOpposingTransfersConserveTotalWithoutDeadlocks() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            ids.add(accountService.createAccount(new AccountRequestDTO("Contention " + i, Money.of("100.00"))).id());
+        }
+        double deadlocksBefore = retries("deadlock");
+
+        List<Future<Boolean>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(16)) {
+            for (int i = 0; i < 400; i++) {
+                Long from = ids.get(i % ACCOUNTS);
+                Long to = ids.get((i + 1 + i / ACCOUNTS % (ACCOUNTS - 1)) % ACCOUNTS);
+                Money amount = Money.ofCents(ThreadLocalRandom.current().nextLong(1, 5000));
+                results.add(executor.submit(() -> {
+                    try {
+                        accountService.transfer(from, to, amount);
+                        return true;
+                    } catch (IllegalArgumentException e) {
+                        assertEquals("Insufficient funds", e.getMessage());
+                        return false;
+                    }
+                }));
+                // Batches lock all their accounts at once, interleaved with the single transfers
+                if (i % 40 == 0) {
+                    results.add(executor.submit(() -> {
+                        // A chunk that failed as a whole would be reported, not thrown
+                        accountService.transferBatch(List.of(
+                                new TransferRequestDTO(to, from, Money.of("1.00")),
+                                new TransferRequestDTO(from, to, Money.of("1.00"))))
+                                .results()
+                                .forEach(item -> assertTrue(item.success() || "Insufficient funds".equals(item.error()), item.error()));
+                        return true;
+                    }));
+                }
+            }
+        }
+
+        long succeeded = 0;
+        for (Future<Boolean> result : results) {
+            succeeded += result.get() ? 1 : 0;
+        }
+        assertTrue(succeeded > 0);
+
+        Money total = Money.ZERO;
+        for (Long id : ids) {
+            AccountResponseDT0 account = accountService.getAccountById(id);
+            assertFalse(account.balance().isNegative());
+            total = total.plus(account.balance());
+        }
+        assertEquals(Money.of("400.00"), total);
+        assertEquals(deadlocksBefore, retries("deadlock"));
+
+        ids.forEach(accountService::deleteAccount);
+    }
+
+    private double retries(String reason) {
+        Counter counter = registry.find("bank.concurrency.retries").tag("operation", "transfer").tag("reason", reason).counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
@@ -0,0 +1,99 @@
+package com.bank.bank_app.service.impl;
+
+import com.bank.bank_app.concurrency.JdbcConcurrencyLimiter;
+import com.bank.bank_app.dto.AccountRequestDTO;
+import com.bank.bank_app.dto.AccountResponseDT0;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.service.AccountService;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+Runs the @Transactional transfer path on virtual threads against the database and fails if any of them
+blocked while pinned to its carrier thread (JFR event jdk.VirtualThreadPinned, recorded without threshold).
+There are more virtual threads than connections, so the limiter and the pool are both contended.
+ */
+@SpringBootTest(properties = "spring.threads.virtual.enabled=true")
+class VirtualThreadPinningTest {
+
+    private static final int PAIRS = 100;
+    private static final int TRANSFERS_PER_PAIR = 5;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private JdbcConcurrencyLimiter limiter;
+
+    @Test
+    void testTransfersOnVirtualThreadsDoNotPin() throws Exception {
+        List<AccountResponseDT0[]> pairs = new ArrayList<>();
+        for (int i = 0; i < PAIRS; i++) {
+            pairs.add(new AccountResponseDT0[]{
+                    accountService.createAccount(new AccountRequestDTO("Pinning From " + i, Money.of("100.00"))),
+                    accountService.createAccount(new AccountRequestDTO("Pinning To " + i, Money.ZERO))});
+        }
+        int permits = limiter.availablePermits();
+
+        List<RecordedEvent> pinned = new CopyOnWriteArrayList<>();
+        try (RecordingStream recording = new RecordingStream()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            recording.onEvent("jdk.VirtualThreadPinned", pinned::add);
+            recording.startAsync();
+
+            List<Future<?>> results = new ArrayList<>();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (AccountResponseDT0[] pair : pairs) {
+                    results.add(executor.submit(() -> {
+                        for (int i = 0; i < TRANSFERS_PER_PAIR; i++) {
+                            accountService.transfer(pair[0].id(), pair[1].id(), Money.of("1.00"));
+                            accountService.getAccountById(pair[1].id());
+                        }
+                        return null;
+                    }));
+                }
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+            recording.stop();
+        }
+
+        assertTrue(pinned.isEmpty(), () -> "Virtual threads pinned:\n" + pinned.stream()
+                .map(VirtualThreadPinningTest::describe)
+                .distinct()
+                .collect(Collectors.joining("\n")));
+        assertEquals(permits, limiter.availablePermits());
+        for (AccountResponseDT0[] pair : pairs) {
+            assertEquals(0, Money.ofCents(100L * TRANSFERS_PER_PAIR).compareTo(accountService.getAccountById(pair[1].id()).balance()));
+            accountService.deleteAccount(pair[0].id());
+            accountService.deleteAccount(pair[1].id());
+        }
+    }
+
+    private static String describe(RecordedEvent event) {
+        if (event.getStackTrace() == null) {
+            return "  (no stack trace)";
+        }
+        return event.getStackTrace().getFrames().stream()
+                .limit(40)
+                .map(RecordedFrame::getMethod)
+                .map(method -> "  " + method.getType().getName() + "." + method.getName())
+                .collect(Collectors.joining("\n"));
+    }
+}
@@ -0,0 +1,169 @@
+package com.bank.bank_app.statement;
+
+import com.bank.bank_app.dto.AccountRequestDTO;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.service.AccountService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+// Against the database: statement rows with their counterparty, gzip, and Range / If-Range on a settled statement
+@SpringBootTest
+@AutoConfigureMockMvc
+class StatementExportTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long sender;
+    private long receiver;
+    private final LocalDateTime from = LocalDateTime.now().minusHours(2);
+    private final LocalDateTime to = LocalDateTime.now().minusMinutes(10);
+
+    @BeforeEach
+    void setUp() {
+        sender = accountService.createAccount(new AccountRequestDTO("Sender", Money.ZERO)).id();
+        receiver = accountService.createAccount(new AccountRequestDTO("Receiver", Money.ZERO)).id();
+        accountService.deposit(sender, Money.of("100.00"));
+        accountService.transfer(sender, receiver, Money.of("30.00"));
+        // An hour ago the statement has settled: it can not change any more
+        jdbcTemplate.update("update entries set created_at = created_at - interval '1 hour' where account_id in (?, ?)",
+                sender, receiver);
+        jdbcTemplate.update("update transfers set created_at = created_at - interval '1 hour' where from_account_id = ?",
+                sender);
+    }
+
+    @AfterEach
+    void tearDown() {
+        accountService.deleteAccount(sender);
+        accountService.deleteAccount(receiver);
+    }
+
+    private MockHttpServletRequestBuilder statement(boolean gzip) {
+        return get("/api/accounts/statements")
+                .param("accountId", String.valueOf(receiver), String.valueOf(sender))
+                .param("from", from.toString())
+                .param("to", to.toString())
+                .param("gzip", String.valueOf(gzip));
+    }
+
+    private MockHttpServletResponse download(MockHttpServletRequestBuilder request) throws Exception {
+        MvcResult started = mockMvc.perform(request).andReturn();
+        return mockMvc.perform(asyncDispatch(started)).andReturn().getResponse();
+    }
+
+    @Test
+    void testStatementWithCounterparties() throws Exception {
+        MockHttpServletResponse response = download(statement(false));
+        assertEquals(200, response.getStatus());
+        assertNotNull(response.getHeader("ETag"));
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+
+        String[] lines = response.getContentAsString().split("\n");
+        assertEquals(4, lines.length);
+        assertEquals("entry_id,account_id,created_at,entry_type,amount,balance_after,transfer_id,counterparty_account_id", lines[0]);
+        assertTrue(lines[1].matches("\\d+," + sender + ",[^,]+,DEPOSIT,100.00,100.00,,"), lines[1]);
+        assertTrue(lines[2].matches("\\d+," + sender + ",[^,]+,TRANSFER_OUT,30.00,70.00,\\d+," + receiver), lines[2]);
+        assertTrue(lines[3].matches("\\d+," + receiver + ",[^,]+,TRANSFER_IN,30.00,30.00,\\d+," + sender), lines[3]);
+
+        MockHttpServletResponse gzipped = download(statement(true));
+        assertEquals("application/gzip", gzipped.getContentType());
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.getContentAsByteArray()))) {
+            assertEquals(response.getContentAsString(), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testFullDownload() throws Exception {
+        MockHttpServletResponse full = download(statement(true));
+
+        assertEquals(200, full.getStatus());
+        assertEquals("application/gzip", full.getContentType());
+        assertNull(full.getHeader("Content-Range"));
+        assertTrue(full.getContentAsByteArray().length > 20);
+    }
+
+    @Test
+    void testResumeWithMatchingIfRange() throws Exception {
+        MockHttpServletResponse full = download(statement(true));
+        byte[] bytes = full.getContentAsByteArray();
+
+        MockHttpServletResponse rest = download(statement(true).header("Range", "bytes=20-").header("If-Range", full.getHeader("ETag")));
+        assertEquals(206, rest.getStatus());
+        assertEquals("application/gzip", rest.getContentType());
+        assertEquals("bytes 20-" + (bytes.length - 1) + "/" + bytes.length, rest.getHeader("Content-Range"));
+        assertArrayEquals(Arrays.copyOfRange(bytes, 20, bytes.length), rest.getContentAsByteArray());
+
+        MockHttpServletResponse middle = download(statement(true).header("Range", "bytes=5-9"));
+        assertEquals(206, middle.getStatus());
+        assertEquals("bytes 5-9/" + bytes.length, middle.getHeader("Content-Range"));
+        assertArrayEquals(Arrays.copyOfRange(bytes, 5, 10), middle.getContentAsByteArray());
+    }
+
+    @Test
+    void testStaleIfRangeGetsAllOfIt() throws Exception {
+        byte[] bytes = download(statement(true)).getContentAsByteArray();
+
+        // Another ETag: the client's copy is not this statement
+        MockHttpServletResponse changed = download(statement(true).header("Range", "bytes=20-").header("If-Range", "\"other\""));
+        assertEquals(200, changed.getStatus());
+        assertNull(changed.getHeader("Content-Range"));
+        assertArrayEquals(bytes, changed.getContentAsByteArray());
+    }
+
+    @Test
+    void testRangeOfAStatementThatCanStillChangeGetsAllOfIt() throws Exception {
+        MockHttpServletResponse response = download(get("/api/accounts/statements")
+                .param("accountId", String.valueOf(sender))
+                .param("from", from.toString())
+                .param("to", LocalDateTime.now().plusHours(1).toString())
+                .header("Range", "bytes=20-"));
+
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader("ETag"));
+        assertNull(response.getHeader("Content-Range"));
+    }
+
+    @Test
+    void testUnsatisfiableRange() throws Exception {
+        int length = download(statement(true)).getContentAsByteArray().length;
+
+        MockHttpServletResponse response = mockMvc.perform(statement(true).header("Range", "bytes=" + length + "-"))
+                .andReturn().getResponse();
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */" + length, response.getHeader("Content-Range"));
+    }
+
+    @Test
+    void testUnknownAccount() throws Exception {
+        assertEquals(404, mockMvc.perform(get("/api/accounts/statements")
+                        .param("accountId", "-1")
+                        .param("from", "2025-01-01T00:00:00")
+                        .param("to", "2025-02-01T00:00:00"))
+                .andReturn().getResponse().getStatus());
+    }
+}
@@ -0,0 +1,172 @@
+package com.bank.bank_app.transfer;
+
+import com.bank.bank_app.config.TransferBatchProperties;
+import com.bank.bank_app.dto.TransferBatchResponseDTO;
+import com.bank.bank_app.dto.TransferRequestDTO;
+import com.bank.bank_app.dto.TransferResultDTO;
+import com.bank.bank_app.dto.TransferSubmissionDTO;
+import com.bank.bank_app.exception.ServiceBusyException;
+import com.bank.bank_app.exception.TransferNotFoundException;
+import com.bank.bank_app.money.Money;
+import com.bank.bank_app.service.AccountService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class TransferSubmissionsTest {
+
+    private final AccountService accountService = mock(AccountService.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private TransferSubmissions submissions;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (submissions != null) {
+            submissions.stop();
+        }
+    }
+
+    private void start(int lanes, int capacity) {
+        submissions = new TransferSubmissions(accountService,
+                new TransferSubmissionProperties(lanes, capacity, 10, Duration.ofMinutes(1), 1000),
+                new TransferBatchProperties(500, 10000), registry);
+        submissions.start();
+    }
+
+    @Test
+    void testTransfersOfASourceAccountAreAppliedInSubmissionOrder() throws Exception {
+        List<TransferRequestDTO> applied = Collections.synchronizedList(new ArrayList<>());
+        when(accountService.transferBatch(anyList())).thenAnswer(invocation -> {
+            List<TransferRequestDTO> batch = invocation.getArgument(0);
+            applied.addAll(batch);
+            List<TransferResultDTO> results = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i++) {
+                results.add(TransferResultDTO.succeeded(i, 100L + i, Money.of("1.00")));
+            }
+            return new TransferBatchResponseDTO(batch.size(), 0, results);
+        });
+        start(3, 1000);
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 1; i <= 50; i++) {
+            ids.add(submissions.submit(new TransferRequestDTO((long) i % 5, 99L, Money.ofCents(100L * i))).id());
+        }
+        for (String id : ids) {
+            assertEquals(TransferSubmissionDTO.Status.COMPLETED, await(id).status());
+        }
+        assertNotNull(submissions.status(ids.getFirst()).transferId());
+
+        for (long source = 0; source < 5; source++) {
+            long from = source;
+            List<Integer> amounts = applied.stream()
+                    .filter(request -> request.fromAccountId() == from)
+                    .map(request -> (int) (request.amount().cents() / 100))
+                    .toList();
+            assertEquals(10, amounts.size());
+            assertEquals(amounts.stream().sorted().toList(), amounts);
+        }
+    }
+
+    @Test
+    void testSubmissionIsRejectedWhenItsLaneIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(accountService.transferBatch(anyList())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            List<TransferRequestDTO> batch = invocation.getArgument(0);
+            return new TransferBatchResponseDTO(0, batch.size(), List.of(TransferResultDTO.failed(0, "Insufficient funds")));
+        });
+        start(1, 1);
+
+        String running = submissions.submit(new TransferRequestDTO(1L, 2L, Money.of("10.00"))).id();
+        started.await();
+        String waiting = submissions.submit(new TransferRequestDTO(1L, 2L, Money.of("10.00"))).id();
+        assertThrows(ServiceBusyException.class, () -> submissions.submit(new TransferRequestDTO(1L, 2L, Money.of("10.00"))));
+        assertEquals(1, registry.get("bank.transfers.async.rejected").counter().count());
+        assertEquals(TransferSubmissionDTO.Status.QUEUED, submissions.status(waiting).status());
+
+        release.countDown();
+        TransferSubmissionDTO failed = await(running);
+        assertEquals(TransferSubmissionDTO.Status.FAILED, failed.status());
+        assertEquals("Insufficient funds", failed.error());
+        await(waiting);
+    }
+
+    @Test
+    void testFailedBatchFailsEverySubmission() throws Exception {
+        when(accountService.transferBatch(anyList())).thenThrow(new IllegalStateException("Connection refused"));
+        start(1, 10);
+
+        TransferSubmissionDTO status = await(submissions.submit(new TransferRequestDTO(1L, 2L, Money.of("1.00"))).id());
+
+        assertEquals(TransferSubmissionDTO.Status.FAILED, status.status());
+        assertEquals("Connection refused", status.error());
+        assertThrows(TransferNotFoundException.class, () -> submissions.status("unknown"));
+        assertThrows(IllegalArgumentException.class,
+                () -> submissions.submit(new TransferRequestDTO(1L, 2L, Money.ZERO)));
+    }
+
+    @Test
+    void testWaitingSubmissionsAreNotEvicted() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(accountService.transferBatch(anyList())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            List<TransferRequestDTO> batch = invocation.getArgument(0);
+            List<TransferResultDTO> results = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i++) {
+                results.add(TransferResultDTO.succeeded(i, 100L + i, Money.of("1.00")));
+            }
+            return new TransferBatchResponseDTO(batch.size(), 0, results);
+        });
+        submissions = new TransferSubmissions(accountService,
+                new TransferSubmissionProperties(1, 100, 10, Duration.ofMinutes(1), 1),
+                new TransferBatchProperties(500, 10000), registry);
+        submissions.start();
+
+        List<String> ids = new ArrayList<>();
+        ids.add(submissions.submit(new TransferRequestDTO(1L, 2L, Money.of("1.00"))).id());
+        started.await();
+        for (int i = 0; i < 20; i++) {
+            ids.add(submissions.submit(new TransferRequestDTO(1L, 2L, Money.of("1.00"))).id());
+        }
+        for (String id : ids) {
+            assertEquals(TransferSubmissionDTO.Status.QUEUED, submissions.status(id).status());
+        }
+
+        release.countDown();
+        assertEquals(TransferSubmissionDTO.Status.COMPLETED, await(ids.getLast()).status());
+    }
+
+    @Test
+    void testBatchSizeAboveTheTransferBatchLimitsFailsStartup() {
+        TransferSubmissionProperties properties = new TransferSubmissionProperties(1, 10, 600, Duration.ofMinutes(1), 1000);
+
+        assertThrows(IllegalArgumentException.class, () -> new TransferSubmissions(accountService, properties,
+                new TransferBatchProperties(500, 10000), registry));
+        assertThrows(IllegalArgumentException.class, () -> new TransferSubmissions(accountService, properties,
+                new TransferBatchProperties(1000, 100), registry));
+    }
+
+    private TransferSubmissionDTO await(String id) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        TransferSubmissionDTO status = submissions.status(id);
+        while (status.status() == TransferSubmissionDTO.Status.QUEUED && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            status = submissions.status(id);
+        }
+        return status;
+    }
+}